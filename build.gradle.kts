@@ -172,7 +172,8 @@ sourceSets {
                 setSrcDirs(listOf("src"))
                 include("dorkbox/systemTray/gnomeShell/extension.js",
                     "dorkbox/systemTray/gnomeShell/appindicator.zip",
-                    "dorkbox/systemTray/util/error_32.png")
+                    "dorkbox/systemTray/util/error_32.png",
+                    "META-INF/services/dorkbox.systemTray.TrayBackend")
             }
         }
     }
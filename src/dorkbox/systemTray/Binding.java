@@ -0,0 +1,373 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dorkbox.util.NamedThreadFactory;
+
+/**
+ * Binds a property of a menu entry (the text, checked or enabled state) to a source of values, so that the entry follows the values as
+ * they change.
+ * <p>
+ * Values are applied at most once per interval: when values change faster than that, only the latest value is applied (the values in
+ * between are dropped), and values that are the same as the entry already has are skipped. This way a fast changing source does not
+ * flood the native menu with updates.
+ * <p>
+ * A binding is removed when the entry is removed, or via {@link #unbind()}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class Binding {
+    /**
+     * Notified when the value of a source changes
+     */
+    public
+    interface Listener<T> {
+        void valueChanged(T value);
+    }
+
+    /**
+     * A source of values, which notifies it's listeners (on any thread) when the value changes.
+     */
+    public
+    interface Source<T> {
+        void addListener(Listener<T> listener);
+
+        void removeListener(Listener<T> listener);
+    }
+
+    /**
+     * A simple value that can be bound to. Listeners are notified (on the thread that sets the value) every time the value is set.
+     */
+    public static
+    class Value<T> implements Source<T> {
+        private final List<Listener<T>> listeners = new CopyOnWriteArrayList<Listener<T>>();
+        private volatile T value;
+
+        public
+        Value() {
+        }
+
+        public
+        Value(final T value) {
+            this.value = value;
+        }
+
+        public
+        T get() {
+            return value;
+        }
+
+        public
+        void set(final T value) {
+            this.value = value;
+
+            for (Listener<T> listener : listeners) {
+                listener.valueChanged(value);
+            }
+        }
+
+        @Override
+        public
+        void addListener(final Listener<T> listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public
+        void removeListener(final Listener<T> listener) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * How the value is read from, and written to, the entry
+     */
+    private
+    interface Property {
+        Object get();
+
+        void set(Object value);
+    }
+
+
+    private static final Object NONE = new Object();
+
+    // values are applied to the entries from this thread
+    private static ScheduledThreadPoolExecutor executor = null;
+
+
+    /**
+     * Binds the text of a menu entry
+     *
+     * @param minimumInterval the minimum time between updates of the entry
+     */
+    public static
+    Binding text(final MenuItem menuItem, final Source<String> source, final long minimumInterval, final TimeUnit unit) {
+        return bind(menuItem, source, minimumInterval, unit, new Property() {
+            @Override
+            public
+            Object get() {
+                return menuItem.getText();
+            }
+
+            @Override
+            public
+            void set(final Object value) {
+                menuItem.setText((String) value);
+            }
+        });
+    }
+
+    /**
+     * Binds the text of a checkbox
+     *
+     * @param minimumInterval the minimum time between updates of the entry
+     */
+    public static
+    Binding text(final Checkbox checkbox, final Source<String> source, final long minimumInterval, final TimeUnit unit) {
+        return bind(checkbox, source, minimumInterval, unit, new Property() {
+            @Override
+            public
+            Object get() {
+                return checkbox.getText();
+            }
+
+            @Override
+            public
+            void set(final Object value) {
+                checkbox.setText((String) value);
+            }
+        });
+    }
+
+    /**
+     * Binds the text of a status
+     *
+     * @param minimumInterval the minimum time between updates of the entry
+     */
+    public static
+    Binding text(final Status status, final Source<String> source, final long minimumInterval, final TimeUnit unit) {
+        return bind(status, source, minimumInterval, unit, new Property() {
+            @Override
+            public
+            Object get() {
+                return status.getText();
+            }
+
+            @Override
+            public
+            void set(final Object value) {
+                status.setText((String) value);
+            }
+        });
+    }
+
+    /**
+     * Binds the checked state of a checkbox
+     *
+     * @param minimumInterval the minimum time between updates of the entry
+     */
+    public static
+    Binding checked(final Checkbox checkbox, final Source<Boolean> source, final long minimumInterval, final TimeUnit unit) {
+        return bind(checkbox, source, minimumInterval, unit, new Property() {
+            @Override
+            public
+            Object get() {
+                return checkbox.getChecked();
+            }
+
+            @Override
+            public
+            void set(final Object value) {
+                checkbox.setChecked((Boolean) value);
+            }
+        });
+    }
+
+    /**
+     * Binds the enabled state of a menu entry
+     *
+     * @param minimumInterval the minimum time between updates of the entry
+     */
+    public static
+    Binding enabled(final MenuItem menuItem, final Source<Boolean> source, final long minimumInterval, final TimeUnit unit) {
+        return bind(menuItem, source, minimumInterval, unit, new Property() {
+            @Override
+            public
+            Object get() {
+                return menuItem.getEnabled();
+            }
+
+            @Override
+            public
+            void set(final Object value) {
+                menuItem.setEnabled((Boolean) value);
+            }
+        });
+    }
+
+    /**
+     * Binds the enabled state of a checkbox
+     *
+     * @param minimumInterval the minimum time between updates of the entry
+     */
+    public static
+    Binding enabled(final Checkbox checkbox, final Source<Boolean> source, final long minimumInterval, final TimeUnit unit) {
+        return bind(checkbox, source, minimumInterval, unit, new Property() {
+            @Override
+            public
+            Object get() {
+                return checkbox.getEnabled();
+            }
+
+            @Override
+            public
+            void set(final Object value) {
+                checkbox.setEnabled((Boolean) value);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static
+    <T> Binding bind(final Entry entry, final Source<T> source, final long minimumInterval, final TimeUnit unit, final Property property) {
+        final Binding binding = new Binding(entry, (Source<Object>) source, unit.toNanos(minimumInterval), property);
+
+        entry.addBinding_(binding);
+        source.addListener((Listener<T>) binding.listener);
+        return binding;
+    }
+
+    private static synchronized
+    ScheduledThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("SystemTrayBinding", true));
+        }
+        return executor;
+    }
+
+
+    private final Entry entry;
+    private final Source<Object> source;
+    private final long minimumInterval;
+    private final Property property;
+
+    // the latest value that has not been applied yet
+    private final AtomicReference<Object> pending = new AtomicReference<Object>(NONE);
+    private volatile boolean isBound = true;
+
+    // guarded by this
+    private boolean isScheduled = false;
+    private long lastUpdate = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    private final Listener<Object> listener = new Listener<Object>() {
+        @Override
+        public
+        void valueChanged(final Object value) {
+            onValue(value);
+        }
+    };
+
+    private final Runnable update = new Runnable() {
+        @Override
+        public
+        void run() {
+            update();
+        }
+    };
+
+    private
+    Binding(final Entry entry, final Source<Object> source, final long minimumInterval, final Property property) {
+        this.entry = entry;
+        this.source = source;
+        this.minimumInterval = minimumInterval;
+        this.property = property;
+    }
+
+    /**
+     * Stops the entry from following the source. This happens automatically when the entry is removed.
+     */
+    public
+    void unbind() {
+        if (isBound) {
+            isBound = false;
+
+            source.removeListener(listener);
+            entry.removeBinding_(this);
+        }
+    }
+
+    /**
+     * @return true if the entry is following the source
+     */
+    public
+    boolean isBound() {
+        return isBound;
+    }
+
+    private
+    void onValue(final Object value) {
+        if (!isBound) {
+            return;
+        }
+
+        // intermediate values are dropped, only the latest value is applied
+        pending.set(value);
+
+        final long delay;
+        synchronized (this) {
+            if (isScheduled) {
+                return;
+            }
+            isScheduled = true;
+
+            delay = Math.max(0L, lastUpdate + minimumInterval - System.nanoTime());
+        }
+
+        getExecutor().schedule(update, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private
+    void update() {
+        synchronized (this) {
+            isScheduled = false;
+            lastUpdate = System.nanoTime();
+        }
+
+        final Object value = pending.getAndSet(NONE);
+        if (value == NONE || !isBound) {
+            return;
+        }
+
+        // unchanged values are skipped
+        final Object current = property.get();
+        if (value == null ? current == null : value.equals(current)) {
+            return;
+        }
+
+        try {
+            property.set(value);
+        } catch (Exception e) {
+            SystemTray.logger.error("Error updating bound menu entry", e);
+        }
+    }
+}
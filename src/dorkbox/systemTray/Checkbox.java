@@ -17,10 +17,12 @@ package dorkbox.systemTray;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.Executor;
 
 import javax.swing.JCheckBoxMenuItem;
 
 import dorkbox.systemTray.peer.CheckboxPeer;
+import dorkbox.systemTray.util.EventDispatch;
 import dorkbox.util.SwingUtil;
 
 /**
@@ -29,14 +31,10 @@ import dorkbox.util.SwingUtil;
 @SuppressWarnings("unused")
 public
 class Checkbox extends Entry {
-    private volatile boolean isChecked = false;
+    // enabled, checked and the shortcut are stored in the entry flags. The tooltip and less common callbacks are in the entry extras
     private volatile String text;
     private volatile ActionListener callback;
 
-    private volatile boolean enabled = true;
-    private volatile char mnemonicKey;
-    private volatile String tooltip;
-
     public
     Checkbox() {
         this(null, null);
@@ -101,7 +99,7 @@ class Checkbox extends Entry {
      */
     public
     boolean getChecked() {
-        return isChecked;
+        return getFlags_(CHECKED) != 0;
     }
 
     /**
@@ -111,7 +109,7 @@ class Checkbox extends Entry {
      */
     public
     void setChecked(boolean isChecked) {
-        this.isChecked = isChecked;
+        setFlags_(CHECKED, isChecked ? CHECKED : 0);
 
         if (peer != null) {
             ((CheckboxPeer) peer).setChecked(this);
@@ -139,12 +137,72 @@ class Checkbox extends Entry {
         }
     }
 
+    /**
+     * Gets the lightweight callback assigned to this menu entry
+     */
+    public
+    MenuCallback getMenuCallback() {
+        final Extras extras = getExtras_();
+        return extras == null ? null : extras.menuCallback;
+    }
+
+    /**
+     * Sets a lightweight callback for a menu entry. This is the action that occurs when one clicks the menu entry, and unlike an
+     * ActionListener, no event is created for the click.
+     * <p>
+     * If both an ActionListener and a MenuCallback are assigned, only the MenuCallback is called.
+     *
+     * @param callback the callback to set. If null, the callback is safely removed.
+     */
+    public
+    void setMenuCallback(final MenuCallback callback) {
+        if (callback != null || getExtras_() != null) {
+            extras_().menuCallback = callback;
+        }
+
+        if (peer != null) {
+            ((CheckboxPeer) peer).setCallback(this);
+        }
+    }
+
+    /**
+     * @return the executor that the callback for this menu entry runs on, or null if the default is used
+     */
+    public
+    Executor getCallbackExecutor() {
+        final Extras extras = getExtras_();
+        return extras == null ? null : extras.callbackExecutor;
+    }
+
+    /**
+     * Sets the executor that the callback for this menu entry runs on. By default, callbacks run (in order) on a single event dispatch
+     * thread, shared by all menu entries (or on virtual threads, if SystemTray.VIRTUAL_THREAD_CALLBACKS is enabled).
+     * <p>
+     * {@link EventDispatch#DIRECT_EXECUTOR} will run the callback directly on the native thread that received the click (the callback
+     * MUST NOT block, and changes to the menu structure are queued until after it returns), {@link EventDispatch#DISPATCH_EXECUTOR} will
+     * run it on the single event dispatch thread,
+     * {@link EventDispatch#VIRTUAL_THREAD_EXECUTOR} will run it on a virtual thread (in order with the other callbacks for this entry),
+     * or any other executor (ie: a thread pool) can be used.
+     *
+     * @param executor the executor to use. If null, the default is used.
+     */
+    public
+    void setCallbackExecutor(final Executor executor) {
+        if (executor != null || getExtras_() != null) {
+            extras_().callbackExecutor = executor;
+        }
+
+        if (peer != null) {
+            ((CheckboxPeer) peer).setCallback(this);
+        }
+    }
+
     /**
      * @return true if this item is enabled, or false if it is disabled.
      */
     public
     boolean getEnabled() {
-        return this.enabled;
+        return getFlags_(DISABLED) == 0;
     }
 
     /**
@@ -152,7 +210,7 @@ class Checkbox extends Entry {
      */
     public
     void setEnabled(final boolean enabled) {
-        this.enabled = enabled;
+        setFlags_(DISABLED, enabled ? 0 : DISABLED);
 
         if (peer != null) {
             ((CheckboxPeer) peer).setEnabled(this);
@@ -190,7 +248,7 @@ class Checkbox extends Entry {
      */
     public
     char getShortcut() {
-        return this.mnemonicKey;
+        return (char) getFlags_(SHORTCUT_MASK);
     }
 
     /**
@@ -203,7 +261,7 @@ class Checkbox extends Entry {
      */
     public
     void setShortcut(final char key) {
-        this.mnemonicKey = key;
+        setFlags_(SHORTCUT_MASK, key);
 
         if (peer != null) {
             ((CheckboxPeer) peer).setShortcut(this);
@@ -220,7 +278,7 @@ class Checkbox extends Entry {
      */
     public
     void setShortcut(final int key) {
-        this.mnemonicKey = SwingUtil.getFromVirtualKey(key);
+        setFlags_(SHORTCUT_MASK, SwingUtil.getFromVirtualKey(key));
 
         if (peer != null) {
             ((CheckboxPeer) peer).setShortcut(this);
@@ -251,7 +309,9 @@ class Checkbox extends Entry {
             }
         }
 
-        this.tooltip = tooltipText;
+        if (tooltipText != null || getExtras_() != null) {
+            extras_().tooltip = tooltipText;
+        }
 
         if (peer != null) {
             ((CheckboxPeer) peer).setTooltip(this);
@@ -265,7 +325,8 @@ class Checkbox extends Entry {
      */
     public
     String getTooltip() {
-        return this.tooltip;
+        final Extras extras = getExtras_();
+        return extras == null ? null : extras.tooltip;
     }
 
 
@@ -282,7 +343,19 @@ class Checkbox extends Entry {
         jCheckBoxMenuItem.setMnemonic(SwingUtil.getVirtualKey(getShortcut()));
 
         jCheckBoxMenuItem.setState(getChecked());
-        jCheckBoxMenuItem.addActionListener(getCallback());
+        final MenuCallback menuCallback = getMenuCallback();
+        if (menuCallback != null) {
+            jCheckBoxMenuItem.addActionListener(new ActionListener() {
+                @Override
+                public
+                void actionPerformed(final ActionEvent e) {
+                    menuCallback.onClick(Checkbox.this);
+                }
+            });
+        }
+        else {
+            jCheckBoxMenuItem.addActionListener(getCallback());
+        }
 
         return jCheckBoxMenuItem;
     }
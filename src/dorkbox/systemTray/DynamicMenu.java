@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dorkbox.systemTray.util.EventDispatch;
+
+/**
+ * A menu whose entries are created from a (possibly very large) list of items, by a renderer.
+ * <p>
+ * Only a window (page) of the items is ever shown, so only that many entries (and native menu entries) exist regardless of how many
+ * items there are. When there are more items than fit on a page, "previous" and "more" entries are shown to change pages. The entries
+ * are reused when the page changes (or the items change), and only the properties which are different are updated.
+ * <p>
+ * When the items change, notify this menu via {@link #itemsInserted(int, int)}, {@link #itemsRemoved(int, int)} or
+ * {@link #itemsChanged(int, int)}. If the change does not affect the current page, nothing is updated.
+ */
+@SuppressWarnings("unused")
+public
+class DynamicMenu<T> extends Menu {
+    /**
+     * The items shown by a DynamicMenu
+     */
+    public
+    interface Provider<T> {
+        int size();
+
+        T get(int index);
+    }
+
+    /**
+     * Creates the menu spec for an item of a DynamicMenu
+     */
+    public
+    interface Renderer<T> {
+        /**
+         * The key of the spec is not used, as entries are reused by their position on the page.
+         *
+         * @param item the item to render
+         * @param index the index of the item in the provider
+         */
+        MenuSpec render(T item, int index);
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 25;
+
+    private static final String PREVIOUS_KEY = "previous";
+    private static final String NEXT_KEY = "next";
+
+    private final Provider<T> provider;
+    private final Renderer<T> renderer;
+
+    // guarded by this
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int page = 0;
+    private String previousText = "Previous";
+    private String nextText = "More...";
+
+    private final MenuCallback previousCallback = new MenuCallback() {
+        @Override
+        public
+        void onClick(final Entry entry) {
+            setPage(getPage() - 1);
+        }
+    };
+
+    private final MenuCallback nextCallback = new MenuCallback() {
+        @Override
+        public
+        void onClick(final Entry entry) {
+            setPage(getPage() + 1);
+        }
+    };
+
+    /**
+     * @param text the text of this menu
+     * @param provider the items of this menu
+     * @param renderer creates the menu entry for each item
+     */
+    public
+    DynamicMenu(final String text, final Provider<T> provider, final Renderer<T> renderer) {
+        super(text);
+
+        this.provider = provider;
+        this.renderer = renderer;
+
+        refresh();
+    }
+
+    /**
+     * Entries cannot be added to a DynamicMenu, they are created from it's items.
+     */
+    @Override
+    public
+    <E extends Entry> E add(final E entry, final int index) {
+        throw new UnsupportedOperationException("Entries cannot be added to a DynamicMenu, they are created from it's items.");
+    }
+
+    /**
+     * @return how many items are shown on each page
+     */
+    public synchronized
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets how many items are shown on each page
+     */
+    public
+    void setPageSize(final int pageSize) {
+        if (pageSize < 1) {
+            throw new RuntimeException("The page size must be at least 1.");
+        }
+
+        synchronized (this) {
+            this.pageSize = pageSize;
+        }
+        refresh();
+    }
+
+    /**
+     * @return the current page (zero-index)
+     */
+    public synchronized
+    int getPage() {
+        return page;
+    }
+
+    /**
+     * Changes to the specified page (zero-index). If it is past the last page, the last page is shown.
+     */
+    public
+    void setPage(final int page) {
+        synchronized (this) {
+            this.page = page;
+        }
+        refresh();
+    }
+
+    /**
+     * Sets the text of the entries used to change pages
+     */
+    public
+    void setNavigationText(final String previousText, final String nextText) {
+        synchronized (this) {
+            this.previousText = previousText;
+            this.nextText = nextText;
+        }
+        refresh();
+    }
+
+    /**
+     * Notifies this menu that items were inserted into the provider
+     */
+    public
+    void itemsInserted(final int index, final int count) {
+        // the items on this page have shifted, or this was the last page (and now there might be more)
+        final int endIndex = getEndIndex();
+        if (index < endIndex || endIndex >= provider.size() - count) {
+            refresh();
+        }
+    }
+
+    /**
+     * Notifies this menu that items were removed from the provider
+     */
+    public
+    void itemsRemoved(final int index, final int count) {
+        // the items on this page have shifted, or this is now the last page
+        final int endIndex = getEndIndex();
+        if (index < endIndex || endIndex >= provider.size()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Notifies this menu that items in the provider have changed
+     */
+    public
+    void itemsChanged(final int index, final int count) {
+        final int startIndex;
+        synchronized (this) {
+            startIndex = page * pageSize;
+        }
+
+        if (index < getEndIndex() && index + count > startIndex) {
+            refresh();
+        }
+    }
+
+    /**
+     * Updates the entries for the current page. This is only necessary if the provider has changed without notifying this menu.
+     * <p>
+     * The provider is accessed on the event dispatch thread.
+     */
+    public
+    void refresh() {
+        // refreshes are queued on our own dispatch thread, so the last refresh always shows the latest items and page.
+        EventDispatch.runOrQueue(new Runnable() {
+            @Override
+            public
+            void run() {
+                reconcile(createSpec());
+            }
+        });
+    }
+
+    private synchronized
+    MenuSpec createSpec() {
+        final int size = provider.size();
+
+        final int pageCount = Math.max(1, (size + pageSize - 1) / pageSize);
+        if (page >= pageCount) {
+            page = pageCount - 1;
+        }
+        if (page < 0) {
+            page = 0;
+        }
+
+        final int startIndex = page * pageSize;
+        final int endIndex = Math.min(size, startIndex + pageSize);
+
+        final List<MenuSpec> specs = new ArrayList<MenuSpec>(endIndex - startIndex + 2);
+
+        if (page > 0) {
+            specs.add(MenuSpec.item(PREVIOUS_KEY, previousText)
+                              .withMenuCallback(previousCallback));
+        }
+
+        for (int i = startIndex; i < endIndex; i++) {
+            // entries are reused by their position on the page, so when the page changes only the properties are updated
+            specs.add(renderer.render(provider.get(i), i)
+                              .withKey(Integer.toString(i - startIndex)));
+        }
+
+        if (page < pageCount - 1) {
+            specs.add(MenuSpec.item(NEXT_KEY, nextText)
+                              .withMenuCallback(nextCallback));
+        }
+
+        return MenuSpec.menu("", getText(), specs);
+    }
+
+    private synchronized
+    int getEndIndex() {
+        return (page + 1) * pageSize;
+    }
+}
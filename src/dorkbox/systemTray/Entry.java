@@ -15,7 +15,11 @@
  */
 package dorkbox.systemTray;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import dorkbox.systemTray.peer.EntryPeer;
 
@@ -25,14 +29,44 @@ import dorkbox.systemTray.peer.EntryPeer;
 @SuppressWarnings({"unused", "SameParameterValue"})
 public
 class Entry {
+    // the low 16 bits of the flags are the shortcut key (mnemonic)
+    static final int SHORTCUT_MASK = 0xFFFF;
+    static final int DISABLED = 1 << 16;
+    static final int CHECKED = 1 << 17;
+
+    private static final AtomicIntegerFieldUpdater<Entry> FLAGS = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "flags");
+
     private static final AtomicInteger MENU_ID_COUNTER = new AtomicInteger(0);
     private final int id = Entry.MENU_ID_COUNTER.getAndIncrement();
 
+    // the state of the entry is packed into a single field. The default (0) is enabled, not checked and no shortcut
+    private volatile int flags = 0;
+
     private volatile Menu parent;
     private volatile SystemTray systemTray;
 
     protected volatile EntryPeer peer;
 
+    // the rarely used properties are only created when one of them is set. created while holding the lock on this
+    private volatile Extras extras = null;
+
+    /**
+     * The properties that most entries never use, so that they do not take up space in every entry.
+     */
+    static final
+    class Extras {
+        volatile String tooltip;
+        volatile MenuCallback menuCallback;
+        volatile Executor callbackExecutor;
+
+        // an image that was set before the image sizes were known. It is resized when the entry is bound
+        volatile Object imageSource;
+        volatile boolean isTrayImage;
+
+        // guarded by the entry
+        List<Binding> bindings;
+    }
+
     public
     Entry() {
     }
@@ -85,6 +119,8 @@ class Entry {
      */
     public
     void remove() {
+        removeBindings_();
+
         if (peer != null) {
             peer.remove();
 
@@ -94,6 +130,85 @@ class Entry {
         }
     }
 
+    final
+    int getFlags_(final int mask) {
+        return flags & mask;
+    }
+
+    /**
+     * Atomically replaces the bits in the mask with the (masked) value
+     */
+    final
+    void setFlags_(final int mask, final int value) {
+        int current;
+        do {
+            current = flags;
+        } while (!FLAGS.compareAndSet(this, current, (current & ~mask) | (value & mask)));
+    }
+
+    /**
+     * @return the rarely used properties, or null if none of them have been set
+     */
+    final
+    Extras getExtras_() {
+        return extras;
+    }
+
+    /**
+     * @return the rarely used properties, created if necessary
+     */
+    final
+    Extras extras_() {
+        Extras extras = this.extras;
+        if (extras == null) {
+            synchronized (this) {
+                extras = this.extras;
+                if (extras == null) {
+                    extras = new Extras();
+                    this.extras = extras;
+                }
+            }
+        }
+        return extras;
+    }
+
+    synchronized
+    void addBinding_(final Binding binding) {
+        final Extras extras = extras_();
+        if (extras.bindings == null) {
+            extras.bindings = new ArrayList<Binding>(2);
+        }
+        extras.bindings.add(binding);
+    }
+
+    synchronized
+    void removeBinding_(final Binding binding) {
+        final Extras extras = this.extras;
+        if (extras != null && extras.bindings != null) {
+            extras.bindings.remove(binding);
+        }
+    }
+
+    /**
+     * Unbinds everything that is bound to this entry
+     */
+    void removeBindings_() {
+        final List<Binding> copy;
+        synchronized (this) {
+            final Extras extras = this.extras;
+            if (extras == null || extras.bindings == null) {
+                return;
+            }
+
+            copy = extras.bindings;
+            extras.bindings = null;
+        }
+
+        for (Binding binding : copy) {
+            binding.unbind();
+        }
+    }
+
 
     @Override
     public final
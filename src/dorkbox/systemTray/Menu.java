@@ -15,6 +15,11 @@
  */
 package dorkbox.systemTray;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.DISPATCH;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.ADD;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.MOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+
 import java.awt.Component;
 import java.awt.Image;
 import java.awt.event.ActionListener;
@@ -23,9 +28,15 @@ import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -35,6 +46,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JSeparator;
 
 import dorkbox.systemTray.peer.MenuPeer;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.EventDispatch;
 import dorkbox.util.SwingUtil;
 
@@ -47,6 +59,11 @@ class Menu extends MenuItem {
     // access on this object must be synchronized for object visibility
     final List<Entry> menuEntries = new ArrayList<Entry>();
 
+    // the entries created by reconcile (and the spec they were last reconciled with), by key. Only accessed on the dispatch thread.
+    // These are only created if reconcile is used.
+    private Map<String, Entry> reconciledEntries = null;
+    private Map<String, MenuSpec> reconciledSpecs = null;
+
     public
     Menu() {
     }
@@ -151,19 +168,32 @@ class Menu extends MenuItem {
      */
     public
     void bind(final MenuPeer peer, final Menu parent, final SystemTray systemTray) {
-        super.bind(peer, parent, systemTray);
-
         List<Entry> copy;
         synchronized (menuEntries) {
             // access on this object must be synchronized for object visibility
             // a copy is made to prevent deadlocks from occurring when operating in different threads
             copy = new ArrayList<Entry>(menuEntries);
+
+            // the peer is assigned together with the copy, so entries that are added at the same time (ie: the menu was created via
+            // SystemTray.getAsync()) are added to the peer exactly once
+            this.peer = peer;
+        }
+
+        super.bind(peer, parent, systemTray);
+
+        final int menuEntriesSize = copy.size();
+        if (menuEntriesSize > 1) {
+            peer.startBatch();
         }
 
-        for (int i = 0, menuEntriesSize = copy.size(); i < menuEntriesSize; i++) {
+        for (int i = 0; i < menuEntriesSize; i++) {
             final Entry menuEntry = copy.get(i);
             peer.add(this, menuEntry, i);
         }
+
+        if (menuEntriesSize > 1) {
+            peer.finishBatch();
+        }
     }
 
     /**
@@ -217,8 +247,12 @@ class Menu extends MenuItem {
     public
     <T extends Entry> T add(final T entry, final int index) {
         final int insertIndex;
+        final MenuPeer menuPeer;
         synchronized (menuEntries) {
             // access on this object must be synchronized for object visibility
+            // the peer is read together with the change, so this entry is not also added by bind() (see above)
+            menuPeer = (MenuPeer) peer;
+
             if (index == -1) {
                 insertIndex = menuEntries.size();
                 menuEntries.add(entry);
@@ -230,19 +264,19 @@ class Menu extends MenuItem {
                     insertIndex = index;
                 }
 
-                menuEntries.add(index, entry);
+                menuEntries.add(insertIndex, entry);
             }
         }
 
-        if (peer != null) {
+        if (menuPeer != null) {
             // all ADD/REMOVE events have to be queued on our own dispatch thread, so the execution order of the events can be maintained.
-            EventDispatch.run(new Runnable() {
+            EventDispatch.runOrQueue(DispatchMetrics.wrap(DISPATCH, ADD, new Runnable() {
                 @Override
                 public
                 void run() {
-                    ((MenuPeer) peer).add(Menu.this, entry, insertIndex);
+                    menuPeer.add(Menu.this, entry, insertIndex);
                 }
-            });
+            }));
         }
 
         return entry;
@@ -392,13 +426,13 @@ class Menu extends MenuItem {
             if (toRemove != null) {
                 final Entry reference = toRemove;
                 // all ADD/REMOVE events have to be queued on our own dispatch thread, so the execution order of the events can be maintained.
-                EventDispatch.run(new Runnable() {
+                EventDispatch.runOrQueue(DispatchMetrics.wrap(DISPATCH, REMOVE, new Runnable() {
                     @Override
                     public
                     void run() {
                         reference.remove();
                     }
-                });
+                }));
 
                 toRemove = null;
             }
@@ -434,24 +468,613 @@ class Menu extends MenuItem {
         }
     }
 
+    /**
+     * Moves a menu entry to a different position in this menu. The status (if there is one) is always first, and is not counted.
+     *
+     * @param entry the menu entry to move
+     * @param index the position (zero-index) the entry is moved to
+     */
+    public
+    void move(final Entry entry, final int index) {
+        if (entry instanceof Status) {
+            // the "status" menu entry is ALWAYS first
+            return;
+        }
+
+        final int[] order;
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            final int from = menuEntries.indexOf(entry);
+            if (from == -1) {
+                return;
+            }
+
+            final int first = getFirstSortableIndex();
+            final int to = Math.max(first, Math.min(menuEntries.size() - 1, index + first));
+            if (to == from) {
+                return;
+            }
+
+            menuEntries.remove(from);
+            menuEntries.add(to, entry);
+
+            order = new int[menuEntries.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+
+            // everything between the two positions shifts by one
+            if (from < to) {
+                System.arraycopy(order, from + 1, order, from, to - from);
+            }
+            else {
+                System.arraycopy(order, to, order, to + 1, from - to);
+            }
+            order[to] = from;
+        }
+
+        reorder(order);
+    }
+
+    /**
+     * Sorts the entries of this menu. The sort is stable, so entries that are equal (according to the comparator) keep their order.
+     * The status (if there is one) is always first, and is not sorted.
+     *
+     * @param comparator determines the order of the entries
+     */
+    public
+    void sort(final Comparator<? super Entry> comparator) {
+        final int[] order;
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            final int first = getFirstSortableIndex();
+            final int size = menuEntries.size();
+
+            final Integer[] sorted = new Integer[size - first];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = first + i;
+            }
+
+            final List<Entry> entries = menuEntries;
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public
+                int compare(final Integer o1, final Integer o2) {
+                    return comparator.compare(entries.get(o1), entries.get(o2));
+                }
+            });
+
+            order = new int[size];
+            boolean isChanged = false;
+            for (int i = 0; i < size; i++) {
+                order[i] = i < first ? i : sorted[i - first];
+                isChanged |= order[i] != i;
+            }
+
+            if (!isChanged) {
+                return;
+            }
+
+            final Entry[] copy = menuEntries.toArray(new Entry[size]);
+            for (int i = 0; i < size; i++) {
+                menuEntries.set(i, copy[order[i]]);
+            }
+        }
+
+        reorder(order);
+    }
+
+    /**
+     * MUST BE SYNCHRONIZED ON menuEntries
+     *
+     * @return the index of the first entry that can be moved (the status is always first)
+     */
+    private
+    int getFirstSortableIndex() {
+        if (!menuEntries.isEmpty() && menuEntries.get(0) instanceof Status) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private
+    void reorder(final int[] order) {
+        if (peer != null) {
+            // all ADD/REMOVE events have to be queued on our own dispatch thread, so the execution order of the events can be maintained.
+            EventDispatch.runOrQueue(DispatchMetrics.wrap(DISPATCH, MOVE, new Runnable() {
+                @Override
+                public
+                void run() {
+                    final MenuPeer menuPeer = (MenuPeer) peer;
+                    if (menuPeer != null) {
+                        menuPeer.reorder(order);
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * Changes the entries of this menu (and of it's sub-menus) to match the entries of the spec.
+     * <p>
+     * Entries are matched to the spec by key, to the entries that were created the last time this menu was reconciled. Only the
+     * differences are applied: entries that are no longer in the spec are removed, new entries are added, entries that changed position
+     * are moved (as few as possible), and only the properties that changed are updated. All of the changes to this menu are applied
+     * as a single batch, so that native menus which are rebuilt when they change (ie: GTK) are only rebuilt once.
+     * <p>
+     * Entries that were not created by reconcile (ie: the status) are not changed. The entries created by reconcile are kept together,
+     * where they were (the first time, after the other entries). The properties of the spec itself (text, image, etc) are not used for
+     * this menu, only it's entries.
+     *
+     * @param spec the spec, whose entries this menu will have
+     */
+    public
+    void reconcile(final MenuSpec spec) {
+        validate(spec);
+
+        // all ADD/REMOVE events have to be queued on our own dispatch thread, so the execution order of the events can be maintained.
+        EventDispatch.runOrQueue(new Runnable() {
+            @Override
+            public
+            void run() {
+                reconcile_(spec.getChildren());
+            }
+        });
+    }
+
+    // ALWAYS CALLED ON THE DISPATCH THREAD (or before this menu has a peer)
+    private
+    void reconcile_(final List<MenuSpec> specs) {
+        final int size = specs.size();
+
+        if (reconciledEntries == null) {
+            reconciledEntries = new HashMap<String, Entry>();
+            reconciledSpecs = new HashMap<String, MenuSpec>();
+        }
+
+        List<Entry> current;
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            // a copy is made to prevent deadlocks from occurring when operating in different threads
+            current = new ArrayList<Entry>(menuEntries);
+        }
+
+        // entries that were not created by reconcile (ie: the status) are left alone
+        final Set<Entry> managed = new HashSet<Entry>(reconciledEntries.values());
+
+        // the entry for each spec, if it can be kept (an entry cannot change it's type, and it must still be in this menu)
+        final Set<Entry> currentSet = new HashSet<Entry>(current);
+        final Entry[] targets = new Entry[size];
+        final Set<Entry> kept = new HashSet<Entry>();
+
+        for (int i = 0; i < size; i++) {
+            final MenuSpec spec = specs.get(i);
+            final Entry entry = reconciledEntries.get(spec.getKey());
+            if (entry != null && getType(entry) == spec.getType() && currentSet.contains(entry)) {
+                targets[i] = entry;
+                kept.add(entry);
+            }
+        }
+
+        // the entries that stay in this menu, in their current order. The rest are removed.
+        final List<Entry> removed = new ArrayList<Entry>();
+        final List<Entry> remaining = new ArrayList<Entry>();
+        final List<Entry> unmanaged = new ArrayList<Entry>();
+        int insertIndex = -1;
+
+        for (Entry entry : current) {
+            if (!managed.contains(entry)) {
+                remaining.add(entry);
+                unmanaged.add(entry);
+            }
+            else {
+                if (insertIndex == -1) {
+                    // the reconciled entries stay where they were
+                    insertIndex = unmanaged.size();
+                }
+
+                if (kept.contains(entry)) {
+                    remaining.add(entry);
+                }
+                else {
+                    removed.add(entry);
+                }
+            }
+        }
+
+        if (insertIndex == -1) {
+            // the first time, the reconciled entries are after all of the other entries
+            insertIndex = unmanaged.size();
+        }
+
+        // new entries are created (with all of their properties and entries) before they are added, so adding them is a single operation
+        int changes = 0;
+        final List<Entry> entries = new ArrayList<Entry>(unmanaged.size() + size);
+        entries.addAll(unmanaged.subList(0, insertIndex));
+
+        for (int i = 0; i < size; i++) {
+            final MenuSpec spec = specs.get(i);
+            Entry entry = targets[i];
+
+            if (entry == null) {
+                entry = createEntry(spec);
+                targets[i] = entry;
+            }
+            else {
+                changes += updateEntry(entry, reconciledSpecs.get(spec.getKey()), spec);
+            }
+
+            entries.add(entry);
+        }
+
+        entries.addAll(unmanaged.subList(insertIndex, unmanaged.size()));
+
+        reconciledEntries.clear();
+        reconciledSpecs.clear();
+        for (int i = 0; i < size; i++) {
+            reconciledEntries.put(specs.get(i).getKey(), targets[i]);
+            reconciledSpecs.put(specs.get(i).getKey(), specs.get(i));
+        }
+
+        // the new order of the entries that remain. The entries in the longest run that is already in order do not move.
+        final Map<Entry, Integer> remainingIndexes = new HashMap<Entry, Integer>();
+        for (int i = 0; i < remaining.size(); i++) {
+            remainingIndexes.put(remaining.get(i), i);
+        }
+
+        final int[] order = new int[remaining.size()];
+        int count = 0;
+        for (Entry entry : entries) {
+            final Integer index = remainingIndexes.get(entry);
+            if (index != null) {
+                order[count++] = index;
+            }
+        }
+
+        int moved = 0;
+        for (boolean inOrder : longestIncreasingSubsequence(order)) {
+            if (!inOrder) {
+                moved++;
+            }
+        }
+
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            menuEntries.clear();
+            menuEntries.addAll(entries);
+        }
+
+        final MenuPeer menuPeer = (MenuPeer) peer;
+        if (menuPeer != null) {
+            menuPeer.startBatch();
+
+            // everything is removed BEFORE anything is moved or added
+            for (Entry entry : removed) {
+                entry.remove();
+            }
+
+            // the entries that remain keep their peers, and are moved in place
+            if (moved > 0) {
+                menuPeer.reorder(order);
+            }
+
+            // new entries are added in order, so every entry before them is already in place
+            for (int i = 0; i < entries.size(); i++) {
+                final Entry entry = entries.get(i);
+                if (!remainingIndexes.containsKey(entry)) {
+                    menuPeer.add(this, entry, i);
+                }
+            }
+
+            menuPeer.finishBatch();
+        }
+
+        // existing sub-menus are reconciled after this menu is complete
+        for (int i = 0; i < size; i++) {
+            final Entry entry = targets[i];
+            if (entry instanceof Menu && kept.contains(entry)) {
+                ((Menu) entry).reconcile_(specs.get(i).getChildren());
+            }
+        }
+
+        if (SystemTray.DEBUG) {
+            SystemTray.logger.debug("Reconciled menu '{}': {} added, {} removed, {} moved, {} property changes",
+                                    getText(), size - kept.size(), removed.size(), moved, changes);
+        }
+    }
+
+    private static
+    void validate(final MenuSpec spec) {
+        final Set<String> keys = new HashSet<String>();
+
+        for (MenuSpec child : spec.getChildren()) {
+            if (!keys.add(child.getKey())) {
+                throw new RuntimeException("Menu spec keys must be unique within a menu: " + child.getKey());
+            }
+
+            validate(child);
+        }
+    }
+
+    private static
+    MenuSpec.Type getType(final Entry entry) {
+        if (entry instanceof Menu) {
+            return MenuSpec.Type.MENU;
+        }
+        if (entry instanceof MenuItem) {
+            return MenuSpec.Type.ITEM;
+        }
+        if (entry instanceof Checkbox) {
+            return MenuSpec.Type.CHECKBOX;
+        }
+        if (entry instanceof Separator) {
+            return MenuSpec.Type.SEPARATOR;
+        }
+        return MenuSpec.Type.STATUS;
+    }
+
+    // the entry does not have a peer yet, so setting the properties does not do anything to the native menu
+    private static
+    Entry createEntry(final MenuSpec spec) {
+        switch (spec.getType()) {
+            case MENU: {
+                Menu menu = new Menu(spec.getText());
+                setItemProperties(menu, spec);
+                menu.reconcile_(spec.getChildren());
+                return menu;
+            }
+            case ITEM: {
+                MenuItem menuItem = new MenuItem(spec.getText());
+                setItemProperties(menuItem, spec);
+                return menuItem;
+            }
+            case CHECKBOX: {
+                Checkbox checkbox = new Checkbox(spec.getText());
+                checkbox.setChecked(spec.getChecked());
+                checkbox.setEnabled(spec.getEnabled());
+                checkbox.setShortcut(spec.getShortcut());
+                checkbox.setCallback(spec.getCallback());
+                checkbox.setMenuCallback(spec.getMenuCallback());
+                if (spec.getTooltip() != null) {
+                    checkbox.setTooltip(spec.getTooltip());
+                }
+                return checkbox;
+            }
+            case SEPARATOR:
+                return new Separator();
+            default: {
+                Status status = new Status();
+                status.setText(spec.getText());
+                return status;
+            }
+        }
+    }
+
+    private static
+    void setItemProperties(final MenuItem menuItem, final MenuSpec spec) {
+        if (spec.getImage() != null) {
+            menuItem.setImage(spec.getImage());
+        }
+        menuItem.setEnabled(spec.getEnabled());
+        menuItem.setShortcut(spec.getShortcut());
+        menuItem.setCallback(spec.getCallback());
+        menuItem.setMenuCallback(spec.getMenuCallback());
+        if (spec.getTooltip() != null) {
+            menuItem.setTooltip(spec.getTooltip());
+        }
+    }
+
+    /**
+     * Only the properties that are different from the last spec are changed.
+     *
+     * @return the number of properties that changed
+     */
+    private static
+    int updateEntry(final Entry entry, final MenuSpec previous, final MenuSpec spec) {
+        int changes = 0;
+
+        if (entry instanceof MenuItem) {
+            final MenuItem menuItem = (MenuItem) entry;
+
+            if (!equals(previous.getText(), spec.getText())) {
+                menuItem.setText(spec.getText());
+                changes++;
+            }
+            if (!equals(previous.getImage(), spec.getImage())) {
+                menuItem.setImage(spec.getImage());
+                changes++;
+            }
+            if (previous.getEnabled() != spec.getEnabled()) {
+                menuItem.setEnabled(spec.getEnabled());
+                changes++;
+            }
+            if (previous.getShortcut() != spec.getShortcut()) {
+                menuItem.setShortcut(spec.getShortcut());
+                changes++;
+            }
+            if (!equals(previous.getTooltip(), spec.getTooltip())) {
+                menuItem.setTooltip(spec.getTooltip());
+                changes++;
+            }
+            if (previous.getCallback() != spec.getCallback()) {
+                menuItem.setCallback(spec.getCallback());
+                changes++;
+            }
+            if (previous.getMenuCallback() != spec.getMenuCallback()) {
+                menuItem.setMenuCallback(spec.getMenuCallback());
+                changes++;
+            }
+        }
+        else if (entry instanceof Checkbox) {
+            final Checkbox checkbox = (Checkbox) entry;
+
+            if (!equals(previous.getText(), spec.getText())) {
+                checkbox.setText(spec.getText());
+                changes++;
+            }
+            if (previous.getChecked() != spec.getChecked()) {
+                checkbox.setChecked(spec.getChecked());
+                changes++;
+            }
+            if (previous.getEnabled() != spec.getEnabled()) {
+                checkbox.setEnabled(spec.getEnabled());
+                changes++;
+            }
+            if (previous.getShortcut() != spec.getShortcut()) {
+                checkbox.setShortcut(spec.getShortcut());
+                changes++;
+            }
+            if (!equals(previous.getTooltip(), spec.getTooltip())) {
+                checkbox.setTooltip(spec.getTooltip());
+                changes++;
+            }
+            if (previous.getCallback() != spec.getCallback()) {
+                checkbox.setCallback(spec.getCallback());
+                changes++;
+            }
+            if (previous.getMenuCallback() != spec.getMenuCallback()) {
+                checkbox.setMenuCallback(spec.getMenuCallback());
+                changes++;
+            }
+        }
+        else if (entry instanceof Status) {
+            if (!equals(previous.getText(), spec.getText())) {
+                ((Status) entry).setText(spec.getText());
+                changes++;
+            }
+        }
+
+        return changes;
+    }
+
+    private static
+    boolean equals(final Object a, final Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return for each value, true if it is part of the longest (strictly) increasing subsequence of the values
+     */
+    private static
+    boolean[] longestIncreasingSubsequence(final int[] values) {
+        final int length = values.length;
+        final boolean[] result = new boolean[length];
+        if (length == 0) {
+            return result;
+        }
+
+        // tails[i] is the index of the smallest value that ends an increasing subsequence of length i+1
+        final int[] tails = new int[length];
+        final int[] previous = new int[length];
+        int count = 0;
+
+        for (int i = 0; i < length; i++) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == count) {
+                count++;
+            }
+        }
+
+        for (int i = tails[count - 1]; i >= 0; i = previous[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+
+    /**
+     * Switches this menu, and all of it's entries, to the image variants for the current screen scale.
+     */
+    @Override
+    void rescaleImage_() {
+        super.rescaleImage_();
+
+        List<Entry> copy;
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            // a copy is made to prevent deadlocks from occurring when operating in different threads
+            copy = new ArrayList<Entry>(menuEntries);
+        }
+
+        for (final Entry entry : copy) {
+            if (entry instanceof MenuItem) {
+                ((MenuItem) entry).rescaleImage_();
+            }
+        }
+    }
+
+    /**
+     * Resizes the images of this menu, and all of it's entries, that were set before the image sizes were known.
+     */
+    @Override
+    void resolveImage_() {
+        super.resolveImage_();
+
+        List<Entry> copy;
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            // a copy is made to prevent deadlocks from occurring when operating in different threads
+            copy = new ArrayList<Entry>(menuEntries);
+        }
+
+        for (final Entry entry : copy) {
+            if (entry instanceof MenuItem) {
+                ((MenuItem) entry).resolveImage_();
+            }
+        }
+    }
+
+    /**
+     * The entries of this menu are removed with this menu, so they are unbound as well
+     */
+    @Override
+    void removeBindings_() {
+        super.removeBindings_();
+
+        List<Entry> copy;
+        synchronized (menuEntries) {
+            // access on this object must be synchronized for object visibility
+            // a copy is made to prevent deadlocks from occurring when operating in different threads
+            copy = new ArrayList<Entry>(menuEntries);
+        }
+
+        for (final Entry entry : copy) {
+            entry.removeBindings_();
+        }
+    }
+
     /**
      *  This removes all menu entries from this menu AND this menu from it's parent
      */
     @Override
     public
     void remove() {
+        removeBindings_();
+
         synchronized (menuEntries) {
             menuEntries.clear();
         }
 
         // all ADD/REMOVE events have to be queued on our own dispatch thread, so the execution order of the events can be maintained.
-        EventDispatch.run(new Runnable() {
+        EventDispatch.runOrQueue(DispatchMetrics.wrap(DISPATCH, REMOVE, new Runnable() {
             @Override
             public
             void run() {
                 Menu.this.remove_();
             }
-        });
+        }));
     }
 
     private
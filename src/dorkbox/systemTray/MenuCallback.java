@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray;
+
+/**
+ * A lightweight callback for when a menu entry is clicked.
+ * <p>
+ * Unlike an ActionListener, there is no event created for a click, the entry that was clicked is passed in directly. For a Checkbox,
+ * the checked state has already been updated before this is called.
+ */
+public
+interface MenuCallback {
+    /**
+     * @param entry the entry (MenuItem, Menu or Checkbox) that was clicked
+     */
+    void onClick(Entry entry);
+}
@@ -22,6 +22,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.Executor;
 
 import javax.imageio.stream.ImageInputStream;
 import javax.swing.Icon;
@@ -29,7 +30,10 @@ import javax.swing.ImageIcon;
 import javax.swing.JMenuItem;
 
 import dorkbox.systemTray.peer.MenuItemPeer;
+import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ImagePrewarm;
 import dorkbox.systemTray.util.ImageResizeUtil;
+import dorkbox.systemTray.util.ImageVariants;
 import dorkbox.util.SwingUtil;
 
 /**
@@ -40,17 +44,13 @@ public
 class MenuItem extends Entry {
     static boolean alreadyEmittedTooltipWarning = false;
 
+    // enabled and the shortcut are stored in the entry flags. The tooltip and less common callbacks are in the entry extras
+    // (the default shortcut is 0, which will remove the shortcut key from the native peer)
     private volatile String text;
     private volatile File imageFile;
+    private volatile ImageVariants imageVariants;
     private volatile ActionListener callback;
 
-    // default enabled is always true
-    private volatile boolean enabled = true;
-
-    // default is 0, which will remove the shortcut key from the native peer
-    private volatile char mnemonicKey = 0;
-    private volatile String tooltip;
-
     public
     MenuItem() {
         this(null, null, null, false);
@@ -93,32 +93,32 @@ class MenuItem extends Entry {
 
     public
     MenuItem(final String text, final String imagePath, final ActionListener callback) {
-        this(text, ImageResizeUtil.shouldResizeOrCache(false, imagePath), callback, false);
+        this(text, imagePath, callback, false);
     }
 
     public
     MenuItem(final String text, final File imageFile, final ActionListener callback) {
-        this(text, ImageResizeUtil.shouldResizeOrCache(false, imageFile), callback, false);
+        this(text, imageFile, callback, false);
     }
 
     public
     MenuItem(final String text, final URL imageUrl, final ActionListener callback) {
-        this(text, ImageResizeUtil.shouldResizeOrCache(false, imageUrl), callback, false);
+        this(text, imageUrl, callback, false);
     }
 
     public
     MenuItem(final String text, final InputStream imageStream, final ActionListener callback) {
-        this(text, ImageResizeUtil.shouldResizeOrCache(false, imageStream), callback, false);
+        this(text, imageStream, callback, false);
     }
 
     public
     MenuItem(final String text, final Image image, final ActionListener callback) {
-        this(text, ImageResizeUtil.shouldResizeOrCache(false, image), callback, false);
+        this(text, image, callback, false);
     }
 
     public
     MenuItem(final String text, final ImageInputStream imageStream, final ActionListener callback) {
-        this(text, ImageResizeUtil.shouldResizeOrCache(false, imageStream), callback, false);
+        this(text, imageStream, callback, false);
     }
 
     public
@@ -156,10 +156,13 @@ class MenuItem extends Entry {
 
     // the last parameter (unused) is there so the signature is different
     private
-    MenuItem(final String text, final File imageFile, final ActionListener callback, final boolean unused) {
+    MenuItem(final String text, final Object imageSource, final ActionListener callback, final boolean unused) {
         this.text = text;
-        this.imageFile = imageFile;
         this.callback = callback;
+
+        if (imageSource != null) {
+            setImageSource_(false, imageSource);
+        }
     }
 
     /**
@@ -169,6 +172,7 @@ class MenuItem extends Entry {
      */
     public
     void bind(final MenuItemPeer peer, final Menu parent, final SystemTray systemTray) {
+        resolveImage_();
         super.bind(peer, parent, systemTray);
 
         peer.setImage(this);
@@ -180,14 +184,69 @@ class MenuItem extends Entry {
     }
 
     protected
-    void setImage_(final File imageFile) {
-        this.imageFile = imageFile;
+    void setImage_(final ImageVariants imageVariants) {
+        final Extras extras = getExtras_();
+        if (extras != null) {
+            extras.imageSource = null;
+        }
+
+        this.imageVariants = imageVariants;
+        this.imageFile = imageVariants == null ? null : imageVariants.getFile();
 
         if (peer != null) {
             ((MenuItemPeer) peer).setImage(this);
         }
     }
 
+    /**
+     * Images can only be resized once the image sizes are known. Until then (ie: while the tray is initialized via
+     * {@link SystemTray#getAsync()}) only the image source is kept, and it is resized when this entry is bound.
+     */
+    void setImageSource_(final boolean isTrayImage, final Object imageSource) {
+        if (imageSource != null && !ImagePrewarm.isStarted()) {
+            final Extras extras = extras_();
+            extras.isTrayImage = isTrayImage;
+            extras.imageSource = imageSource;
+            return;
+        }
+
+        setImage_(ImageResizeUtil.getVariantsFromSource(isTrayImage, imageSource));
+    }
+
+    /**
+     * Resizes the image that was set before the image sizes were known (if any).
+     */
+    void resolveImage_() {
+        final Extras extras = getExtras_();
+        if (extras == null) {
+            return;
+        }
+
+        final Object imageSource = extras.imageSource;
+        if (imageSource != null) {
+            setImage_(ImageResizeUtil.getVariantsFromSource(extras.isTrayImage, imageSource));
+        }
+    }
+
+    /**
+     * Switches to the image variant for the current screen scale, if it is different than the one currently used.
+     */
+    void rescaleImage_() {
+        final ImageVariants imageVariants = this.imageVariants;
+        if (imageVariants == null) {
+            return;
+        }
+
+        final File imageFile = imageVariants.getFile();
+        if (!imageFile.equals(this.imageFile)) {
+            this.imageFile = imageFile;
+
+            if (peer != null) {
+                ((MenuItemPeer) peer).setImage(this);
+            }
+        }
+    }
+
     /**
      * Gets the File (which is the only cross-platform solution) that is assigned to this menu entry.
      * <p>
@@ -211,7 +270,7 @@ class MenuItem extends Entry {
      */
     public
     boolean getEnabled() {
-        return this.enabled;
+        return getFlags_(DISABLED) == 0;
     }
 
     /**
@@ -219,7 +278,7 @@ class MenuItem extends Entry {
      */
     public
     void setEnabled(final boolean enabled) {
-        this.enabled = enabled;
+        setFlags_(DISABLED, enabled ? 0 : DISABLED);
 
         if (peer != null) {
             ((MenuItemPeer) peer).setEnabled(this);
@@ -257,7 +316,7 @@ class MenuItem extends Entry {
      */
     public
     void setImage(final File imageFile) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(false, imageFile));
+        setImageSource_(false, imageFile);
     }
 
     /**
@@ -269,7 +328,7 @@ class MenuItem extends Entry {
      */
     public
     void setImage(final String imagePath) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(false, imagePath));
+        setImageSource_(false, imagePath);
     }
 
     /**
@@ -281,7 +340,7 @@ class MenuItem extends Entry {
      */
     public
     void setImage(final URL imageUrl) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(false, imageUrl));
+        setImageSource_(false, imageUrl);
     }
 
     /**
@@ -293,7 +352,7 @@ class MenuItem extends Entry {
      */
     public
     void setImage(final InputStream imageStream) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(false, imageStream));
+        setImageSource_(false, imageStream);
     }
 
     /**
@@ -305,7 +364,7 @@ class MenuItem extends Entry {
      */
     public
     void setImage(final Image image) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(false, image));
+        setImageSource_(false, image);
     }
 
     /**
@@ -317,7 +376,7 @@ class MenuItem extends Entry {
      */
     public
     void setImage(final ImageInputStream imageStream) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(false, imageStream));
+        setImageSource_(false, imageStream);
     }
 
 
@@ -341,6 +400,66 @@ class MenuItem extends Entry {
         }
     }
 
+    /**
+     * Gets the lightweight callback assigned to this menu entry
+     */
+    public
+    MenuCallback getMenuCallback() {
+        final Extras extras = getExtras_();
+        return extras == null ? null : extras.menuCallback;
+    }
+
+    /**
+     * Sets a lightweight callback for a menu entry. This is the action that occurs when one clicks the menu entry, and unlike an
+     * ActionListener, no event is created for the click.
+     * <p>
+     * If both an ActionListener and a MenuCallback are assigned, only the MenuCallback is called.
+     *
+     * @param callback the callback to set. If null, the callback is safely removed.
+     */
+    public
+    void setMenuCallback(final MenuCallback callback) {
+        if (callback != null || getExtras_() != null) {
+            extras_().menuCallback = callback;
+        }
+
+        if (peer != null) {
+            ((MenuItemPeer) peer).setCallback(this);
+        }
+    }
+
+    /**
+     * @return the executor that the callback for this menu entry runs on, or null if the default is used
+     */
+    public
+    Executor getCallbackExecutor() {
+        final Extras extras = getExtras_();
+        return extras == null ? null : extras.callbackExecutor;
+    }
+
+    /**
+     * Sets the executor that the callback for this menu entry runs on. By default, callbacks run (in order) on a single event dispatch
+     * thread, shared by all menu entries (or on virtual threads, if SystemTray.VIRTUAL_THREAD_CALLBACKS is enabled).
+     * <p>
+     * {@link EventDispatch#DIRECT_EXECUTOR} will run the callback directly on the native thread that received the click (the callback
+     * MUST NOT block, and changes to the menu structure are queued until after it returns), {@link EventDispatch#DISPATCH_EXECUTOR} will
+     * run it on the single event dispatch thread,
+     * {@link EventDispatch#VIRTUAL_THREAD_EXECUTOR} will run it on a virtual thread (in order with the other callbacks for this entry),
+     * or any other executor (ie: a thread pool) can be used.
+     *
+     * @param executor the executor to use. If null, the default is used.
+     */
+    public
+    void setCallbackExecutor(final Executor executor) {
+        if (executor != null || getExtras_() != null) {
+            extras_().callbackExecutor = executor;
+        }
+
+        if (peer != null) {
+            ((MenuItemPeer) peer).setCallback(this);
+        }
+    }
+
     /**
      * Gets the shortcut key for this menu entry (Mnemonic) which is what menu entry uses to be "selected" via the keyboard while the
      * menu is displayed.
@@ -350,7 +469,7 @@ class MenuItem extends Entry {
      */
     public
     char getShortcut() {
-        return this.mnemonicKey;
+        return (char) getFlags_(SHORTCUT_MASK);
     }
 
     /**
@@ -363,7 +482,7 @@ class MenuItem extends Entry {
      */
     public
     void setShortcut(final char key) {
-        this.mnemonicKey = key;
+        setFlags_(SHORTCUT_MASK, key);
 
         if (peer != null) {
             ((MenuItemPeer) peer).setShortcut(this);
@@ -380,7 +499,7 @@ class MenuItem extends Entry {
      */
     public
     void setShortcut(final int key) {
-        this.mnemonicKey = SwingUtil.getFromVirtualKey(key);
+        setFlags_(SHORTCUT_MASK, SwingUtil.getFromVirtualKey(key));
 
         if (peer != null) {
             ((MenuItemPeer) peer).setShortcut(this);
@@ -411,7 +530,9 @@ class MenuItem extends Entry {
             }
         }
 
-        this.tooltip = tooltipText;
+        if (tooltipText != null || getExtras_() != null) {
+            extras_().tooltip = tooltipText;
+        }
 
         if (peer != null) {
             ((MenuItemPeer) peer).setTooltip(this);
@@ -425,7 +546,8 @@ class MenuItem extends Entry {
      */
     public
     String getTooltip() {
-        return this.tooltip;
+        final Extras extras = getExtras_();
+        return extras == null ? null : extras.tooltip;
     }
 
     /**
@@ -443,7 +565,19 @@ class MenuItem extends Entry {
         jMenuItem.setEnabled(getEnabled());
         jMenuItem.setMnemonic(SwingUtil.getVirtualKey(getShortcut()));
 
-        jMenuItem.addActionListener(getCallback());
+        final MenuCallback menuCallback = getMenuCallback();
+        if (menuCallback != null) {
+            jMenuItem.addActionListener(new ActionListener() {
+                @Override
+                public
+                void actionPerformed(final ActionEvent e) {
+                    menuCallback.onClick(MenuItem.this);
+                }
+            });
+        }
+        else {
+            jMenuItem.addActionListener(getCallback());
+        }
 
         return jMenuItem;
     }
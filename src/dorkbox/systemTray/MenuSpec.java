@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray;
+
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable description of a menu entry (and for a menu, its entries), used with {@link Menu#reconcile(MenuSpec)}.
+ * <p>
+ * Every entry has a key, which must be unique within its menu. The key is how an entry is matched to the entry that was created for it
+ * the last time the menu was reconciled, so that only what is different has to change in the native menu.
+ * <p>
+ * Specs are created with the static methods, and the optional properties are assigned with the "with" methods, which return a copy.
+ */
+@SuppressWarnings("unused")
+public final
+class MenuSpec {
+    public
+    enum Type {
+        MENU,
+        ITEM,
+        CHECKBOX,
+        SEPARATOR,
+        STATUS
+    }
+
+    private final Type type;
+    private final String key;
+    private final String text;
+    private final File image;
+    private final boolean enabled;
+    private final boolean checked;
+    private final char shortcut;
+    private final String tooltip;
+    private final ActionListener callback;
+    private final MenuCallback menuCallback;
+    private final List<MenuSpec> children;
+
+    /**
+     * @param key unique within the parent menu
+     * @param text the text of the sub-menu
+     * @param children the entries of the sub-menu
+     */
+    public static
+    MenuSpec menu(final String key, final String text, final MenuSpec... children) {
+        return menu(key, text, Arrays.asList(children));
+    }
+
+    /**
+     * @param key unique within the parent menu
+     * @param text the text of the sub-menu
+     * @param children the entries of the sub-menu
+     */
+    public static
+    MenuSpec menu(final String key, final String text, final List<MenuSpec> children) {
+        return new MenuSpec(Type.MENU, key, text, null, true, false, (char) 0, null, null, null,
+                            Collections.unmodifiableList(new ArrayList<MenuSpec>(children)));
+    }
+
+    /**
+     * @param key unique within the parent menu
+     * @param text the text of the menu entry
+     */
+    public static
+    MenuSpec item(final String key, final String text) {
+        return new MenuSpec(Type.ITEM, key, text, null, true, false, (char) 0, null, null, null, Collections.<MenuSpec>emptyList());
+    }
+
+    /**
+     * @param key unique within the parent menu
+     * @param text the text of the checkbox
+     * @param checked true if the checkbox is checked
+     */
+    public static
+    MenuSpec checkbox(final String key, final String text, final boolean checked) {
+        return new MenuSpec(Type.CHECKBOX, key, text, null, true, checked, (char) 0, null, null, null, Collections.<MenuSpec>emptyList());
+    }
+
+    /**
+     * @param key unique within the parent menu
+     */
+    public static
+    MenuSpec separator(final String key) {
+        return new MenuSpec(Type.SEPARATOR, key, null, null, true, false, (char) 0, null, null, null, Collections.<MenuSpec>emptyList());
+    }
+
+    /**
+     * @param key unique within the parent menu
+     * @param text the text of the status. The status is always the first entry of a menu
+     */
+    public static
+    MenuSpec status(final String key, final String text) {
+        return new MenuSpec(Type.STATUS, key, text, null, true, false, (char) 0, null, null, null, Collections.<MenuSpec>emptyList());
+    }
+
+    private
+    MenuSpec(final Type type,
+             final String key,
+             final String text,
+             final File image,
+             final boolean enabled,
+             final boolean checked,
+             final char shortcut,
+             final String tooltip,
+             final ActionListener callback,
+             final MenuCallback menuCallback,
+             final List<MenuSpec> children) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+
+        this.type = type;
+        this.key = key;
+        this.text = text;
+        this.image = image;
+        this.enabled = enabled;
+        this.checked = checked;
+        this.shortcut = shortcut;
+        this.tooltip = tooltip;
+        this.callback = callback;
+        this.menuCallback = menuCallback;
+        this.children = children;
+    }
+
+    /**
+     * @return a copy of this spec with the specified image (menus and menu entries only), or null for no image
+     */
+    public
+    MenuSpec withImage(final File image) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with the specified enabled state
+     */
+    public
+    MenuSpec withEnabled(final boolean enabled) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with the specified checked state (checkboxes only)
+     */
+    public
+    MenuSpec withChecked(final boolean checked) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with the specified shortcut key (Mnemonic), or 0 for no shortcut
+     */
+    public
+    MenuSpec withShortcut(final char shortcut) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with the specified tooltip, or null for no tooltip
+     */
+    public
+    MenuSpec withTooltip(final String tooltip) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with the specified callback, or null for no callback
+     */
+    public
+    MenuSpec withCallback(final ActionListener callback) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with the specified lightweight callback, or null for no callback
+     */
+    public
+    MenuSpec withMenuCallback(final MenuCallback menuCallback) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    /**
+     * @return a copy of this spec with a different key
+     */
+    MenuSpec withKey(final String key) {
+        return new MenuSpec(type, key, text, image, enabled, checked, shortcut, tooltip, callback, menuCallback, children);
+    }
+
+    public
+    Type getType() {
+        return type;
+    }
+
+    public
+    String getKey() {
+        return key;
+    }
+
+    public
+    String getText() {
+        return text;
+    }
+
+    public
+    File getImage() {
+        return image;
+    }
+
+    public
+    boolean getEnabled() {
+        return enabled;
+    }
+
+    public
+    boolean getChecked() {
+        return checked;
+    }
+
+    public
+    char getShortcut() {
+        return shortcut;
+    }
+
+    public
+    String getTooltip() {
+        return tooltip;
+    }
+
+    public
+    ActionListener getCallback() {
+        return callback;
+    }
+
+    public
+    MenuCallback getMenuCallback() {
+        return menuCallback;
+    }
+
+    /**
+     * @return the entries of this menu (empty if this is not a menu)
+     */
+    public
+    List<MenuSpec> getChildren() {
+        return children;
+    }
+
+    @Override
+    public
+    String toString() {
+        return type + " " + key;
+    }
+}
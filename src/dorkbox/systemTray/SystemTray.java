@@ -23,7 +23,11 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.InputStream;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.stream.ImageInputStream;
@@ -41,17 +45,17 @@ import org.slf4j.LoggerFactory;
 import dorkbox.systemTray.gnomeShell.AppIndicatorExtension;
 import dorkbox.systemTray.gnomeShell.DummyFile;
 import dorkbox.systemTray.gnomeShell.LegacyExtension;
-import dorkbox.systemTray.ui.awt._AwtTray;
-import dorkbox.systemTray.ui.gtk._AppIndicatorNativeTray;
-import dorkbox.systemTray.ui.gtk._GtkStatusIconNativeTray;
-import dorkbox.systemTray.ui.osx._OsxNativeTray;
+import dorkbox.systemTray.peer.MenuPeer;
+import dorkbox.systemTray.ui.swing.SwingMenu;
 import dorkbox.systemTray.ui.swing.SwingUIFactory;
-import dorkbox.systemTray.ui.swing._SwingTray;
-import dorkbox.systemTray.ui.swing._WindowsNativeTray;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ImagePrewarm;
 import dorkbox.systemTray.util.ImageResizeUtil;
 import dorkbox.systemTray.util.LinuxSwingUI;
+import dorkbox.systemTray.util.NativeResources;
 import dorkbox.systemTray.util.SizeAndScalingUtil;
+import dorkbox.systemTray.util.StartupTask;
 import dorkbox.systemTray.util.SystemTrayFixes;
 import dorkbox.systemTray.util.WindowsSwingUI;
 import dorkbox.util.CacheUtil;
@@ -157,6 +161,98 @@ class SystemTray {
      */
     public static SwingUIFactory SWING_UI = null;
 
+    @Property
+    /**
+     * Enables creating scaled variants (1x, 1.5x, 2x) of the tray and menu images, so that the image can be switched to the correct
+     * size when the screen scale changes. This only has an effect when AUTO_SIZE is enabled.
+     * On Linux and MacOS the scale is for the whole display. With the Swing and Windows native menus, the scale of the screen the
+     * menu is shown on is used.
+     */
+    public static boolean AUTO_SCALE = true;
+
+    @Property
+    /**
+     * Records the latency of the work dispatched to the GTK/Swing/SystemTray threads, per operation. The metrics are available via
+     * DispatchMetrics, and via JMX. When disabled, nothing is recorded.
+     */
+    public static boolean DISPATCH_METRICS = false;
+
+    @Property
+    /**
+     * Runs menu callbacks on virtual threads (Java 21+), so that a callback which blocks does not delay the callbacks of other menu
+     * entries. Callbacks for the same menu entry still run in order. If virtual threads are not available, callbacks run on the single
+     * event dispatch thread (the default).
+     */
+    public static boolean VIRTUAL_THREAD_CALLBACKS = false;
+
+    @Property
+    /**
+     * Queues the entries that are added to (or removed from) the Swing menus, and applies all of the queued changes together in a single
+     * EDT task, instead of waiting on the EDT for every entry. This is faster when building or changing menus with many entries.
+     */
+    public static boolean SWING_BATCHED_UPDATES = false;
+
+    @Property
+    /**
+     * Paints the Swing (and Windows native) tray menu with a single, scrollable component, instead of creating a swing component for
+     * every entry. Only the visible entries are painted, and sub-menus are shown in the same popup. This uses much less memory (and is
+     * much faster to show) for menus with thousands of entries.
+     */
+    public static boolean SWING_VIRTUAL_MENU = false;
+
+    @Property
+    /**
+     * Lays out and paints the Swing (and Windows native) tray menu once (off-screen) when the SystemTray is created, so that the first
+     * time the menu is shown is not noticeably slower than the rest.
+     */
+    public static boolean SWING_PREWARM_MENU = false;
+
+    @Property
+    /**
+     * Counts the native objects (menus, menu entries, images, tray icons) that are created and released, and keeps track of how many are
+     * alive. The counts are available via NativeResources, and via JMX. This is useful to check that long-running applications do not
+     * leak native resources when the menu is changed.
+     */
+    public static boolean NATIVE_RESOURCE_TRACKING = false;
+
+    @Property
+    /**
+     * Installs (or updates) the GNOME shell extensions that do not change which tray type is used on a background thread, after the
+     * tray has been created, instead of during startup. The AppIndicator extension check is always done during startup, because the tray
+     * type depends on it.
+     */
+    public static boolean ASYNC_EXTENSION_CHECKS = false;
+
+    @Property
+    /**
+     * Queues the work for the GTK menu entries (text, image, enabled, checked, etc), and runs all of the queued work in a single GTK
+     * main-loop callback, instead of a separate callback for every change. This is faster when many entries change at the same time.
+     * The batch sizes and times are available via GtkBatchDispatch.
+     */
+    public static boolean GTK_BATCHED_UPDATES = false;
+
+    @Property
+    /**
+     * The most time (in milliseconds) that a batch of GTK work can run for. The rest of the queued work runs during the next GTK
+     * main-loop iteration, so that GTK can still process its own events. This only has an effect when GTK_BATCHED_UPDATES is enabled.
+     */
+    public static int GTK_BATCH_BUDGET = 8;
+
+    @Property
+    /**
+     * Shows the AppIndicator tray icon by name (the directory of the image is used as the icon theme path), instead of by file. This
+     * lets the indicator host look up (and cache) the icons, instead of loading the image file every time the tray image changes.
+     */
+    public static boolean APP_INDICATOR_ICON_THEME = false;
+
+    @Property
+    /**
+     * The least time (in milliseconds) between AppIndicator tray icon changes. Every change is a D-Bus signal, so for animated (or
+     * rapidly changing) tray images, only the latest image is shown once this much time has passed since the last change. 0 shows
+     * every change immediately.
+     */
+    public static int APP_INDICATOR_ICON_INTERVAL = 0;
+
     @Property
     /**
      * This property is provided for debugging any errors in the logic used to determine the system-tray type.
@@ -166,73 +262,53 @@ class SystemTray {
 
     private static volatile SystemTray systemTray = null;
     private static volatile Tray systemTrayMenu = null;
-    private static volatile boolean shutdownHooksAdded = false;
+    private static volatile TrayType systemTrayType = null;
 
+    // while getAsync() is initializing the tray, this is the menu that is returned (the tray peer is bound to it once created)
+    private static volatile Tray pendingTray = null;
+    private static volatile CountDownLatch initializing = null;
+    private static volatile boolean shutdownHooksAdded = false;
+    // notified when the screen scale changes (only while there is a tray)
+    private static volatile Runnable scaleListener = null;
 
-    private static
-    boolean isTrayType(final Class<? extends Tray> tray, final TrayType trayType) {
-        switch (trayType) {
-            case GtkStatusIcon: return tray == _GtkStatusIconNativeTray.class;
-            case AppIndicator: return tray == _AppIndicatorNativeTray.class;
-            case WindowsNotifyIcon: return tray == _WindowsNativeTray.class;
-            case Swing: return tray == _SwingTray.class;
-            case OSXStatusItem: return tray == _OsxNativeTray.class;
-            case AWT: return tray == _AwtTray.class;
-        }
+    // the gnome-shell extension work that is run after the tray has been created (see ASYNC_EXTENSION_CHECKS)
+    private static volatile Runnable pendingExtensionCheck = null;
 
-        return false;
-    }
 
+    /**
+     * The gnome-shell extensions that do not change which tray type is used are installed (or updated) now, or after the tray has been
+     * created if ASYNC_EXTENSION_CHECKS is enabled.
+     */
     private static
-    Class<? extends Tray> selectType(final TrayType trayType) throws Exception {
-        if (trayType == TrayType.GtkStatusIcon) {
-            return _GtkStatusIconNativeTray.class;
-        }
-        else if (trayType == TrayType.AppIndicator) {
-            return _AppIndicatorNativeTray.class;
+    void installExtension(final Runnable install) {
+        if (ASYNC_EXTENSION_CHECKS) {
+            pendingExtensionCheck = install;
         }
-        else if (trayType == TrayType.WindowsNotifyIcon) {
-            return _WindowsNativeTray.class;
-        }
-        else if (trayType == TrayType.Swing) {
-            return _SwingTray.class;
-        }
-        else if (trayType == TrayType.OSXStatusItem) {
-            return _OsxNativeTray.class;
-        }
-        else if (trayType == TrayType.AWT) {
-            return _AwtTray.class;
+        else {
+            install.run();
         }
+    }
 
-        return null;
+    private static
+    boolean isTrayType(final TrayBackend tray, final TrayType trayType) {
+        return tray != null && tray.getType() == trayType;
     }
 
+    /**
+     * @return the backend for the tray type. Only the probes of the backends are called, their tray classes are not loaded here.
+     */
     private static
-    TrayType fromClass(final Class<? extends Tray> trayClass) {
-        if (trayClass == _GtkStatusIconNativeTray.class) {
-            return TrayType.GtkStatusIcon;
-        }
-        else if (trayClass == _AppIndicatorNativeTray.class) {
-            return TrayType.AppIndicator;
-        }
-        else if (trayClass == _WindowsNativeTray.class) {
-            return TrayType.WindowsNotifyIcon;
-        }
-        else if (trayClass == _SwingTray.class) {
-            return TrayType.Swing;
-        }
-        else if (trayClass == _OsxNativeTray.class) {
-            return TrayType.OSXStatusItem;
-        }
-        else if (trayClass == _AwtTray.class) {
-            return TrayType.AWT;
+    TrayBackend selectType(final TrayType trayType) throws Exception {
+        final TrayBackend backend = TrayBackends.find(trayType);
+        if (backend == null) {
+            throw new RuntimeException("The '" + trayType.name() + "' tray type is not supported.");
         }
 
-        return null;
+        return backend;
     }
 
     private static
-    Class<? extends Tray> selectTypeQuietly(final TrayType trayType) {
+    TrayBackend selectTypeQuietly(final TrayType trayType) {
         try {
             return selectType(trayType);
         } catch (Throwable t) {
@@ -244,9 +320,21 @@ class SystemTray {
         return null;
     }
 
+    // GTK was started at the same time the tray type was detected, but the SystemTray cannot be used after all.
+    private static
+    void stopGtk(final StartupTask startingGtk) {
+        if (startingGtk != null) {
+            startingGtk.await();
+
+            if (Gtk.isLoaded) {
+                GtkEventDispatch.shutdownGui();
+            }
+        }
+    }
+
     // This will return what the default "autodetect" tray type should be
     private static
-    Class<? extends Tray> getAutoDetectTrayType() {
+    TrayBackend getAutoDetectTrayType() {
         if (OS.isWindows()) {
             try {
                 return selectType(TrayType.WindowsNotifyIcon);
@@ -348,7 +436,13 @@ class SystemTray {
                             else if (minorAndPatch < 26.0D) {
                                 Tray.gtkGnomeWorkaround = true;
 
-                                LegacyExtension.install();
+                                installExtension(new Runnable() {
+                                    @Override
+                                    public
+                                    void run() {
+                                        LegacyExtension.install();
+                                    }
+                                });
 
                                 // now, what VERSION of fedora? "normal" fedora doesn't have AppIndicator installed, so we have to use GtkStatusIcon
                                 // 23 is gtk, 24/25/26 is gtk (but also wrong size unless we adjust it. ImageUtil automatically does this)
@@ -392,13 +486,25 @@ class SystemTray {
                         if (version[0] == 17 && version[1] == 10) {
                             // this is gnome 3.26.1, so we install the Gnome extension
                             Tray.gtkGnomeWorkaround = true;
-                            LegacyExtension.install();
+                            installExtension(new Runnable() {
+                                @Override
+                                public
+                                void run() {
+                                    LegacyExtension.install();
+                                }
+                            });
                         }
                         else if (version[0] >= 18) {
                             // ubuntu 18.04 doesn't need the extension BUT does need a logout-login (or gnome-shell restart) for it to work
 
                             // we copy over a config file so we know if we have already restarted the shell or shown the warning. A logout-login will also work.
-                            DummyFile.install();
+                            installExtension(new Runnable() {
+                                @Override
+                                public
+                                void run() {
+                                    DummyFile.install();
+                                }
+                            });
                         }
 
                         return selectTypeQuietly(TrayType.AppIndicator);
@@ -564,6 +670,19 @@ class SystemTray {
             return;
         }
 
+        // how long (and how many classes it takes) to initialize is logged when debugging
+        final long startTime = System.nanoTime();
+        final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        final int startClassCount = classLoading.getLoadedClassCount();
+
+        if (DISPATCH_METRICS) {
+            DispatchMetrics.setEnabled(true);
+        }
+
+        if (NATIVE_RESOURCE_TRACKING) {
+            NativeResources.setEnabled(true);
+        }
+
         boolean isNix = OS.isLinux() || OS.isUnix();
         boolean isWindows = OS.isWindows();
         boolean isMacOsX = OS.isMacOsX();
@@ -856,8 +975,43 @@ class SystemTray {
         // all examined ones sometimes have it (and it's more than just text), or they don't have it at all. There is no mouse-over event.
 
 
+        // - appIndicator/gtk require strings (which is the path)
+        // - swing version loads as an image (which can be stream or path, we use path)
+        CacheUtil.tempDir = "SystemTrayImages";
+
+        // linux/unix need access to GTK, so load it up before the tray is loaded! Swing gets the image size info VIA gtk, so this is
+        // important as well.
+        final Runnable startGtk = new Runnable() {
+            @Override
+            public
+            void run() {
+                GtkEventDispatch.startGui(FORCE_GTK2, PREFER_GTK3, DEBUG);
+
+                // so nothing waits on the GTK thread from the GTK thread (this runs before anything else is dispatched to it)
+                GtkEventDispatch.dispatch(new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        EventDispatch.setGtkThread(Thread.currentThread());
+                    }
+                });
+                GtkEventDispatch.waitForEventsToComplete();
+            }
+        };
+
+        // Starting GTK does not depend on which tray type is detected, so they happen at the same time. The exception is when detecting a
+        // GtkStatusIcon changes which version of GTK is preferred (see below), then GTK is started after the tray type is detected.
+        StartupTask startingGtk = null;
+        if (isNix && !(PREFER_GTK3 &&
+                       (FORCE_TRAY_TYPE == TrayType.AutoDetect || FORCE_TRAY_TYPE == TrayType.GtkStatusIcon) &&
+                       (OSUtil.Linux.isKali() || OSUtil.Linux.isFedora()))) {
+            startingGtk = StartupTask.fork("start GTK", startGtk);
+        }
+
+        final StartupTask detecting = StartupTask.start("detect tray type");
+
         // this has to happen BEFORE any sort of swing system tray stuff is accessed
-        Class<? extends Tray> trayType;
+        TrayBackend trayType;
         if (SystemTray.FORCE_TRAY_TYPE == TrayType.AutoDetect) {
             trayType = getAutoDetectTrayType();
         } else {
@@ -865,10 +1019,15 @@ class SystemTray {
         }
 
         if (trayType == null) {
+            if (SystemTray.FORCE_TRAY_TYPE != TrayType.AutoDetect) {
+                logger.error("Unable to use the '{}' tray type.", SystemTray.FORCE_TRAY_TYPE.name());
+            }
+
             if (OSUtil.DesktopEnv.isChromeOS()) {
                 logger.error("ChromeOS detected and it is not supported. Aborting.");
             }
 
+            stopGtk(startingGtk);
             systemTrayMenu = null;
             systemTray = null;
             return;
@@ -884,6 +1043,12 @@ class SystemTray {
 
                 if (OSUtil.Linux.isUbuntu() && OSUtil.DesktopEnv.isUnity(de)) {
                     if (AUTO_FIX_INCONSISTENCIES) {
+                        // Gtk.isGtk2 is only valid once GTK has been started (with the FORCE_GTK2/PREFER_GTK3 flags applied)
+                        if (startingGtk == null) {
+                            startingGtk = StartupTask.fork("start GTK", startGtk);
+                        }
+                        startingGtk.join();
+
                         // GTK2 does not support AppIndicators!
                         if (Gtk.isGtk2) {
                             trayType = selectTypeQuietly(TrayType.Swing);
@@ -903,6 +1068,7 @@ class SystemTray {
                                      " the SystemTray will not work. " +
                                      "Please set `SystemTray.AUTO_FIX_INCONSISTENCIES=true;` to automatically fix this problem.");
 
+                        stopGtk(startingGtk);
                         systemTrayMenu = null;
                         systemTray = null;
                         return;
@@ -952,6 +1118,7 @@ class SystemTray {
                         logger.error("Unable to use the SystemTray as-is with this version of ElementaryOS. By default, tray icons *are not* supported, but a" +
                                      " workaround has been developed. Please see: https://git.dorkbox.com/dorkbox/elementary-indicators");
 
+                        stopGtk(startingGtk);
                         systemTrayMenu = null;
                         systemTray = null;
                         return;
@@ -968,20 +1135,21 @@ class SystemTray {
             logger.error("SystemTray initialization failed. (Unable to discover which implementation to use). Falling back to the Swing Tray.");
         }
 
-
-        // - appIndicator/gtk require strings (which is the path)
-        // - swing version loads as an image (which can be stream or path, we use path)
-        CacheUtil.tempDir = "SystemTrayImages";
+        detecting.finish();
 
 
+        StartupTask creating = null;
         try {
             // at this point, the tray type is what it should be. If there are failures or special cases, all types will fall back to Swing.
 
+            if (isNix && startingGtk == null) {
+                startingGtk = StartupTask.run("start GTK", startGtk, detecting);
+            }
+
+            final StartupTask preparing = StartupTask.start("prepare tray", detecting, startingGtk);
+            StartupTask creatingImage = null;
+
             if (isNix) {
-                // linux/unix need access to GTK, so load it up before the tray is loaded!
-                // Swing gets the image size info VIA gtk, so this is important as well.
-                GtkEventDispatch.startGui(FORCE_GTK2, PREFER_GTK3, DEBUG);
-                GtkEventDispatch.waitForEventsToComplete();
 
                 if (DEBUG) {
                     // output what version of GTK we have loaded.
@@ -997,6 +1165,15 @@ class SystemTray {
 
                 // this will to load the app-indicator library
                 else if (isTrayType(trayType, TrayType.AppIndicator)) {
+                    // the blank image the indicator is created with is generated while the library loads
+                    creatingImage = StartupTask.fork("create blank tray image", new Runnable() {
+                        @Override
+                        public
+                        void run() {
+                            ImageResizeUtil.getTransparentImage(SizeAndScalingUtil.getTrayImageSize());
+                        }
+                    });
+
                     if (!AppIndicator.isLoaded) {
                         // YIKES. AppIndicator couldn't load.
 
@@ -1035,13 +1212,16 @@ class SystemTray {
 
             // initialize tray/menu image sizes. This must be BEFORE the system tray has been created
             int trayImageSize = SizeAndScalingUtil.getTrayImageSize();
-            int menuImageSize = SizeAndScalingUtil.getMenuImageSize(trayType);
+            int menuImageSize = SizeAndScalingUtil.getMenuImageSize(trayType.getType());
 
             if (DEBUG) {
                 logger.debug("Tray indicator image size: {}", trayImageSize);
                 logger.debug("Tray menu image size: {}", menuImageSize);
             }
 
+            // images that were submitted to prewarm (before the sizes were known) can now be resized, while the tray is created
+            ImagePrewarm.start();
+
             if (AUTO_FIX_INCONSISTENCIES) {
                 // this logic has to be before we create the system Tray, but after GTK is started (if applicable)
                 if (isWindows && isTrayType(trayType, TrayType.Swing)) {
@@ -1079,13 +1259,17 @@ class SystemTray {
                 java.awt.Toolkit.getDefaultToolkit();
             }
 
-
+            preparing.finish();
+            creating = StartupTask.start("create tray", preparing, creatingImage);
 
             // javaFX and SWT **CAN NOT** start on the EDT!!
             // linux + GTK/AppIndicator + windows-native menus must not start on the EDT!
-            systemTray = new SystemTray();
+            if (systemTray == null) {
+                // get() or getAsync() have already created it
+                systemTray = new SystemTray();
+            }
         } catch (Exception e) {
-            logger.error("Unable to create tray type: '{}'", trayType.getSimpleName(), e);
+            logger.error("Unable to create tray type: '{}'", trayType.getType(), e);
         }
 
 
@@ -1093,35 +1277,59 @@ class SystemTray {
         final AtomicReference<Tray> reference = new AtomicReference<Tray>();
         try {
             // AWT/Swing must be constructed on the EDT however...
+            // this is the only place the tray class (and therefore the UI classes it uses) is loaded
+            final Class<? extends Tray> trayClass = trayType.getTrayClass();
+
             if (!JavaFX.isLoaded && !Swt.isLoaded &&
                 (isTrayType(trayType, TrayType.Swing) || isTrayType(trayType, TrayType.AWT))) {
                 // have to construct swing stuff inside the swing EDT
-                final Class<? extends Menu> finalTrayType = trayType;
                 SwingUtil.invokeAndWait(new Runnable() {
                     @Override
                     public
                     void run() {
                         try {
-                            reference.set((Tray) finalTrayType.getConstructors()[0].newInstance(systemTray));
+                            reference.set((Tray) trayClass.getConstructors()[0].newInstance(systemTray));
                         } catch (Exception e) {
-                            logger.error("Unable to create tray type: '" + finalTrayType.getSimpleName() + "'", e);
+                            logger.error("Unable to create tray type: '" + trayClass.getSimpleName() + "'", e);
                         }
                     }
                 });
             }
             else {
-                reference.set((Tray) trayType.getConstructors()[0].newInstance(systemTray));
+                reference.set((Tray) trayClass.getConstructors()[0].newInstance(systemTray));
             }
         } catch (Exception e) {
-            logger.error("Unable to create tray type: '" + trayType.getSimpleName() + "'", e);
+            logger.error("Unable to create tray type: '" + trayType.getType() + "'", e);
+        }
+
+
+        Tray tray = reference.get();
+        if (tray != null) {
+            systemTrayType = trayType.getType();
+
+            final Tray pending = pendingTray;
+            if (pending != null) {
+                tray = bindPending(pending, tray);
+            }
         }
 
+        systemTrayMenu = tray;
 
-        systemTrayMenu = reference.get();
+        if (creating != null) {
+            creating.finish();
+        }
 
         if (systemTrayMenu != null) {
             if (DEBUG) {
-                logger.info("Successfully loaded type: {}", trayType.getSimpleName());
+                logger.info("Successfully loaded type: {}", trayType);
+                logger.debug("Initialized in {} ms, {} classes loaded ({} total)",
+                             (System.nanoTime() - startTime) / 1000000L,
+                             classLoading.getLoadedClassCount() - startClassCount,
+                             classLoading.getLoadedClassCount());
+
+                if (creating != null) {
+                    logger.debug("Initialization critical path: {}", creating.getCriticalPath());
+                }
             } else {
                 logger.info("Successfully loaded");
             }
@@ -1171,6 +1379,43 @@ class SystemTray {
                     }));
                 }
             }
+
+            if (SWING_PREWARM_MENU && systemTrayMenu.peer instanceof SwingMenu) {
+                ((SwingMenu) systemTrayMenu.peer).prewarm();
+            }
+
+            final Runnable extensionCheck = pendingExtensionCheck;
+            if (extensionCheck != null) {
+                pendingExtensionCheck = null;
+
+                final Thread thread = new Thread(extensionCheck, "SystemTrayExtension");
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            // when the screen scale changes, the tray + menu images have to change as well.
+            if (AUTO_SIZE && AUTO_SCALE && scaleListener == null) {
+                // have to make sure that we only add this ONCE! It is removed on shutdown.
+                scaleListener = new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        // resizing images should not happen on the AWT thread
+                        EventDispatch.runLater(new Runnable() {
+                            @Override
+                            public
+                            void run() {
+                                final Tray tray = systemTrayMenu;
+                                if (tray != null) {
+                                    tray.rescaleImage_();
+                                }
+                            }
+                        });
+                    }
+                };
+
+                SizeAndScalingUtil.addScaleChangeListener(scaleListener);
+            }
         }
     }
 
@@ -1189,21 +1434,209 @@ class SystemTray {
      * This always returns the same instance per JVM (it's a singleton), and on some platforms the system tray may not be
      * supported, in which case this will return NULL.
      * <p>
+     * The system tray is only created by the first call. Calling this again returns the same SystemTray (and does NOT create another
+     * tray icon), until {@link #shutdown()} is called. Previously, every call created a new tray. If this is called from several
+     * threads at the same time (or while {@link #getAsync()} is initializing), the system tray is only initialized once, and the
+     * other threads wait for it.
+     * <p>
      * If this is using the Swing SystemTray and a SecurityManager is installed, the AWTPermission {@code accessSystemTray} must
      * be granted in order to get the {@code SystemTray} instance. Otherwise this will return null.
      */
     public static
     SystemTray get() {
-        init();
+        final CountDownLatch initializing;
+        final CountDownLatch latch;
+
+        synchronized (SystemTray.class) {
+            initializing = SystemTray.initializing;
+
+            if (initializing == null) {
+                if (systemTrayMenu != null) {
+                    // it's a singleton. After shutdown(), it is created again.
+                    return systemTray;
+                }
+
+                // other threads wait for this one to initialize the system tray
+                latch = new CountDownLatch(1);
+                systemTray = new SystemTray();
+                systemTrayType = null;
+                SystemTray.initializing = latch;
+            }
+            else {
+                latch = null;
+            }
+        }
+
+        if (initializing != null) {
+            if (EventDispatch.isNativeThread()) {
+                // initialization can be waiting on this thread (ie: to create a Swing tray), so we must not wait for it here. The
+                // SystemTray that is being initialized is returned instead (the same as getAsync() returns).
+                return systemTray;
+            }
+
+            // getAsync() is initializing the system tray, so we wait for it to finish
+            try {
+                initializing.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return systemTray;
+        }
+
+        try {
+            init();
+        } finally {
+            if (systemTrayMenu == null) {
+                // the images queued to prewarm would otherwise wait forever for the image sizes
+                ImagePrewarm.cancel();
+                systemTray = null;
+            }
+
+            synchronized (SystemTray.class) {
+                SystemTray.initializing = null;
+            }
+            latch.countDown();
+        }
         return systemTray;
     }
 
+    /**
+     * Returns immediately, while the SystemTray is initialized on a separate thread so that the startup of the application can overlap
+     * with the startup of the system tray.
+     * <p>
+     * The returned SystemTray and it's menu can be used right away. Entries, images, the status, tooltip, etc. that are set before the
+     * system tray is ready are recorded, and are applied as a single batch once it is ready.
+     * <p>
+     * {@link #get()} waits for the initialization to finish, and returns null if the system tray is not supported (in which case the
+     * SystemTray returned here is never shown). On the Swing EDT or the GTK thread, {@link #get()} does not wait (initialization might
+     * need that thread), and returns the same SystemTray as this does instead.
+     * <p>
+     * If {@link #get()} is initializing the system tray at the same time, this returns the SystemTray that {@link #get()} will return.
+     * Changes made to it before {@link #get()} returns are not recorded.
+     */
+    public static
+    SystemTray getAsync() {
+        final SystemTray tray;
+        final CountDownLatch latch;
+
+        synchronized (SystemTray.class) {
+            if (systemTrayMenu != null || initializing != null) {
+                // already created (or being created)
+                return systemTray;
+            }
+
+            tray = new SystemTray();
+            latch = new CountDownLatch(1);
+
+            systemTray = tray;
+            systemTrayType = null;
+            pendingTray = new Tray(tray);
+            systemTrayMenu = pendingTray;
+            initializing = latch;
+        }
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public
+            void run() {
+                try {
+                    init();
+                } catch (Throwable t) {
+                    logger.error("Unable to initialize the SystemTray", t);
+
+                    systemTrayMenu = null;
+                    systemTray = null;
+                } finally {
+                    if (systemTrayMenu == null) {
+                        // the images queued to prewarm would otherwise wait forever for the image sizes
+                        ImagePrewarm.cancel();
+                    }
+
+                    synchronized (SystemTray.class) {
+                        pendingTray = null;
+                        initializing = null;
+                    }
+                    latch.countDown();
+                }
+            }
+        }, "SystemTrayInit");
+        thread.start();
+
+        return tray;
+    }
+
+    /**
+     * The entries, images, status, etc. that were set on the menu returned by getAsync() while the system tray was initializing are
+     * applied to the peer of the tray that was created, as a single batch.
+     *
+     * @return the menu to use for the system tray, or null if it was removed while initializing
+     */
+    private static
+    Tray bindPending(final Tray pending, final Tray tray) {
+        if (systemTrayMenu != pending) {
+            // removed (or shutdown) while initializing
+            tray.remove();
+            return null;
+        }
+
+        // the image sizes are known now, so the images that were set can be resized (here, instead of on the dispatch thread)
+        pending.resolveImage_();
+
+        final MenuPeer peer = (MenuPeer) tray.peer;
+        final SystemTray systemTray = SystemTray.systemTray;
+
+        // all ADD/REMOVE events have to be queued on our own dispatch thread, so the execution order of the events can be maintained.
+        EventDispatch.runLater(new Runnable() {
+            @Override
+            public
+            void run() {
+                pending.bind(peer, null, systemTray);
+            }
+        });
+
+        return pending;
+    }
+
+    /**
+     * Resizes and caches the specified menu images in parallel, so that assigning them to a menu entry later on is only a cache check.
+     * <p>
+     * This can be called before the SystemTray is created, in which case the images are resized as soon as the image sizes are known
+     * (while the tray is being created).
+     *
+     * @param imageSources the images, as File, String (path), URL, InputStream, Image or ImageInputStream.
+     */
+    public static
+    void prewarm(final Collection<?> imageSources) {
+        ImagePrewarm.prewarm(imageSources, false, null);
+    }
+
+    /**
+     * Resizes and caches the specified images in parallel, so that assigning them later on is only a cache check.
+     * <p>
+     * This can be called before the SystemTray is created, in which case the images are resized as soon as the image sizes are known
+     * (while the tray is being created).
+     *
+     * @param imageSources the images, as File, String (path), URL, InputStream, Image or ImageInputStream.
+     * @param isTrayImage true if these are images for the tray icon, false if they are for menu entries
+     * @param listener notified (with timings) as each image is completed, and when all of them are completed. Can be null.
+     */
+    public static
+    void prewarm(final Collection<?> imageSources, final boolean isTrayImage, final ImagePrewarm.Listener listener) {
+        ImagePrewarm.prewarm(imageSources, isTrayImage, listener);
+    }
+
     /**
      * Shuts-down the SystemTray, by removing the menus + tray icon. After calling this method, you MUST call `get()` or `getNative()`
      * again to obtain a new reference to the SystemTray.
      */
     public
     void shutdown() {
+        final Runnable listener = scaleListener;
+        if (listener != null) {
+            scaleListener = null;
+            SizeAndScalingUtil.removeScaleChangeListener(listener);
+        }
+
         // this is thread-safe
         final Tray menu = systemTrayMenu;
         if (menu != null) {
@@ -1328,7 +1761,7 @@ class SystemTray {
 
         final Tray menu = systemTrayMenu;
         if (menu != null) {
-            menu.setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageFile));
+            menu.setImageSource_(true, imageFile);
         }
     }
 
@@ -1347,7 +1780,7 @@ class SystemTray {
 
         final Tray tray = systemTrayMenu;
         if (tray != null) {
-            tray.setImage_(ImageResizeUtil.shouldResizeOrCache(true, imagePath));
+            tray.setImageSource_(true, imagePath);
         }
     }
 
@@ -1366,7 +1799,7 @@ class SystemTray {
 
         final Tray menu = systemTrayMenu;
         if (menu != null) {
-            menu.setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageUrl));
+            menu.setImageSource_(true, imageUrl);
         }
     }
 
@@ -1385,7 +1818,7 @@ class SystemTray {
 
         final Tray menu = systemTrayMenu;
         if (menu != null) {
-            menu.setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageStream));
+            menu.setImageSource_(true, imageStream);
         }
     }
 
@@ -1404,7 +1837,7 @@ class SystemTray {
 
         final Tray menu = systemTrayMenu;
         if (menu != null) {
-            menu.setImage_(ImageResizeUtil.shouldResizeOrCache(true, image));
+            menu.setImageSource_(true, image);
         }
     }
 
@@ -1423,7 +1856,7 @@ class SystemTray {
 
         final Tray menu = systemTrayMenu;
         if (menu != null) {
-            menu.setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageStream));
+            menu.setImageSource_(true, imageStream);
         }
     }
 
@@ -1442,8 +1875,9 @@ class SystemTray {
     public
     int getMenuImageSize() {
         final Tray menu = systemTrayMenu;
-        if (menu != null) {
-            return SizeAndScalingUtil.getMenuImageSize(menu.getClass());
+        final TrayType type = systemTrayType;
+        if (menu != null && type != null) {
+            return SizeAndScalingUtil.getMenuImageSize(type);
         }
         else {
             return 0;
@@ -1451,13 +1885,13 @@ class SystemTray {
     }
 
     /**
-     * @return the tray type used to create the system tray
+     * @return the tray type used to create the system tray, null while it is initializing (see {@link #getAsync()})
      */
     public
     TrayType getType() {
         final Tray menu = systemTrayMenu;
         if (menu != null) {
-            return fromClass(systemTrayMenu.getClass());
+            return systemTrayType;
         }
         else {
             return null;
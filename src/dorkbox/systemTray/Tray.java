@@ -22,8 +22,6 @@ import java.net.URL;
 
 import javax.imageio.stream.ImageInputStream;
 
-import dorkbox.systemTray.util.ImageResizeUtil;
-
 // This is public ONLY so that it is in the scope for SwingUI and NativeUI system tray components
 public
 class Tray extends Menu {
@@ -102,7 +100,7 @@ class Tray extends Menu {
     @Override
     public
     void setImage(final File imageFile) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageFile));
+        setImageSource_(true, imageFile);
     }
 
     /**
@@ -115,7 +113,7 @@ class Tray extends Menu {
     @Override
     public
     void setImage(final String imagePath) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(true, imagePath));
+        setImageSource_(true, imagePath);
     }
 
     /**
@@ -128,7 +126,7 @@ class Tray extends Menu {
     @Override
     public
     void setImage(final URL imageUrl) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageUrl));
+        setImageSource_(true, imageUrl);
     }
 
     /**
@@ -141,7 +139,7 @@ class Tray extends Menu {
     @Override
     public
     void setImage(final InputStream imageStream) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageStream));
+        setImageSource_(true, imageStream);
     }
 
     /**
@@ -154,7 +152,7 @@ class Tray extends Menu {
     @Override
     public
     void setImage(final Image image) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(true, image));
+        setImageSource_(true, image);
     }
 
     /**
@@ -167,7 +165,7 @@ class Tray extends Menu {
     @Override
     public
     void setImage(final ImageInputStream imageStream) {
-        setImage_(ImageResizeUtil.shouldResizeOrCache(true, imageStream));
+        setImageSource_(true, imageStream);
     }
 
     /**
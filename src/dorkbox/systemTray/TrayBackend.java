@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray;
+
+/**
+ * Provides one of the tray implementations. These are discovered via {@link java.util.ServiceLoader}, by listing the provider in
+ * "META-INF/services/dorkbox.systemTray.TrayBackend".
+ * <p>
+ * The probes ({@link #isSupported()} and {@link #getPriority()}) are called for every backend, so they must be cheap and must not load
+ * the tray (or any UI/native library) classes. Only the tray class of the backend that is selected is loaded.
+ */
+public abstract
+class TrayBackend {
+
+    /**
+     * @return the tray type that this backend creates
+     */
+    public abstract
+    SystemTray.TrayType getType();
+
+    /**
+     * @return true if this backend can be used on the current OS.
+     */
+    public abstract
+    boolean isSupported();
+
+    /**
+     * @return when there is more than one supported backend for a tray type, the one with the highest priority is used. The built-in
+     *         backends are 0.
+     */
+    public
+    int getPriority() {
+        return 0;
+    }
+
+    /**
+     * This is only called for the backend that is selected. The tray class must have a public constructor that accepts the
+     * {@link SystemTray}.
+     *
+     * @return the tray implementation
+     */
+    public abstract
+    Class<? extends Tray> getTrayClass() throws Exception;
+
+    @Override
+    public
+    String toString() {
+        return getType() + " (" + getClass().getName() + ")";
+    }
+}
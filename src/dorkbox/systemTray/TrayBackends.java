@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import dorkbox.systemTray.ui.awt.AwtBackend;
+import dorkbox.systemTray.ui.gtk.AppIndicatorBackend;
+import dorkbox.systemTray.ui.gtk.GtkStatusIconBackend;
+import dorkbox.systemTray.ui.osx.OsxStatusItemBackend;
+import dorkbox.systemTray.ui.swing.SwingBackend;
+import dorkbox.systemTray.ui.swing.WindowsNotifyIconBackend;
+
+/**
+ * The tray backends that are available, discovered via {@link ServiceLoader}.
+ */
+final
+class TrayBackends {
+    private static List<TrayBackend> backends = null;
+
+    private
+    TrayBackends() {
+    }
+
+    private static synchronized
+    List<TrayBackend> get() {
+        if (backends != null) {
+            return backends;
+        }
+
+        final List<TrayBackend> list = new ArrayList<TrayBackend>();
+
+        try {
+            final Iterator<TrayBackend> iterator = ServiceLoader.load(TrayBackend.class, TrayBackend.class.getClassLoader()).iterator();
+            while (iterator.hasNext()) {
+                try {
+                    final TrayBackend backend = iterator.next();
+                    list.add(backend);
+
+                    if (SystemTray.DEBUG) {
+                        SystemTray.logger.debug("Found tray backend: {}", backend);
+                    }
+                } catch (ServiceConfigurationError e) {
+                    SystemTray.logger.error("Unable to load a tray backend", e);
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            SystemTray.logger.error("Unable to load the tray backends", e);
+        }
+
+        if (list.isEmpty()) {
+            // the service file is missing (ie: it was not merged into a shaded jar), so we use the built-in backends directly
+            list.add(new GtkStatusIconBackend());
+            list.add(new AppIndicatorBackend());
+            list.add(new WindowsNotifyIconBackend());
+            list.add(new SwingBackend());
+            list.add(new OsxStatusItemBackend());
+            list.add(new AwtBackend());
+        }
+
+        backends = list;
+        return list;
+    }
+
+    /**
+     * @return the supported backend with the highest priority for the tray type, or null if there are none.
+     */
+    static
+    TrayBackend find(final SystemTray.TrayType trayType) {
+        TrayBackend found = null;
+
+        for (TrayBackend backend : get()) {
+            if (backend.getType() == trayType &&
+                (found == null || backend.getPriority() > found.getPriority()) &&
+                backend.isSupported()) {
+                found = backend;
+            }
+        }
+
+        return found;
+    }
+}
@@ -19,6 +19,7 @@ import static dorkbox.systemTray.SystemTray.logger;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 import dorkbox.systemTray.SystemTray;
 
@@ -98,8 +99,6 @@ class AppIndicatorExtension extends ExtensionSupport {
 
         // where the extension is saved
         final File directory = new File(userHome + "/.local/share/gnome-shell/extensions/" + UID);
-        final File metaDatafile = new File(directory, "metadata.json");
-
 
 
         // have to create the metadata.json file (and make it so that it's **always** current).
@@ -112,7 +111,7 @@ class AppIndicatorExtension extends ExtensionSupport {
             logger.debug("Checking the appindicator gnome-shell extension");
         }
 
-        if (isInstalled && !ExtensionSupport.needsUpgrade(metadata, metaDatafile)) {
+        if (isInstalled && ExtensionSupport.isCurrent(directory, metadata)) {
             // this means that our version info, etc. is the same - there is no need to update anything
             return;
         }
@@ -124,11 +123,16 @@ class AppIndicatorExtension extends ExtensionSupport {
         }
 
 
-        boolean success = ExtensionSupport.writeFile(metadata, metaDatafile);
-        if (success) {
-            // copies our provided extension files to the correct location on disk
-            ExtensionSupport.installZip("appindicator.zip", directory  );
+        // our provided extension files. The metadata is last, so it's only updated once everything else has been written
+        final Map<String, byte[]> files = ExtensionSupport.getZipContents("appindicator.zip");
+        if (files == null) {
+            return;
+        }
+        files.put(METADATA, ExtensionSupport.toBytes(metadata));
 
+        // copies (only the changed) extension files to the correct location on disk
+        boolean success = ExtensionSupport.install(directory, files);
+        if (success) {
             if (SystemTray.DEBUG) {
                 logger.debug("Enabling appindicator gnome-shell extension");
             }
@@ -18,19 +18,23 @@ package dorkbox.systemTray.gnomeShell;
 import static dorkbox.systemTray.SystemTray.logger;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -44,8 +48,32 @@ import dorkbox.util.OSUtil;
 @SuppressWarnings({"DanglingJavadoc", "WeakerAccess"})
 public
 class ExtensionSupport {
+    private static final String SCHEMA = "org.gnome.shell";
+    private static final String ENABLED_EXTENSIONS = "enabled-extensions";
+    private static final String UTF_8 = "UTF-8";
+
+    protected static final String METADATA = "metadata.json";
+
+    /** The content hash of every file we installed into the extension directory, so a warm start only has to read this one file */
+    protected static final String MANIFEST = ".systemtray-manifest";
+
     public static
     List<String> getEnabledExtensions() {
+        // in-process via GIO, which is much faster than forking 'gsettings' (and parsing its output)
+        List<String> extensions = GSettings.getStrings(SCHEMA, ENABLED_EXTENSIONS);
+        if (extensions != null) {
+            if (SystemTray.DEBUG) {
+                logger.debug("Installed extensions are: {}", extensions);
+            }
+
+            return extensions;
+        }
+
+        return getEnabledExtensionsViaShell();
+    }
+
+    private static
+    List<String> getEnabledExtensionsViaShell() {
         // gsettings get org.gnome.shell enabled-extensions
         final ShellExecutor gsettings = new ShellExecutor();
         gsettings.setExecutable("gsettings");
@@ -118,6 +146,25 @@ class ExtensionSupport {
 
     public static
     void setEnabledExtensions(List<String> extensions) {
+        final List<String> nonEmpty = new ArrayList<String>(extensions.size());
+        for (String extension : extensions) {
+            if (!extension.isEmpty()) {
+                nonEmpty.add(extension);
+            }
+        }
+
+        if (SystemTray.DEBUG) {
+            logger.debug("Setting installed extensions to: {}", nonEmpty);
+        }
+
+        // in-process via GIO, which is much faster than forking 'gsettings'
+        if (!GSettings.setStrings(SCHEMA, ENABLED_EXTENSIONS, nonEmpty)) {
+            setEnabledExtensionsViaShell(nonEmpty);
+        }
+    }
+
+    private static
+    void setEnabledExtensionsViaShell(List<String> extensions) {
         StringBuilder stringBuilder = new StringBuilder("[");
 
         for (int i = 0, extensionsSize = extensions.size(), limit = extensionsSize-1; i < extensionsSize; i++) {
@@ -136,11 +183,6 @@ class ExtensionSupport {
         }
         stringBuilder.append("]");
 
-
-        if (SystemTray.DEBUG) {
-            logger.debug("Setting installed extensions to: {}", stringBuilder.toString());
-        }
-
         // gsettings set org.gnome.shell enabled-extensions "['SystemTray@Dorkbox']"
         // gsettings set org.gnome.shell enabled-extensions "['background-logo@fedorahosted.org']"
         // gsettings set org.gnome.shell enabled-extensions "['background-logo@fedorahosted.org', 'SystemTray@Dorkbox']"
@@ -189,191 +231,300 @@ class ExtensionSupport {
         // Until then however, there will be errors which can be ignored, because the shell-restart means everything works.
     }
 
+    /**
+     * @return the contents of every file in the zip resource (by path), or null if there was a failure
+     */
     protected static
-    String readFile(final File metaDatafile) {
-        StringBuilder builder = new StringBuilder(256);
-        BufferedReader bin = null;
+    Map<String, byte[]> getZipContents(final String zipResourceName) {
+        final InputStream resource = ExtensionSupport.class.getResourceAsStream(zipResourceName);
+        if (resource == null) {
+            logger.error("The {} zip resource cannot be found. Something is severely wrong.", zipResourceName);
+            return null;
+        }
+
+        final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>();
+        ZipInputStream inputStream = new ZipInputStream(resource);
+
         try {
-            bin = new BufferedReader(new FileReader(metaDatafile));
-            String line;
-            while ((line = bin.readLine()) != null) {
-                builder.append(line)
-                       .append("\n");
-            }
-        } catch (Exception ignored) {
-        } finally {
-            if (bin != null) {
-                try {
-                    bin.close();
-                } catch (IOException e) {
-                    logger.error("Error closing: {}", bin, e);
+            ZipEntry entry;
+            while ((entry = inputStream.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+                    IO.copyStream(inputStream, outputStream);
+
+                    contents.put(entry.getName(), outputStream.toByteArray());
                 }
             }
+
+            return contents;
+        } catch (IOException e) {
+            logger.error("Unable to get gnome-shell extension", e);
+        } finally {
+            IO.closeQuietly(inputStream);
         }
 
-        return builder.toString();
+        return null;
     }
 
     /**
-     * @return true if successful, false if there was a failure
+     * Instead of copying the file from one place to another, we have to read the file as a string THEN replace the app name.
+     *
+     * @return the contents of the resource, with the app name set, or null if there was a failure
      */
     protected static
-    boolean writeFile(final String metadata, final File metaDatafile) {
-        File file = metaDatafile.getParentFile();
-
-        // need to make the extension location
-        if (!file.isDirectory()) {
-            final boolean mkdirs = file.mkdirs();
-            if (!mkdirs) {
-                final String msg = "Unable to create extension location: " + file;
-                logger.error(msg);
-                return false;
-            }
+    byte[] getFileContents(final String resourceName, final String appName) {
+        final InputStream resource = ExtensionSupport.class.getResourceAsStream(resourceName);
+        if (resource == null) {
+            logger.error("The {} file resource cannot be found. Something is severely wrong.", resourceName);
+            return null;
         }
 
-        // write out the metadata
-        BufferedWriter outputWriter = null;
+        final StringBuilder builder = new StringBuilder(4096);
+        BufferedReader bin = null;
+
         try {
-            outputWriter = new BufferedWriter(new FileWriter(metaDatafile, false));
-            // FileWriter always assumes default encoding is OK
-            outputWriter.write(metadata);
-            outputWriter.flush();
-            outputWriter.close();
-        } catch (IOException e) {
-            logger.error("Error installing extension metadata file", e);
-            return true;
-        } finally {
-            if (outputWriter != null) {
-                try {
-                    outputWriter.close();
-                } catch (IOException e) {
-                    logger.error("Error closing: {}", outputWriter, e);
+            bin = new BufferedReader(new InputStreamReader(resource, UTF_8));
+            String lineSeparator = OS.LINE_SEPARATOR;
+            String line;
+
+            while (( line = bin.readLine()) != null) {
+                if (line.startsWith("let APP_NAME = \"")) {
+                    line = "let APP_NAME = \"" + appName + "\";";
                 }
+
+                builder.append(line)
+                       .append(lineSeparator);
             }
-        }
 
+            return toBytes(builder.toString());
+        } catch (IOException e) {
+            logger.error("Unable to get gnome-shell extension", e);
+        } finally {
+            IO.closeQuietly(bin != null ? bin : resource);
+        }
 
-        return true;
+        return null;
     }
 
-
+    protected static
+    byte[] toBytes(final String contents) {
+        try {
+            return contents.getBytes(UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
 
     /**
-     * @return true if successful, false if there was a failure
+     * Checks the installed extension against the manifest written when it was installed, instead of re-reading the installed files.
+     * <p>
+     * All the bundled files are versioned with us, and our version is part of the metadata, so if the installed metadata is the
+     * same (and the installed files still exist) there is nothing to do.
+     *
+     * @return true if the installed extension is the same as the one we would install, false if we need to upgrade/re-install it
      */
     protected static
-    boolean installFile(final String resourceName, final File targetDirectory, final String appName) {
-        final File outputFile = new File(targetDirectory, resourceName);
+    boolean isCurrent(final File directory, final String metadata) {
+        if (SystemTray.DEBUG) {
+            // if we are DEBUG, then we ALWAYS want to compare the contents of our extension. We will have to manually restart the shell to see it
+            logger.debug("Always checking extension contents in DEBUG mode");
+            return false;
+        }
 
-        try {
-            InputStream reader = ExtensionSupport.class.getResourceAsStream(resourceName);
-            // fileOutputStream = new FileOutputStream(outputFile);
+        final Properties manifest = readManifest(directory);
+        if (!hash(toBytes(metadata)).equals(manifest.getProperty(METADATA))) {
+            // this means that we need to reinstall our extension, since either GNOME or US have changed versions since
+            // we last installed the extension.
+            return false;
+        }
 
-            if (reader == null) {
-                logger.error("The {} file resource cannot be found. Something is severely wrong.", resourceName);
+        for (String name : manifest.stringPropertyNames()) {
+            if (!new File(directory, name).isFile()) {
                 return false;
             }
+        }
+
+        return true;
+    }
+
+    /**
+     * Installs the extension files, only writing the files that are different from what is already installed. Each file is written to a
+     * temp file, then renamed over the original -- so gnome-shell never sees a partially written extension.
+     *
+     * @param files the contents of every file (by path) in the extension. Written in order, so metadata.json should be last.
+     *
+     * @return true if successful, false if there was a failure
+     */
+    protected static
+    boolean install(final File directory, final Map<String, byte[]> files) {
+        // need to make the extension location
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.error("Unable to create extension location: {}", directory);
+            return false;
+        }
 
-            // instead of copying the file from one place to another, we have to read the file as a string, THEN replace the app name, THEN write it out.
+        final Properties existing = readManifest(directory);
+        final Properties manifest = new Properties();
+        int written = 0;
 
-            FileWriter fileWriter = new FileWriter(outputFile);
-            InputStreamReader inputStreamReader = new InputStreamReader(reader);
-            try {
-                String lineSeparator = OS.LINE_SEPARATOR;
-                BufferedReader bin = new BufferedReader(inputStreamReader);
-                String line;
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            final String name = entry.getKey();
+            final byte[] contents = entry.getValue();
+            final String hash = hash(contents);
+            final File file = new File(directory, name);
 
-                while (( line = bin.readLine()) != null) {
-                    if (line.startsWith("let APP_NAME = \"")) {
-                        line = "let APP_NAME = \"" + appName + "\";";
-                    }
+            manifest.setProperty(name, hash);
 
-                    fileWriter.write(line);
-                    fileWriter.write(lineSeparator);
+            if (file.isFile()) {
+                String existingHash = existing.getProperty(name);
+                if (existingHash == null) {
+                    // installed before we kept a manifest
+                    existingHash = hash(readBytes(file));
+                }
+
+                if (hash.equals(existingHash)) {
+                    continue;
                 }
-            } finally {
-                IO.closeQuietly(inputStreamReader);
-                IO.closeQuietly(fileWriter);
             }
 
+            if (!writeAtomically(file, contents)) {
+                return false;
+            }
+            written++;
+        }
+
+        // files that we installed previously, but are no longer part of the extension
+        for (String name : existing.stringPropertyNames()) {
+            if (!files.containsKey(name)) {
+                new File(directory, name).delete();
+            }
+        }
+
+        if (SystemTray.DEBUG) {
+            logger.debug("Wrote {} of {} extension files to {}", written, files.size(), directory);
+        }
+
+        if (written == 0 && manifest.equals(existing)) {
             return true;
-        } catch (FileNotFoundException e) {
-            logger.error("Cannot find gnome-shell extension", e);
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+        try {
+            manifest.store(outputStream, "Installed by the SystemTray. Do not edit.");
         } catch (IOException e) {
-            logger.error("Unable to get gnome-shell extension", e);
+            logger.error("Error creating the extension manifest", e);
+            return false;
         }
 
-        return false;
+        return writeAtomically(new File(directory, MANIFEST), outputStream.toByteArray());
+    }
+
+    private static
+    Properties readManifest(final File directory) {
+        final Properties manifest = new Properties();
+
+        final File file = new File(directory, MANIFEST);
+        if (!file.isFile()) {
+            return manifest;
+        }
+
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            manifest.load(inputStream);
+        } catch (IOException e) {
+            // we will just re-install the extension
+            manifest.clear();
+        } finally {
+            IO.closeQuietly(inputStream);
+        }
+
+        return manifest;
+    }
+
+    private static
+    byte[] readBytes(final File file) {
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) file.length());
+            IO.copyStream(inputStream, outputStream);
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            return new byte[0];
+        } finally {
+            IO.closeQuietly(inputStream);
+        }
     }
 
     /**
      * @return true if successful, false if there was a failure
      */
-    protected static
-    boolean installZip(final String zipResourceName, final File targetDirectory) {
-        ZipInputStream inputStream = null;
-        FileOutputStream fileOutputStream = null;
+    private static
+    boolean writeAtomically(final File file, final byte[] contents) {
+        File parentFile = file.getParentFile();
+
+        if (!parentFile.isDirectory() && !parentFile.mkdirs()) {
+            logger.error("Unable to create extension location: {}", parentFile);
+            return false;
+        }
 
+        File tempFile = null;
+        FileOutputStream outputStream = null;
         try {
-            inputStream = new ZipInputStream(ExtensionSupport.class.getResourceAsStream(zipResourceName));
+            // must be in the same directory, otherwise the rename is not atomic
+            tempFile = File.createTempFile("." + file.getName(), ".tmp", parentFile);
 
-            ZipEntry entry;
-            while ((entry = inputStream.getNextEntry()) != null) {
-                if (!entry.isDirectory()) {
-                    String name = entry.getName();
-
-                    try {
-                        if (!entry.isDirectory()) {
-                            File specificOutput = new File(targetDirectory, name);
-                            File parentFile = specificOutput.getParentFile();
-
-                            if (!parentFile.exists()) {
-                                boolean mkdirs = parentFile.mkdirs();
-                                if (!mkdirs) {
-                                    SystemTray.logger.error("Error creating target directory '{}' for Zip support.", parentFile);
-                                }
-                            }
-
-                            fileOutputStream = new FileOutputStream(specificOutput);
-
-                            IO.copyStream(inputStream, fileOutputStream);
-                        }
-                    } catch (IOException e) {
-                        SystemTray.logger.error("Error extracting zip contents to {}", targetDirectory);
-                    } finally {
-                        if (fileOutputStream != null) {
-                            IO.closeQuietly(fileOutputStream);
-                            fileOutputStream = null;
-                        }
-                    }
-                }
+            outputStream = new FileOutputStream(tempFile);
+            outputStream.write(contents);
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (tempFile.renameTo(file)) {
+                return true;
             }
 
-            return true;
-        } catch (FileNotFoundException e) {
-            logger.error("Cannot find gnome-shell extension", e);
+            // rename does not always replace an existing file (ie: windows)
+            if (file.delete() && tempFile.renameTo(file)) {
+                return true;
+            }
+
+            logger.error("Unable to replace extension file {}", file);
         } catch (IOException e) {
-            logger.error("Unable to get gnome-shell extension", e);
+            logger.error("Error writing extension file {}", file, e);
         } finally {
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    logger.error("Error closing: {}", inputStream, e);
-                }
-            }
-            if (fileOutputStream != null) {
-                try {
-                    fileOutputStream.close();
-                } catch (IOException e) {
-                    logger.error("Error closing: {}", fileOutputStream, e);
-                }
+            IO.closeQuietly(outputStream);
+
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
             }
         }
 
         return false;
     }
 
+    private static
+    String hash(final byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported
+            throw new RuntimeException(e);
+        }
+
+        final byte[] hash = digest.digest(contents);
+
+        final StringBuilder builder = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16))
+                   .append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
 
     protected static
     String createMetadata(final String uid, final String appVersion, final String appName, final String gnomeVersion) {
@@ -406,39 +557,4 @@ class ExtensionSupport {
 
         return gnomeVersion;
     }
-
-    /**
-     * @return true if we need to upgrade/re-install the extension, false if we do not need to do anything
-     */
-    protected static
-    boolean needsUpgrade(final String metadata, final File metaDatafile) {
-        String existingMetadata = ExtensionSupport.readFile(metaDatafile);
-
-        if (SystemTray.DEBUG) {
-            logger.debug("Extension already installed, checking for upgrade");
-        }
-
-        // have to check to see if the version is correct as well (otherwise we have to reinstall it)
-        // compat for java 1.6
-
-        // the metadata string we CHECK should equal the metadata string we PROVIDE
-        if (metadata.equals(existingMetadata)) {
-            // this means that our version info, etc. is the same - there is no need to update anything
-            if (!SystemTray.DEBUG) {
-                return false;
-            } else {
-                // if we are DEBUG, then we ALWAYS want to copy over our extension. We will have to manually restart the shell to see it
-                logger.debug("Always upgrading extension in DEBUG mode");
-            }
-        }
-        else {
-            // this means that we need to reinstall our extension, since either GNOME or US have changed versions since
-            // we last installed the extension.
-            if (SystemTray.DEBUG) {
-                logger.debug("Need to upgrade extension");
-            }
-        }
-
-        return true;
-    }
 }
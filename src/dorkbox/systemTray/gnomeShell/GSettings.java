@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.gnomeShell;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.StringArray;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * Reads and writes GSettings in-process via GIO, instead of forking the 'gsettings' command and parsing its output.
+ * <p>
+ * GIO aborts the process if a schema or key does not exist, so both are checked first. If GIO cannot be loaded (or the schema/key
+ * does not exist), these methods fail (return null/false) so the caller can fall back to the 'gsettings' command.
+ * <p>
+ * If GIO cannot reach dconf (ie: the dconf GIO module is not found by this process), it silently uses a memory backend, where
+ * values are neither read from nor written to the real settings. That is treated the same as GIO not being available.
+ */
+final
+class GSettings {
+    private static final boolean isLoaded;
+
+    static {
+        boolean loaded = false;
+        try {
+            // GObject/GLib functions are found via GIO's dependencies
+            Native.register(GSettings.class, "gio-2.0");
+            loaded = true;
+        } catch (Throwable e) {
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Unable to load GIO, using 'gsettings' instead.", e);
+            }
+        }
+
+        isLoaded = loaded;
+    }
+
+    private static native Pointer g_settings_schema_source_get_default();
+    private static native Pointer g_settings_schema_source_lookup(Pointer source, String schemaId, boolean recursive);
+    private static native boolean g_settings_schema_has_key(Pointer schema, String name);
+    private static native void g_settings_schema_unref(Pointer schema);
+
+    private static native Pointer g_settings_new(String schemaId);
+    private static native Pointer g_settings_get_strv(Pointer settings, String key);
+    private static native boolean g_settings_set_strv(Pointer settings, String key, Pointer value);
+    private static native void g_settings_sync();
+    private static native Pointer g_settings_backend_get_default();
+
+    private static native String g_type_name_from_instance(Pointer instance);
+
+    private static native void g_object_unref(Pointer object);
+    private static native void g_strfreev(Pointer strv);
+
+    /**
+     * @return the string array value of the key, or null if it cannot be read via GIO
+     */
+    static
+    List<String> getStrings(final String schemaId, final String key) {
+        final Pointer settings = open(schemaId, key);
+        if (settings == null) {
+            return null;
+        }
+
+        try {
+            final Pointer strv = g_settings_get_strv(settings, key);
+            if (strv == null) {
+                return null;
+            }
+
+            try {
+                final String[] values = strv.getStringArray(0, "UTF-8");
+
+                final List<String> strings = new ArrayList<String>(values.length);
+                for (String value : values) {
+                    strings.add(value);
+                }
+                return strings;
+            } finally {
+                g_strfreev(strv);
+            }
+        } catch (Throwable e) {
+            SystemTray.logger.error("Unable to read '{} {}' via GIO", schemaId, key, e);
+            return null;
+        } finally {
+            g_object_unref(settings);
+        }
+    }
+
+    /**
+     * Sets the string array value of the key, and waits until it has been written.
+     *
+     * @return true if the value was written, false if it cannot be written via GIO
+     */
+    static
+    boolean setStrings(final String schemaId, final String key, final List<String> values) {
+        final Pointer settings = open(schemaId, key);
+        if (settings == null) {
+            return false;
+        }
+
+        try {
+            // StringArray is NULL terminated
+            final boolean success = g_settings_set_strv(settings, key, new StringArray(values.toArray(new String[0]), "UTF-8"));
+
+            // otherwise the value is written asynchronously (and is lost if the shell is restarted/we exit first)
+            g_settings_sync();
+            return success;
+        } catch (Throwable e) {
+            SystemTray.logger.error("Unable to write '{} {}' via GIO", schemaId, key, e);
+            return false;
+        } finally {
+            g_object_unref(settings);
+        }
+    }
+
+    /**
+     * @return the settings object (which must be unreferenced), or null if GIO is not available, or the schema or key does not exist
+     */
+    private static
+    Pointer open(final String schemaId, final String key) {
+        if (!isLoaded) {
+            return null;
+        }
+
+        try {
+            final Pointer source = g_settings_schema_source_get_default();
+            if (source == null) {
+                return null;
+            }
+
+            // the source is NOT a new reference
+            final Pointer schema = g_settings_schema_source_lookup(source, schemaId, true);
+            if (schema == null) {
+                if (SystemTray.DEBUG) {
+                    SystemTray.logger.debug("GSettings schema '{}' does not exist.", schemaId);
+                }
+                return null;
+            }
+
+            try {
+                if (!g_settings_schema_has_key(schema, key)) {
+                    if (SystemTray.DEBUG) {
+                        SystemTray.logger.debug("GSettings key '{} {}' does not exist.", schemaId, key);
+                    }
+                    return null;
+                }
+            } finally {
+                g_settings_schema_unref(schema);
+            }
+
+            if (!hasPersistentBackend()) {
+                return null;
+            }
+
+            return g_settings_new(schemaId);
+        } catch (Throwable e) {
+            SystemTray.logger.error("Unable to access '{}' via GIO", schemaId, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return false if GIO is using the memory (or null) backend, where nothing that is read or written is the real value
+     */
+    private static
+    boolean hasPersistentBackend() {
+        // this is a new reference
+        final Pointer backend = g_settings_backend_get_default();
+        if (backend == null) {
+            return false;
+        }
+
+        try {
+            final String typeName = g_type_name_from_instance(backend);
+            if ("GMemorySettingsBackend".equals(typeName) || "GNullSettingsBackend".equals(typeName)) {
+                if (SystemTray.DEBUG) {
+                    SystemTray.logger.debug("GSettings is using the '{}', using 'gsettings' instead.", typeName);
+                }
+                return false;
+            }
+
+            return true;
+        } finally {
+            g_object_unref(backend);
+        }
+    }
+
+    private
+    GSettings() {
+    }
+}
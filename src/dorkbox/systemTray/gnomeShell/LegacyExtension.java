@@ -18,7 +18,9 @@ package dorkbox.systemTray.gnomeShell;
 import static dorkbox.systemTray.SystemTray.logger;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import dorkbox.systemTray.SystemTray;
 import dorkbox.util.OSUtil;
@@ -71,7 +73,6 @@ class LegacyExtension extends ExtensionSupport {
 
         // where the extension is saved
         final File directory = new File(userHome + "/.local/share/gnome-shell/extensions/" + UID);
-        final File metaDatafile = new File(directory, "metadata.json");
 
 
         // have to create the metadata.json file (and make it so that it's **always** current).
@@ -83,7 +84,7 @@ class LegacyExtension extends ExtensionSupport {
             logger.debug("Checking the legacy gnome-shell extension");
         }
 
-        if (hasSystemTray && !ExtensionSupport.needsUpgrade(metadata, metaDatafile)) {
+        if (hasSystemTray && ExtensionSupport.isCurrent(directory, metadata)) {
             // this means that our version info, etc. is the same - there is no need to update anything
             return;
         }
@@ -95,12 +96,20 @@ class LegacyExtension extends ExtensionSupport {
         }
 
 
-        boolean success = ExtensionSupport.writeFile(metadata, metaDatafile);
+        // our provided extension file (with the APP NAME set). The metadata is last, so it's only updated once the extension has been written
+        final byte[] extension = ExtensionSupport.getFileContents("extension.js", SystemTray.APP_NAME);
+        if (extension == null) {
+            return;
+        }
 
-        if (success && !hasSystemTray) {
-            // copies our provided extension files to the correct location on disk. Also sets the APP NAME in the extension file
-            ExtensionSupport.installFile("extension.js", directory, SystemTray.APP_NAME);
+        final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("extension.js", extension);
+        files.put(METADATA, ExtensionSupport.toBytes(metadata));
 
+        // copies (only the changed) extension files to the correct location on disk
+        boolean success = ExtensionSupport.install(directory, files);
+
+        if (success && !hasSystemTray) {
             if (SystemTray.DEBUG) {
                 logger.debug("Enabling legacy gnome-shell extension");
             }
@@ -24,4 +24,22 @@ import dorkbox.systemTray.Menu;
 public
 interface MenuPeer extends MenuItemPeer {
     void add(Menu parentMenu, Entry entry, int index);
+
+    /**
+     * Called before a series of add/remove operations on this menu. Until {@link #finishBatch()} is called, the native menu does not
+     * have to be updated after each operation.
+     */
+    void startBatch();
+
+    /**
+     * Called after a series of add/remove operations on this menu, so that the native menu is updated (once) for all of them.
+     */
+    void finishBatch();
+
+    /**
+     * Changes the order of the entries of this menu, with (at most) one update of the native menu.
+     *
+     * @param order for each position in the menu, the position that entry was at before
+     */
+    void reorder(int[] order);
 }
@@ -25,6 +25,7 @@ import dorkbox.systemTray.Menu;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.Separator;
 import dorkbox.systemTray.Status;
+import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuPeer;
 import dorkbox.util.SwingUtil;
 
@@ -78,6 +79,72 @@ class AwtMenu implements MenuPeer {
                     AwtMenuItem item = new AwtMenuItem(AwtMenu.this);
                     ((MenuItem) entry).bind(item, parentMenu, parentMenu.getSystemTray());
                 }
+
+                // the status is always first
+                if (!(entry instanceof Status)) {
+                    moveLastItem(index);
+                }
+            }
+        });
+    }
+
+    /**
+     * Entries add themselves to the end of the menu when they are created, so the entry that was just added has to be moved to it's
+     * index (if that is not the end).
+     *
+     * ALWAYS CALLED ON THE EDT
+     */
+    private
+    void moveLastItem(final int index) {
+        int last = _native.getItemCount() - 1;
+
+        if (index >= 0 && index < last) {
+            java.awt.MenuItem item = _native.getItem(last);
+            _native.remove(last);
+            _native.insert(item, index);
+        }
+    }
+
+    @Override
+    public
+    void startBatch() {
+        // no op. AWT menus are not rebuilt when entries are added or removed
+    }
+
+    @Override
+    public
+    void finishBatch() {
+        // no op. AWT menus are not rebuilt when entries are added or removed
+    }
+
+    /**
+     * Only the items that changed position are removed and inserted again
+     */
+    @Override
+    public
+    void reorder(final int[] order) {
+        SwingUtil.invokeLater(new Runnable() {
+            @Override
+            public
+            void run() {
+                final int count = _native.getItemCount();
+                if (count != order.length) {
+                    SystemTray.logger.error("Unable to reorder the menu, the number of entries does not match.");
+                    return;
+                }
+
+                final java.awt.MenuItem[] items = new java.awt.MenuItem[count];
+                for (int i = 0; i < count; i++) {
+                    items[i] = _native.getItem(i);
+                }
+
+                for (int i = 0; i < count; i++) {
+                    final java.awt.MenuItem item = items[order[i]];
+                    if (_native.getItem(i) != item) {
+                        _native.remove(item);
+                        _native.insert(item, i);
+                    }
+                }
             }
         });
     }
@@ -15,14 +15,14 @@
  */
 package dorkbox.systemTray.ui.awt;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.AWT;
+
 import java.awt.MenuShortcut;
-import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import dorkbox.systemTray.MenuItem;
-import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuItemPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
 import dorkbox.util.SwingUtil;
 
 class AwtMenuItem implements MenuItemPeer {
@@ -68,7 +68,6 @@ class AwtMenuItem implements MenuItemPeer {
         });
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final dorkbox.systemTray.MenuItem menuItem) {
@@ -76,32 +75,16 @@ class AwtMenuItem implements MenuItemPeer {
             _native.removeActionListener(callback);
         }
 
-        callback = menuItem.getCallback();  // can be set to null
-
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
-
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, AWT);
 
+        if (clickHandler.hasCallback()) {
+            callback = clickHandler;
             _native.addActionListener(callback);
         }
+        else {
+            callback = null;
+        }
     }
 
     @Override
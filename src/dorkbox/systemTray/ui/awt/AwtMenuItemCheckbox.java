@@ -15,16 +15,15 @@
  */
 package dorkbox.systemTray.ui.awt;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.AWT;
+
 import java.awt.MenuShortcut;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 
 import dorkbox.systemTray.Checkbox;
-import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.CheckboxPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
 import dorkbox.util.SwingUtil;
 
 class AwtMenuItemCheckbox implements CheckboxPeer {
@@ -66,7 +65,6 @@ class AwtMenuItemCheckbox implements CheckboxPeer {
         });
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final Checkbox menuItem) {
@@ -75,35 +73,30 @@ class AwtMenuItemCheckbox implements CheckboxPeer {
             _native.removeItemListener(callback);
         }
 
-        ActionListener callback = menuItem.getCallback();  // can be set to null
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, AWT) {
+            @Override
+            protected
+            void onClick() {
+                // this will run on the EDT, since we are calling it from the EDT
+                menuItem.setChecked(!isChecked);
+            }
+        };
 
-        if (callback != null) {
+        if (clickHandler.hasCallback()) {
             this.callback = new ItemListener() {
-                final ActionListener cb = menuItem.getCallback();
-
                 @Override
                 public
                 void itemStateChanged(final ItemEvent e) {
-                    // this will run on the EDT, since we are calling it from the EDT
-                    menuItem.setChecked(!isChecked);
-
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu checkbox entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
+                    clickHandler.actionPerformed(null);
                 }
             };
 
             _native.addItemListener(this.callback);
         }
+        else {
+            this.callback = null;
+        }
     }
 
     @Override
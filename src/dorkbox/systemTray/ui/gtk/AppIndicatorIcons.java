@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.gtk;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * The AppIndicator functions that are needed to show the tray icon by name (from an icon theme path), instead of by file.
+ * <p>
+ * These are found in whichever AppIndicator library has already been loaded. If they cannot be found, the tray icon is set by file
+ * (as before) instead.
+ */
+final
+class AppIndicatorIcons {
+    static final boolean isLoaded;
+
+    static {
+        boolean loaded = false;
+        try {
+            // the AppIndicator library is always loaded (globally) before the tray is created, so the process already has these symbols
+            Native.register(AppIndicatorIcons.class, NativeLibrary.getProcess());
+            loaded = true;
+        } catch (Throwable e) {
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Unable to set AppIndicator icons by name, using the icon file instead.", e);
+            }
+        }
+
+        isLoaded = loaded;
+    }
+
+    static native void app_indicator_set_icon_theme_path(Pointer indicator, String iconThemePath);
+    static native void app_indicator_set_icon_full(Pointer indicator, String iconName, String iconDesc);
+
+    private
+    AppIndicatorIcons() {
+    }
+}
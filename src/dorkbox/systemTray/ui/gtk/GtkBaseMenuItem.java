@@ -15,6 +15,10 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.NativeResources.Kind.IMAGE;
+import static dorkbox.systemTray.util.NativeResources.Kind.MENU_ITEM;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
 import java.io.File;
@@ -22,9 +26,10 @@ import java.io.File;
 import com.sun.jna.Pointer;
 
 import dorkbox.systemTray.peer.EntryPeer;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.ImageResizeUtil;
+import dorkbox.systemTray.util.NativeResources;
 import dorkbox.util.jna.linux.GObject;
-import dorkbox.util.jna.linux.GtkEventDispatch;
 
 abstract
 class GtkBaseMenuItem implements EntryPeer {
@@ -40,6 +45,60 @@ class GtkBaseMenuItem implements EntryPeer {
 
     GtkBaseMenuItem(final Pointer _native) {
         this._native = _native;
+
+        if (_native != null) {
+            NativeResources.created(MENU_ITEM);
+        }
+    }
+
+    /**
+     * called on the DISPATCH thread
+     *
+     * @return a new (floating) image, which is owned by the menu entry it is set on
+     */
+    static
+    Pointer createImage(final String imagePath) {
+        NativeResources.created(IMAGE);
+        return Gtk2.gtk_image_new_from_file(imagePath);
+    }
+
+    /**
+     * called on the DISPATCH thread
+     */
+    static
+    void removeImage(final Pointer menuItem, final Pointer image) {
+        Gtk2.gtk_container_remove(menuItem, image); // will automatically get destroyed if no other references to it
+        NativeResources.released(IMAGE);
+    }
+
+    /**
+     * Shows the image file on this menu entry. The image widget is only created (and shown) the first time, after that the same widget
+     * is changed in place -- which is much cheaper for images that change often (ie: checkmarks).
+     * <p>
+     * called on the DISPATCH thread
+     *
+     * @param image the current image widget for this entry, or null if there isn't one
+     *
+     * @return the image widget for this entry
+     */
+    Pointer setImageFile(final Pointer image, final String imagePath) {
+        if (image != null) {
+            if (GtkImage.isLoaded) {
+                GtkImage.gtk_image_set_from_file(image, imagePath);
+                return image;
+            }
+
+            removeImage(_native, image);
+        }
+
+        final Pointer newImage = createImage(imagePath);
+        Gtk2.gtk_image_menu_item_set_image(_native, newImage);
+
+        //  must always re-set always-show after setting the image
+        Gtk2.gtk_image_menu_item_set_always_show_image(_native, true);
+
+        Gtk2.gtk_widget_show_all(_native);
+        return newImage;
     }
 
     public
@@ -59,7 +118,7 @@ class GtkBaseMenuItem implements EntryPeer {
     protected
     void removeSpacerImage() {
         if (spacerImage != null) {
-            Gtk2.gtk_container_remove(_native, spacerImage); // will automatically get destroyed if no other references to it
+            removeImage(_native, spacerImage);
             spacerImage = null;
         }
     }
@@ -73,7 +132,7 @@ class GtkBaseMenuItem implements EntryPeer {
     protected
     void addSpacerImage() {
         if (spacerImage == null) {
-            spacerImage = Gtk2.gtk_image_new_from_file(transparentIcon.getAbsolutePath());
+            spacerImage = createImage(transparentIcon.getAbsolutePath());
             Gtk2.gtk_image_menu_item_set_image(_native, spacerImage);
 
             //  must always re-set always-show after setting the image
@@ -96,11 +155,13 @@ class GtkBaseMenuItem implements EntryPeer {
             return;
         }
 
-        removeSpacerImage();
-
+        // the spacer image is kept (instead of removed and added again) when the menu is recreated
         if (everyoneElseHasImages) {
             addSpacerImage();
         }
+        else {
+            removeSpacerImage();
+        }
     }
 
     // some GTK libraries DO NOT let us add items AFTER the menu has been attached to the indicator.
@@ -123,18 +184,35 @@ class GtkBaseMenuItem implements EntryPeer {
         // NOTE: We cannot show the menu until AFTER items have been added, otherwise we get GLIB warnings
     }
 
+    /**
+     * Removes this entry from the parent menu, and releases it. Any images must already be removed. Only called once, when this entry
+     * is removed.
+     * <p>
+     * called on the DISPATCH thread
+     */
+    void destroy(final Pointer parentNative) {
+        removeSpacerImage();
+
+        // while the parent menu is being rebuilt, there is no parent menu (and this entry has already been removed from it)
+        if (parentNative != null) {
+            Gtk2.gtk_container_remove(parentNative, _native);
+        }
+
+        // undoes the reference from onCreateMenu (or the initial floating reference, if this was never added to the menu). Without this,
+        // the entry is never destroyed
+        GObject.g_object_unref(_native);
+        NativeResources.released(MENU_ITEM);
+    }
+
     @Override
     public
     void remove() {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
             @Override
             public
             void run() {
-                if (spacerImage != null) {
-                    Gtk2.gtk_container_remove(_native, spacerImage); // will automatically get destroyed if no other references to it
-                    spacerImage = null;
-                }
+                removeSpacerImage();
             }
-        });
+        }));
     }
 }
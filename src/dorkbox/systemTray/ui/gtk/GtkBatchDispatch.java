@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.gtk;
+
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.BATCH;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.util.jna.linux.GtkEventDispatch;
+
+/**
+ * Batches the work that the GTK peers dispatch onto the GTK thread.
+ * <p>
+ * Without batching, every change to a menu entry (text, image, enabled, checked, etc) is a separate callback on the GTK main-loop.
+ * When SystemTray.GTK_BATCHED_UPDATES is enabled, the work is put onto a (lock-free) queue instead, and a single main-loop callback
+ * runs everything that was queued. If running the queued work takes longer than SystemTray.GTK_BATCH_BUDGET milliseconds, the rest of
+ * the work is run during the next main-loop iteration, so that GTK can still process its own events (and the UI stays responsive).
+ * <p>
+ * The order of the work is always the same as the order it was dispatched in, including {@link #dispatchAndWait(Runnable)}.
+ */
+public final
+class GtkBatchDispatch {
+    /**
+     * A snapshot of the batches that have been run on the GTK thread.
+     */
+    public static final
+    class Stats {
+        /** how many batches have been run */
+        public final long batches;
+
+        /** how much work has been run (in all of the batches) */
+        public final long items;
+
+        /** the most work that has been run in a single batch */
+        public final long maxBatchSize;
+
+        /** how many batches ran out of time, and had to run the rest of the work during the next main-loop iteration */
+        public final long deferred;
+
+        /** the total time (in milliseconds) spent running batches */
+        public final double totalTime;
+
+        /** the longest time (in milliseconds) spent running a single batch */
+        public final double maxTime;
+
+        Stats(final long batches, final long items, final long maxBatchSize, final long deferred, final double totalTime, final double maxTime) {
+            this.batches = batches;
+            this.items = items;
+            this.maxBatchSize = maxBatchSize;
+            this.deferred = deferred;
+            this.totalTime = totalTime;
+            this.maxTime = maxTime;
+        }
+
+        /**
+         * @return the average number of items run in a batch
+         */
+        public
+        double getMeanBatchSize() {
+            return batches == 0L ? 0.0D : (double) items / batches;
+        }
+
+        @Override
+        public
+        String toString() {
+            return String.format(Locale.US, "batches=%d items=%d mean=%.2f max=%d deferred=%d time=%.3f maxTime=%.3f",
+                                 batches, items, getMeanBatchSize(), maxBatchSize, deferred, totalTime, maxTime);
+        }
+    }
+
+
+    private static final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+
+    // true while a main-loop callback is scheduled (or running) to drain the queue
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // the (GTK) thread that is currently draining the queue
+    private static volatile Thread drainThread = null;
+
+    // when the main-loop callback was scheduled
+    private static volatile long scheduleTime = 0L;
+
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong items = new AtomicLong();
+    private static final AtomicLong maxBatchSize = new AtomicLong();
+    private static final AtomicLong deferred = new AtomicLong();
+    private static final AtomicLong totalTime = new AtomicLong();
+    private static final AtomicLong maxTime = new AtomicLong();
+
+    private static final Runnable drainTask = new Runnable() {
+        @Override
+        public
+        void run() {
+            final long startTime = System.nanoTime();
+            final long budget = SystemTray.GTK_BATCH_BUDGET * 1000000L;
+
+            final boolean finished = GtkBatchDispatch.drain(startTime, budget);
+            DispatchMetrics.record(GTK, BATCH, startTime - scheduleTime, System.nanoTime() - startTime);
+
+            if (!finished) {
+                // we ran out of time. The main-loop callback is still scheduled, but it must run during the NEXT main-loop iteration. If we
+                // dispatch it from the GTK thread, it will run immediately -- so it is dispatched from our event dispatch thread instead.
+                deferred.incrementAndGet();
+
+                EventDispatch.runLater(new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        schedule();
+                    }
+                });
+                return;
+            }
+
+            scheduled.set(false);
+
+            // work that was dispatched after the queue was empty, but before we were unscheduled
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                schedule();
+            }
+        }
+    };
+
+
+    private
+    GtkBatchDispatch() {
+    }
+
+    /**
+     * Runs the work on the GTK thread. If batching is enabled, the work is queued, and run (with all of the other queued work) during
+     * the next main-loop iteration.
+     */
+    public static
+    void dispatch(final Runnable runnable) {
+        if (!SystemTray.GTK_BATCHED_UPDATES) {
+            GtkEventDispatch.dispatch(runnable);
+            return;
+        }
+
+        queue.offer(runnable);
+
+        if (Thread.currentThread() == drainThread) {
+            // dispatched by work that is running in a batch. It will run (in order) after the work that is already queued
+            return;
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    /**
+     * Runs the work on the GTK thread, and waits for it to finish. If batching is enabled, all of the queued work is run first.
+     */
+    public static
+    void dispatchAndWait(final Runnable runnable) {
+        if (!SystemTray.GTK_BATCHED_UPDATES) {
+            GtkEventDispatch.dispatchAndWait(runnable);
+            return;
+        }
+
+        GtkEventDispatch.dispatchAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                // anything that was dispatched BEFORE this must run before this
+                if (!queue.isEmpty()) {
+                    drain(System.nanoTime(), Long.MAX_VALUE);
+                }
+
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * @return the batches that have been run on the GTK thread.
+     */
+    public static
+    Stats getStats() {
+        return new Stats(batches.get(), items.get(), maxBatchSize.get(), deferred.get(), totalTime.get() / 1000000.0D,
+                         maxTime.get() / 1000000.0D);
+    }
+
+    /**
+     * Clears all of the batch stats
+     */
+    public static
+    void resetStats() {
+        batches.set(0L);
+        items.set(0L);
+        maxBatchSize.set(0L);
+        deferred.set(0L);
+        totalTime.set(0L);
+        maxTime.set(0L);
+    }
+
+    private static
+    void schedule() {
+        scheduleTime = System.nanoTime();
+        GtkEventDispatch.dispatch(drainTask);
+    }
+
+    /**
+     * Runs the queued work, until the queue is empty or the time budget runs out.
+     * <p>
+     * ALWAYS CALLED ON THE GTK THREAD
+     *
+     * @return true if the queue is empty, false if the time budget ran out
+     */
+    private static
+    boolean drain(final long startTime, final long budget) {
+        boolean finished = true;
+        long count = 0L;
+
+        final Thread previousThread = drainThread;
+        drainThread = Thread.currentThread();
+
+        try {
+            Runnable runnable;
+            while ((runnable = queue.poll()) != null) {
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    SystemTray.logger.error("Error during GTK dispatch", e);
+                }
+                count++;
+
+                if (System.nanoTime() - startTime > budget && !queue.isEmpty()) {
+                    finished = false;
+                    break;
+                }
+            }
+        } finally {
+            drainThread = previousThread;
+        }
+
+        if (count > 0L) {
+            final long time = System.nanoTime() - startTime;
+
+            batches.incrementAndGet();
+            items.addAndGet(count);
+            totalTime.addAndGet(time);
+            setMax(maxBatchSize, count);
+            setMax(maxTime, time);
+        }
+
+        return finished;
+    }
+
+    private static
+    void setMax(final AtomicLong max, final long value) {
+        long current;
+        do {
+            current = max.get();
+        } while (value > current && !max.compareAndSet(current, value));
+    }
+}
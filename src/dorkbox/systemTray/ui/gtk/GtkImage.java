@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.gtk;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * The GtkImage functions that are needed to change an image widget in place, instead of destroying it and creating a new one.
+ * <p>
+ * These are the same for GTK2 and GTK3, and are found in whichever GTK library has already been loaded. If they cannot be found, images
+ * are replaced (as before) instead.
+ */
+final
+class GtkImage {
+    static final boolean isLoaded;
+
+    static {
+        boolean loaded = false;
+        try {
+            // GTK is always loaded (globally) before any menu entry is created, so the process already has these symbols
+            Native.register(GtkImage.class, NativeLibrary.getProcess());
+            loaded = true;
+        } catch (Throwable e) {
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Unable to change GTK images in place, replacing them instead.", e);
+            }
+        }
+
+        isLoaded = loaded;
+    }
+
+    static native void gtk_image_set_from_file(Pointer image, String filename);
+
+    private
+    GtkImage() {
+    }
+}
@@ -15,6 +15,15 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.ADD;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.MOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REBUILD;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
+import static dorkbox.systemTray.util.NativeResources.Kind.MENU;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
 import java.util.ArrayList;
@@ -29,8 +38,10 @@ import dorkbox.systemTray.Menu;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.Separator;
 import dorkbox.systemTray.Status;
+import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuPeer;
-import dorkbox.util.jna.linux.GtkEventDispatch;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.NativeResources;
 
 @SuppressWarnings("deprecation")
 class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
@@ -38,6 +49,10 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     private final List<GtkBaseMenuItem> menuEntries = new ArrayList<GtkBaseMenuItem>();
 
     private final GtkMenu parent;  // null when we are the main menu attached to the tray icon
+
+    // the type of tray this menu is for. The tray type is known here, so entries do not have to ask the SystemTray (which might still
+    // be initializing)
+    final SystemTray.TrayType trayType;
     volatile Pointer _nativeMenu;  // must ONLY be created at the end of delete!
 
     private volatile Pointer image;
@@ -50,12 +65,19 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     // have to make sure no other methods can call obliterate, delete, or create menu once it's already started
     private AtomicBoolean obliterateInProgress = new AtomicBoolean(false);
 
+    // only accessed on the GTK thread. While a batch is in progress, the menu is deleted (at most) once, and created once when it
+    // finishes. Until then there is no native menu (it is null), as other work in the same batch must not use the destroyed menu.
+    private int batchDepth = 0;
+    private boolean batchDeletedMenu = false;
+    private boolean batchChangedMenu = false;
+
     // called by the system tray constructors
     // This is NOT a copy constructor!
     @SuppressWarnings("IncompleteCopyConstructor")
-    GtkMenu() {
+    GtkMenu(final SystemTray.TrayType trayType) {
         super(null);
         this.parent = null;
+        this.trayType = trayType;
     }
 
     // This is NOT a copy constructor!
@@ -64,6 +86,7 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     GtkMenu(final GtkMenu parent) {
         super(Gtk2.gtk_image_menu_item_new_with_mnemonic("")); // is what is added to the parent menu (so images work)
         this.parent = parent;
+        this.trayType = parent.trayType;
     }
 
     GtkMenu getParent() {
@@ -104,6 +127,8 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
             }
 
             Gtk2.gtk_widget_destroy(_nativeMenu);
+            NativeResources.released(MENU);
+            _nativeMenu = null;
         }
 
         if (parent != null && recursiveDeleteParentMenu) {
@@ -125,8 +150,11 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
             return;
         }
 
+        final long startTime = DispatchMetrics.startTime();
+
         // makes a new one
         _nativeMenu = Gtk2.gtk_menu_new();
+        NativeResources.created(MENU);
 
         // binds sub-menu to entry (if it exists! it does not for the root menu)
         if (parent != null) {
@@ -160,6 +188,8 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
         }
 
         onMenuAdded(_nativeMenu);
+
+        DispatchMetrics.recordRun(GTK, REBUILD, startTime);
     }
 
     /**
@@ -170,7 +200,8 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     @SuppressWarnings("ForLoopReplaceableByForEach")
     private
     void obliterateMenu() {
-        if (_nativeMenu != null && !obliterateInProgress.get()) {
+        // the native menu is null while it is being rebuilt, but the entries must still be removed
+        if (!obliterateInProgress.get()) {
             obliterateInProgress.set(true);
 
             // have to remove all other menu entries
@@ -186,8 +217,11 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
             }
             menuEntriesCopy.clear();
 
-            Gtk2.gtk_widget_destroy(_nativeMenu);
-            _nativeMenu = null;
+            if (_nativeMenu != null) {
+                Gtk2.gtk_widget_destroy(_nativeMenu);
+                NativeResources.released(MENU);
+                _nativeMenu = null;
+            }
 
             obliterateInProgress.set(false);
         }
@@ -197,7 +231,7 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     public
     void add(final Menu parentMenu, final Entry entry, final int index) {
         // must always be called on the GTK dispatch. This must be dispatchAndWait() so it will properly executed immediately
-        GtkEventDispatch.dispatchAndWait(new Runnable() {
+        GtkBatchDispatch.dispatchAndWait(DispatchMetrics.wrap(GTK, ADD, new Runnable() {
             @Override
             public
             void run() {
@@ -205,7 +239,13 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
                 // To work around this issue, we destroy then recreate the menu every time something is changed.
 
                 // when adding/removing menus DURING the `add` operation for a menu, we DO NOT want to recursively add/remove menus!
-                deleteMenu(false);
+                if (batchDepth == 0) {
+                    deleteMenu(false);
+                }
+                else if (!batchDeletedMenu) {
+                    deleteMenu(false);
+                    batchDeletedMenu = true;
+                }
 
                 GtkBaseMenuItem item = null;
 
@@ -251,6 +291,12 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
                     ((MenuItem) entry).bind((GtkMenuItem) item, parentMenu, parentMenu.getSystemTray());
                 }
 
+                if (batchDepth > 0) {
+                    // the menu is created once the batch is finished
+                    batchChangedMenu = true;
+                    return;
+                }
+
                 // when adding/removing menus DURING the `add` operation for a menu, we DO NOT want to recursively add/remove menus!
                 createMenu(false);
 
@@ -259,9 +305,138 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
                     Gtk2.gtk_widget_show_all(_nativeMenu);
                 }
             }
+        }));
+    }
+
+
+    /**
+     * Entries that are removed during a batch must be removed before any entries are added, because adding an entry deletes the
+     * native menu (and entries remove themselves from the native menu).
+     */
+    @Override
+    public
+    void startBatch() {
+        GtkBatchDispatch.dispatch(new Runnable() {
+            @Override
+            public
+            void run() {
+                batchDepth++;
+            }
+        });
+    }
+
+    @Override
+    public
+    void finishBatch() {
+        // must always be called on the GTK dispatch. This must be dispatchAndWait() so the menu is complete when the batch is finished
+        GtkBatchDispatch.dispatchAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                if (batchDepth == 0 || --batchDepth > 0) {
+                    return;
+                }
+
+                if (batchChangedMenu) {
+                    if (!batchDeletedMenu) {
+                        deleteMenu(false);
+                    }
+                    createMenu(false);
+
+                    // only call show on the ROOT menu!
+                    if (parent == null) {
+                        Gtk2.gtk_widget_show_all(_nativeMenu);
+                    }
+                }
+
+                batchDeletedMenu = false;
+                batchChangedMenu = false;
+            }
         });
     }
 
+    /**
+     * Each entry that is not already in place is moved (once) in the native menu. If that is not possible, the menu is rebuilt (once) in
+     * the new order.
+     */
+    @Override
+    public
+    void reorder(final int[] order) {
+        // must always be called on the GTK dispatch. This must be dispatchAndWait() so it will properly executed immediately
+        GtkBatchDispatch.dispatchAndWait(DispatchMetrics.wrap(GTK, MOVE, new Runnable() {
+            @Override
+            public
+            void run() {
+                if (order.length != menuEntries.size()) {
+                    SystemTray.logger.error("Unable to reorder the menu, the number of entries does not match.");
+                    return;
+                }
+
+                if (!GtkMenuShell.isLoaded) {
+                    rebuild(order);
+                    return;
+                }
+
+                // the order of the entries in the native menu, as they are moved
+                final List<GtkBaseMenuItem> current = new ArrayList<GtkBaseMenuItem>(menuEntries);
+
+                final GtkBaseMenuItem[] copy = menuEntries.toArray(new GtkBaseMenuItem[order.length]);
+                for (int i = 0; i < order.length; i++) {
+                    menuEntries.set(i, copy[order[i]]);
+                }
+
+                if (batchDeletedMenu || _nativeMenu == null) {
+                    // the menu is being rebuilt (in a batch), and is created in the new order when the batch is finished
+                    return;
+                }
+
+                for (int i = 0; i < order.length; i++) {
+                    final GtkBaseMenuItem entry = menuEntries.get(i);
+                    if (current.get(i) != entry) {
+                        current.remove(entry);
+                        current.add(i, entry);
+
+                        GtkMenuShell.gtk_menu_reorder_child(_nativeMenu, entry._native, i);
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * Some GTK libraries DO NOT let us change the menu after it has been attached to the indicator, so the menu is rebuilt (once) in
+     * the new order.
+     * <p>
+     * ALWAYS CALLED ON THE EDT
+     */
+    private
+    void rebuild(final int[] order) {
+        if (batchDepth == 0) {
+            deleteMenu(false);
+        }
+        else if (!batchDeletedMenu) {
+            deleteMenu(false);
+            batchDeletedMenu = true;
+        }
+
+        final GtkBaseMenuItem[] copy = menuEntries.toArray(new GtkBaseMenuItem[order.length]);
+        for (int i = 0; i < order.length; i++) {
+            menuEntries.set(i, copy[order[i]]);
+        }
+
+        if (batchDepth > 0) {
+            // the menu is created once the batch is finished
+            batchChangedMenu = true;
+            return;
+        }
+
+        createMenu(false);
+
+        // only call show on the ROOT menu!
+        if (parent == null) {
+            Gtk2.gtk_widget_show_all(_nativeMenu);
+        }
+    }
 
     // NOTE: XFCE used to use appindicator3, which DOES NOT support images in the menu. This change was reverted.
     // see: https://ask.fedoraproject.org/en/question/23116/how-to-fix-missing-icons-in-program-menus-and-context-menus/
@@ -275,26 +450,24 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
         // is overridden by system tray
         setLegitImage(menuItem.getImage() != null);
 
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_IMAGE, new Runnable() {
             @Override
             public
             void run() {
-                if (image != null) {
-                    Gtk2.gtk_container_remove(_native, image); // will automatically get destroyed if no other references to it
-                    image = null;
-                }
-
                 if (menuItem.getImage() != null) {
-                    image = Gtk2.gtk_image_new_from_file(menuItem.getImage().getAbsolutePath());
-                    Gtk2.gtk_image_menu_item_set_image(_native, image);
+                    // the existing image (if any) is changed in place
+                    image = setImageFile(image, menuItem.getImage().getAbsolutePath());
+                    return;
+                }
 
-                    //  must always re-set always-show after setting the image
-                    Gtk2.gtk_image_menu_item_set_always_show_image(_native, true);
+                if (image != null) {
+                    removeImage(_native, image);
+                    image = null;
                 }
 
                 Gtk2.gtk_widget_show_all(_native);
             }
-        });
+        }));
     }
 
     // is overridden in tray impl
@@ -302,13 +475,13 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     public
     void setEnabled(final MenuItem menuItem) {
         // is overridden by system tray
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 Gtk2.gtk_widget_set_sensitive(_native, menuItem.getEnabled());
             }
-        });
+        }));
     }
 
     // is overridden in tray impl
@@ -341,14 +514,14 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
             textWithMnemonic = menuItem.getText();
         }
 
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 Gtk2.gtk_menu_item_set_label(_native, textWithMnemonic);
                 Gtk2.gtk_widget_show_all(_native);
             }
-        });
+        }));
     }
 
     // is overridden in tray impl
@@ -376,7 +549,7 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     @Override
     public
     void setTooltip(final MenuItem menuItem) {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
@@ -384,7 +557,7 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
                 // null will remove the tooltip
                 Gtk2.gtk_widget_set_tooltip_text(_native, menuItem.getTooltip());
             }
-        });
+        }));
     }
 
     /**
@@ -396,6 +569,12 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     void remove(final GtkBaseMenuItem item) {
         menuEntries.remove(item);
 
+        if (batchDepth > 0) {
+            // the menu is rebuilt once the batch is finished
+            batchChangedMenu = true;
+            return;
+        }
+
         // have to rebuild the menu now...
         deleteMenu(true);  // must be on EDT
         createMenu(true);  // must be on EDT
@@ -405,7 +584,7 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
     @Override
     public
     void remove() {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
             @Override
             public
             void run() {
@@ -423,11 +602,17 @@ class GtkMenu extends GtkBaseMenuItem implements MenuPeer {
                     // remove the gtk entry item from our menu NATIVE components
                     Gtk2.gtk_menu_item_set_submenu(_native, null);
 
+                    if (image != null) {
+                        removeImage(_native, image);
+                        image = null;
+                    }
+
+                    destroy(parent._nativeMenu);
+
                     // have to rebuild the menu now...
-                    parent.deleteMenu(true);  // must be on EDT
-                    parent.createMenu(true);  // must be on EDT
+                    parent.remove(GtkMenu.this);  // must be on EDT
                 }
             }
-        });
+        }));
     }
 }
@@ -15,17 +15,21 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
-import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import com.sun.jna.Pointer;
 
 import dorkbox.systemTray.MenuItem;
-import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuItemPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.util.jna.linux.GCallback;
 import dorkbox.util.jna.linux.GObject;
 import dorkbox.util.jna.linux.GtkEventDispatch;
@@ -76,27 +80,26 @@ class GtkMenuItem extends GtkBaseMenuItem implements MenuItemPeer, GCallback {
         final boolean hadImage = hasImage();
         setLegitImage(menuItem.getImage() != null);
 
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_IMAGE, new Runnable() {
             @Override
             public
             void run() {
-                if (image != null) {
-                    Gtk2.gtk_container_remove(_native, image);  // will automatically get destroyed if no other references to it
-                    image = null;
-                }
-
                 if (menuItem.getImage() != null) {
                     // always remove the spacer image in case it's there. The spacer image will correctly added when the menu is created.
                     removeSpacerImage();
 
-                    image = Gtk2.gtk_image_new_from_file(menuItem.getImage()
-                                                                 .getAbsolutePath());
-                    Gtk2.gtk_image_menu_item_set_image(_native, image);
+                    // the existing image (if any) is changed in place
+                    image = setImageFile(image, menuItem.getImage()
+                                                        .getAbsolutePath());
+                    return;
+                }
 
-                    //  must always re-set always-show after setting the image
-                    Gtk2.gtk_image_menu_item_set_always_show_image(_native, true);
+                if (image != null) {
+                    removeImage(_native, image);
+                    image = null;
                 }
-                else if (hadImage) {
+
+                if (hadImage) {
                     // if at one point, we had an image, we should set the spacer image back, so that menu spacing looks correct.
                     // since we USED to have an image, it is safe to assume that we should have a spacer image.
                     addSpacerImage();
@@ -104,19 +107,19 @@ class GtkMenuItem extends GtkBaseMenuItem implements MenuItemPeer, GCallback {
 
                 Gtk2.gtk_widget_show_all(_native);
             }
-        });
+        }));
     }
 
     @Override
     public
     void setEnabled(final MenuItem menuItem) {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 Gtk2.gtk_widget_set_sensitive(_native, menuItem.getEnabled());
             }
-        });
+        }));
     }
 
     @SuppressWarnings("Duplicates")
@@ -147,43 +150,27 @@ class GtkMenuItem extends GtkBaseMenuItem implements MenuItemPeer, GCallback {
             textWithMnemonic = menuItem.getText();
         }
 
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 Gtk2.gtk_menu_item_set_label(_native, textWithMnemonic);
                 Gtk2.gtk_widget_show_all(_native);
             }
-        });
+        }));
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final MenuItem menuItem) {
-        callback = menuItem.getCallback();  // can be set to null
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, GTK);
 
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
-
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
+        if (clickHandler.hasCallback()) {
+            callback = clickHandler;
+        }
+        else {
+            callback = null;
         }
     }
 
@@ -204,7 +191,7 @@ class GtkMenuItem extends GtkBaseMenuItem implements MenuItemPeer, GCallback {
     @Override
     public
     void setTooltip(final MenuItem menuItem) {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
@@ -212,14 +199,14 @@ class GtkMenuItem extends GtkBaseMenuItem implements MenuItemPeer, GCallback {
                 // null will remove the tooltip
                 Gtk2.gtk_widget_set_tooltip_text(_native, menuItem.getTooltip());
             }
-        });
+        }));
     }
 
     @SuppressWarnings("Duplicates")
     @Override
     public
     void remove() {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
             @Override
             public
             void run() {
@@ -227,15 +214,15 @@ class GtkMenuItem extends GtkBaseMenuItem implements MenuItemPeer, GCallback {
 
                 callback = null;
 
-                Gtk2.gtk_container_remove(parent._nativeMenu, _native); // will automatically get destroyed if no other references to it
-
                 if (image != null) {
-                    Gtk2.gtk_container_remove(_native, image); // will automatically get destroyed if no other references to it
+                    removeImage(_native, image);
                     image = null;
                 }
 
+                destroy(parent._nativeMenu);
+
                 parent.remove(GtkMenuItem.this);
             }
-        });
+        }));
     }
 }
@@ -15,11 +15,14 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
 import java.awt.Color;
 import java.awt.Rectangle;
-import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import com.sun.jna.Pointer;
@@ -27,9 +30,11 @@ import com.sun.jna.Pointer;
 import dorkbox.systemTray.Checkbox;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.CheckboxPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.HeavyCheckMark;
 import dorkbox.systemTray.util.ImageResizeUtil;
+import dorkbox.systemTray.util.SizeAndScalingUtil;
 import dorkbox.util.OSUtil;
 import dorkbox.util.jna.linux.GCallback;
 import dorkbox.util.jna.linux.GObject;
@@ -45,32 +50,38 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
 
     // Note:  So far, ONLY Ubuntu has managed to fail at rendering (via bad layouts) checkbox menu items.
     //          If there are OTHER OSes that fail, checks for them should be added here
-    private static final boolean useFakeCheckMark;
-    static {
-        // this class is initialized on the GTK dispatch thread.
-
-        if (SystemTray.AUTO_FIX_INCONSISTENCIES &&
-            (SystemTray.get().getMenu() instanceof _AppIndicatorNativeTray) && OSUtil.Linux.isUbuntu()) {
+    // only accessed on the GTK dispatch thread
+    private static Boolean useFakeCheckMark = null;
+
+    private static
+    boolean useFakeCheckMark(final SystemTray.TrayType trayType) {
+        // this is only called on the GTK dispatch thread, and the tray type is the same for every menu entry
+        if (useFakeCheckMark == null) {
+            if (SystemTray.AUTO_FIX_INCONSISTENCIES &&
+                (trayType == SystemTray.TrayType.AppIndicator) && OSUtil.Linux.isUbuntu()) {
+
+                // Ubuntu < 17.10 (so 14.04, 14.10, 15.04, 15.10, 16.04, 16.10, 17.04) SCREW UP checkboxes. Ubuntu 17.10 uses gnome-shell properly and thus works correctly.
+                int[] version = OSUtil.Linux.getUbuntuVersion();
+                useFakeCheckMark = (version[0] < 17 || (version[0] == 17 && version[1] == 4));
+            } else {
+                useFakeCheckMark = false;
+            }
 
-            // Ubuntu < 17.10 (so 14.04, 14.10, 15.04, 15.10, 16.04, 16.10, 17.04) SCREW UP checkboxes. Ubuntu 17.10 uses gnome-shell properly and thus works correctly.
-            int[] version = OSUtil.Linux.getUbuntuVersion();
-            useFakeCheckMark = (version[0] < 17 || (version[0] == 17 && version[1] == 4));
-        } else {
-            useFakeCheckMark = false;
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Using Fake CheckMark: " + useFakeCheckMark);
+            }
         }
 
-        if (SystemTray.DEBUG) {
-            SystemTray.logger.debug("Using Fake CheckMark: " + useFakeCheckMark);
-        }
+        return useFakeCheckMark;
     }
 
     private final GtkMenu parent;
+    private final boolean isFakeCheckMark;
 
     // these have to be volatile, because they can be changed from any thread
     private volatile ActionListener callback;
     private volatile boolean isChecked = false;
     private volatile Pointer checkedImage;
-    private volatile Pointer image;
 
     // The mnemonic will ONLY show-up once a menu entry is selected. IT WILL NOT show up before then!
     // AppIndicators will only show if you use the keyboard to navigate
@@ -96,12 +107,13 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
      * show this as a GTK Status Icon (not an AppIndicator), this way the "proper" checkbox is shown.
      */
     GtkMenuItemCheckbox(final GtkMenu parent) {
-        super(useFakeCheckMark ? Gtk2.gtk_image_menu_item_new_with_mnemonic("") : Gtk2.gtk_check_menu_item_new_with_mnemonic(""));
+        super(useFakeCheckMark(parent.trayType) ? Gtk2.gtk_image_menu_item_new_with_mnemonic("") : Gtk2.gtk_check_menu_item_new_with_mnemonic(""));
         this.parent = parent;
+        this.isFakeCheckMark = useFakeCheckMark;
 
         handlerId = GObject.g_signal_connect_object(_native, "activate", this, null, 0);
 
-        if (useFakeCheckMark) {
+        if (isFakeCheckMark) {
             if (checkedFile == null) {
                 Color color = GtkTheme.getTextColor();
                 if (color == null) {
@@ -113,14 +125,14 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
 
                 if (checkedFile == null) {
                     Rectangle size = GtkTheme.getPixelTextHeight("X");
-                    int imageHeight = SystemTray.get().getMenuImageSize();
+                    int imageHeight = SizeAndScalingUtil.getMenuImageSize(parent.trayType);
                     int height = size.height;
 
                     if (SystemTray.DEBUG) {
                         SystemTray.logger.debug("Fake checkmark size: {}px", height);
                     }
 
-                    if ((SystemTray.get().getMenu() instanceof _AppIndicatorNativeTray)) {
+                    if (parent.trayType == SystemTray.TrayType.AppIndicator) {
                         // only app indicators don't need padding, as they automatically center the icon
                         checkedFile = HeavyCheckMark.get(color, height, height);
                     } else {
@@ -164,13 +176,13 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
     @Override
     public
     void setEnabled(final Checkbox menuItem) {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 Gtk2.gtk_widget_set_sensitive(_native, menuItem.getEnabled());
             }
-        });
+        }));
     }
 
     @Override
@@ -196,46 +208,34 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
             textWithMnemonic = menuItem.getText();
         }
 
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 Gtk2.gtk_menu_item_set_label(_native, textWithMnemonic);
                 Gtk2.gtk_widget_show_all(_native);
             }
-        });
+        }));
     }
 
-    @SuppressWarnings({"Duplicates", "StatementWithEmptyBody"})
     @Override
     public
     void setCallback(final Checkbox menuItem) {
-        callback = menuItem.getCallback();  // can be set to null
-
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, GTK) {
+            @Override
+            protected
+            void onClick() {
+                // this will run on the GTK thread, since we are calling it from there. This can ALSO recursively call the callback
+                menuItem.setChecked(!isChecked);
+            }
+        };
 
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // this will run on the EDT, since we are calling it from the EDT. This can ALSO recursively call the callback
-                    menuItem.setChecked(!isChecked);
-
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu checkbox entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
+        if (clickHandler.hasCallback()) {
+            callback = clickHandler;
+        }
+        else {
+            callback = null;
         }
     }
 
@@ -248,11 +248,11 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
         if (checked != this.isChecked) {
             this.isChecked = checked;
 
-            GtkEventDispatch.dispatch(new Runnable() {
+            GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
                 @Override
                 public
                 void run() {
-                    if (useFakeCheckMark) {
+                    if (isFakeCheckMark) {
                         setCheckedIconForFakeCheckMarks();
                     } else {
                         // note: this will trigger "activate", which will then trigger the callback.
@@ -264,14 +264,14 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
                         GObject.g_signal_handler_unblock(_native, handlerId);
                     }
                 }
-            });
+            }));
         }
     }
 
     @Override
     public
     void setTooltip(final Checkbox menuItem) {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
@@ -279,30 +279,18 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
                 // null will remove the tooltip
                 Gtk2.gtk_widget_set_tooltip_text(_native, menuItem.getTooltip());
             }
-        });
+        }));
     }
 
     // this is pretty much ONLY for Ubuntu AppIndicators
+    // the same image widget is used for checked and unchecked, it is only changed in place when toggled
     private
     void setCheckedIconForFakeCheckMarks() {
-        if (checkedImage != null) {
-            Gtk2.gtk_container_remove(_native, checkedImage);  // will automatically get destroyed if no other references to it
-            checkedImage = null;
-        }
-
-
         if (this.isChecked) {
-            checkedImage = Gtk2.gtk_image_new_from_file(checkedFile);
+            checkedImage = setImageFile(checkedImage, checkedFile);
         } else {
-            checkedImage = Gtk2.gtk_image_new_from_file(uncheckedFile);
+            checkedImage = setImageFile(checkedImage, uncheckedFile);
         }
-
-        Gtk2.gtk_image_menu_item_set_image(_native, checkedImage);
-
-        //  must always re-set always-show after setting the image
-        Gtk2.gtk_image_menu_item_set_always_show_image(_native, true);
-
-        Gtk2.gtk_widget_show_all(_native);
     }
 
     @Override
@@ -323,7 +311,7 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
     @Override
     public
     void remove() {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
             @Override
             public
             void run() {
@@ -331,15 +319,15 @@ class GtkMenuItemCheckbox extends GtkBaseMenuItem implements CheckboxPeer, GCall
 
                 callback = null;
 
-                Gtk2.gtk_container_remove(parent._nativeMenu, _native);  // will automatically get destroyed if no other references to it
-
-                if (image != null) {
-                    Gtk2.gtk_container_remove(_native, image); // will automatically get destroyed if no other references to it
-                    image = null;
+                if (checkedImage != null) {
+                    removeImage(_native, checkedImage);
+                    checkedImage = null;
                 }
 
+                destroy(parent._nativeMenu);
+
                 parent.remove(GtkMenuItemCheckbox.this);
             }
-        });
+        }));
     }
 }
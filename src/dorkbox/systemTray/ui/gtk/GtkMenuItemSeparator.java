@@ -15,10 +15,12 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
 import dorkbox.systemTray.peer.SeparatorPeer;
-import dorkbox.util.jna.linux.GtkEventDispatch;
+import dorkbox.systemTray.util.DispatchMetrics;
 
 class GtkMenuItemSeparator extends GtkBaseMenuItem implements SeparatorPeer {
 
@@ -37,15 +39,15 @@ class GtkMenuItemSeparator extends GtkBaseMenuItem implements SeparatorPeer {
     @Override
     public
     void remove() {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
             @Override
             public
             void run() {
-                Gtk2.gtk_container_remove(parent._nativeMenu, _native);  // will automatically get destroyed if no other references to it
+                destroy(parent._nativeMenu);
 
                 parent.remove(GtkMenuItemSeparator.this);
             }
-        });
+        }));
     }
 
     @Override
@@ -15,11 +15,14 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
 import dorkbox.systemTray.Status;
 import dorkbox.systemTray.peer.StatusPeer;
-import dorkbox.util.jna.linux.GtkEventDispatch;
+import dorkbox.systemTray.util.DispatchMetrics;
 
 // you might wonder WHY this extends MenuEntryItem -- the reason is that an AppIndicator "status" will be offset from everyone else,
 // where a GtkStatusIconTray + SwingUI will have everything lined up. (with or without icons).  This is to normalize how it looks
@@ -42,7 +45,7 @@ class GtkMenuItemStatus extends GtkBaseMenuItem implements StatusPeer {
     @Override
     public
     void setText(final Status menuItem) {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
@@ -54,23 +57,23 @@ class GtkMenuItemStatus extends GtkBaseMenuItem implements StatusPeer {
 
                 Gtk2.gtk_widget_set_sensitive(_native, false);
             }
-        });
+        }));
     }
 
     @SuppressWarnings("Duplicates")
     @Override
     public
     void remove() {
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
             @Override
             public
             void run() {
                 GtkMenuItemStatus.super.remove();
 
-                Gtk2.gtk_container_remove(parent._nativeMenu, _native); // will automatically get destroyed if no other references to it
+                destroy(parent._nativeMenu);
 
                 parent.remove(GtkMenuItemStatus.this);
             }
-        });
+        }));
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.gtk;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * The GtkMenu functions that are needed to move an entry in place, instead of destroying the menu and creating it again.
+ * <p>
+ * These are the same for GTK2 and GTK3, and are found in whichever GTK library has already been loaded. If they cannot be found, the
+ * menu is rebuilt (as before) instead.
+ */
+final
+class GtkMenuShell {
+    static final boolean isLoaded;
+
+    static {
+        boolean loaded = false;
+        try {
+            // GTK is always loaded (globally) before any menu is created, so the process already has these symbols
+            Native.register(GtkMenuShell.class, NativeLibrary.getProcess());
+            loaded = true;
+        } catch (Throwable e) {
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Unable to move GTK menu entries in place, rebuilding the menu instead.", e);
+            }
+        }
+
+        isLoaded = loaded;
+    }
+
+    static native void gtk_menu_reorder_child(Pointer menu, Pointer child, int position);
+
+    private
+    GtkMenuShell() {
+    }
+}
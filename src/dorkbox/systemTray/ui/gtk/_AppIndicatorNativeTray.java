@@ -15,7 +15,16 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.NativeResources.Kind.TRAY;
+
 import java.io.File;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.sun.jna.Pointer;
@@ -23,7 +32,10 @@ import com.sun.jna.Pointer;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.Tray;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.ImageResizeUtil;
+import dorkbox.systemTray.util.NativeResources;
+import dorkbox.util.NamedThreadFactory;
 import dorkbox.util.jna.linux.AppIndicator;
 import dorkbox.util.jna.linux.GObject;
 import dorkbox.util.jna.linux.GtkEventDispatch;
@@ -90,6 +102,20 @@ class _AppIndicatorNativeTray extends Tray {
     // has the name already been set for the indicator?
     private volatile boolean setName = false;
 
+    // every icon change is a D-Bus signal (and the host has to load the icon), so only the latest image is sent (see APP_INDICATOR_ICON_INTERVAL)
+    private final AtomicBoolean iconUpdateScheduled = new AtomicBoolean();
+    private volatile long lastIconTime = 0L;
+
+    // guards creating and shutting down the executor
+    private final Object iconUpdateLock = new Object();
+    private ScheduledExecutorService iconUpdateExecutor = null;
+
+    // only accessed on the GTK thread
+    private File shownImageFile = null;
+    private long shownImageModified = 0L;
+    private String shownIcon = null;
+    private String iconThemePath = null;
+
     // appindicators DO NOT support anything other than PLAIN gtk-menus
     //   they ALSO do not support tooltips!!
     //  https://bugs.launchpad.net/indicator-application/+bug/527458/comments/12
@@ -99,7 +125,7 @@ class _AppIndicatorNativeTray extends Tray {
         super(systemTray);
 
         // we override various methods, because each tray implementation is SLIGHTLY different. This allows us customization.
-        final GtkMenu gtkMenu = new GtkMenu() {
+        final GtkMenu gtkMenu = new GtkMenu(SystemTray.TrayType.AppIndicator) {
             /**
              * MUST BE AFTER THE ITEM IS ADDED/CHANGED from the menu
              *
@@ -132,7 +158,7 @@ class _AppIndicatorNativeTray extends Tray {
             @Override
             public
             void setEnabled(final MenuItem menuItem) {
-                GtkEventDispatch.dispatch(new Runnable() {
+                GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -148,29 +174,35 @@ class _AppIndicatorNativeTray extends Tray {
                             visible = true;
                         }
                     }
-                });
+                }));
             }
 
             @Override
             public
             void setImage(final MenuItem menuItem) {
+                if (shuttingDown.get()) {
+                    return;
+                }
+
                 imageFile = menuItem.getImage();
                 if (imageFile == null) {
                     return;
                 }
 
-                GtkEventDispatch.dispatch(new Runnable() {
-                    @Override
-                    public
-                    void run() {
-                        appIndicator.app_indicator_set_icon(imageFile.getAbsolutePath());
+                // if an update is already scheduled, it will show this (the latest) image
+                if (!iconUpdateScheduled.compareAndSet(false, true)) {
+                    return;
+                }
 
-                        if (!isActive) {
-                            isActive = true;
-                            appIndicator.app_indicator_set_status(AppIndicator.STATUS_ACTIVE);
-                        }
-                    }
-                });
+                final long interval = SystemTray.APP_INDICATOR_ICON_INTERVAL;
+                final long delay = interval <= 0 ? 0L : lastIconTime + TimeUnit.MILLISECONDS.toNanos(interval) - System.nanoTime();
+
+                if (lastIconTime == 0L || delay <= 0L) {
+                    GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_IMAGE, updateIcon));
+                }
+                else {
+                    scheduleIconUpdate(delay);
+                }
             }
 
             @Override
@@ -198,7 +230,17 @@ class _AppIndicatorNativeTray extends Tray {
                 if (!shuttingDown.getAndSet(true)) {
                     super.remove();
 
-                    GtkEventDispatch.dispatch(new Runnable() {
+                    synchronized (iconUpdateLock) {
+                        if (iconUpdateExecutor != null) {
+                            iconUpdateExecutor.shutdownNow();
+                            iconUpdateExecutor = null;
+                        }
+
+                        // a scheduled update will never run now
+                        iconUpdateScheduled.set(false);
+                    }
+
+                    GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
                         @Override
                         public
                         void run() {
@@ -210,15 +252,16 @@ class _AppIndicatorNativeTray extends Tray {
                             savedAppIndicator.app_indicator_set_status(AppIndicator.STATUS_PASSIVE);
                             Pointer p = savedAppIndicator.getPointer();
                             GObject.g_object_unref(p);
+                            NativeResources.released(TRAY);
 
                             GtkEventDispatch.shutdownGui();
                         }
-                    });
+                    }));
                 }
             }
         };
 
-        GtkEventDispatch.dispatchAndWait(new Runnable() {
+        GtkBatchDispatch.dispatchAndWait(new Runnable() {
             @Override
             public
             void run() {
@@ -229,6 +272,7 @@ class _AppIndicatorNativeTray extends Tray {
                 // GLib-GIO-CRITICAL **: g_dbus_proxy_new: assertion 'G_IS_DBUS_CONNECTION (connection)' failed
                 File image = ImageResizeUtil.getTransparentImage(systemTray.getTrayImageSize());
                 appIndicator = AppIndicator.app_indicator_new(id, image.getAbsolutePath(), AppIndicator.CATEGORY_APPLICATION_STATUS);
+                NativeResources.created(TRAY);
             }
         });
 
@@ -237,6 +281,118 @@ class _AppIndicatorNativeTray extends Tray {
         bind(gtkMenu, null, systemTray);
     }
 
+    /**
+     * Shows the latest image, if it is different from what is shown.
+     * <p>
+     * ALWAYS CALLED ON THE GTK THREAD
+     */
+    private final Runnable updateIcon = new Runnable() {
+        @Override
+        public
+        void run() {
+            // must be before the image is read, so that an image set after this point is not missed
+            iconUpdateScheduled.set(false);
+
+            final File imageFile = _AppIndicatorNativeTray.this.imageFile;
+            if (imageFile == null || appIndicator == null) {
+                return;
+            }
+
+            // the same file can be changed (and set again) when the images are not resized (AUTO_SIZE is disabled)
+            final long lastModified = imageFile.lastModified();
+            if (imageFile.equals(shownImageFile) && lastModified == shownImageModified) {
+                return;
+            }
+
+            // the host caches icons by name, so a file that changed (but kept it's name) has to be set by file
+            final boolean changedInPlace = imageFile.equals(shownImageFile);
+
+            shownImageFile = imageFile;
+            shownImageModified = lastModified;
+            lastIconTime = System.nanoTime();
+
+            if (changedInPlace || !setIconByName(imageFile)) {
+                String icon = imageFile.getAbsolutePath();
+                if (icon.equals(shownIcon)) {
+                    // the indicator ignores an icon that is the same as the current one, so the same file is set via a different path
+                    icon = imageFile.getParent() + File.separator + "." + File.separator + imageFile.getName();
+                }
+
+                shownIcon = icon;
+                appIndicator.app_indicator_set_icon(icon);
+            }
+
+            if (!isActive) {
+                isActive = true;
+                appIndicator.app_indicator_set_status(AppIndicator.STATUS_ACTIVE);
+            }
+        }
+    };
+
+    /**
+     * The directory of the image is used as the icon theme path, so that the host can look up (and cache) the icon by name, instead of
+     * loading the file every time the icon changes.
+     * <p>
+     * ALWAYS CALLED ON THE GTK THREAD
+     *
+     * @return true if the icon was set by name, false if it must be set by file instead
+     */
+    private
+    boolean setIconByName(final File imageFile) {
+        if (!SystemTray.APP_INDICATOR_ICON_THEME || !AppIndicatorIcons.isLoaded) {
+            return false;
+        }
+
+        final String fileName = imageFile.getName();
+        if (!fileName.endsWith(".png")) {
+            // the icon theme only has (by name) images that it knows how to load
+            return false;
+        }
+
+        final Pointer pointer = appIndicator.getPointer();
+
+        final String path = imageFile.getParent();
+        if (!path.equals(iconThemePath)) {
+            iconThemePath = path;
+            AppIndicatorIcons.app_indicator_set_icon_theme_path(pointer, path);
+        }
+
+        shownIcon = fileName.substring(0, fileName.length() - 4);
+        AppIndicatorIcons.app_indicator_set_icon_full(pointer, shownIcon, SystemTray.APP_NAME);
+        return true;
+    }
+
+    /**
+     * Shows the latest image after the delay. The executor is only created when it is needed, and never after the tray was removed.
+     */
+    private
+    void scheduleIconUpdate(final long delay) {
+        synchronized (iconUpdateLock) {
+            if (shuttingDown.get()) {
+                iconUpdateScheduled.set(false);
+                return;
+            }
+
+            if (iconUpdateExecutor == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("SystemTrayIconUpdate", true));
+
+                // the thread is only kept around while icons are changing
+                executor.setKeepAliveTime(5L, TimeUnit.SECONDS);
+                executor.allowCoreThreadTimeOut(true);
+
+                iconUpdateExecutor = executor;
+            }
+
+            iconUpdateExecutor.schedule(new Runnable() {
+                @Override
+                public
+                void run() {
+                    GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_IMAGE, updateIcon));
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
     @Override
     public
     boolean hasImage() {
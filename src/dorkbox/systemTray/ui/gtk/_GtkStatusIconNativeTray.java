@@ -15,6 +15,11 @@
  */
 package dorkbox.systemTray.ui.gtk;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.GTK;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.NativeResources.Kind.TRAY;
 import static dorkbox.util.jna.linux.Gtk.Gtk2;
 
 import java.io.File;
@@ -25,6 +30,8 @@ import com.sun.jna.Pointer;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.Tray;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.NativeResources;
 import dorkbox.util.JavaFX;
 import dorkbox.util.jna.linux.GEventCallback;
 import dorkbox.util.jna.linux.GObject;
@@ -66,11 +73,11 @@ class _GtkStatusIconNativeTray extends Tray {
         super(systemTray);
 
         // we override various methods, because each tray implementation is SLIGHTLY different. This allows us customization.
-        gtkMenu = new GtkMenu() {
+        gtkMenu = new GtkMenu(SystemTray.TrayType.GtkStatusIcon) {
             @Override
             public
             void setEnabled(final MenuItem menuItem) {
-                GtkEventDispatch.dispatch(new Runnable() {
+                GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -85,7 +92,7 @@ class _GtkStatusIconNativeTray extends Tray {
                             visible = true;
                         }
                     }
-                });
+                }));
             }
 
             @Override
@@ -96,7 +103,7 @@ class _GtkStatusIconNativeTray extends Tray {
                     return;
                 }
 
-                GtkEventDispatch.dispatch(new Runnable() {
+                GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_IMAGE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -107,7 +114,7 @@ class _GtkStatusIconNativeTray extends Tray {
                             Gtk2.gtk_status_icon_set_visible(trayIcon, true);
                         }
                     }
-                });
+                }));
             }
 
             @Override
@@ -134,13 +141,13 @@ class _GtkStatusIconNativeTray extends Tray {
 
                 tooltipText = text;
 
-                GtkEventDispatch.dispatch(new Runnable() {
+                GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, SET_STATE, new Runnable() {
                     @Override
                     public
                     void run() {
                         Gtk2.gtk_status_icon_set_tooltip_text(trayIcon, text);
                     }
-                });
+                }));
             }
 
             @Override
@@ -148,19 +155,20 @@ class _GtkStatusIconNativeTray extends Tray {
             void remove() {
                 // This is required if we have JavaFX or SWT shutdown hooks (to prevent us from shutting down twice...)
                 if (!shuttingDown.getAndSet(true)) {
-                    GtkEventDispatch.dispatch(new Runnable() {
+                    GtkBatchDispatch.dispatch(DispatchMetrics.wrap(GTK, REMOVE, new Runnable() {
                         @Override
                         public
                         void run() {
                             // this hides the indicator
                             Gtk2.gtk_status_icon_set_visible(trayIcon, false);
                             GObject.g_object_unref(trayIcon);
+                            NativeResources.released(TRAY);
 
                             // mark for GC
                             trayIcon = null;
                             gtkCallback = null;
                         }
-                    });
+                    }));
 
                     super.remove();
 
@@ -170,11 +178,12 @@ class _GtkStatusIconNativeTray extends Tray {
             }
         };
 
-        GtkEventDispatch.dispatch(new Runnable() {
+        GtkBatchDispatch.dispatch(new Runnable() {
             @Override
             public
             void run() {
                 trayIcon = Gtk2.gtk_status_icon_new();
+                NativeResources.created(TRAY);
 
                 gtkCallback = new GEventCallback() {
                     @Override
@@ -182,8 +191,10 @@ class _GtkStatusIconNativeTray extends Tray {
                     void callback(Pointer notUsed, final GdkEventButton event) {
                         // show the swing menu on the EDT
                         // BUTTON_PRESS only (any mouse click)
-                        if (event.type == 4) {
-                            Gtk2.gtk_menu_popup(gtkMenu._nativeMenu, null, null, Gtk2.gtk_status_icon_position_menu,
+                        // there is no menu while it is being rebuilt
+                        final Pointer nativeMenu = gtkMenu._nativeMenu;
+                        if (event.type == 4 && nativeMenu != null) {
+                            Gtk2.gtk_menu_popup(nativeMenu, null, null, Gtk2.gtk_status_icon_position_menu,
                                                 trayIcon, 0, event.time);
                         }
                     }
@@ -195,7 +206,7 @@ class _GtkStatusIconNativeTray extends Tray {
         GtkEventDispatch.waitForEventsToComplete();
 
         // we have to be able to set our title, otherwise the gnome-shell extension WILL NOT work
-        GtkEventDispatch.dispatchAndWait(new Runnable() {
+        GtkBatchDispatch.dispatchAndWait(new Runnable() {
             @Override
             public
             void run() {
@@ -19,6 +19,7 @@ import java.awt.image.BufferedImage;
 
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.EntryPeer;
+import dorkbox.systemTray.util.SizeAndScalingUtil;
 import dorkbox.util.ImageUtil;
 import dorkbox.util.jna.macos.cocoa.NSImage;
 import dorkbox.util.jna.macos.cocoa.NSInteger;
@@ -32,8 +33,7 @@ class OsxBaseMenuItem implements EntryPeer {
     static {
         NSImage transparentIcon_;
         try {
-            int menuImageSize = SystemTray.get()
-                                          .getMenuImageSize();
+            int menuImageSize = SizeAndScalingUtil.getMenuImageSize(SystemTray.TrayType.OSXStatusItem);
 
             final BufferedImage image = ImageUtil.createImageAsBufferedImage(3, menuImageSize, null);
             transparentIcon_ = new NSImage(ImageUtil.toBytes(image));
@@ -53,14 +53,17 @@ class OsxBaseMenuItem implements EntryPeer {
     @SuppressWarnings("FieldCanBeLocal")
     private final NSInteger indentationLevel = new NSInteger(1);
 
-    OsxBaseMenuItem(final OsxMenu parent) {
+    /**
+     * @param index where this entry is in the parent menu
+     */
+    OsxBaseMenuItem(final OsxMenu parent, final int index) {
         this.parent = parent;
 
         // this is to provide reasonable spacing for the menu item, otherwise it looks weird
         _native.setIndentationLevel(indentationLevel);
         _native.setImage(transparentIcon);
 
-        parent.addItem(_native);
+        parent.addItem(_native, index);
     }
 
     @Override
@@ -15,12 +15,18 @@
  */
 package dorkbox.systemTray.ui.osx;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.jna.Pointer;
+
 import dorkbox.systemTray.Checkbox;
 import dorkbox.systemTray.Entry;
 import dorkbox.systemTray.Menu;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.Separator;
 import dorkbox.systemTray.Status;
+import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuPeer;
 import dorkbox.util.jna.macos.cocoa.NSCellStateValue;
 import dorkbox.util.jna.macos.cocoa.NSImage;
@@ -28,14 +34,19 @@ import dorkbox.util.jna.macos.cocoa.NSInteger;
 import dorkbox.util.jna.macos.cocoa.NSMenu;
 import dorkbox.util.jna.macos.cocoa.NSMenuItem;
 import dorkbox.util.jna.macos.cocoa.NSString;
+import dorkbox.util.jna.macos.foundation.ObjectiveC;
 
 class OsxMenu implements MenuPeer {
+    private static final Pointer insertItemAtIndex = ObjectiveC.sel_registerName("insertItem:atIndex:");
 
     // the native OSX components
     protected final OsxMenu parent;
     protected final NSMenuItem _native = new NSMenuItem();
     volatile NSMenu _nativeMenu;
 
+    // the native entries of this menu, in order. Also guards changes to the native menu
+    private final List<NSMenuItem> items = new ArrayList<NSMenuItem>();
+
     // to prevent GC
     private volatile NSImage image;
     private NSString tooltip;
@@ -45,13 +56,16 @@ class OsxMenu implements MenuPeer {
     @SuppressWarnings("FieldCanBeLocal")
     private final NSInteger indentationLevel = new NSInteger(1);
 
-    OsxMenu(final OsxMenu parent) {
+    /**
+     * @param index where this menu is in the parent menu (not used for the root menu)
+     */
+    OsxMenu(final OsxMenu parent, final int index) {
         this.parent = parent;
         _nativeMenu = new NSMenu();
 
         if (parent != null) {
             _native.setSubmenu(_nativeMenu);
-            parent.addItem(_native);
+            parent.addItem(_native, index);
 
             // this is to provide reasonable spacing for the menu item, otherwise it looks weird
             _native.setIndentationLevel(indentationLevel);
@@ -63,27 +77,39 @@ class OsxMenu implements MenuPeer {
     public
     void add(final Menu parentMenu, final Entry entry, final int index) {
         if (entry instanceof Menu) {
-            OsxMenu menu = new OsxMenu(OsxMenu.this);
+            OsxMenu menu = new OsxMenu(OsxMenu.this, index);
             ((Menu) entry).bind(menu, parentMenu, parentMenu.getSystemTray());
         }
         else if (entry instanceof Separator) {
-            OsxMenuItemSeparator item = new OsxMenuItemSeparator(OsxMenu.this);
+            OsxMenuItemSeparator item = new OsxMenuItemSeparator(OsxMenu.this, index);
             entry.bind(item, parentMenu, parentMenu.getSystemTray());
         }
         else if (entry instanceof Checkbox) {
-            OsxMenuItemCheckbox item = new OsxMenuItemCheckbox(OsxMenu.this);
+            OsxMenuItemCheckbox item = new OsxMenuItemCheckbox(OsxMenu.this, index);
             ((Checkbox) entry).bind(item, parentMenu, parentMenu.getSystemTray());
         }
         else if (entry instanceof Status) {
-            OsxMenuItemStatus item = new OsxMenuItemStatus(OsxMenu.this);
+            OsxMenuItemStatus item = new OsxMenuItemStatus(OsxMenu.this, index);
             ((Status) entry).bind(item, parentMenu, parentMenu.getSystemTray());
         }
         else if (entry instanceof MenuItem) {
-            OsxMenuItem item = new OsxMenuItem(OsxMenu.this);
+            OsxMenuItem item = new OsxMenuItem(OsxMenu.this, index);
             ((MenuItem) entry).bind(item, parentMenu, parentMenu.getSystemTray());
         }
     }
 
+    @Override
+    public
+    void startBatch() {
+        // no op. OSX menus are not rebuilt when entries are added or removed
+    }
+
+    @Override
+    public
+    void finishBatch() {
+        // no op. OSX menus are not rebuilt when entries are added or removed
+    }
+
     @SuppressWarnings("Duplicates")
     @Override
     public
@@ -173,12 +199,49 @@ class OsxMenu implements MenuPeer {
     }
 
 
+    /**
+     * Each entry that is not already in place is removed from the native menu, and inserted again at it's new position.
+     */
+    @Override
+    public
+    void reorder(final int[] order) {
+        synchronized (items) {
+            if (order.length != items.size()) {
+                SystemTray.logger.error("Unable to reorder the menu, the number of entries does not match.");
+                return;
+            }
+
+            final NSMenuItem[] copy = items.toArray(new NSMenuItem[order.length]);
+            for (int i = 0; i < order.length; i++) {
+                final NSMenuItem item = copy[order[i]];
+                if (items.get(i) != item) {
+                    _nativeMenu.removeItem(item);
+                    items.remove(item);
+
+                    insertItem(item, i);
+                }
+            }
+        }
+    }
+
     // to make native add/remove easier for children
-    void addItem(final NSMenuItem item) {
-        _nativeMenu.addItem(item);
+    void addItem(final NSMenuItem item, final int index) {
+        synchronized (items) {
+            insertItem(item, Math.min(index, items.size()));
+        }
     }
 
     void removeItem(final NSMenuItem item) {
-        _nativeMenu.removeItem(item);
+        synchronized (items) {
+            _nativeMenu.removeItem(item);
+            items.remove(item);
+        }
+    }
+
+    // must hold the lock on items
+    private
+    void insertItem(final NSMenuItem item, final int index) {
+        ObjectiveC.objc_msgSend(_nativeMenu, insertItemAtIndex, item, new NSInteger(index));
+        items.add(index, item);
     }
 }
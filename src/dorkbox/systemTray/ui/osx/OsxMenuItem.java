@@ -15,13 +15,13 @@
  */
 package dorkbox.systemTray.ui.osx;
 
-import java.awt.event.ActionEvent;
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.OSX;
+
 import java.awt.event.ActionListener;
 
 import dorkbox.systemTray.MenuItem;
-import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuItemPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
 import dorkbox.util.jna.macos.cocoa.NSCellStateValue;
 import dorkbox.util.jna.macos.cocoa.NSImage;
 import dorkbox.util.jna.macos.cocoa.NSString;
@@ -40,8 +40,8 @@ class OsxMenuItem extends OsxBaseMenuItem implements MenuItemPeer, OsxClickCallb
     private NSString keyEquivalent;
 
 
-    OsxMenuItem(final OsxMenu parent) {
-        super(parent);
+    OsxMenuItem(final OsxMenu parent, final int index) {
+        super(parent, index);
 
         clickAction = new OsxClickAction(this);
         _native.setTarget(clickAction);
@@ -94,33 +94,17 @@ class OsxMenuItem extends OsxBaseMenuItem implements MenuItemPeer, OsxClickCallb
         _native.setTitle(title);
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final MenuItem menuItem) {
-        callback = menuItem.getCallback();  // can be set to null
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, OSX);
 
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
-
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
+        if (clickHandler.hasCallback()) {
+            callback = clickHandler;
+        }
+        else {
+            callback = null;
         }
     }
 
@@ -15,13 +15,13 @@
  */
 package dorkbox.systemTray.ui.osx;
 
-import java.awt.event.ActionEvent;
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.OSX;
+
 import java.awt.event.ActionListener;
 
 import dorkbox.systemTray.Checkbox;
-import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.CheckboxPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
 import dorkbox.util.jna.macos.cocoa.NSCellStateValue;
 import dorkbox.util.jna.macos.cocoa.NSString;
 import dorkbox.util.jna.macos.cocoa.OsxClickCallback;
@@ -39,8 +39,8 @@ class OsxMenuItemCheckbox extends OsxBaseMenuItem implements CheckboxPeer, OsxCl
     private volatile ActionListener callback;
     private volatile boolean isChecked = false;
 
-    OsxMenuItemCheckbox(final OsxMenu parent) {
-        super(parent);
+    OsxMenuItemCheckbox(final OsxMenu parent, final int index) {
+        super(parent, index);
 
         clickAction = new OsxClickAction(this);
         _native.setTarget(clickAction);
@@ -77,46 +77,21 @@ class OsxMenuItemCheckbox extends OsxBaseMenuItem implements CheckboxPeer, OsxCl
         _native.setTitle(title);
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final Checkbox menuItem) {
-        callback = menuItem.getCallback();  // can be set to null
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, OSX) {
+            @Override
+            protected
+            void onClick() {
+                // This can ALSO recursively call the callback
+                menuItem.setChecked(!isChecked);
+            }
+        };
 
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
-
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // This can ALSO recursively call the callback
-                    menuItem.setChecked(!isChecked);
-
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
-        } else {
-            callback = new ActionListener() {
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // This can ALSO recursively call the callback
-                    menuItem.setChecked(!isChecked);
-                }
-            };
-        }
+        // the checked state changes even if there is no callback
+        callback = clickHandler;
     }
 
     @Override
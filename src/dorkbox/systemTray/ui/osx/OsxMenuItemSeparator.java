@@ -23,9 +23,9 @@ class OsxMenuItemSeparator implements EntryPeer {
     private final NSMenuItem _native = NSMenuItem.separatorItem();
     private final OsxMenu parent;
 
-    OsxMenuItemSeparator(final OsxMenu parent) {
+    OsxMenuItemSeparator(final OsxMenu parent, final int index) {
         this.parent = parent;
-        parent.addItem(_native);
+        parent.addItem(_native, index);
     }
 
     @Override
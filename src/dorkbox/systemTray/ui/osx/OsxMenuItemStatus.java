@@ -24,8 +24,8 @@ class OsxMenuItemStatus extends OsxBaseMenuItem implements StatusPeer {
     // to prevent GC
     private NSString title;
 
-    OsxMenuItemStatus(final OsxMenu parent) {
-        super(parent);
+    OsxMenuItemStatus(final OsxMenu parent, final int index) {
+        super(parent, index);
         _native.setEnabled(false);
     }
 
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.osx;
+
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.Tray;
+import dorkbox.systemTray.TrayBackend;
+import dorkbox.util.OS;
+
+/**
+ * Provides the {@link _OsxNativeTray}, which is available on macOS
+ */
+public final
+class OsxStatusItemBackend extends TrayBackend {
+    @Override
+    public
+    SystemTray.TrayType getType() {
+        return SystemTray.TrayType.OSXStatusItem;
+    }
+
+    @Override
+    public
+    boolean isSupported() {
+        return OS.isMacOsX();
+    }
+
+    @Override
+    public
+    Class<? extends Tray> getTrayClass() {
+        return _OsxNativeTray.class;
+    }
+}
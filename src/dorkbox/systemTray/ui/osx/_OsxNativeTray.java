@@ -71,7 +71,7 @@ class _OsxNativeTray extends Tray {
 
 
         // we override various methods, because each tray implementation is SLIGHTLY different. This allows us customization.
-        final OsxMenu osxMenu = new OsxMenu(null) {
+        final OsxMenu osxMenu = new OsxMenu(null, 0) {
 
             @Override
             public
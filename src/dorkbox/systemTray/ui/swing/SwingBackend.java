@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.swing;
+
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.Tray;
+import dorkbox.systemTray.TrayBackend;
+
+/**
+ * Provides the {@link _SwingTray}, which is available on all OSes
+ */
+public final
+class SwingBackend extends TrayBackend {
+    @Override
+    public
+    SystemTray.TrayType getType() {
+        return SystemTray.TrayType.Swing;
+    }
+
+    @Override
+    public
+    boolean isSupported() {
+        return true;
+    }
+
+    @Override
+    public
+    Class<? extends Tray> getTrayClass() {
+        return _SwingTray.class;
+    }
+}
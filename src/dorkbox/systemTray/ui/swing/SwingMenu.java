@@ -15,7 +15,18 @@
  */
 package dorkbox.systemTray.ui.swing;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.ADD;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.MOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
+
+import java.awt.Component;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
@@ -30,6 +41,7 @@ import dorkbox.systemTray.Separator;
 import dorkbox.systemTray.Status;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuPeer;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.util.SwingUtil;
 
 // this is a weird composite class, because it must be a Menu, but ALSO a Entry -- so it has both (and duplicate code)
@@ -40,20 +52,44 @@ class SwingMenu implements MenuPeer {
     final JComponent _native;
     private final SwingMenu parent;
 
+    // structural changes (adds/removes) for the entire menu tree, when they are batched. guarded by itself
+    private final List<Runnable> pendingUpdates;
+    private boolean isUpdateScheduled = false;
+
+    // only for the main menu, when the entries are painted by a single component (SystemTray.SWING_VIRTUAL_MENU)
+    private final VirtualMenu virtualMenu;
+
     // This is NOT a copy constructor!
     @SuppressWarnings("IncompleteCopyConstructor")
     public
     SwingMenu(final SwingMenu parent, final Menu entry) {
         this.parent = parent;
 
+        if (parent == null) {
+            this.pendingUpdates = new ArrayList<Runnable>();
+        }
+        else {
+            this.pendingUpdates = parent.pendingUpdates;
+        }
+
         if (parent == null) {
             TrayPopup trayPopup = new TrayPopup();
             if (SystemTray.SWING_UI != null) {
                 trayPopup.setUI(SystemTray.SWING_UI.getMenuUI(trayPopup, null));
             }
             this._native = trayPopup;
+
+            if (SystemTray.SWING_VIRTUAL_MENU) {
+                this.virtualMenu = new VirtualMenu(null, null);
+                new VirtualMenuList(virtualMenu, trayPopup);
+            }
+            else {
+                this.virtualMenu = null;
+            }
         }
         else {
+            this.virtualMenu = null;
+
             JMenu jMenu = new JMenu();
             JPopupMenu popupMenu = jMenu.getPopupMenu(); // ensure the popup menu is created
 
@@ -70,8 +106,12 @@ class SwingMenu implements MenuPeer {
     @Override
     public
     void add(final Menu parentMenu, final Entry entry, final int index) {
-        // must always be called on the EDT
-        SwingUtil.invokeAndWaitQuietly(new Runnable() {
+        if (virtualMenu != null) {
+            virtualMenu.add(parentMenu, entry, index);
+            return;
+        }
+
+        final Runnable runnable = DispatchMetrics.wrap(SWING, ADD, new Runnable() {
             @Override
             public
             void run() {
@@ -81,6 +121,11 @@ class SwingMenu implements MenuPeer {
                     return;
                 }
 
+                // when batched, the entry might have been removed (before it had a peer) while this was waiting
+                if (SystemTray.SWING_BATCHED_UPDATES && !parentMenu.getEntries().contains(entry)) {
+                    return;
+                }
+
                 if (entry instanceof Menu) {
                     SwingMenu swingMenu = new SwingMenu(SwingMenu.this, (Menu) entry);
                     ((Menu) entry).bind(swingMenu, parentMenu, parentMenu.getSystemTray());
@@ -101,15 +146,189 @@ class SwingMenu implements MenuPeer {
                     SwingMenuItem item = new SwingMenuItem(SwingMenu.this, entry);
                     ((MenuItem) entry).bind(item, parentMenu, parentMenu.getSystemTray());
                 }
+
+                // the status is always first
+                if (!(entry instanceof Status)) {
+                    moveLastComponent(index);
+                }
+            }
+        });
+
+        if (SystemTray.SWING_BATCHED_UPDATES) {
+            runStructural(runnable);
+        }
+        else {
+            // must always be called on the EDT
+            SwingUtil.invokeAndWaitQuietly(runnable);
+        }
+    }
+
+    /**
+     * Runs a structural change (an entry is added or removed) on the EDT. When SystemTray.SWING_BATCHED_UPDATES is enabled, the changes
+     * for the entire menu tree are queued, and all of the queued changes are applied together in a single EDT task. The popup layout
+     * is not computed until the popup is shown.
+     */
+    void runStructural(final Runnable runnable) {
+        if (!SystemTray.SWING_BATCHED_UPDATES) {
+            SwingUtil.invokeLater(runnable);
+            return;
+        }
+
+        synchronized (pendingUpdates) {
+            pendingUpdates.add(runnable);
+
+            if (isUpdateScheduled) {
+                return;
+            }
+            isUpdateScheduled = true;
+        }
+
+        SwingUtil.invokeLater(new Runnable() {
+            @Override
+            public
+            void run() {
+                runPendingUpdates();
+            }
+        });
+    }
+
+    /**
+     * ALWAYS CALLED ON THE EDT
+     */
+    private
+    void runPendingUpdates() {
+        // changes can queue more changes (ie: a sub-menu adds it's entries when it is bound), those run in this task as well
+        while (true) {
+            final List<Runnable> updates;
+            synchronized (pendingUpdates) {
+                if (pendingUpdates.isEmpty()) {
+                    isUpdateScheduled = false;
+                    return;
+                }
+
+                updates = new ArrayList<Runnable>(pendingUpdates);
+                pendingUpdates.clear();
+            }
+
+            for (int i = 0, size = updates.size(); i < size; i++) {
+                try {
+                    updates.get(i).run();
+                } catch (Exception e) {
+                    SystemTray.logger.error("Error updating the menu.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Entries add themselves to the end of the menu when they are created, so the entry that was just added has to be moved to it's
+     * index (if that is not the end).
+     *
+     * ALWAYS CALLED ON THE EDT
+     */
+    private
+    void moveLastComponent(final int index) {
+        if (_native instanceof JMenu) {
+            JMenu jMenu = (JMenu) _native;
+            int last = jMenu.getMenuComponentCount() - 1;
+
+            if (index >= 0 && index < last) {
+                Component component = jMenu.getMenuComponent(last);
+                jMenu.remove(component);
+                jMenu.add(component, index);
+            }
+        }
+        else {
+            int last = _native.getComponentCount() - 1;
+
+            if (index >= 0 && index < last) {
+                Component component = _native.getComponent(last);
+                _native.remove(component);
+                _native.add(component, index);
+            }
+        }
+    }
+
+    /**
+     * Only the components that changed position are removed and added again
+     */
+    @Override
+    public
+    void reorder(final int[] order) {
+        if (virtualMenu != null) {
+            virtualMenu.reorder(order);
+            return;
+        }
+
+        runStructural(DispatchMetrics.wrap(SWING, MOVE, new Runnable() {
+            @Override
+            public
+            void run() {
+                final Component[] components;
+                if (_native instanceof JMenu) {
+                    components = ((JMenu) _native).getMenuComponents();
+                }
+                else {
+                    components = _native.getComponents();
+                }
+
+                if (components.length != order.length) {
+                    SystemTray.logger.error("Unable to reorder the menu, the number of entries does not match.");
+                    return;
+                }
+
+                for (int i = 0; i < order.length; i++) {
+                    final Component component = components[order[i]];
+
+                    if (_native instanceof JMenu) {
+                        JMenu jMenu = (JMenu) _native;
+                        if (jMenu.getMenuComponent(i) != component) {
+                            jMenu.remove(component);
+                            jMenu.add(component, i);
+                        }
+                    }
+                    else if (_native.getComponent(i) != component) {
+                        _native.remove(component);
+                        _native.add(component, i);
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * Lays out and paints the tray popup once (off-screen), so that the first time it is shown is not slower than the rest.
+     */
+    public
+    void prewarm() {
+        SwingUtil.invokeLater(new Runnable() {
+            @Override
+            public
+            void run() {
+                if (_native instanceof TrayPopup) {
+                    ((TrayPopup) _native).prewarm();
+                }
             }
         });
     }
 
+    @Override
+    public
+    void startBatch() {
+        // no op. Swing menus are not rebuilt when entries are added or removed
+    }
+
+    @Override
+    public
+    void finishBatch() {
+        // no op. Swing menus are not rebuilt when entries are added or removed
+    }
+
     // is overridden in tray impl
     @Override
     public
     void setImage(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_IMAGE, new Runnable() {
             @Override
             public
             void run() {
@@ -122,20 +341,20 @@ class SwingMenu implements MenuPeer {
                     ((JMenu) _native).setIcon(null);
                 }
             }
-        });
+        }));
     }
 
     // is overridden in tray impl
     @Override
     public
     void setEnabled(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setEnabled(menuItem.getEnabled());
             }
-        });
+        }));
     }
 
 
@@ -143,13 +362,13 @@ class SwingMenu implements MenuPeer {
     @Override
     public
     void setText(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 ((JMenu) _native).setText(menuItem.getText());
             }
-        });
+        }));
     }
 
     @Override
@@ -165,13 +384,13 @@ class SwingMenu implements MenuPeer {
         // Will return 0 as the vKey if it's not set (which will remove the shortcut)
         final int vKey = SwingUtil.getVirtualKey(menuItem.getShortcut());
 
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
                 @Override
                 public
                 void run() {
                     ((JMenu) _native).setMnemonic(vKey);
                 }
-            });
+            }));
     }
 
     @Override
@@ -186,7 +405,7 @@ class SwingMenu implements MenuPeer {
     @Override
     public synchronized
     void remove() {
-        SwingUtil.invokeLater(new Runnable() {
+        runStructural(DispatchMetrics.wrap(SWING, REMOVE, new Runnable() {
             @Override
             public
             void run() {
@@ -201,6 +420,6 @@ class SwingMenu implements MenuPeer {
                     ((TrayPopup) _native).close();
                 }
             }
-        });
+        }));
     }
 }
@@ -15,7 +15,12 @@
  */
 package dorkbox.systemTray.ui.swing;
 
-import java.awt.event.ActionEvent;
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
+
 import java.awt.event.ActionListener;
 import java.io.File;
 
@@ -27,8 +32,10 @@ import dorkbox.systemTray.Entry;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.MenuItemPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.ImageResizeUtil;
+import dorkbox.systemTray.util.SizeAndScalingUtil;
 import dorkbox.util.SwingUtil;
 
 class SwingMenuItem implements MenuItemPeer {
@@ -53,6 +60,16 @@ class SwingMenuItem implements MenuItemPeer {
         _native.setHorizontalAlignment(SwingConstants.LEFT);
         parent._native.add(_native);
 
+        _native.setIcon(getTransparentIcon());
+    }
+
+    /**
+     * ALWAYS CALLED ON THE EDT
+     *
+     * @return the (transparent) icon that entries without an image use, so that all entries have the same padding
+     */
+    static
+    ImageIcon getTransparentIcon() {
         if (transparentIcon == null) {
             try {
                 JMenuItem jMenuItem = new JMenuItem();
@@ -63,8 +80,7 @@ class SwingMenuItem implements MenuItemPeer {
                 }
 
                 // this is the largest size of an image used in a JMenuItem, before the size of the JMenuItem is forced to be larger
-                int menuImageSize = SystemTray.get()
-                                              .getMenuImageSize();
+                int menuImageSize = SizeAndScalingUtil.getMenuImageSize(SystemTray.TrayType.Swing);
 
                 transparentIcon = new ImageIcon(ImageResizeUtil.getTransparentImage(menuImageSize)
                                                                .getAbsolutePath());
@@ -73,13 +89,13 @@ class SwingMenuItem implements MenuItemPeer {
             }
         }
 
-        _native.setIcon(transparentIcon);
+        return transparentIcon;
     }
 
     @Override
     public
     void setImage(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_IMAGE, new Runnable() {
             @Override
             public
             void run() {
@@ -92,34 +108,33 @@ class SwingMenuItem implements MenuItemPeer {
                     _native.setIcon(transparentIcon);
                 }
             }
-        });
+        }));
     }
 
     @Override
     public
     void setEnabled(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setEnabled(menuItem.getEnabled());
             }
-        });
+        }));
     }
 
     @Override
     public
     void setText(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 _native.setText(menuItem.getText());
             }
-        });
+        }));
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final MenuItem menuItem) {
@@ -127,32 +142,16 @@ class SwingMenuItem implements MenuItemPeer {
             _native.removeActionListener(callback);
         }
 
-        callback = menuItem.getCallback();  // can be set to null
-
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
-
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, SWING);
 
+        if (clickHandler.hasCallback()) {
+            callback = clickHandler;
             _native.addActionListener(callback);
         }
+        else {
+            callback = null;
+        }
     }
 
     @Override
@@ -161,32 +160,32 @@ class SwingMenuItem implements MenuItemPeer {
         // Will return 0 as the vKey if it's not set (which will remove the shortcut)
         final int vKey = SwingUtil.getVirtualKey(menuItem.getShortcut());
 
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setMnemonic(vKey);
             }
-        });
+        }));
     }
 
     @Override
     public
     void setTooltip(final MenuItem menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setToolTipText(menuItem.getTooltip());
             }
-        });
+        }));
     }
 
     @Override
     public
     void remove() {
         //noinspection Duplicates
-        SwingUtil.invokeLater(new Runnable() {
+        parent.runStructural(DispatchMetrics.wrap(SWING, REMOVE, new Runnable() {
             @Override
             public
             void run() {
@@ -197,6 +196,6 @@ class SwingMenuItem implements MenuItemPeer {
                 parent._native.remove(_native);
                 _native.removeAll();
             }
-        });
+        }));
     }
 }
@@ -15,8 +15,9 @@
  */
 package dorkbox.systemTray.ui.swing;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
 
 import javax.swing.ImageIcon;
 import javax.swing.JMenuItem;
@@ -25,8 +26,10 @@ import dorkbox.systemTray.Checkbox;
 import dorkbox.systemTray.Entry;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.CheckboxPeer;
-import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.systemTray.util.HeavyCheckMark;
+import dorkbox.systemTray.util.SizeAndScalingUtil;
 import dorkbox.util.FontUtil;
 import dorkbox.util.SwingUtil;
 
@@ -41,6 +44,16 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
     SwingMenuItemCheckbox(final SwingMenu parent, final Entry entry) {
         super(parent, entry);
 
+        getCheckedIcon();
+    }
+
+    /**
+     * ALWAYS CALLED ON THE EDT
+     *
+     * @return the icon for a checked entry
+     */
+    static
+    ImageIcon getCheckedIcon() {
         if (checkedIcon == null) {
             try {
                 JMenuItem jMenuItem = new JMenuItem();
@@ -54,8 +67,7 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
                 int size = FontUtil.getFontHeight(jMenuItem.getFont(), "X");
 
                 // this is the largest size of an image used in a JMenuItem, before the size of the JMenuItem is forced to be larger
-                int menuImageSize = SystemTray.get()
-                                              .getMenuImageSize();
+                int menuImageSize = SizeAndScalingUtil.getMenuImageSize(SystemTray.TrayType.Swing);
 
                 String checkmarkPath;
                 if (SystemTray.SWING_UI != null) {
@@ -69,33 +81,34 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
                 SystemTray.logger.error("Error creating check-mark image.", e);
             }
         }
+
+        return checkedIcon;
     }
 
     @Override
     public
     void setEnabled(final Checkbox menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setEnabled(menuItem.getEnabled());
             }
-        });
+        }));
     }
 
     @Override
     public
     void setText(final Checkbox menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 _native.setText(menuItem.getText());
             }
-        });
+        }));
     }
 
-    @SuppressWarnings("Duplicates")
     @Override
     public
     void setCallback(final Checkbox menuItem) {
@@ -103,35 +116,23 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
             _native.removeActionListener(callback);
         }
 
-        callback = menuItem.getCallback(); // can be set to null
-
-        if (callback != null) {
-            callback = new ActionListener() {
-                final ActionListener cb = menuItem.getCallback();
-
-                @Override
-                public
-                void actionPerformed(ActionEvent e) {
-                    // this will run on the EDT, since we are calling it from the EDT
-                    menuItem.setChecked(!isChecked);
-
-                    // we want it to run on our own with our own action event info (so it is consistent across all platforms)
-                    EventDispatch.runLater(new Runnable() {
-                        @Override
-                        public
-                        void run() {
-                            try {
-                                cb.actionPerformed(new ActionEvent(menuItem, ActionEvent.ACTION_PERFORMED, ""));
-                            } catch (Throwable throwable) {
-                                SystemTray.logger.error("Error calling menu checkbox entry {} click event.", menuItem.getText(), throwable);
-                            }
-                        }
-                    });
-                }
-            };
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, SWING) {
+            @Override
+            protected
+            void onClick() {
+                // this will run on the EDT, since we are calling it from the EDT
+                menuItem.setChecked(!isChecked);
+            }
+        };
 
+        if (clickHandler.hasCallback()) {
+            callback = clickHandler;
             _native.addActionListener(callback);
         }
+        else {
+            callback = null;
+        }
     }
 
     @Override
@@ -140,13 +141,13 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
         // Will return 0 as the vKey if it's not set (which will remove the shortcut)
         final int vKey = SwingUtil.getVirtualKey(menuItem.getShortcut());
 
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setMnemonic(vKey);
             }
-        });
+        }));
     }
 
     @Override
@@ -158,7 +159,7 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
         if (checked != this.isChecked) {
             this.isChecked = checked;
 
-            SwingUtil.invokeLater(new Runnable() {
+            SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
                 @Override
                 public
                 void run() {
@@ -166,22 +167,22 @@ class SwingMenuItemCheckbox extends SwingMenuItem implements CheckboxPeer {
                         _native.setIcon(checkedIcon);
                     }
                     else {
-                        _native.setIcon(SwingMenuItem.transparentIcon);
+                        _native.setIcon(SwingMenuItem.getTransparentIcon());
                     }
                 }
-            });
+            }));
         }
     }
 
     @Override
     public
     void setTooltip(final Checkbox menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
             @Override
             public
             void run() {
                 _native.setToolTipText(menuItem.getTooltip());
             }
-        });
+        }));
     }
 }
@@ -15,11 +15,14 @@
  */
 package dorkbox.systemTray.ui.swing;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+
 import javax.swing.JSeparator;
 
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.EntryPeer;
-import dorkbox.util.SwingUtil;
+import dorkbox.systemTray.util.DispatchMetrics;
 
 class SwingMenuItemSeparator implements EntryPeer {
 
@@ -40,13 +43,13 @@ class SwingMenuItemSeparator implements EntryPeer {
     @Override
     public
     void remove() {
-        SwingUtil.invokeLater(new Runnable() {
+        parent.runStructural(DispatchMetrics.wrap(SWING, REMOVE, new Runnable() {
             @Override
             public
             void run() {
                 parent._native.remove(_native);
                 _native.removeAll();
             }
-        });
+        }));
     }
 }
@@ -15,6 +15,10 @@
  */
 package dorkbox.systemTray.ui.swing;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_TEXT;
+
 import java.awt.Font;
 
 import javax.swing.JMenuItem;
@@ -24,6 +28,7 @@ import dorkbox.systemTray.Entry;
 import dorkbox.systemTray.Status;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.peer.StatusPeer;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.util.SwingUtil;
 
 class SwingMenuItemStatus implements StatusPeer {
@@ -54,25 +59,25 @@ class SwingMenuItemStatus implements StatusPeer {
     @Override
     public
     void setText(final Status menuItem) {
-        SwingUtil.invokeLater(new Runnable() {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_TEXT, new Runnable() {
             @Override
             public
             void run() {
                 _native.setText(menuItem.getText());
             }
-        });
+        }));
     }
 
     @Override
     public
     void remove() {
-        SwingUtil.invokeLater(new Runnable() {
+        parent.runStructural(DispatchMetrics.wrap(SWING, REMOVE, new Runnable() {
             @Override
             public
             void run() {
                 parent._native.remove(_native);
                 _native.removeAll();
             }
-        });
+        }));
     }
 }
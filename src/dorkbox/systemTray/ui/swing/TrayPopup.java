@@ -17,10 +17,13 @@ package dorkbox.systemTray.ui.swing;
 
 import java.awt.Dimension;
 import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
@@ -28,11 +31,14 @@ import java.lang.reflect.Method;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
+import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
 
 import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.SizeAndScalingUtil;
 import dorkbox.util.OS;
 import dorkbox.util.ScreenUtil;
 
@@ -51,6 +57,14 @@ class TrayPopup extends JPopupMenu {
 
     private volatile File iconFile;
 
+    // the popup is only laid out when it is shown, and that size is kept until the entries (or their sizes) change. EDT only
+    private Dimension cachedSize = null;
+
+    // the time of the click that is showing the popup (until it is painted), and when the popup started to show
+    private volatile long clickTime = 0L;
+    private volatile long showTime = 0L;
+    private volatile long lastShowLatency = -1L;
+
     @SuppressWarnings("unchecked")
     public
     TrayPopup() {
@@ -134,9 +148,113 @@ class TrayPopup extends JPopupMenu {
         hiddenDialog.dispatchEvent(new WindowEvent(hiddenDialog, WindowEvent.WINDOW_CLOSING));
     }
 
+    /**
+     * Lays out the popup (if anything has changed since the last time it was laid out)
+     *
+     * @return the size of the popup
+     */
+    private
+    Dimension layoutPopup() {
+        // adding/removing entries, or changing their text/image, invalidates the popup
+        if (cachedSize == null || !isValid()) {
+            pack();
+            cachedSize = getPreferredSize();
+        }
+
+        return cachedSize;
+    }
+
+    /**
+     * Lays out and paints the popup once (off-screen), so that the UI delegates, fonts, etc. are already initialized the first time the
+     * popup is shown. If there are no entries yet, a sample entry is used.
+     * <p>
+     * ALWAYS CALLED ON THE EDT
+     */
+    void prewarm() {
+        final long startTime = System.nanoTime();
+
+        JMenuItem sample = null;
+        if (getComponentCount() == 0) {
+            sample = new JMenuItem("X");
+            if (SystemTray.SWING_UI != null) {
+                sample.setUI(SystemTray.SWING_UI.getItemUI(sample, null));
+            }
+            add(sample);
+        }
+
+        try {
+            final Dimension size = layoutPopup();
+            setSize(size);
+            validate();
+
+            final BufferedImage image = new BufferedImage(Math.max(1, size.width), Math.max(1, size.height), BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g = image.createGraphics();
+            try {
+                paint(g);
+            } finally {
+                g.dispose();
+            }
+
+            // this is also used every time the popup is shown
+            ScreenUtil.getScreenBoundsAt(new Point(0, 0));
+        } catch (Exception e) {
+            SystemTray.logger.error("Error prewarming the tray menu.", e);
+        } finally {
+            if (sample != null) {
+                remove(sample);
+            }
+        }
+
+        if (SystemTray.DEBUG) {
+            SystemTray.logger.debug("Prewarmed the tray menu in {} ms", (System.nanoTime() - startTime) / 1000000.0D);
+        }
+    }
+
+    /**
+     * @return how long (in nanoseconds) it took the last time the popup was shown, from the click until the popup was painted. -1 if
+     *         the popup has not been shown yet.
+     */
+    public
+    long getLastShowLatency() {
+        return lastShowLatency;
+    }
+
+    @Override
     public
-    void doShow(final Point point, int offset) {
-        Dimension size = getPreferredSize();
+    void paint(final Graphics g) {
+        super.paint(g);
+
+        final long clickTime = this.clickTime;
+        if (clickTime != 0L) {
+            this.clickTime = 0L;
+
+            final long paintTime = System.nanoTime();
+            lastShowLatency = paintTime - clickTime;
+            DispatchMetrics.record(DispatchMetrics.Backend.SWING, DispatchMetrics.Operation.POPUP, showTime - clickTime, paintTime - showTime);
+
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Tray menu shown in {} ms", lastShowLatency / 1000000.0D);
+            }
+        }
+    }
+
+    public
+    void doShow(final Point point, final int offset) {
+        doShow(point, offset, System.nanoTime());
+    }
+
+    /**
+     * @param clickTime the time (System.nanoTime) of the click that is showing the popup. The time until the popup is painted is recorded.
+     */
+    public
+    void doShow(final Point point, int offset, final long clickTime) {
+        this.showTime = System.nanoTime();
+        this.clickTime = clickTime;
+
+        // the tray (and so the menu) can be on a screen with a different scale than the default screen
+        SizeAndScalingUtil.updateScaleAt(point);
+
+        Dimension size = layoutPopup();
         Rectangle bounds = ScreenUtil.getScreenBoundsAt(point);
 
         int x = point.x;
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.swing;
+
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.ADD;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.MOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.Separator;
+import dorkbox.systemTray.Status;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.peer.MenuPeer;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.util.SwingUtil;
+
+/**
+ * The peer for a menu (and the main menu) that is painted by a {@link VirtualMenuList}. This only keeps the entries of the menu, in order.
+ * <p>
+ * Entries are bound immediately (on the calling thread), because they have no swing components to create, and are then inserted into
+ * the list of entries on the EDT.
+ */
+class VirtualMenu extends VirtualMenuEntry implements MenuPeer {
+
+    private final VirtualMenu root;
+
+    // EDT only
+    final List<VirtualMenuEntry> entries = new ArrayList<VirtualMenuEntry>();
+
+    // only used by the main menu
+    volatile VirtualMenuList list;
+    private final AtomicBoolean isRefreshScheduled = new AtomicBoolean(false);
+
+    /**
+     * @param parent the parent menu, or null for the main menu
+     * @param entry the menu entry, or null for the main menu
+     */
+    VirtualMenu(final VirtualMenu parent, final Menu entry) {
+        super(parent, entry);
+
+        if (parent == null) {
+            this.root = this;
+        }
+        else {
+            this.root = parent.root;
+        }
+    }
+
+    @Override
+    public
+    void add(final Menu parentMenu, final Entry entry, final int index) {
+        // don't add this entry if it's already been added via another method. Because of threading via swing/gtk, entries can
+        // POSSIBLY get added twice. Once via add() and once via bind().
+        if (entry.hasPeer()) {
+            return;
+        }
+
+        final VirtualMenuEntry item;
+        if (entry instanceof Menu) {
+            VirtualMenu menu = new VirtualMenu(this, (Menu) entry);
+            item = menu;
+            ((Menu) entry).bind(menu, parentMenu, parentMenu.getSystemTray());
+        }
+        else {
+            item = new VirtualMenuEntry(this, entry);
+
+            if (entry instanceof Separator) {
+                entry.bind(item, parentMenu, parentMenu.getSystemTray());
+            }
+            else if (entry instanceof Checkbox) {
+                ((Checkbox) entry).bind(item, parentMenu, parentMenu.getSystemTray());
+            }
+            else if (entry instanceof Status) {
+                ((Status) entry).bind(item, parentMenu, parentMenu.getSystemTray());
+            }
+            else if (entry instanceof MenuItem) {
+                ((MenuItem) entry).bind(item, parentMenu, parentMenu.getSystemTray());
+            }
+        }
+
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, ADD, new Runnable() {
+            @Override
+            public
+            void run() {
+                // the status is always first
+                if (entry instanceof Status) {
+                    entries.add(0, item);
+                }
+                else if (index >= 0 && index < entries.size()) {
+                    entries.add(index, item);
+                }
+                else {
+                    entries.add(item);
+                }
+
+                changed();
+            }
+        }));
+    }
+
+    void removeEntry(final VirtualMenuEntry item) {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, REMOVE, new Runnable() {
+            @Override
+            public
+            void run() {
+                entries.remove(item);
+
+                VirtualMenuList list = root.list;
+                if (list != null && item instanceof VirtualMenu) {
+                    list.menuRemoved((VirtualMenu) item);
+                }
+
+                changed();
+            }
+        }));
+    }
+
+    @Override
+    public
+    void reorder(final int[] order) {
+        SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, MOVE, new Runnable() {
+            @Override
+            public
+            void run() {
+                if (order.length != entries.size()) {
+                    SystemTray.logger.error("Unable to reorder the menu, the number of entries does not match.");
+                    return;
+                }
+
+                final VirtualMenuEntry[] copy = entries.toArray(new VirtualMenuEntry[order.length]);
+                for (int i = 0; i < order.length; i++) {
+                    entries.set(i, copy[order[i]]);
+                }
+
+                changed();
+            }
+        }));
+    }
+
+    /**
+     * Something in the menu tree has changed, so the list is laid out and painted again. This is only done once for all of the
+     * changes that happen before the EDT gets to it.
+     */
+    void changed() {
+        final VirtualMenu root = this.root;
+
+        if (root.isRefreshScheduled.compareAndSet(false, true)) {
+            SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
+                @Override
+                public
+                void run() {
+                    root.isRefreshScheduled.set(false);
+
+                    VirtualMenuList list = root.list;
+                    if (list != null) {
+                        list.refresh();
+                    }
+                }
+            }));
+        }
+    }
+
+    @Override
+    public
+    void startBatch() {
+        // no op. Changes to the entries are already combined
+    }
+
+    @Override
+    public
+    void finishBatch() {
+        // no op. Changes to the entries are already combined
+    }
+
+    @Override
+    public
+    void setCallback(final MenuItem menuItem) {
+        // can't have a callback for menus!
+    }
+
+    @Override
+    public
+    void remove() {
+        if (parent != null) {
+            parent.removeEntry(this);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.swing;
+
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.Status;
+import dorkbox.systemTray.peer.CheckboxPeer;
+import dorkbox.systemTray.peer.MenuItemPeer;
+import dorkbox.systemTray.peer.SeparatorPeer;
+import dorkbox.systemTray.peer.StatusPeer;
+import dorkbox.systemTray.util.ClickHandler;
+
+/**
+ * The peer for an entry that is painted by a {@link VirtualMenuList}, instead of having it's own swing component.
+ * <p>
+ * There is nothing to update when the entry changes, because the list paints the entries directly from their current state. The list is
+ * only told to paint again (and, if the text or image changed, that this entry has to be measured again).
+ */
+class VirtualMenuEntry implements MenuItemPeer, CheckboxPeer, StatusPeer, SeparatorPeer {
+
+    // null for the main menu
+    final VirtualMenu parent;
+
+    // null for the main menu
+    final Entry entry;
+
+    volatile ClickHandler clickHandler;
+
+    // set (from any thread) when the text or image changes, so that this entry is measured again
+    volatile boolean isSizeChanged = true;
+
+    // the width this entry needs. EDT only
+    int width = 0;
+
+    VirtualMenuEntry(final VirtualMenu parent, final Entry entry) {
+        this.parent = parent;
+        this.entry = entry;
+    }
+
+    private
+    void changed(final boolean isSizeChanged) {
+        if (isSizeChanged) {
+            this.isSizeChanged = true;
+        }
+
+        parent.changed();
+    }
+
+    @Override
+    public
+    void setImage(final MenuItem menuItem) {
+        changed(true);
+    }
+
+    @Override
+    public
+    void setEnabled(final MenuItem menuItem) {
+        changed(false);
+    }
+
+    @Override
+    public
+    void setText(final MenuItem menuItem) {
+        changed(true);
+    }
+
+    @Override
+    public
+    void setCallback(final MenuItem menuItem) {
+        // this is created once, so that a click only has to execute the callback
+        final ClickHandler clickHandler = new ClickHandler(menuItem, SWING);
+
+        if (clickHandler.hasCallback()) {
+            this.clickHandler = clickHandler;
+        }
+        else {
+            this.clickHandler = null;
+        }
+    }
+
+    @Override
+    public
+    void setShortcut(final MenuItem menuItem) {
+        changed(false);
+    }
+
+    @Override
+    public
+    void setTooltip(final MenuItem menuItem) {
+        // the tooltip is looked up when it is shown
+    }
+
+    @Override
+    public
+    void setEnabled(final Checkbox menuItem) {
+        changed(false);
+    }
+
+    @Override
+    public
+    void setText(final Checkbox menuItem) {
+        changed(true);
+    }
+
+    @Override
+    public
+    void setCallback(final Checkbox menuItem) {
+        // this is created once, so that a click only has to execute the callback
+        this.clickHandler = new ClickHandler(menuItem, SWING) {
+            @Override
+            protected
+            void onClick() {
+                // this will run on the EDT, since we are calling it from the EDT
+                menuItem.setChecked(!menuItem.getChecked());
+            }
+        };
+    }
+
+    @Override
+    public
+    void setShortcut(final Checkbox menuItem) {
+        changed(false);
+    }
+
+    @Override
+    public
+    void setTooltip(final Checkbox menuItem) {
+        // the tooltip is looked up when it is shown
+    }
+
+    @Override
+    public
+    void setChecked(final Checkbox menuItem) {
+        changed(false);
+    }
+
+    @Override
+    public
+    void setText(final Status menuItem) {
+        changed(true);
+    }
+
+    @Override
+    public
+    void remove() {
+        clickHandler = null;
+        parent.removeEntry(this);
+    }
+}
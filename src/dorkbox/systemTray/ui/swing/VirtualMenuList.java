@@ -0,0 +1,701 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.swing;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.CellRendererPane;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JMenu;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JSeparator;
+import javax.swing.MenuSelectionManager;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.ToolTipManager;
+import javax.swing.event.MenuKeyEvent;
+import javax.swing.event.MenuKeyListener;
+import javax.swing.event.MouseInputAdapter;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.Separator;
+import dorkbox.systemTray.Status;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.util.SwingUtil;
+
+/**
+ * A single component that paints the entries of a menu, instead of having a swing component for every entry. Only the entries that are
+ * visible are painted, and they are painted with one (shared) JMenuItem/JMenu/JSeparator per type of entry, so the Look & Feel (and the
+ * SwingUIFactory, if specified) is the same as for the normal swing menus.
+ * <p>
+ * Sub-menus are shown in the same list (with the first entry going back to the parent menu), instead of as a separate popup.
+ * <p>
+ * ALWAYS USED ON THE EDT
+ */
+class VirtualMenuList extends JComponent implements Scrollable {
+    private static final long serialVersionUID = 1L;
+
+    // images that have been loaded for the entries, so they are not loaded every time they are painted
+    private static final int MAX_CACHED_ICONS = 256;
+
+    private final VirtualMenu root;
+    private final JPopupMenu popup;
+    private final JScrollPane scrollPane;
+
+    private final CellRendererPane rendererPane = new CellRendererPane();
+    private final JMenuItem itemStamp = new JMenuItem();
+    private final JMenuItem statusStamp = new JMenuItem();
+    private final JMenu menuStamp = new JMenu();
+    private final JSeparator separatorStamp = new JSeparator(JSeparator.HORIZONTAL);
+
+    private final Map<File, ImageIcon> icons = new LinkedHashMap<File, ImageIcon>(16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected
+        boolean removeEldestEntry(final Map.Entry<File, ImageIcon> eldest) {
+            return size() > MAX_CACHED_ICONS;
+        }
+    };
+
+    // the menu that is currently shown
+    private VirtualMenu current;
+
+    // the row that is highlighted, or -1
+    private int selected = -1;
+
+    // the layout of the rows. rowY[i] is the top of row i, and rowY[rowCount] is the total height
+    private boolean isLayoutValid = false;
+    private int rowCount = 0;
+    private int[] rowY = new int[1];
+    private int preferredWidth = 0;
+
+    private int itemHeight = 0;
+    private int statusHeight = 0;
+    private int menuHeight = 0;
+    private int separatorHeight = 0;
+
+
+    /**
+     * Creates the list and adds it to the popup
+     */
+    VirtualMenuList(final VirtualMenu root, final JPopupMenu popup) {
+        this.root = root;
+        this.popup = popup;
+        this.current = root;
+
+        if (SystemTray.SWING_UI != null) {
+            itemStamp.setUI(SystemTray.SWING_UI.getItemUI(itemStamp, null));
+            statusStamp.setUI(SystemTray.SWING_UI.getItemUI(statusStamp, null));
+            menuStamp.setUI(SystemTray.SWING_UI.getItemUI(menuStamp, null));
+            separatorStamp.setUI(SystemTray.SWING_UI.getSeparatorUI(separatorStamp));
+        }
+
+        itemStamp.setHorizontalAlignment(SwingConstants.LEFT);
+        menuStamp.setHorizontalAlignment(SwingConstants.LEFT);
+        statusStamp.setHorizontalAlignment(SwingConstants.LEFT);
+
+        Font font = statusStamp.getFont();
+        statusStamp.setFont(font.deriveFont(Font.BOLD));
+        statusStamp.setEnabled(false);
+
+        add(rendererPane);
+        setOpaque(false);
+        ToolTipManager.sharedInstance().registerComponent(this);
+
+        MouseInputAdapter mouseListener = new MouseInputAdapter() {
+            @Override
+            public
+            void mouseMoved(final MouseEvent e) {
+                select(rowAt(e.getY()), false);
+            }
+
+            @Override
+            public
+            void mouseDragged(final MouseEvent e) {
+                select(rowAt(e.getY()), false);
+            }
+
+            @Override
+            public
+            void mouseExited(final MouseEvent e) {
+                select(-1, false);
+            }
+
+            @Override
+            public
+            void mouseReleased(final MouseEvent e) {
+                activate(rowAt(e.getY()));
+            }
+        };
+        addMouseListener(mouseListener);
+        addMouseMotionListener(mouseListener);
+
+        // key events are sent to the popup (via the MenuSelectionManager), not to this component
+        popup.addMenuKeyListener(new MenuKeyListener() {
+            @Override
+            public
+            void menuKeyTyped(final MenuKeyEvent e) {
+                if (activateShortcut(e.getKeyChar())) {
+                    e.consume();
+                }
+            }
+
+            @Override
+            public
+            void menuKeyPressed(final MenuKeyEvent e) {
+                if (keyPressed(e.getKeyCode())) {
+                    e.consume();
+                }
+            }
+
+            @Override
+            public
+            void menuKeyReleased(final MenuKeyEvent e) {
+            }
+        });
+
+        // always start at the main menu
+        popup.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public
+            void popupMenuWillBecomeVisible(final PopupMenuEvent e) {
+            }
+
+            @Override
+            public
+            void popupMenuWillBecomeInvisible(final PopupMenuEvent e) {
+                selected = -1;
+                if (current != VirtualMenuList.this.root) {
+                    show(VirtualMenuList.this.root);
+                }
+            }
+
+            @Override
+            public
+            void popupMenuCanceled(final PopupMenuEvent e) {
+            }
+        });
+
+        scrollPane = new JScrollPane(this, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder());
+        scrollPane.setOpaque(false);
+        scrollPane.getViewport().setOpaque(false);
+        popup.add(scrollPane);
+
+        root.list = this;
+    }
+
+    /**
+     * Entries have been added, removed or changed
+     */
+    void refresh() {
+        isLayoutValid = false;
+        revalidate();
+        repaint();
+
+        // the scroll pane is a validate root, so the popup has to be told that it's size has changed
+        scrollPane.invalidate();
+        popup.invalidate();
+
+        if (popup.isVisible()) {
+            popup.pack();
+        }
+    }
+
+    /**
+     * A menu was removed, so if it (or one of it's sub-menus) is shown, go back to the main menu
+     */
+    void menuRemoved(final VirtualMenu menu) {
+        VirtualMenu parent = current;
+        while (parent != null) {
+            if (parent == menu) {
+                show(root);
+                return;
+            }
+            parent = parent.parent;
+        }
+    }
+
+    private
+    void show(final VirtualMenu menu) {
+        current = menu;
+        selected = -1;
+
+        refresh();
+        scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+    }
+
+    // the entry for a row, or null if it is the row that goes back to the parent menu
+    private
+    VirtualMenuEntry getEntry(final int row) {
+        if (current == root) {
+            return current.entries.get(row);
+        }
+
+        if (row == 0) {
+            return null;
+        }
+        return current.entries.get(row - 1);
+    }
+
+    private
+    void layoutRows() {
+        if (isLayoutValid) {
+            return;
+        }
+        isLayoutValid = true;
+
+        if (itemHeight == 0) {
+            // every entry of the same type has the same height, since images are resized to the same size
+            itemStamp.setText("X");
+            itemStamp.setIcon(SwingMenuItem.getTransparentIcon());
+            itemHeight = itemStamp.getPreferredSize().height;
+
+            statusStamp.setText("X");
+            statusHeight = statusStamp.getPreferredSize().height;
+
+            menuStamp.setText("X");
+            menuStamp.setIcon(SwingMenuItem.getTransparentIcon());
+            menuHeight = menuStamp.getPreferredSize().height;
+
+            separatorHeight = separatorStamp.getPreferredSize().height;
+        }
+
+        final List<VirtualMenuEntry> entries = current.entries;
+        rowCount = current == root ? entries.size() : entries.size() + 1;
+
+        if (rowY.length < rowCount + 1) {
+            rowY = new int[Math.max(rowCount + 1, rowY.length * 2)];
+        }
+
+        int y = 0;
+        int width = 0;
+        for (int i = 0; i < rowCount; i++) {
+            rowY[i] = y;
+
+            final VirtualMenuEntry entry = getEntry(i);
+            if (entry == null) {
+                JComponent stamp = prepare(i);
+                y += itemHeight;
+                width = Math.max(width, stamp.getPreferredSize().width);
+                continue;
+            }
+
+            y += getHeight(entry.entry);
+
+            // only the entries that have changed are measured again
+            if (entry.isSizeChanged) {
+                entry.isSizeChanged = false;
+                entry.width = prepare(i).getPreferredSize().width;
+            }
+            width = Math.max(width, entry.width);
+        }
+
+        rowY[rowCount] = y;
+        preferredWidth = width;
+
+        if (selected >= rowCount) {
+            selected = -1;
+        }
+    }
+
+    private
+    int getHeight(final Entry entry) {
+        if (entry instanceof Separator) {
+            return separatorHeight;
+        }
+        if (entry instanceof Status) {
+            return statusHeight;
+        }
+        if (entry instanceof Menu) {
+            return menuHeight;
+        }
+        return itemHeight;
+    }
+
+    private
+    int rowAt(final int y) {
+        layoutRows();
+
+        if (y < 0 || y >= rowY[rowCount]) {
+            return -1;
+        }
+
+        // binary search for the last row that starts at (or before) y
+        int low = 0;
+        int high = rowCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (rowY[middle] <= y) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private
+    Rectangle getRowBounds(final int row) {
+        layoutRows();
+        return new Rectangle(0, rowY[row], getWidth(), rowY[row + 1] - rowY[row]);
+    }
+
+    private
+    ImageIcon getIcon(final File imageFile) {
+        if (imageFile == null) {
+            return SwingMenuItem.getTransparentIcon();
+        }
+
+        ImageIcon icon = icons.get(imageFile);
+        if (icon == null) {
+            icon = new ImageIcon(imageFile.getAbsolutePath());
+            icons.put(imageFile, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * Sets up the stamp that paints the row
+     */
+    private
+    JComponent prepare(final int row) {
+        final boolean isSelected = row == selected;
+        final VirtualMenuEntry entry = getEntry(row);
+
+        if (entry == null) {
+            // go back to the parent menu
+            itemStamp.setText("\u00AB " + ((Menu) current.entry).getText());
+            itemStamp.setIcon(SwingMenuItem.getTransparentIcon());
+            itemStamp.setEnabled(true);
+            itemStamp.setMnemonic(0);
+            itemStamp.getModel().setArmed(isSelected);
+            return itemStamp;
+        }
+
+        final Entry item = entry.entry;
+        if (item instanceof Separator) {
+            return separatorStamp;
+        }
+
+        if (item instanceof Status) {
+            statusStamp.setText(((Status) item).getText());
+            return statusStamp;
+        }
+
+        if (item instanceof Checkbox) {
+            Checkbox checkbox = (Checkbox) item;
+
+            itemStamp.setText(checkbox.getText());
+            itemStamp.setIcon(checkbox.getChecked() ? SwingMenuItemCheckbox.getCheckedIcon() : SwingMenuItem.getTransparentIcon());
+            itemStamp.setEnabled(checkbox.getEnabled());
+            itemStamp.setMnemonic(SwingUtil.getVirtualKey(checkbox.getShortcut()));
+            itemStamp.getModel().setArmed(isSelected);
+            return itemStamp;
+        }
+
+        final MenuItem menuItem = (MenuItem) item;
+        final JMenuItem stamp = item instanceof Menu ? menuStamp : itemStamp;
+
+        stamp.setText(menuItem.getText());
+        stamp.setIcon(getIcon(menuItem.getImage()));
+        stamp.setEnabled(menuItem.getEnabled());
+        stamp.setMnemonic(SwingUtil.getVirtualKey(menuItem.getShortcut()));
+        stamp.getModel().setArmed(isSelected);
+        return stamp;
+    }
+
+    private
+    boolean isSelectable(final int row) {
+        if (row < 0 || row >= rowCount) {
+            return false;
+        }
+
+        final VirtualMenuEntry entry = getEntry(row);
+        if (entry == null) {
+            return true;
+        }
+
+        final Entry item = entry.entry;
+        if (item instanceof Checkbox) {
+            return ((Checkbox) item).getEnabled();
+        }
+        if (item instanceof MenuItem) {
+            return ((MenuItem) item).getEnabled();
+        }
+        return false;
+    }
+
+    private
+    void select(int row, final boolean scrollToRow) {
+        if (!isSelectable(row)) {
+            row = -1;
+        }
+
+        if (row == selected) {
+            return;
+        }
+
+        if (selected >= 0 && selected < rowCount) {
+            repaint(getRowBounds(selected));
+        }
+
+        selected = row;
+
+        if (row >= 0) {
+            Rectangle bounds = getRowBounds(row);
+            repaint(bounds);
+
+            if (scrollToRow) {
+                scrollRectToVisible(bounds);
+            }
+        }
+    }
+
+    // moves the selection up/down to the next row that can be selected
+    private
+    void moveSelection(final int start, final int direction) {
+        for (int row = start; row >= 0 && row < rowCount; row += direction) {
+            if (isSelectable(row)) {
+                select(row, true);
+                return;
+            }
+        }
+    }
+
+    private
+    void activate(final int row) {
+        if (!isSelectable(row)) {
+            return;
+        }
+
+        final VirtualMenuEntry entry = getEntry(row);
+        if (entry == null) {
+            show(current.parent);
+            return;
+        }
+
+        if (entry instanceof VirtualMenu) {
+            show((VirtualMenu) entry);
+            return;
+        }
+
+        // the same as a swing menu item. The menu is closed before the callback is executed
+        final ClickHandler clickHandler = entry.clickHandler;
+        MenuSelectionManager.defaultManager().clearSelectedPath();
+
+        if (clickHandler != null) {
+            clickHandler.actionPerformed(null);
+        }
+    }
+
+    private
+    boolean activateShortcut(final char keyChar) {
+        final int vKey = SwingUtil.getVirtualKey(keyChar);
+        if (vKey == 0) {
+            return false;
+        }
+
+        layoutRows();
+        for (int row = 0; row < rowCount; row++) {
+            final VirtualMenuEntry entry = getEntry(row);
+            if (entry == null) {
+                continue;
+            }
+
+            final Entry item = entry.entry;
+            char shortcut = 0;
+            if (item instanceof Checkbox) {
+                shortcut = ((Checkbox) item).getShortcut();
+            }
+            else if (item instanceof MenuItem) {
+                shortcut = ((MenuItem) item).getShortcut();
+            }
+
+            if (shortcut != 0 && SwingUtil.getVirtualKey(shortcut) == vKey && isSelectable(row)) {
+                activate(row);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the key was used
+     */
+    private
+    boolean keyPressed(final int keyCode) {
+        layoutRows();
+
+        final int visibleRows = Math.max(1, getVisibleRect().height / Math.max(1, itemHeight));
+
+        switch (keyCode) {
+            case KeyEvent.VK_UP:
+                moveSelection(selected < 0 ? rowCount - 1 : selected - 1, -1);
+                return true;
+
+            case KeyEvent.VK_DOWN:
+                moveSelection(selected + 1, 1);
+                return true;
+
+            case KeyEvent.VK_HOME:
+                moveSelection(0, 1);
+                return true;
+
+            case KeyEvent.VK_END:
+                moveSelection(rowCount - 1, -1);
+                return true;
+
+            case KeyEvent.VK_PAGE_UP:
+                moveSelection(Math.max(0, selected - visibleRows), 1);
+                return true;
+
+            case KeyEvent.VK_PAGE_DOWN:
+                moveSelection(Math.min(rowCount - 1, selected + visibleRows), -1);
+                return true;
+
+            case KeyEvent.VK_ENTER:
+            case KeyEvent.VK_SPACE:
+                activate(selected);
+                return true;
+
+            case KeyEvent.VK_RIGHT:
+                if (selected >= 0 && getEntry(selected) instanceof VirtualMenu) {
+                    activate(selected);
+                }
+                return true;
+
+            case KeyEvent.VK_LEFT:
+            case KeyEvent.VK_BACK_SPACE:
+            case KeyEvent.VK_ESCAPE:
+                if (current != root) {
+                    show(current.parent);
+                    return true;
+                }
+
+                // escape closes the popup
+                return keyCode != KeyEvent.VK_ESCAPE;
+
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public
+    String getToolTipText(final MouseEvent event) {
+        final int row = rowAt(event.getY());
+        if (row < 0) {
+            return null;
+        }
+
+        final VirtualMenuEntry entry = getEntry(row);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.entry instanceof Checkbox) {
+            return ((Checkbox) entry.entry).getTooltip();
+        }
+        if (entry.entry instanceof MenuItem) {
+            return ((MenuItem) entry.entry).getTooltip();
+        }
+        return null;
+    }
+
+    @Override
+    protected
+    void paintComponent(final Graphics g) {
+        layoutRows();
+
+        final Rectangle clip = g.getClipBounds();
+        final int width = getWidth();
+
+        // only the rows that are visible are painted
+        int row = Math.max(0, rowAt(clip.y));
+        final int bottom = clip.y + clip.height;
+
+        for (; row < rowCount && rowY[row] < bottom; row++) {
+            rendererPane.paintComponent(g, prepare(row), this, 0, rowY[row], width, rowY[row + 1] - rowY[row], true);
+        }
+    }
+
+    @Override
+    public
+    Dimension getPreferredSize() {
+        layoutRows();
+        return new Dimension(preferredWidth, rowY[rowCount]);
+    }
+
+    @Override
+    public
+    Dimension getPreferredScrollableViewportSize() {
+        final Dimension size = getPreferredSize();
+
+        // the popup is never taller than most of the screen, the rest of the entries are scrolled to
+        final int maxHeight = Toolkit.getDefaultToolkit().getScreenSize().height * 3 / 4;
+        size.height = Math.min(size.height, maxHeight);
+        return size;
+    }
+
+    @Override
+    public
+    int getScrollableUnitIncrement(final Rectangle visibleRect, final int orientation, final int direction) {
+        layoutRows();
+        return Math.max(1, itemHeight);
+    }
+
+    @Override
+    public
+    int getScrollableBlockIncrement(final Rectangle visibleRect, final int orientation, final int direction) {
+        return Math.max(1, visibleRect.height - itemHeight);
+    }
+
+    @Override
+    public
+    boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public
+    boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -15,6 +15,11 @@
  */
 package dorkbox.systemTray.ui.swing;
 
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.REMOVE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_STATE;
+
 import java.awt.AWTException;
 import java.awt.Image;
 import java.awt.SystemTray;
@@ -28,6 +33,7 @@ import javax.swing.JPopupMenu;
 
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.Tray;
+import dorkbox.systemTray.util.DispatchMetrics;
 import dorkbox.util.OS;
 import dorkbox.util.SwingUtil;
 import dorkbox.util.jna.linux.GtkEventDispatch;
@@ -66,7 +72,7 @@ class _SwingTray extends Tray {
             @Override
             public
             void setEnabled(final MenuItem menuItem) {
-                SwingUtil.invokeLater(new Runnable() {
+                SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -93,7 +99,7 @@ class _SwingTray extends Tray {
                             }
                         }
                     }
-                });
+                }));
             }
 
             @Override
@@ -104,7 +110,7 @@ class _SwingTray extends Tray {
                     return;
                 }
 
-                SwingUtil.invokeLater(new Runnable() {
+                SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_IMAGE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -121,7 +127,6 @@ class _SwingTray extends Tray {
                             trayIcon = new TrayIcon(trayImage);
 
                             JPopupMenu popupMenu = (JPopupMenu) _native;
-                            popupMenu.pack();
                             popupMenu.setFocusable(true);
 
                             // appindicators DO NOT support anything other than PLAIN gtk-menus, which do not support tooltips
@@ -133,8 +138,11 @@ class _SwingTray extends Tray {
                                 @Override
                                 public
                                 void mousePressed(MouseEvent e) {
+                                    // the time of the click, including how long it took for the event to get here
+                                    long clickTime = System.nanoTime() - (System.currentTimeMillis() - e.getWhen()) * 1000000L;
+
                                     TrayPopup popupMenu = (TrayPopup) _native;
-                                    popupMenu.doShow(e.getPoint(), 0);
+                                    popupMenu.doShow(e.getPoint(), 0, clickTime);
                                 }
                             });
 
@@ -153,7 +161,7 @@ class _SwingTray extends Tray {
 
                         ((TrayPopup) _native).setTitleBarImage(imageFile);
                     }
-                });
+                }));
             }
 
             @Override
@@ -180,7 +188,7 @@ class _SwingTray extends Tray {
 
                 tooltipText = text;
 
-                SwingUtil.invokeLater(new Runnable() {
+                SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_STATE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -190,13 +198,13 @@ class _SwingTray extends Tray {
                             trayIcon.setToolTip(text);
                         }
                     }
-                });
+                }));
             }
 
             @Override
             public
             void remove() {
-                SwingUtil.invokeLater(new Runnable() {
+                SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, REMOVE, new Runnable() {
                     @Override
                     public
                     void run() {
@@ -209,7 +217,7 @@ class _SwingTray extends Tray {
 
                         tray = null;
                     }
-                });
+                }));
 
                 super.remove();
 
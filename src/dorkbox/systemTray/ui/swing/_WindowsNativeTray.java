@@ -19,6 +19,9 @@ import static com.sun.jna.platform.win32.WinDef.HWND;
 import static com.sun.jna.platform.win32.WinDef.LPARAM;
 import static com.sun.jna.platform.win32.WinDef.WPARAM;
 import static com.sun.jna.platform.win32.WinUser.WM_QUIT;
+import static dorkbox.systemTray.util.DispatchMetrics.Backend.SWING;
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.SET_IMAGE;
+import static dorkbox.systemTray.util.NativeResources.Kind.ICON;
 import static dorkbox.util.jna.windows.Shell32.NIM_ADD;
 import static dorkbox.util.jna.windows.Shell32.NIM_DELETE;
 import static dorkbox.util.jna.windows.Shell32.NIM_MODIFY;
@@ -39,6 +42,8 @@ import com.sun.jna.platform.win32.WinDef.POINT;
 import dorkbox.systemTray.MenuItem;
 import dorkbox.systemTray.SystemTray;
 import dorkbox.systemTray.Tray;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.NativeResources;
 import dorkbox.util.ImageUtil;
 import dorkbox.util.SwingUtil;
 import dorkbox.util.jna.windows.HBITMAPWrap;
@@ -76,9 +81,7 @@ class _WindowsNativeTray extends Tray {
             void setImage(final MenuItem menuItem) {
                 imageFile = menuItem.getImage();
 
-                if (imageIcon != null) {
-                    imageIcon.close();
-                }
+                closeImageIcon();
                 imageIcon = convertImage(imageFile);
 
                 NOTIFYICONDATA nid = new NOTIFYICONDATA();
@@ -95,20 +98,19 @@ class _WindowsNativeTray extends Tray {
                 // want to make sure keep the tooltip text the same as before.
                 setTooltip_(tooltipText);
 
-                SwingUtil.invokeLater(new Runnable() {
+                SwingUtil.invokeLater(DispatchMetrics.wrap(SWING, SET_IMAGE, new Runnable() {
                     @Override
                     public
                     void run() {
                         if (popupMenu == null) {
                             TrayPopup popupMenu = (TrayPopup) _native;
-                            popupMenu.pack();
                             popupMenu.setFocusable(true);
                             _WindowsNativeTray.this.popupMenu = popupMenu;
                         }
 
                         popupMenu.setTitleBarImage(imageFile);
                     }
-                });
+                }));
             }
 
             @Override
@@ -191,6 +193,7 @@ class _WindowsNativeTray extends Tray {
             @Override
             public
             void run(final HWND hWnd, final WPARAM wParam, final LPARAM lParam) {
+                long clickTime = System.nanoTime();
                 int lp = lParam.intValue();
 
                 switch (lp) {
@@ -198,7 +201,7 @@ class _WindowsNativeTray extends Tray {
                     case WM_RBUTTONUP:
                         if (popupMenu != null && User32.User32.GetCursorPos(mousePosition)) {
                             Point point = new Point(mousePosition.x, mousePosition.y);
-                            popupMenu.doShow(point, 0);
+                            popupMenu.doShow(point, 0, clickTime);
                         }
                         break;
 
@@ -237,10 +240,7 @@ class _WindowsNativeTray extends Tray {
 
     private
     void hide() {
-        if (imageIcon != null) {
-            imageIcon.close();
-            imageIcon = null;
-        }
+        closeImageIcon();
 
         if (visible) {
             NOTIFYICONDATA nid = new NOTIFYICONDATA();
@@ -255,9 +255,7 @@ class _WindowsNativeTray extends Tray {
 
     private
     void show() {
-        if (imageIcon != null) {
-            imageIcon.close();
-        }
+        closeImageIcon();
         imageIcon = convertImage(imageFile);
 
         NOTIFYICONDATA nid = new NOTIFYICONDATA();
@@ -272,6 +270,15 @@ class _WindowsNativeTray extends Tray {
         visible = true;
     }
 
+    private
+    void closeImageIcon() {
+        if (imageIcon != null) {
+            imageIcon.close();
+            imageIcon = null;
+            NativeResources.released(ICON);
+        }
+    }
+
     private static
     HICONWrap convertImage(final File imageFile) {
         if (imageFile != null) {
@@ -280,6 +287,7 @@ class _WindowsNativeTray extends Tray {
             imageIcon = new ImageIcon(imageIcon.getImage());
 
             HBITMAPWrap hbitmapTrayIcon = new HBITMAPWrap(ImageUtil.getBufferedImage(imageIcon));
+            NativeResources.created(ICON);
             return new HICONWrap(hbitmapTrayIcon);
         }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import static dorkbox.systemTray.util.DispatchMetrics.Operation.CALLBACK;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.Executor;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.MenuCallback;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * The click path for a menu entry, bound to that entry's callback and callback executor.
+ * <p>
+ * This is created once (by the peer) when the callback or the callback executor is assigned, so that a click does not have to create
+ * any listeners, runnables or events before the callback is executed. Because the callback is always called with the same information,
+ * the same ActionEvent is used for every click.
+ * <p>
+ * The native click is received via {@link #actionPerformed(ActionEvent)}, and the callback is then executed via {@link #run()} on the
+ * executor assigned to the entry.
+ */
+public
+class ClickHandler implements ActionListener, Runnable {
+    private final Entry entry;
+    private final ActionListener actionListener;
+    private final MenuCallback menuCallback;
+    private final Executor executor;
+    private final DispatchMetrics.Backend backend;
+    private final ActionEvent event;
+
+    public
+    ClickHandler(final MenuItem menuItem, final DispatchMetrics.Backend backend) {
+        this(menuItem, menuItem.getCallback(), menuItem.getMenuCallback(), menuItem.getCallbackExecutor(), backend);
+    }
+
+    public
+    ClickHandler(final Checkbox checkbox, final DispatchMetrics.Backend backend) {
+        this(checkbox, checkbox.getCallback(), checkbox.getMenuCallback(), checkbox.getCallbackExecutor(), backend);
+    }
+
+    private
+    ClickHandler(final Entry entry,
+                 final ActionListener actionListener,
+                 final MenuCallback menuCallback,
+                 final Executor executor,
+                 final DispatchMetrics.Backend backend) {
+        this.entry = entry;
+        this.actionListener = actionListener;
+        this.menuCallback = menuCallback;
+        this.backend = backend;
+
+        Executor callbackExecutor = executor;
+        if (callbackExecutor == null) {
+            callbackExecutor = EventDispatch.getDefaultCallbackExecutor();
+        }
+
+        if (callbackExecutor == EventDispatch.VIRTUAL_THREAD_EXECUTOR) {
+            // callbacks for different entries run concurrently, but the callbacks for this entry must stay in order
+            callbackExecutor = new SerialExecutor(callbackExecutor);
+        }
+        this.executor = callbackExecutor;
+
+        // we want it to run with our own action event info (so it is consistent across all platforms)
+        this.event = actionListener == null ? null : new ActionEvent(entry, ActionEvent.ACTION_PERFORMED, "");
+    }
+
+    /**
+     * @return true if there is a callback assigned to the entry
+     */
+    public
+    boolean hasCallback() {
+        return actionListener != null || menuCallback != null;
+    }
+
+    /**
+     * Called on the native thread before the callback is executed, for any state that must change as part of the click (ie: the
+     * checked state of a checkbox)
+     */
+    protected
+    void onClick() {
+    }
+
+    /**
+     * Called by the native peer (on the native thread) when the entry is clicked.
+     */
+    @Override
+    public
+    void actionPerformed(final ActionEvent e) {
+        onClick();
+
+        if (hasCallback()) {
+            executor.execute(DispatchMetrics.wrap(backend, CALLBACK, this));
+        }
+    }
+
+    /**
+     * Calls the callback, on the executor assigned to the entry.
+     */
+    @Override
+    public
+    void run() {
+        try {
+            if (menuCallback != null) {
+                menuCallback.onClick(entry);
+            }
+            else {
+                actionListener.actionPerformed(event);
+            }
+        } catch (Throwable throwable) {
+            if (entry instanceof Checkbox) {
+                SystemTray.logger.error("Error calling menu checkbox entry {} click event.", ((Checkbox) entry).getText(), throwable);
+            }
+            else {
+                SystemTray.logger.error("Error calling menu entry {} click event.", ((MenuItem) entry).getText(), throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * Optional latency metrics for the work that is dispatched onto the native/GUI threads (GTK, Swing) and onto our own dispatch thread.
+ * <p>
+ * For each backend and type of operation, two latencies are recorded:
+ *  - queue: from when the work was dispatched, until it started running (how busy that thread is)
+ *  - run: from when the work started, until it finished (how expensive the operation is)
+ * <p>
+ * When disabled (the default), dispatched work is not wrapped and no time is measured. When enabled, the metrics are also available
+ * via JMX, as "dorkbox.systemTray:type=DispatchMetrics"
+ */
+public final
+class DispatchMetrics {
+    public
+    enum Backend {
+        /** our own event dispatch thread */
+        DISPATCH,
+        GTK,
+        SWING,
+        /** only menu callbacks are recorded */
+        AWT,
+        /** only menu callbacks are recorded */
+        OSX
+    }
+
+    public
+    enum Operation {
+        ADD,
+        REMOVE,
+        /** entries are moved or sorted */
+        MOVE,
+        SET_TEXT,
+        SET_IMAGE,
+        /** enabled, checked, tooltip and shortcut changes */
+        SET_STATE,
+        /** GTK menus are deleted and recreated when entries are added or removed */
+        REBUILD,
+        /** from the native click event until the callback starts on the dispatch thread, and the callback itself */
+        CALLBACK,
+        /** from the click on the tray icon until the (swing) menu starts to show, and from then until the menu is painted */
+        POPUP,
+        /** from when a batch of GTK work was scheduled until it started, and running the batch (see SystemTray.GTK_BATCHED_UPDATES) */
+        BATCH
+    }
+
+    /**
+     * A snapshot of the latencies for one phase of an operation. All times are in milliseconds.
+     */
+    public static final
+    class Latency {
+        public final long count;
+        public final double mean;
+        public final double p50;
+        public final double p90;
+        public final double p99;
+        public final double max;
+
+        Latency(final long count, final double mean, final double p50, final double p90, final double p99, final double max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        @Override
+        public
+        String toString() {
+            return String.format(Locale.US, "count=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f max=%.3f", count, mean, p50, p90, p99, max);
+        }
+    }
+
+    /**
+     * A snapshot of the latencies for an operation on a backend.
+     */
+    public static final
+    class Stats {
+        public final Backend backend;
+        public final Operation operation;
+
+        /** from when the operation was dispatched until it started */
+        public final Latency queue;
+
+        /** from when the operation started until it finished */
+        public final Latency run;
+
+        Stats(final Backend backend, final Operation operation, final Latency queue, final Latency run) {
+            this.backend = backend;
+            this.operation = operation;
+            this.queue = queue;
+            this.run = run;
+        }
+
+        @Override
+        public
+        String toString() {
+            return backend + " " + operation + " queue[" + queue + "] run[" + run + "]";
+        }
+    }
+
+    /**
+     * The JMX view of the metrics
+     */
+    public
+    interface DispatchMetricsMBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        /**
+         * @return one line per backend + operation that has been recorded
+         */
+        String[] getReport();
+
+        void reset();
+    }
+
+    /**
+     * Power-of-two buckets (in nanoseconds), so recording is a few atomic increments and never allocates.
+     */
+    private static final
+    class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0L) {
+                nanos = 0L;
+            }
+
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1L));
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+
+            long currentMax;
+            do {
+                currentMax = max.get();
+            } while (nanos > currentMax && !max.compareAndSet(currentMax, nanos));
+        }
+
+        Latency snapshot() {
+            final long count = this.count.get();
+            if (count == 0L) {
+                return new Latency(0L, 0.0D, 0.0D, 0.0D, 0.0D, 0.0D);
+            }
+
+            return new Latency(count,
+                               toMillis(total.get() / count),
+                               toMillis(percentile(count, 0.50D)),
+                               toMillis(percentile(count, 0.90D)),
+                               toMillis(percentile(count, 0.99D)),
+                               toMillis(max.get()));
+        }
+
+        // the upper bound of the bucket the percentile falls into
+        private
+        long percentile(final long count, final double percentile) {
+            final long target = (long) Math.ceil(count * percentile);
+
+            long seen = 0L;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min(max.get(), i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1L);
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < 64; i++) {
+                buckets.set(i, 0L);
+            }
+            count.set(0L);
+            total.set(0L);
+            max.set(0L);
+        }
+
+        private static
+        double toMillis(final long nanos) {
+            return nanos / 1000000.0D;
+        }
+    }
+
+    /**
+     * Records how long the runnable waited in the queue, and how long it took to run.
+     */
+    private static final
+    class TimedRunnable implements Runnable {
+        private final Histogram queue;
+        private final Histogram run;
+        private final Runnable runnable;
+        private final long dispatchTime = System.nanoTime();
+
+        TimedRunnable(final Histogram queue, final Histogram run, final Runnable runnable) {
+            this.queue = queue;
+            this.run = run;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public
+        void run() {
+            final long startTime = System.nanoTime();
+            queue.record(startTime - dispatchTime);
+
+            try {
+                runnable.run();
+            } finally {
+                run.record(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+
+    private static final Backend[] BACKENDS = Backend.values();
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    // [backend][operation]
+    private static final Histogram[][] queueHistograms = new Histogram[BACKENDS.length][OPERATIONS.length];
+    private static final Histogram[][] runHistograms = new Histogram[BACKENDS.length][OPERATIONS.length];
+
+    static {
+        for (int i = 0; i < BACKENDS.length; i++) {
+            for (int j = 0; j < OPERATIONS.length; j++) {
+                queueHistograms[i][j] = new Histogram();
+                runHistograms[i][j] = new Histogram();
+            }
+        }
+    }
+
+    private static volatile boolean enabled = false;
+    private static boolean registeredMBean = false;
+
+
+    /**
+     * @return the runnable, wrapped so that it's latency is recorded. If metrics are disabled, this is the same runnable.
+     */
+    public static
+    Runnable wrap(final Backend backend, final Operation operation, final Runnable runnable) {
+        if (!enabled) {
+            return runnable;
+        }
+
+        return new TimedRunnable(queueHistograms[backend.ordinal()][operation.ordinal()],
+                                 runHistograms[backend.ordinal()][operation.ordinal()],
+                                 runnable);
+    }
+
+    /**
+     * For work that is not dispatched (it's already on the correct thread). Use with {@link #recordRun(Backend, Operation, long)}
+     *
+     * @return the start time, or 0 if metrics are disabled
+     */
+    public static
+    long startTime() {
+        if (!enabled) {
+            return 0L;
+        }
+
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the run time of work that is not dispatched.
+     *
+     * @param startTime the value returned by {@link #startTime()}
+     */
+    public static
+    void recordRun(final Backend backend, final Operation operation, final long startTime) {
+        if (startTime == 0L) {
+            return;
+        }
+
+        runHistograms[backend.ordinal()][operation.ordinal()].record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records the latency of work that is measured in some other way (ie: it starts/finishes with native events)
+     */
+    public static
+    void record(final Backend backend, final Operation operation, final long queueNanos, final long runNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        queueHistograms[backend.ordinal()][operation.ordinal()].record(queueNanos);
+        runHistograms[backend.ordinal()][operation.ordinal()].record(runNanos);
+    }
+
+    public static
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables (or disables) recording the latencies. When enabled the first time, the metrics are registered with JMX.
+     */
+    public static
+    void setEnabled(final boolean enabled) {
+        DispatchMetrics.enabled = enabled;
+
+        if (enabled) {
+            registerMBean();
+        }
+    }
+
+    /**
+     * @return the latencies recorded for the operation on the backend.
+     */
+    public static
+    Stats getStats(final Backend backend, final Operation operation) {
+        return new Stats(backend,
+                         operation,
+                         queueHistograms[backend.ordinal()][operation.ordinal()].snapshot(),
+                         runHistograms[backend.ordinal()][operation.ordinal()].snapshot());
+    }
+
+    /**
+     * @return the latencies for every backend + operation that has been recorded.
+     */
+    public static
+    List<Stats> getStats() {
+        final List<Stats> stats = new ArrayList<Stats>();
+
+        for (Backend backend : BACKENDS) {
+            for (Operation operation : OPERATIONS) {
+                final Stats stat = getStats(backend, operation);
+                if (stat.queue.count > 0L || stat.run.count > 0L) {
+                    stats.add(stat);
+                }
+            }
+        }
+
+        return stats;
+    }
+
+    /**
+     * Clears all of the recorded latencies
+     */
+    public static
+    void reset() {
+        for (int i = 0; i < BACKENDS.length; i++) {
+            for (int j = 0; j < OPERATIONS.length; j++) {
+                queueHistograms[i][j].reset();
+                runHistograms[i][j].reset();
+            }
+        }
+    }
+
+    private static synchronized
+    void registerMBean() {
+        if (registeredMBean) {
+            return;
+        }
+        registeredMBean = true;
+
+        try {
+            DispatchMetricsMBean bean = new DispatchMetricsMBean() {
+                @Override
+                public
+                boolean isEnabled() {
+                    return DispatchMetrics.isEnabled();
+                }
+
+                @Override
+                public
+                void setEnabled(final boolean enabled) {
+                    DispatchMetrics.setEnabled(enabled);
+                }
+
+                @Override
+                public
+                String[] getReport() {
+                    final List<Stats> stats = getStats();
+                    final String[] report = new String[stats.size()];
+
+                    for (int i = 0; i < report.length; i++) {
+                        report[i] = stats.get(i).toString();
+                    }
+                    return report;
+                }
+
+                @Override
+                public
+                void reset() {
+                    DispatchMetrics.reset();
+                }
+            };
+
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(new StandardMBean(bean, DispatchMetricsMBean.class),
+                                            new ObjectName("dorkbox.systemTray:type=DispatchMetrics"));
+        } catch (Exception e) {
+            SystemTray.logger.error("Unable to register the dispatch metrics with JMX", e);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package dorkbox.systemTray.util;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import javax.swing.SwingUtilities;
+
 import org.slf4j.LoggerFactory;
 
+import dorkbox.systemTray.SystemTray;
 import dorkbox.util.NamedThreadFactory;
 import dorkbox.util.jna.linux.GtkEventDispatch;
 
@@ -21,8 +26,55 @@ class EventDispatch {
 
     public static final int TIMEOUT = 2;
 
+    /**
+     * Runs menu callbacks on our own event dispatch thread. This is the default for all menu entries.
+     */
+    public static final Executor DISPATCH_EXECUTOR = new Executor() {
+        @Override
+        public
+        void execute(final Runnable command) {
+            runLater(command);
+        }
+    };
+
+    /**
+     * Runs menu callbacks on virtual threads (Java 21+), so that a callback which blocks does not delay the callbacks of other menu
+     * entries. Callbacks for the same menu entry still run in order. If virtual threads are not available, this is the same as
+     * {@link #DISPATCH_EXECUTOR}.
+     */
+    public static final Executor VIRTUAL_THREAD_EXECUTOR = new Executor() {
+        @Override
+        public
+        void execute(final Runnable command) {
+            if (VirtualThreads.isSupported()) {
+                VirtualThreads.start(command);
+            }
+            else {
+                runLater(command);
+            }
+        }
+    };
+
+    /**
+     * Runs menu callbacks directly on the native (GTK/AWT/Swing/Cocoa) thread that received the click. This has the lowest latency, but
+     * the callback MUST be short and MUST NOT block, otherwise the menu (and on linux, possibly the entire desktop panel) will freeze.
+     * <p>
+     * Changes to the menu structure (ie: adding or removing entries) have to wait for the native thread. When they are made from the
+     * GTK thread or the Swing/AWT EDT, they are queued instead, and happen after the callback returns.
+     */
+    public static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public
+        void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
     private static ExecutorService eventDispatchExecutor = null;
 
+    // the GTK thread (if GTK is used). Work that waits for the GTK thread must never wait on it.
+    private static volatile Thread gtkThread = null;
+
     // This is required because the EDT needs to have it's own value for this boolean, that is a different value than the main thread
     private static ThreadLocal<Boolean> isDispatch = new ThreadLocal<Boolean>() {
         @Override
@@ -32,6 +84,52 @@ class EventDispatch {
         }
     };
 
+    /**
+     * @return the executor that menu callbacks run on, unless a different executor is assigned to the menu entry.
+     */
+    public static
+    Executor getDefaultCallbackExecutor() {
+        if (SystemTray.VIRTUAL_THREAD_CALLBACKS && VirtualThreads.isSupported()) {
+            return VIRTUAL_THREAD_EXECUTOR;
+        }
+
+        return DISPATCH_EXECUTOR;
+    }
+
+    /**
+     * Sets the GTK thread, once GTK is started.
+     */
+    public static
+    void setGtkThread(final Thread thread) {
+        gtkThread = thread;
+    }
+
+    /**
+     * @return true if this is a native GUI thread (the GTK thread, or the Swing/AWT EDT), which the dispatch thread can be waiting on
+     */
+    public static
+    boolean isNativeThread() {
+        return Thread.currentThread() == gtkThread || SwingUtilities.isEventDispatchThread();
+    }
+
+    /**
+     * Schedule an event to occur and wait for it to finish, unless this is called from a native GUI thread (the GTK thread or the
+     * Swing/AWT EDT). Then the event is queued instead, and happens after the caller returns.
+     * <p>
+     * This is for changes to the menu structure, which can be made by a callback that runs directly on the native thread
+     * (DIRECT_EXECUTOR). The dispatch thread waits for the native thread to run the native part of the change, so if the native thread
+     * waited here, neither could continue.
+     */
+    public static
+    void runOrQueue(final Runnable runnable) {
+        if (!EventDispatch.isDispatch.get() && isNativeThread()) {
+            runLater(runnable);
+            return;
+        }
+
+        run(runnable);
+    }
+
     /**
      * Schedule an event to occur and wait for it to finish
      */
@@ -93,20 +191,26 @@ class EventDispatch {
         }
 
         if (eventDispatchExecutor == null) {
-            eventDispatchExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("SystemTrayEventDispatch", false));
+            final ThreadFactory threadFactory = new NamedThreadFactory("SystemTrayEventDispatch", false);
+
+            // the dispatch flag is set once when the thread starts, instead of wrapping every single event that is dispatched
+            eventDispatchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public
+                Thread newThread(final Runnable runnable) {
+                    return threadFactory.newThread(new Runnable() {
+                        @Override
+                        public
+                        void run() {
+                            EventDispatch.isDispatch.set(true);
+                            runnable.run();
+                        }
+                    });
+                }
+            });
         }
 
-        eventDispatchExecutor.execute(new Runnable() {
-            @Override
-            public
-            void run() {
-                EventDispatch.isDispatch.set(true);
-
-                runnable.run();
-
-                EventDispatch.isDispatch.set(false);
-            }
-        });
+        eventDispatchExecutor.execute(runnable);
     }
 
     /**
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A growable byte buffer that hashes the image data (MurmurHash3, x64 128-bit) as it is written, so that the cache name is known as
+ * soon as the data has been copied in, without a second pass or a second copy of the bytes.
+ * <p>
+ * There is one buffer per thread, and it is reused. The contents are only valid until the next call to {@link #get()} on that thread.
+ */
+final
+class HashingBuffer extends OutputStream {
+    private static final int INITIAL_SIZE = 8192;
+
+    // buffers larger than this are not kept around after use (4MB)
+    private static final int MAX_RETAINED_SIZE = 4 * 1024 * 1024;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<HashingBuffer> buffers = new ThreadLocal<HashingBuffer>() {
+        @Override
+        protected
+        HashingBuffer initialValue() {
+            return new HashingBuffer();
+        }
+    };
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int count;
+
+    // how many bytes of the buffer have already been mixed into the hash (always a multiple of 16)
+    private int hashed;
+    private long h1;
+    private long h2;
+
+    /**
+     * @return this thread's buffer, emptied and ready to use
+     */
+    static
+    HashingBuffer get() {
+        HashingBuffer hashingBuffer = buffers.get();
+        if (hashingBuffer.buffer.length > MAX_RETAINED_SIZE) {
+            hashingBuffer.buffer = new byte[INITIAL_SIZE];
+        }
+
+        hashingBuffer.count = 0;
+        hashingBuffer.hashed = 0;
+        hashingBuffer.h1 = 0L;
+        hashingBuffer.h2 = 0L;
+        return hashingBuffer;
+    }
+
+    /**
+     * Creates a buffer that is not shared with the buffer of this thread, for when that buffer might still be in use.
+     */
+    HashingBuffer() {
+    }
+
+    /**
+     * Copies (and hashes) the entire stream into this buffer. The stream is NOT closed.
+     */
+    void readFrom(final InputStream inputStream) throws IOException {
+        int read;
+        while (true) {
+            ensureCapacity(count + 4096);
+
+            read = inputStream.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                break;
+            }
+
+            count += read;
+            hashBlocks();
+        }
+    }
+
+    /**
+     * Copies (and hashes) the entire stream into this buffer. The stream is NOT closed.
+     */
+    void readFrom(final ImageInputStream inputStream) throws IOException {
+        int read;
+        while (true) {
+            ensureCapacity(count + 4096);
+
+            read = inputStream.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                break;
+            }
+
+            count += read;
+            hashBlocks();
+        }
+    }
+
+    @Override
+    public
+    void write(final int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+        hashBlocks();
+    }
+
+    @Override
+    public
+    void write(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+        hashBlocks();
+    }
+
+    /**
+     * @return a stream over the current contents. This does not copy the data, so it is only valid until this buffer is reused.
+     */
+    ByteArrayInputStream getInputStream() {
+        return new ByteArrayInputStream(buffer, 0, count);
+    }
+
+    /**
+     * @return the hash of everything written so far, as a 32 character hex string. This is suitable for use as a cache name.
+     */
+    String getHashName() {
+        long k1 = 0L;
+        long k2 = 0L;
+        long hash1 = h1;
+        long hash2 = h2;
+
+        final int tail = count - hashed;
+        for (int i = tail - 1; i >= 0; i--) {
+            final long b = buffer[hashed + i] & 0xFFL;
+            if (i >= 8) {
+                k2 ^= b << ((i - 8) * 8);
+            }
+            else {
+                k1 ^= b << (i * 8);
+            }
+        }
+
+        if (tail > 8) {
+            hash2 ^= mixK2(k2);
+        }
+        if (tail > 0) {
+            hash1 ^= mixK1(k1);
+        }
+
+        hash1 ^= count;
+        hash2 ^= count;
+
+        hash1 += hash2;
+        hash2 += hash1;
+
+        hash1 = fmix(hash1);
+        hash2 = fmix(hash2);
+
+        hash1 += hash2;
+        hash2 += hash1;
+
+        final char[] chars = new char[32];
+        toHex(hash1, chars, 0);
+        toHex(hash2, chars, 16);
+        return new String(chars);
+    }
+
+    private
+    void ensureCapacity(final int capacity) {
+        if (capacity > buffer.length) {
+            int newSize = buffer.length << 1;
+            if (newSize < capacity) {
+                newSize = capacity;
+            }
+
+            byte[] newBuffer = new byte[newSize];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
+
+    // mix in every complete 16 byte block that has not been hashed yet
+    private
+    void hashBlocks() {
+        final byte[] bytes = buffer;
+
+        while (count - hashed >= 16) {
+            h1 ^= mixK1(getLong(bytes, hashed));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(getLong(bytes, hashed + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+
+            hashed += 16;
+        }
+    }
+
+    // little endian
+    private static
+    long getLong(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFFL) |
+               (bytes[offset + 1] & 0xFFL) << 8 |
+               (bytes[offset + 2] & 0xFFL) << 16 |
+               (bytes[offset + 3] & 0xFFL) << 24 |
+               (bytes[offset + 4] & 0xFFL) << 32 |
+               (bytes[offset + 5] & 0xFFL) << 40 |
+               (bytes[offset + 6] & 0xFFL) << 48 |
+               (bytes[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static
+    long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static
+    long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static
+    long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static
+    void toHex(final long value, final char[] chars, final int offset) {
+        for (int i = 0; i < 16; i++) {
+            chars[offset + i] = HEX[(int) (value >>> (60 - i * 4)) & 0xF];
+        }
+    }
+}
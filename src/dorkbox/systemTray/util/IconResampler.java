@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Resamples an image directly into a square, transparent-padded ARGB image in a single step.
+ * <p>
+ * The aspect ratio is preserved (the largest dimension becomes the requested size), and the result is centered. Downscaling uses
+ * area-averaging (every source pixel contributes by the amount it covers), which is what tray/menu icons need because they are almost
+ * always large images shrunk to a few pixels. Upscaling uses bilinear interpolation. Colors are averaged with pre-multiplied alpha, so
+ * transparent pixels do not "bleed" dark edges into the icon.
+ * <p>
+ * Intermediate buffers (the source pixels, the resampling kernels and the horizontal pass) are kept per-thread and reused, so the only
+ * allocation per icon is the final image. Buffers for very large source images are not kept, so they are allocated for each of those.
+ */
+final
+class IconResampler {
+    // scratch buffers larger than this (in ints/floats) are not kept around after use. 1M entries = 4MB
+    private static final int MAX_RETAINED_SCRATCH = 1 << 20;
+
+    private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected
+        Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private static final
+    class Scratch {
+        int[] pixels = new int[0];
+        float[] rows = new float[0];
+        final Kernel horizontal = new Kernel();
+        final Kernel vertical = new Kernel();
+
+        int[] pixels(final int length) {
+            if (pixels.length >= length) {
+                return pixels;
+            }
+
+            int[] buffer = new int[length];
+            if (length <= MAX_RETAINED_SCRATCH) {
+                pixels = buffer;
+            }
+            return buffer;
+        }
+
+        float[] rows(final int length) {
+            if (rows.length >= length) {
+                return rows;
+            }
+
+            float[] buffer = new float[length];
+            if (length <= MAX_RETAINED_SCRATCH) {
+                rows = buffer;
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * The source pixels (and their weights) that contribute to each destination pixel along one axis. The arrays are reused, and the
+     * weights are only calculated again when the lengths change.
+     */
+    private static final
+    class Kernel {
+        int[] start = new int[0];
+        int[] count = new int[0];
+        float[] weights = new float[0];
+        int stride;
+
+        private int srcLength = -1;
+        private int dstLength = -1;
+
+        Kernel init(final int srcLength, final int dstLength) {
+            if (srcLength == this.srcLength && dstLength == this.dstLength) {
+                return this;
+            }
+
+            this.srcLength = srcLength;
+            this.dstLength = dstLength;
+
+            if (start.length < dstLength) {
+                start = new int[dstLength];
+                count = new int[dstLength];
+            }
+
+            final double scale = (double) srcLength / dstLength;
+
+            if (scale >= 1.0D) {
+                // area-averaging. Each destination pixel covers 'scale' source pixels (partially at the edges)
+                stride = (int) Math.ceil(scale) + 1;
+                weights(dstLength * stride);
+
+                for (int i = 0; i < dstLength; i++) {
+                    final double low = i * scale;
+                    final double high = Math.min(srcLength, low + scale);
+                    final int first = (int) Math.floor(low);
+                    final int last = Math.min(srcLength, (int) Math.ceil(high));
+
+                    start[i] = first;
+                    count[i] = last - first;
+
+                    for (int j = first; j < last; j++) {
+                        final double coverage = Math.min(high, j + 1) - Math.max(low, j);
+                        weights[i * stride + (j - first)] = (float) (coverage / scale);
+                    }
+                }
+            }
+            else {
+                // bilinear. Each destination pixel is between (at most) two source pixels
+                stride = 2;
+                weights(dstLength * stride);
+
+                for (int i = 0; i < dstLength; i++) {
+                    final double center = Math.max(0.0D, (i + 0.5D) * scale - 0.5D);
+                    int first = (int) Math.floor(center);
+                    float fraction = (float) (center - first);
+
+                    if (first >= srcLength - 1) {
+                        first = srcLength - 1;
+                        fraction = 0.0F;
+                    }
+
+                    start[i] = first;
+                    count[i] = fraction == 0.0F ? 1 : 2;
+                    weights[i * stride] = 1.0F - fraction;
+                    weights[i * stride + 1] = fraction;
+                }
+            }
+
+            return this;
+        }
+
+        private
+        void weights(final int length) {
+            if (weights.length < length) {
+                weights = new float[length];
+            }
+        }
+    }
+
+    private
+    IconResampler() {
+    }
+
+    /**
+     * Resizes the image so that its largest dimension is equal to the size, and centers it in a transparent square image of that size.
+     *
+     * @return a new TYPE_INT_ARGB image, size x size
+     */
+    static
+    BufferedImage resizeToSquare(final BufferedImage source, final int size) {
+        final int srcWidth = source.getWidth();
+        final int srcHeight = source.getHeight();
+
+        // keep aspect ratio
+        int dstWidth;
+        int dstHeight;
+        if (srcWidth > srcHeight) {
+            dstWidth = size;
+            dstHeight = (int) Math.round((double) srcHeight * size / srcWidth);
+        }
+        else {
+            dstHeight = size;
+            dstWidth = (int) Math.round((double) srcWidth * size / srcHeight);
+        }
+        dstWidth = Math.max(1, dstWidth);
+        dstHeight = Math.max(1, dstHeight);
+
+        // the padding is "free", since a new ARGB image is already fully transparent
+        final BufferedImage target = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        final int[] dst = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        final int offsetX = (size - dstWidth) / 2;
+        final int offsetY = (size - dstHeight) / 2;
+
+        final Scratch buffers = scratch.get();
+
+        // getRGB always converts to non-premultiplied ARGB, regardless of the source image type
+        final int[] src = buffers.pixels(srcWidth * srcHeight);
+        source.getRGB(0, 0, srcWidth, srcHeight, src, 0, srcWidth);
+
+        final Kernel horizontal = buffers.horizontal.init(srcWidth, dstWidth);
+        final Kernel vertical = buffers.vertical.init(srcHeight, dstHeight);
+
+        // horizontal pass, into pre-multiplied float ARGB (4 floats per pixel)
+        final float[] rows = buffers.rows(dstWidth * srcHeight * 4);
+        for (int y = 0; y < srcHeight; y++) {
+            final int srcRow = y * srcWidth;
+            int out = y * dstWidth * 4;
+
+            for (int x = 0; x < dstWidth; x++) {
+                final int first = horizontal.start[x];
+                final int count = horizontal.count[x];
+                final int weightIndex = x * horizontal.stride;
+
+                float a = 0.0F;
+                float r = 0.0F;
+                float g = 0.0F;
+                float b = 0.0F;
+
+                for (int i = 0; i < count; i++) {
+                    final int argb = src[srcRow + first + i];
+                    final float alpha = argb >>> 24;
+                    final float weight = horizontal.weights[weightIndex + i] * alpha;
+
+                    a += weight;
+                    r += weight * ((argb >> 16) & 0xFF);
+                    g += weight * ((argb >> 8) & 0xFF);
+                    b += weight * (argb & 0xFF);
+                }
+
+                rows[out++] = a;
+                rows[out++] = r;
+                rows[out++] = g;
+                rows[out++] = b;
+            }
+        }
+
+        // vertical pass, written straight into the padded target
+        for (int y = 0; y < dstHeight; y++) {
+            final int first = vertical.start[y];
+            final int count = vertical.count[y];
+            final int weightIndex = y * vertical.stride;
+            int out = (offsetY + y) * size + offsetX;
+
+            for (int x = 0; x < dstWidth; x++) {
+                float a = 0.0F;
+                float r = 0.0F;
+                float g = 0.0F;
+                float b = 0.0F;
+
+                for (int i = 0; i < count; i++) {
+                    final float weight = vertical.weights[weightIndex + i];
+                    final int in = ((first + i) * dstWidth + x) * 4;
+
+                    a += weight * rows[in];
+                    r += weight * rows[in + 1];
+                    g += weight * rows[in + 2];
+                    b += weight * rows[in + 3];
+                }
+
+                if (a >= 0.5F) {
+                    // un-premultiply. 'a' is still 0-255, and r/g/b were multiplied by it
+                    dst[out] = clamp(a) << 24 | clamp(r / a) << 16 | clamp(g / a) << 8 | clamp(b / a);
+                }
+                out++;
+            }
+        }
+
+        return target;
+    }
+
+    private static
+    int clamp(final float value) {
+        final int rounded = (int) (value + 0.5F);
+        if (rounded < 0) {
+            return 0;
+        }
+        if (rounded > 255) {
+            return 255;
+        }
+        return rounded;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dorkbox.systemTray.SystemTray;
+import dorkbox.util.NamedThreadFactory;
+
+/**
+ * Resizes and caches images in parallel, so that setting those images later (on the tray or a menu entry) only has to check the cache.
+ * <p>
+ * Image sizes are not known until the SystemTray has started initializing, so images submitted before that are queued, and start as
+ * soon as the sizes are known.
+ */
+public
+class ImagePrewarm {
+    /**
+     * Notified (from a prewarm thread) as images are resized and cached.
+     */
+    public
+    interface Listener {
+        /**
+         * Called after each image has been resized and cached.
+         *
+         * @param source the image source, as it was passed in
+         * @param image the resized image (this is the error image if there was a problem with the source)
+         * @param nanos how long this image took to resize and cache
+         * @param completed how many images have been completed so far (including this one)
+         * @param total the total number of images being prewarmed
+         */
+        void imageCompleted(Object source, File image, long nanos, int completed, int total);
+
+        /**
+         * Called once all of the images have been resized and cached.
+         *
+         * @param total the total number of images that were prewarmed
+         * @param nanos the time from when the images were submitted until the last one completed
+         */
+        void completed(int total, long nanos);
+    }
+
+
+    private static final int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static ThreadPoolExecutor executor = null;
+
+    // guarded by ImagePrewarm.class
+    private static boolean sizesKnown = false;
+    private static final List<Runnable> pending = new ArrayList<Runnable>();
+
+
+    /**
+     * Resizes and caches the specified images in parallel.
+     *
+     * @param imageSources the images, as File, String (path), URL, InputStream, Image or ImageInputStream.
+     * @param isTrayImage true if these are images for the tray icon, false if they are for menu entries
+     * @param listener notified as the images complete, or null
+     */
+    public static
+    void prewarm(final Collection<?> imageSources, final boolean isTrayImage, final Listener listener) {
+        final List<Object> sources = new ArrayList<Object>(imageSources);
+        final int total = sources.size();
+        final long startTime = System.nanoTime();
+        final AtomicInteger completedCount = new AtomicInteger();
+
+        if (total == 0) {
+            if (listener != null) {
+                listener.completed(0, 0L);
+            }
+            return;
+        }
+
+        for (final Object source : sources) {
+            submit(new Runnable() {
+                @Override
+                public
+                void run() {
+                    final long imageStart = System.nanoTime();
+                    final File image = resizeAndCache(isTrayImage, source);
+                    final long imageTime = System.nanoTime() - imageStart;
+
+                    final int completed = completedCount.incrementAndGet();
+
+                    if (SystemTray.DEBUG) {
+                        SystemTray.logger.debug("Prewarmed image {}/{} in {} ms: {}", completed, total, imageTime / 1000000.0D, source);
+                    }
+
+                    if (listener != null) {
+                        try {
+                            listener.imageCompleted(source, image, imageTime, completed, total);
+                        } catch (Exception e) {
+                            SystemTray.logger.error("Error while notifying image prewarm listener", e);
+                        }
+                    }
+
+                    if (completed == total) {
+                        final long totalTime = System.nanoTime() - startTime;
+
+                        if (SystemTray.DEBUG) {
+                            SystemTray.logger.debug("Prewarmed {} images in {} ms", total, totalTime / 1000000.0D);
+                        }
+
+                        if (listener != null) {
+                            try {
+                                listener.completed(total, totalTime);
+                            } catch (Exception e) {
+                                SystemTray.logger.error("Error while notifying image prewarm listener", e);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Called once the tray and menu image sizes are known. Starts any images that were submitted before then.
+     */
+    public static
+    void start() {
+        final List<Runnable> toRun;
+        synchronized (ImagePrewarm.class) {
+            sizesKnown = true;
+            toRun = new ArrayList<Runnable>(pending);
+            pending.clear();
+        }
+
+        for (Runnable runnable : toRun) {
+            submit(runnable);
+        }
+    }
+
+    /**
+     * Called if the SystemTray could not be initialized. Images that were submitted before then are dropped (the listeners for them
+     * are not notified), as the sizes they need will never be known.
+     */
+    public static
+    void cancel() {
+        synchronized (ImagePrewarm.class) {
+            if (SystemTray.DEBUG && !pending.isEmpty()) {
+                SystemTray.logger.debug("Dropping {} images that were waiting to be prewarmed", pending.size());
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * @return true once the tray and menu image sizes are known.
+     */
+    public static
+    boolean isStarted() {
+        synchronized (ImagePrewarm.class) {
+            return sizesKnown;
+        }
+    }
+
+    private static
+    void submit(final Runnable runnable) {
+        final ThreadPoolExecutor executor;
+        synchronized (ImagePrewarm.class) {
+            if (!sizesKnown) {
+                pending.add(runnable);
+                return;
+            }
+
+            if (ImagePrewarm.executor == null) {
+                // threads are only kept around while there is work to do
+                ImagePrewarm.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 5L, TimeUnit.SECONDS,
+                                                               new LinkedBlockingQueue<Runnable>(),
+                                                               new NamedThreadFactory("SystemTrayImagePrewarm", true));
+                ImagePrewarm.executor.allowCoreThreadTimeOut(true);
+            }
+            executor = ImagePrewarm.executor;
+        }
+
+        executor.execute(runnable);
+    }
+
+    private static
+    File resizeAndCache(final boolean isTrayImage, final Object source) {
+        try {
+            // this is exactly what happens when an image is assigned, so that later it will be found in the cache
+            final ImageVariants variants = ImageResizeUtil.getVariantsFromSource(isTrayImage, source);
+            if (variants == null) {
+                return null;
+            }
+            return variants.getFile();
+        } catch (Exception e) {
+            SystemTray.logger.error("Error prewarming image", e);
+            return null;
+        }
+    }
+}
@@ -19,23 +19,36 @@ import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
 
 import dorkbox.systemTray.SystemTray;
 import dorkbox.util.CacheUtil;
-import dorkbox.util.IO;
 import dorkbox.util.ImageUtil;
 
 public
 class ImageResizeUtil {
+    // images are resized in parallel (each thread has it's own temp file), but saving them to the cache must not be.
+    private static final Object cacheLock = new Object();
+
+    // cache name -> the resize in progress for it. The same image requested by several threads at once is only resized once.
+    private static final ConcurrentHashMap<String, FutureTask<File>> resizing = new ConcurrentHashMap<String, FutureTask<File>>();
+
+    // size -> transparent image
+    private static final Map<Integer, File> transparentImages = new HashMap<Integer, File>();
+
     public static
     File getTransparentImage() {
         // here, it doesn't matter what size the image is, as long as there is an image, the text in the menu will be shifted correctly
@@ -46,11 +59,21 @@ class ImageResizeUtil {
     public static
     File getTransparentImage(final int imageSize) {
         // NOTE: this does not need to be called on the EDT
-        try {
-            final File newFile = CacheUtil.create(imageSize + "_empty.png");
-            return ImageUtil.createImage(imageSize, newFile, null);
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to generate transparent image! Something is severely wrong!");
+        synchronized (transparentImages) {
+            // it might have already been generated (ie: while the tray was initializing)
+            File file = transparentImages.get(imageSize);
+            if (file != null && file.canRead()) {
+                return file;
+            }
+
+            try {
+                final File newFile = CacheUtil.create(imageSize + "_empty.png");
+                file = ImageUtil.createImage(imageSize, newFile, null);
+                transparentImages.put(imageSize, file);
+                return file;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to generate transparent image! Something is severely wrong!");
+            }
         }
     }
 
@@ -62,16 +85,17 @@ class ImageResizeUtil {
         }
 
         try {
-            InputStream imageStream = ImageResizeUtil.class.getResource("error_32.png").openStream();
+            InputStream resourceStream = ImageResizeUtil.class.getResource("error_32.png").openStream();
 
-            // have to resize the image to be whatever size we specify
-            imageStream = makeByteArrayInputStream(imageStream);
-            imageStream.mark(0);
+            // have to resize the image to be whatever size we specify. This is called while the caller is still using the buffer of
+            // this thread, so it has it's own buffer
+            final HashingBuffer buffer = new HashingBuffer();
+            buffer.readFrom(resourceStream);
+            resourceStream.close();
 
             // check if we already have this file information saved to disk, based on size + hash of data
-            final String cacheName = size + "_" + CacheUtil.createNameAsHash(imageStream);
-            ((ByteArrayInputStream) imageStream).reset();  // casting to avoid unnecessary try/catch for IOException
-
+            final String cacheName = size + "_" + buffer.getHashName();
+            InputStream imageStream = buffer.getInputStream();
 
             // if we already have this fileName, reuse it
             final File check = CacheUtil.check(cacheName);
@@ -83,19 +107,21 @@ class ImageResizeUtil {
             File resizedFile = resizeFileNoCheck(size, imageStream);
 
             // now cache that file
-            return CacheUtil.save(cacheName, resizedFile);
+            synchronized (cacheLock) {
+                return CacheUtil.save(cacheName, resizedFile);
+            }
         } catch (Exception e) {
             // this must be thrown
             throw new RuntimeException("Serious problems! Unable to extract error image, this should NEVER happen!", e);
         }
     }
 
-    private static synchronized
+    static
     File resizeAndCache(final int size, final File file) {
         return resizeAndCache(size, file.getAbsolutePath());
     }
 
-    private static synchronized
+    private static
     File resizeAndCache(final int size, final String fileName) {
         if (fileName == null) {
             return null;
@@ -114,26 +140,70 @@ class ImageResizeUtil {
         }
     }
 
-    @SuppressWarnings("Duplicates")
-    private static synchronized
-    File resizeAndCache(final int size, InputStream imageStream) {
+    private static
+    File resizeAndCache(final int size, final InputStream imageStream) {
         if (imageStream == null) {
             return null;
         }
 
-        final String cacheName;
-
-        // no cached file, so we resize then save the new one.
-        boolean needsResize = true;
+        // the data is hashed as it is copied, so there is only ever a single copy of it in memory
+        final HashingBuffer buffer = HashingBuffer.get();
         try {
-            imageStream = makeByteArrayInputStream(imageStream);
-            imageStream.mark(0);
+            buffer.readFrom(imageStream);
+            imageStream.close();
+        } catch (Exception e) {
+            // have to serve up the error image instead.
+            SystemTray.logger.error("Error reading image. Using error icon instead", e);
+            return getErrorImage(size);
+        }
 
-            // check if we already have this file information saved to disk, based on size + hash of data
-            cacheName = size + "_" + CacheUtil.createNameAsHash(imageStream);
-            ((ByteArrayInputStream) imageStream).reset();  // casting to avoid unnecessary try/catch for IOException
+        return resizeAndCache(size, buffer);
+    }
 
+    private static
+    File resizeAndCache(final int size, final HashingBuffer buffer) {
+        // check if we already have this file information saved to disk, based on size + hash of data
+        final String cacheName = size + "_" + buffer.getHashName();
+
+        final FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+            @Override
+            public
+            File call() {
+                return resizeAndCache(size, buffer, cacheName);
+            }
+        });
 
+        FutureTask<File> existing = resizing.putIfAbsent(cacheName, task);
+        if (existing == null) {
+            // no other thread is resizing this image, so we do it here
+            existing = task;
+            try {
+                task.run();
+            } finally {
+                resizing.remove(cacheName, task);
+            }
+        }
+
+        try {
+            return existing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            SystemTray.logger.error("Interrupted while waiting for image to resize. Using error icon instead");
+            return getErrorImage(size);
+        } catch (ExecutionException e) {
+            SystemTray.logger.error("Error resizing image. Using error icon instead", e.getCause());
+            return getErrorImage(size);
+        }
+    }
+
+    @SuppressWarnings("Duplicates")
+    private static
+    File resizeAndCache(final int size, final HashingBuffer buffer, final String cacheName) {
+        final InputStream imageStream = buffer.getInputStream();
+
+        // no cached file, so we resize then save the new one.
+        boolean needsResize = true;
+        try {
             // if we already have this fileName, reuse it
             final File check = CacheUtil.check(cacheName);
             if (check != null) {
@@ -165,7 +235,9 @@ class ImageResizeUtil {
 
                 // now cache that file
                 try {
-                    return CacheUtil.save(cacheName, resizedFile);
+                    synchronized (cacheLock) {
+                        return CacheUtil.save(cacheName, resizedFile);
+                    }
                 } catch (Exception e) {
                     // have to serve up the error image instead.
                     SystemTray.logger.error("Error caching image. Using error icon instead", e);
@@ -181,7 +253,9 @@ class ImageResizeUtil {
         } else {
             // no resize necessary, just cache as is.
             try {
-                return CacheUtil.save(cacheName, imageStream);
+                synchronized (cacheLock) {
+                    return CacheUtil.save(cacheName, imageStream);
+                }
             } catch (Exception e) {
                 // have to serve up the error image instead.
                 SystemTray.logger.error("Error caching image. Using error icon instead", e);
@@ -190,20 +264,6 @@ class ImageResizeUtil {
         }
     }
 
-    // if this input stream is NOT a ByteArrayInputStream, make it one.
-    private static
-    InputStream makeByteArrayInputStream(InputStream imageStream) throws IOException {
-        if (!(imageStream instanceof ByteArrayInputStream)) {
-            // have to make a copy of the inputStream, but only if necessary
-            ByteArrayOutputStream byteArrayOutputStream = IO.copyStream(imageStream);
-            imageStream.close();
-
-            imageStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
-        }
-        return imageStream;
-    }
-
-
     /**
      * Resizes the given InputStream to the specified height. No checks are performed if it's the correct height to begin with.
      *
@@ -216,26 +276,18 @@ class ImageResizeUtil {
     File resizeFileNoCheck(final int size, InputStream inputStream) throws IOException {
         // have to resize the file (and return the new path)
 
-        File newFile = CacheUtil.create("temp_resize.png");
+        File newFile = CacheUtil.create("temp_resize_" + Thread.currentThread().getId() + ".png");
         // if it's already there, we have to delete it
         newFile.delete();
 
-        Image image = ImageUtil.getImageImmediate(ImageIO.read(inputStream));
-
-        BufferedImage bufferedImage = ImageUtil.getBufferedImage(image);
-
-        // resize the image, keep aspect ratio
-        int width = bufferedImage.getWidth();
-        int height = bufferedImage.getHeight();
-        if (width > height) {
-            bufferedImage = ImageUtil.resizeImage(bufferedImage, size, -1);
-        }
-        else {
-            bufferedImage = ImageUtil.resizeImage(bufferedImage, -1, size);
+        BufferedImage source = ImageIO.read(inputStream);
+        if (source == null) {
+            throw new IOException("Unable to read image, no registered image reader for the format");
         }
 
-        // make the image "square" so there is padding on the sides that are smaller
-        bufferedImage = ImageUtil.getSquareBufferedImage(bufferedImage);
+        // resize the image (keep aspect ratio) and make it "square" so there is padding on the sides that are smaller. This is done in
+        // a single step, instead of creating a new image for each of the decode/convert/resize/pad stages.
+        BufferedImage bufferedImage = IconResampler.resizeToSquare(source, size);
 
         // now write out the new one
         ImageIO.write(bufferedImage, "png", newFile); // made up extension
@@ -323,21 +375,14 @@ class ImageResizeUtil {
             final Image trayImage =  ImageUtil.getImageImmediate(image);
             BufferedImage bufferedImage = ImageUtil.getBufferedImage(trayImage);
 
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            ImageIO.write(bufferedImage, "png", os);
-            InputStream imageInputStream = new ByteArrayInputStream(os.toByteArray());
-
+            // the PNG is hashed as it is written
+            final HashingBuffer buffer = HashingBuffer.get();
+            ImageIO.write(bufferedImage, "png", buffer);
 
             if (SystemTray.AUTO_SIZE) {
-                File file = resizeAndCache(getSize(isTrayImage), imageInputStream);
-                imageInputStream.close(); // BAOS doesn't do anything, but here for completeness + documentation
-
-                return file;
+                return resizeAndCache(getSize(isTrayImage), buffer);
             } else {
-                File file = CacheUtil.save(imageInputStream);
-                imageInputStream.close(); // BAOS doesn't do anything, but here for completeness + documentation
-
-                return file;
+                return CacheUtil.save(buffer.getInputStream());
             }
         } catch (Exception e) {
             // have to serve up the error image instead.
@@ -353,13 +398,13 @@ class ImageResizeUtil {
         }
 
         try {
-            ByteArrayOutputStream byteArrayOutputStream = IO.copyStream(imageStream);
-            ByteArrayInputStream fileStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
+            final HashingBuffer buffer = HashingBuffer.get();
+            buffer.readFrom(imageStream);
 
             if (SystemTray.AUTO_SIZE) {
-                return resizeAndCache(getSize(isTrayImage), fileStream);
+                return resizeAndCache(getSize(isTrayImage), buffer);
             } else {
-                return CacheUtil.save(fileStream);
+                return CacheUtil.save(buffer.getInputStream());
             }
         } catch (Exception e) {
             // have to serve up the error image instead.
@@ -368,7 +413,222 @@ class ImageResizeUtil {
         }
     }
 
+    /**
+     * @return the resized image (for every screen scale), or null if the image file is null
+     */
+    public static
+    ImageVariants getVariants(final boolean isTrayImage, final File imageFile) {
+        if (imageFile == null) {
+            return null;
+        }
+
+        if (SystemTray.AUTO_SIZE && SystemTray.AUTO_SCALE) {
+            return createVariants(isTrayImage, imageFile);
+        } else {
+            return ImageVariants.intern(new ImageVariants(shouldResizeOrCache(isTrayImage, imageFile)));
+        }
+    }
+
+    /**
+     * @return the resized image (for every screen scale), or null if the image path is null
+     */
+    public static
+    ImageVariants getVariants(final boolean isTrayImage, final String imagePath) {
+        if (imagePath == null) {
+            return null;
+        }
+
+        if (SystemTray.AUTO_SIZE && SystemTray.AUTO_SCALE) {
+            return createVariants(isTrayImage, new File(imagePath));
+        } else {
+            return ImageVariants.intern(new ImageVariants(shouldResizeOrCache(isTrayImage, imagePath)));
+        }
+    }
+
+    /**
+     * @return the resized image (for every screen scale), or null if the image URL is null
+     */
+    public static
+    ImageVariants getVariants(final boolean isTrayImage, final URL imageUrl) {
+        if (imageUrl == null) {
+            return null;
+        }
+
+        if (SystemTray.AUTO_SIZE && SystemTray.AUTO_SCALE) {
+            try {
+                InputStream inputStream = imageUrl.openStream();
+                final HashingBuffer buffer = HashingBuffer.get();
+                buffer.readFrom(inputStream);
+                inputStream.close();
+
+                return createVariants(isTrayImage, buffer);
+            } catch (Exception e) {
+                // have to serve up the error image instead.
+                SystemTray.logger.error("Error reading image. Using error icon instead", e);
+                return ImageVariants.intern(new ImageVariants(getErrorImage(getSize(isTrayImage))));
+            }
+        } else {
+            return ImageVariants.intern(new ImageVariants(shouldResizeOrCache(isTrayImage, imageUrl)));
+        }
+    }
+
+    /**
+     * @return the resized image (for every screen scale), or null if the image stream is null
+     */
+    public static
+    ImageVariants getVariants(final boolean isTrayImage, final InputStream imageStream) {
+        if (imageStream == null) {
+            return null;
+        }
+
+        if (SystemTray.AUTO_SIZE && SystemTray.AUTO_SCALE) {
+            try {
+                final HashingBuffer buffer = HashingBuffer.get();
+                buffer.readFrom(imageStream);
+                imageStream.close();
+
+                return createVariants(isTrayImage, buffer);
+            } catch (Exception e) {
+                // have to serve up the error image instead.
+                SystemTray.logger.error("Error reading image. Using error icon instead", e);
+                return ImageVariants.intern(new ImageVariants(getErrorImage(getSize(isTrayImage))));
+            }
+        } else {
+            return ImageVariants.intern(new ImageVariants(shouldResizeOrCache(isTrayImage, imageStream)));
+        }
+    }
+
+    /**
+     * @return the resized image (for every screen scale), or null if the image is null
+     */
+    public static
+    ImageVariants getVariants(final boolean isTrayImage, final Image image) {
+        if (image == null) {
+            return null;
+        }
+
+        if (SystemTray.AUTO_SIZE && SystemTray.AUTO_SCALE) {
+            try {
+                final Image trayImage = ImageUtil.getImageImmediate(image);
+                BufferedImage bufferedImage = ImageUtil.getBufferedImage(trayImage);
+
+                final HashingBuffer buffer = HashingBuffer.get();
+                ImageIO.write(bufferedImage, "png", buffer);
+
+                return createVariants(isTrayImage, buffer);
+            } catch (Exception e) {
+                // have to serve up the error image instead.
+                SystemTray.logger.error("Error reading image. Using error icon instead", e);
+                return ImageVariants.intern(new ImageVariants(getErrorImage(getSize(isTrayImage))));
+            }
+        } else {
+            return ImageVariants.intern(new ImageVariants(shouldResizeOrCache(isTrayImage, image)));
+        }
+    }
+
+    /**
+     * @return the resized image (for every screen scale), or null if the image stream is null
+     */
+    public static
+    ImageVariants getVariants(final boolean isTrayImage, final ImageInputStream imageStream) {
+        if (imageStream == null) {
+            return null;
+        }
+
+        if (SystemTray.AUTO_SIZE && SystemTray.AUTO_SCALE) {
+            try {
+                final HashingBuffer buffer = HashingBuffer.get();
+                buffer.readFrom(imageStream);
+
+                return createVariants(isTrayImage, buffer);
+            } catch (Exception e) {
+                // have to serve up the error image instead.
+                SystemTray.logger.error("Error reading image. Using error icon instead", e);
+                return ImageVariants.intern(new ImageVariants(getErrorImage(getSize(isTrayImage))));
+            }
+        } else {
+            return ImageVariants.intern(new ImageVariants(shouldResizeOrCache(isTrayImage, imageStream)));
+        }
+    }
+
+    /**
+     * @param imageSource the image, as File, String (path), URL, InputStream, Image or ImageInputStream.
+     *
+     * @return the resized image (for every screen scale), or null if the image source is null (or is not a supported type)
+     */
+    public static
+    ImageVariants getVariantsFromSource(final boolean isTrayImage, final Object imageSource) {
+        if (imageSource instanceof File) {
+            return getVariants(isTrayImage, (File) imageSource);
+        }
+        else if (imageSource instanceof String) {
+            return getVariants(isTrayImage, (String) imageSource);
+        }
+        else if (imageSource instanceof URL) {
+            return getVariants(isTrayImage, (URL) imageSource);
+        }
+        else if (imageSource instanceof InputStream) {
+            return getVariants(isTrayImage, (InputStream) imageSource);
+        }
+        else if (imageSource instanceof Image) {
+            return getVariants(isTrayImage, (Image) imageSource);
+        }
+        else if (imageSource instanceof ImageInputStream) {
+            return getVariants(isTrayImage, (ImageInputStream) imageSource);
+        }
+        else if (imageSource != null) {
+            SystemTray.logger.error("Unable to use image, unsupported type: {}", imageSource.getClass());
+        }
+
+        return null;
+    }
+
+    // The variants are interned by the hash of the file CONTENTS (not by the path), so that if the file is changed and then set again,
+    // the changed image is used.
     private static
+    ImageVariants createVariants(final boolean isTrayImage, final File source) {
+        try {
+            final FileInputStream inputStream = new FileInputStream(source);
+            final HashingBuffer buffer = HashingBuffer.get();
+            try {
+                buffer.readFrom(inputStream);
+            } finally {
+                inputStream.close();
+            }
+
+            return createVariants(isTrayImage, buffer);
+        } catch (Exception e) {
+            // have to serve up the error image instead.
+            SystemTray.logger.error("Error reading image. Using error icon instead", e);
+            return ImageVariants.intern(new ImageVariants(getErrorImage(getSize(isTrayImage))));
+        }
+    }
+
+    private static
+    ImageVariants createVariants(final boolean isTrayImage, final HashingBuffer buffer) throws IOException {
+        // the other scales are resized from the original data, so that has to be kept (on disk, not in memory)
+        final String sourceName = buffer.getHashName();
+        File source;
+        synchronized (cacheLock) {
+            source = CacheUtil.check(sourceName);
+            if (source == null) {
+                source = CacheUtil.save(sourceName, buffer.getInputStream());
+            }
+        }
+
+        final ImageVariants variants = ImageVariants.intern(new ImageVariants(isTrayImage, source));
+
+        // the data is already in memory, so use it directly for the current scale (unless this image is already used elsewhere)
+        final int scaleIndex = SizeAndScalingUtil.getScaleIndex();
+        if (!variants.hasFile(scaleIndex)) {
+            final int size = SizeAndScalingUtil.getScaledSize(getSize(isTrayImage), scaleIndex);
+            variants.setFile(scaleIndex, resizeAndCache(size, buffer));
+        }
+
+        return variants;
+    }
+
+    static
     int getSize(final boolean isTrayImage) {
         int size;
         if (isTrayImage) {
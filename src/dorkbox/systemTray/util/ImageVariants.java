@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The resized images (1x, 1.5x, 2x) of a single source image.
+ * <p>
+ * Only the variant for the current screen scale is created up-front, the others are created (from the original source image) the first
+ * time that scale is used. Because resized images are cached by size, a variant is only ever resized once.
+ * <p>
+ * Instances are interned, so every entry that uses the same image shares the same (effectively immutable) instance. Images are the
+ * same when their contents are the same, so changing an image file (and setting it again) is a different image.
+ */
+public final
+class ImageVariants {
+    // the instances are only kept while something (ie: a menu entry) still uses them
+    private static final Map<ImageVariants, WeakReference<ImageVariants>> interned = new WeakHashMap<ImageVariants, WeakReference<ImageVariants>>();
+
+    private final boolean isTrayImage;
+
+    // null if this image is never resized (ie: AUTO_SIZE is disabled)
+    private final File source;
+    private final File[] variants = new File[SizeAndScalingUtil.SCALES.length];
+
+    /**
+     * The same file is used for every scale
+     */
+    ImageVariants(final File file) {
+        this.isTrayImage = false;
+        this.source = null;
+
+        for (int i = 0; i < variants.length; i++) {
+            variants[i] = file;
+        }
+    }
+
+    /**
+     * @param source the original (not resized) image. This is the cached copy (named by the hash of the image contents), so that the
+     *               same source is always the same image.
+     */
+    ImageVariants(final boolean isTrayImage, final File source) {
+        this.isTrayImage = isTrayImage;
+        this.source = source;
+    }
+
+    /**
+     * @return the shared instance that is equal to the specified variants (the same image), or the specified variants if there isn't one
+     */
+    static
+    ImageVariants intern(final ImageVariants variants) {
+        synchronized (interned) {
+            final WeakReference<ImageVariants> reference = interned.get(variants);
+            if (reference != null) {
+                final ImageVariants existing = reference.get();
+                if (existing != null) {
+                    return existing;
+                }
+            }
+
+            interned.put(variants, new WeakReference<ImageVariants>(variants));
+            return variants;
+        }
+    }
+
+    /**
+     * @return the image file to use for the current screen scale
+     */
+    public
+    File getFile() {
+        return getFile(SizeAndScalingUtil.getScaleIndex());
+    }
+
+    synchronized
+    File getFile(final int scaleIndex) {
+        File file = variants[scaleIndex];
+        if (file == null) {
+            final int size = SizeAndScalingUtil.getScaledSize(ImageResizeUtil.getSize(isTrayImage), scaleIndex);
+            file = ImageResizeUtil.resizeAndCache(size, source);
+            variants[scaleIndex] = file;
+        }
+
+        return file;
+    }
+
+    synchronized
+    void setFile(final int scaleIndex, final File file) {
+        variants[scaleIndex] = file;
+    }
+
+    synchronized
+    boolean hasFile(final int scaleIndex) {
+        return variants[scaleIndex] != null;
+    }
+
+    @Override
+    public
+    int hashCode() {
+        // the same file is used for every scale when there is no source, and it never changes
+        final File file = source != null ? source : variants[0];
+        return (isTrayImage ? 31 : 0) + (file == null ? 0 : file.hashCode());
+    }
+
+    @Override
+    public
+    boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImageVariants)) {
+            return false;
+        }
+
+        final ImageVariants other = (ImageVariants) obj;
+        if (isTrayImage != other.isTrayImage) {
+            return false;
+        }
+
+        if (source != null) {
+            return source.equals(other.source);
+        }
+        return other.source == null && variants[0] != null && variants[0].equals(other.variants[0]);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * Optional accounting of the native objects that are created (and released) by the tray implementations, so that leaks show up as live
+ * counts that keep growing while the menu is changed.
+ * <p>
+ * For each kind of native object, the number created, the number released, the number still alive and the most that were alive at the
+ * same time (high-water mark) are recorded.
+ * <p>
+ * This must be enabled before the SystemTray is created, otherwise objects that already exist are not counted. When enabled, the counts
+ * are also available via JMX, as "dorkbox.systemTray:type=NativeResources"
+ */
+public final
+class NativeResources {
+    public
+    enum Kind {
+        /** GTK menus (the root menu and sub-menus) */
+        MENU,
+        /** GTK menu entries */
+        MENU_ITEM,
+        /** GTK images, used for the menu entry icons, spacers and checkmarks */
+        IMAGE,
+        /** the native tray (GTK StatusIcon or AppIndicator) */
+        TRAY,
+        /** the Windows native tray icons */
+        ICON
+    }
+
+    /**
+     * A snapshot of the counts for a kind of native object.
+     */
+    public static final
+    class Counts {
+        public final Kind kind;
+        public final long created;
+        public final long released;
+        public final long live;
+        public final long highWater;
+
+        Counts(final Kind kind, final long created, final long released, final long live, final long highWater) {
+            this.kind = kind;
+            this.created = created;
+            this.released = released;
+            this.live = live;
+            this.highWater = highWater;
+        }
+
+        @Override
+        public
+        String toString() {
+            return kind + " created=" + created + " released=" + released + " live=" + live + " highWater=" + highWater;
+        }
+    }
+
+    /**
+     * The JMX view of the counts
+     */
+    public
+    interface NativeResourcesMBean {
+        boolean isEnabled();
+
+        /**
+         * @return one line per kind of native object
+         */
+        String[] getReport();
+    }
+
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private static final AtomicLongArray created = new AtomicLongArray(KINDS.length);
+    private static final AtomicLongArray released = new AtomicLongArray(KINDS.length);
+    private static final AtomicLongArray live = new AtomicLongArray(KINDS.length);
+    private static final AtomicLongArray highWater = new AtomicLongArray(KINDS.length);
+
+    private static volatile boolean enabled = false;
+    private static boolean registeredMBean = false;
+
+
+    /**
+     * Records that a native object was created
+     */
+    public static
+    void created(final Kind kind) {
+        if (!enabled) {
+            return;
+        }
+
+        final int index = kind.ordinal();
+        created.incrementAndGet(index);
+        final long count = live.incrementAndGet(index);
+
+        long currentHighWater;
+        do {
+            currentHighWater = highWater.get(index);
+        } while (count > currentHighWater && !highWater.compareAndSet(index, currentHighWater, count));
+    }
+
+    /**
+     * Records that a native object was released (or handed over to something that will release it)
+     */
+    public static
+    void released(final Kind kind) {
+        if (!enabled) {
+            return;
+        }
+
+        final int index = kind.ordinal();
+        released.incrementAndGet(index);
+        live.decrementAndGet(index);
+    }
+
+    public static
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables (or disables) counting the native objects. When enabled the first time, the counts are registered with JMX.
+     */
+    public static
+    void setEnabled(final boolean enabled) {
+        NativeResources.enabled = enabled;
+
+        if (enabled) {
+            registerMBean();
+        }
+    }
+
+    /**
+     * @return the counts for the kind of native object
+     */
+    public static
+    Counts getCounts(final Kind kind) {
+        final int index = kind.ordinal();
+        return new Counts(kind, created.get(index), released.get(index), live.get(index), highWater.get(index));
+    }
+
+    /**
+     * @return the counts for every kind of native object
+     */
+    public static
+    List<Counts> getCounts() {
+        final List<Counts> counts = new ArrayList<Counts>(KINDS.length);
+        for (Kind kind : KINDS) {
+            counts.add(getCounts(kind));
+        }
+
+        return counts;
+    }
+
+    private static synchronized
+    void registerMBean() {
+        if (registeredMBean) {
+            return;
+        }
+        registeredMBean = true;
+
+        try {
+            NativeResourcesMBean bean = new NativeResourcesMBean() {
+                @Override
+                public
+                boolean isEnabled() {
+                    return NativeResources.isEnabled();
+                }
+
+                @Override
+                public
+                String[] getReport() {
+                    final List<Counts> counts = getCounts();
+                    final String[] report = new String[counts.size()];
+
+                    for (int i = 0; i < report.length; i++) {
+                        report[i] = counts.get(i).toString();
+                    }
+                    return report;
+                }
+            };
+
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(new StandardMBean(bean, NativeResourcesMBean.class),
+                                            new ObjectName("dorkbox.systemTray:type=NativeResources"));
+        } catch (Exception e) {
+            SystemTray.logger.error("Unable to register the native resource counts with JMX", e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import dorkbox.systemTray.SystemTray;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on another executor. This is how the callbacks for a single menu entry
+ * stay ordered, even when the callbacks for different entries run concurrently.
+ * <p>
+ * Tasks that are submitted while a task is running are run (in order) by the same thread, once it finishes.
+ */
+final
+class SerialExecutor implements Executor {
+    private final Executor executor;
+
+    // guarded by tasks
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+    private boolean isRunning = false;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public
+        void run() {
+            while (true) {
+                final Runnable task;
+                synchronized (tasks) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        isRunning = false;
+                        return;
+                    }
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable throwable) {
+                    // one task failing must not stop the tasks queued after it
+                    SystemTray.logger.error("Error running callback", throwable);
+                }
+            }
+        }
+    };
+
+    SerialExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public
+    void execute(final Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+
+            if (isRunning) {
+                return;
+            }
+            isRunning = true;
+        }
+
+        executor.execute(drain);
+    }
+}
@@ -19,20 +19,23 @@ import static com.sun.jna.platform.win32.WinUser.SM_CYMENUCHECK;
 import static com.sun.jna.platform.win32.WinUser.SM_CYSMICON;
 
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
+import java.awt.Point;
 import java.awt.Toolkit;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JMenuItem;
 
 import dorkbox.systemTray.SystemTray;
-import dorkbox.systemTray.Tray;
-import dorkbox.systemTray.ui.swing._SwingTray;
-import dorkbox.systemTray.ui.swing._WindowsNativeTray;
 import dorkbox.util.OS;
 import dorkbox.util.SwingUtil;
 import dorkbox.util.jna.linux.GtkTheme;
@@ -44,6 +47,244 @@ class SizeAndScalingUtil {
     static int TRAY_SIZE = 0;
     static int TRAY_MENU_SIZE = 0;
 
+    // the screen scales that we create image variants for. TRAY_SIZE/TRAY_MENU_SIZE are for the scale detected at startup
+    static final float[] SCALES = new float[] {1.0F, 1.5F, 2.0F};
+    static volatile int INITIAL_SCALE_INDEX = -1;
+    static volatile int SCALE_INDEX = -1;
+
+    // this is the XSETTINGS value that GNOME (and most linux desktops) change when the display scaling factor changes. 1024 * dpi
+    private static final String LINUX_DPI_PROPERTY = "gnome.Xft/DPI";
+
+    private static final List<Runnable> scaleChangeListeners = new CopyOnWriteArrayList<Runnable>();
+
+    // only one listener is registered with the toolkit (while there are scale change listeners), which notifies all of them
+    private static boolean dpiListenerAdded = false;
+    private static final PropertyChangeListener dpiListener = new PropertyChangeListener() {
+        @Override
+        public
+        void propertyChange(final PropertyChangeEvent evt) {
+            final int previous = getScaleIndex();
+            if (updateScaleIndex() != previous) {
+                if (SystemTray.DEBUG) {
+                    SystemTray.logger.debug("Screen scale changed to {}", getScreenScale());
+                }
+
+                notifyScaleChanged();
+            }
+        }
+    };
+
+    /**
+     * @return the scale of the default screen (1.0 is 96 DPI), as best as we can determine it. Always 1.0 if it cannot be determined.
+     */
+    public static
+    float getScreenScale() {
+        return getScreenScale(null);
+    }
+
+    /**
+     * On Linux (XSETTINGS) and MacOS, the scale is the same for every screen, and the screen is ignored.
+     *
+     * @param screen the screen the tray or menu is on, or null for the default screen
+     *
+     * @return the scale of the screen (1.0 is 96 DPI), as best as we can determine it. Always 1.0 if it cannot be determined.
+     */
+    public static
+    float getScreenScale(final GraphicsConfiguration screen) {
+        try {
+            if (OS.isMacOsX()) {
+                return getMacOSScaleFactor();
+            }
+
+            if (OS.isLinux()) {
+                // this is updated when the scale changes, and works on all java versions
+                Object dpi = Toolkit.getDefaultToolkit().getDesktopProperty(LINUX_DPI_PROPERTY);
+                if (dpi instanceof Integer && (Integer) dpi > 0) {
+                    return (Integer) dpi / (96.0F * 1024.0F);
+                }
+            }
+
+            GraphicsConfiguration config = screen;
+            if (config == null) {
+                config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                                            .getDefaultScreenDevice()
+                                            .getDefaultConfiguration();
+            }
+
+            // java9+ (on java 6-8 this is always 1.0)
+            return (float) config.getDefaultTransform().getScaleX();
+        } catch (Throwable ignored) {
+            // headless, or something else went wrong.
+            return 1.0F;
+        }
+    }
+
+    /**
+     * @return the index (into SCALES) of the image variant that should be used for the current screen scale.
+     */
+    static
+    int getScaleIndex() {
+        int index = SCALE_INDEX;
+        if (index == -1) {
+            index = updateScaleIndex();
+        }
+        return index;
+    }
+
+    /**
+     * Re-queries the screen scale.
+     *
+     * @return the index (into SCALES) of the image variant that should be used for the current screen scale.
+     */
+    static
+    int updateScaleIndex() {
+        return updateScaleIndex(null);
+    }
+
+    /**
+     * Re-queries the screen scale.
+     *
+     * @param screen the screen the tray or menu is on, or null for the default screen
+     *
+     * @return the index (into SCALES) of the image variant that should be used for the screen scale.
+     */
+    static synchronized
+    int updateScaleIndex(final GraphicsConfiguration screen) {
+        final float scale = getScreenScale(screen);
+
+        int index = 0;
+        for (int i = 1; i < SCALES.length; i++) {
+            // pick the closest one
+            if (Math.abs(SCALES[i] - scale) < Math.abs(SCALES[index] - scale)) {
+                index = i;
+            }
+        }
+
+        if (INITIAL_SCALE_INDEX == -1) {
+            INITIAL_SCALE_INDEX = index;
+        }
+        SCALE_INDEX = index;
+        return index;
+    }
+
+    /**
+     * Adjusts the image size (which is for the scale detected at startup) for the scale of the specified variant.
+     */
+    static
+    int getScaledSize(final int size, final int scaleIndex) {
+        final int initialIndex = INITIAL_SCALE_INDEX;
+        if (initialIndex == -1 || initialIndex == scaleIndex) {
+            return size;
+        }
+
+        return Math.round(size * SCALES[scaleIndex] / SCALES[initialIndex]);
+    }
+
+    /**
+     * Re-queries the scale of the screen that contains the point (ie: where the menu is about to be shown), so that when the menu is
+     * shown on a screen with a different scale than before, the scale change listeners are notified.
+     *
+     * @param point the location, in screen coordinates
+     */
+    public static
+    void updateScaleAt(final Point point) {
+        if (scaleChangeListeners.isEmpty()) {
+            return;
+        }
+
+        final GraphicsConfiguration screen = getScreenAt(point);
+        if (screen == null) {
+            return;
+        }
+
+        final int previous = getScaleIndex();
+        if (updateScaleIndex(screen) != previous) {
+            if (SystemTray.DEBUG) {
+                SystemTray.logger.debug("Screen scale changed to {}", getScreenScale(screen));
+            }
+
+            notifyScaleChanged();
+        }
+    }
+
+    /**
+     * @return the screen that contains the point, or null if there is none (or we are headless)
+     */
+    private static
+    GraphicsConfiguration getScreenAt(final Point point) {
+        try {
+            final GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+            for (GraphicsDevice device : devices) {
+                final GraphicsConfiguration config = device.getDefaultConfiguration();
+                if (config.getBounds().contains(point)) {
+                    return config;
+                }
+            }
+        } catch (Throwable ignored) {
+            // headless, or something else went wrong.
+        }
+
+        return null;
+    }
+
+    private static
+    void notifyScaleChanged() {
+        for (Runnable listener : scaleChangeListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Notifies the listener when the screen scale has changed enough that a different image variant should be used.
+     * <p>
+     * Linux (via XSETTINGS, on the AWT thread) reports scale changes of the display while running. The Swing and Windows native menus
+     * also check the scale of the screen they are shown on, and notify the listener (on the thread showing the menu) if it changed.
+     */
+    public static
+    void addScaleChangeListener(final Runnable listener) {
+        synchronized (scaleChangeListeners) {
+            scaleChangeListeners.add(listener);
+
+            if (dpiListenerAdded || !OS.isLinux()) {
+                return;
+            }
+
+            try {
+                Toolkit.getDefaultToolkit().addPropertyChangeListener(LINUX_DPI_PROPERTY, dpiListener);
+                dpiListenerAdded = true;
+            } catch (Throwable e) {
+                if (SystemTray.DEBUG) {
+                    SystemTray.logger.debug("Unable to listen for screen scale changes", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops notifying the listener when the screen scale has changed. When there are no more listeners, the toolkit is no longer
+     * listened to either.
+     */
+    public static
+    void removeScaleChangeListener(final Runnable listener) {
+        synchronized (scaleChangeListeners) {
+            scaleChangeListeners.remove(listener);
+
+            if (!dpiListenerAdded || !scaleChangeListeners.isEmpty()) {
+                return;
+            }
+
+            try {
+                Toolkit.getDefaultToolkit().removePropertyChangeListener(LINUX_DPI_PROPERTY, dpiListener);
+            } catch (Throwable e) {
+                if (SystemTray.DEBUG) {
+                    SystemTray.logger.debug("Unable to stop listening for screen scale changes", e);
+                }
+            }
+
+            dpiListenerAdded = false;
+        }
+    }
+
     public static
     int getMacOSScaleFactor() {
         // apple will ALWAYS return 2.0 on (apple) retina displays. This is enforced by apple
@@ -91,6 +332,9 @@ class SizeAndScalingUtil {
     public static
     int getTrayImageSize() {
         if (TRAY_SIZE == 0) {
+            // the sizes are for the scale at startup
+            getScaleIndex();
+
             if (OS.isLinux()) {
                 TRAY_SIZE = GtkTheme.getIndicatorSize();
             }
@@ -116,7 +360,7 @@ class SizeAndScalingUtil {
 }
 
     public static
-    int getMenuImageSize(final Class<? extends Tray> trayType) {
+    int getMenuImageSize(final SystemTray.TrayType trayType) {
         if (TRAY_MENU_SIZE == 0) {
             if (OS.isMacOsX()) {
                 // Note: Mac (AWT) does not have images in the menu.
@@ -124,7 +368,7 @@ class SizeAndScalingUtil {
                 // we obviously do not want to be the exact same size, so we give 2px padding on each side.
                 TRAY_MENU_SIZE = SizeAndScalingUtil.getMacOSScaleFactor() * 18;
             }
-            else if ((trayType == _SwingTray.class) || (trayType == _WindowsNativeTray.class)) {
+            else if ((trayType == SystemTray.TrayType.Swing) || (trayType == SystemTray.TrayType.WindowsNotifyIcon)) {
                 // Java does not scale the menu item IMAGE **AT ALL**, we must provide the correct size to begin with
 
                 if (OS.isWindows()) {
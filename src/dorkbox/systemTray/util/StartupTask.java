@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * One step of initializing the SystemTray. Steps that do not depend on each other run at the same time (see
+ * {@link #fork(String, Runnable, StartupTask...)}), and the steps each one waited for are recorded, so that the critical path (the chain
+ * of steps that determined how long initialization took) can be reported.
+ */
+public final
+class StartupTask {
+    private final String name;
+    private final StartupTask[] dependencies;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile Throwable error;
+
+    private
+    StartupTask(final String name, final StartupTask[] dependencies) {
+        this.name = name;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Starts a step that runs on the current thread, after waiting for the dependencies to finish. {@link #finish()} must be called when
+     * the step is done.
+     */
+    public static
+    StartupTask start(final String name, final StartupTask... dependencies) {
+        final StartupTask task = new StartupTask(name, dependencies);
+        task.joinDependencies();
+        task.startTime = System.nanoTime();
+        return task;
+    }
+
+    /**
+     * Runs a step on the current thread, after waiting for the dependencies to finish.
+     */
+    public static
+    StartupTask run(final String name, final Runnable runnable, final StartupTask... dependencies) {
+        final StartupTask task = start(name, dependencies);
+        try {
+            runnable.run();
+        } finally {
+            task.finish();
+        }
+        return task;
+    }
+
+    /**
+     * Runs a step on a new (daemon) thread, after waiting for the dependencies to finish. Failures are rethrown by {@link #join()}.
+     */
+    public static
+    StartupTask fork(final String name, final Runnable runnable, final StartupTask... dependencies) {
+        final StartupTask task = new StartupTask(name, dependencies);
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public
+            void run() {
+                try {
+                    task.joinDependencies();
+                    task.startTime = System.nanoTime();
+                    runnable.run();
+                } catch (Throwable t) {
+                    task.error = t;
+                } finally {
+                    task.finish();
+                }
+            }
+        }, "SystemTray " + name);
+        thread.setDaemon(true);
+        thread.start();
+
+        return task;
+    }
+
+    /**
+     * Marks a step (started via {@link #start(String, StartupTask...)}) as finished
+     */
+    public
+    void finish() {
+        if (startTime == 0L) {
+            startTime = System.nanoTime();
+        }
+        endTime = System.nanoTime();
+        finished.countDown();
+    }
+
+    /**
+     * Waits for this step to finish, and rethrows it's failure (if any).
+     */
+    public
+    void join() {
+        await();
+
+        final Throwable error = this.error;
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        else if (error != null) {
+            throw new RuntimeException("Unable to " + name, error);
+        }
+    }
+
+    /**
+     * Waits for this step to finish, ignoring any failure.
+     */
+    public
+    void await() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private
+    void joinDependencies() {
+        for (StartupTask dependency : dependencies) {
+            if (dependency != null) {
+                dependency.join();
+            }
+        }
+    }
+
+    /**
+     * @return the chain of steps that had to finish before this one could (the dependency that finished last), ending with this step.
+     */
+    public
+    String getCriticalPath() {
+        StartupTask latest = null;
+        for (StartupTask dependency : dependencies) {
+            if (dependency != null && (latest == null || dependency.endTime > latest.endTime)) {
+                latest = dependency;
+            }
+        }
+
+        final String step = String.format(Locale.US, "%s (%.1f ms)", name, (endTime - startTime) / 1000000.0D);
+        if (latest == null) {
+            return step;
+        }
+
+        return latest.getCriticalPath() + " -> " + step;
+    }
+}
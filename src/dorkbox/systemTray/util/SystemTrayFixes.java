@@ -16,28 +16,24 @@
 package dorkbox.systemTray.util;
 
 import static dorkbox.systemTray.SystemTray.logger;
-import static javassist.bytecode.Opcode.BIPUSH;
 
 import java.awt.AWTException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.security.Principal;
 import java.util.Locale;
 
 import dorkbox.systemTray.SystemTray;
 import dorkbox.util.ClassLoaderUtil;
+import dorkbox.util.IO;
 import dorkbox.util.OS;
-import javassist.ClassPool;
-import javassist.CtBehavior;
-import javassist.CtClass;
-import javassist.CtConstructor;
-import javassist.CtField;
-import javassist.CtMethod;
-import javassist.CtNewMethod;
-import javassist.Modifier;
-import javassist.bytecode.BadBytecode;
-import javassist.bytecode.CodeIterator;
-import javassist.bytecode.ConstPool;
-import javassist.bytecode.InstructionPrinter;
-import javassist.bytecode.MethodInfo;
-import javassist.bytecode.Mnemonic;
 
 
 /*
@@ -66,9 +62,20 @@ import javassist.bytecode.Mnemonic;
 
 /**
  * Fixes issues with some java runtimes
+ * <p>
+ * The patched classes are created (via javassist) the first time, and cached on disk for that exact JVM and tray size. Later starts
+ * define the cached classes directly, without loading javassist.
+ * <p>
+ * The cached classes are defined in the bootstrap class loader, so they are only cached in a directory that only the current user can
+ * write to (in the user's home, NOT the shared temp directory), and only read if the directory and the file are owned by the current
+ * user. If the owner cannot be checked (Java 6), the classes are not cached.
  */
 public
 class SystemTrayFixes {
+    private static final String WINDOWS = "windows";
+    private static final String MACOS = "macOS";
+    private static final String LINUX = "linux";
+
     private static
     boolean isSwingTrayLoaded() {
         String className;
@@ -133,111 +140,12 @@ class SystemTrayFixes {
             @SuppressWarnings("unused")
             java.awt.Robot robot = new java.awt.Robot();
 
-
-            ClassPool pool = ClassPool.getDefault();
-            byte[] trayBytes;
-            byte[] trayIconBytes;
-
-            {
-                CtClass trayClass = pool.get("sun.awt.windows.WSystemTrayPeer");
-                // now have to make a new "system tray" (that is null) in order to init/load this class completely
-                // have to modify the SystemTray.getIconSize as well.
-                trayClass.setModifiers(trayClass.getModifiers() & javassist.Modifier.PUBLIC);
-                trayClass.getConstructors()[0].setModifiers(trayClass.getConstructors()[0].getModifiers() & javassist.Modifier.PUBLIC);
-
-
-                CtMethod method = trayClass.getDeclaredMethod("getTrayIconSize");
-                CtBehavior methodInfos[] = new CtBehavior[]{ method };
-
-                fixTraySize(methodInfos, 16, trayIconSize);
-
-                // perform pre-verification for the modified method
-                method.getMethodInfo().rebuildStackMapForME(trayClass.getClassPool());
-
-                trayBytes = trayClass.toBytecode();
-            }
-
-            {
-                CtClass trayIconClass = pool.get("sun.awt.windows.WTrayIconPeer");
-                CtMethod ctMethodCreate = trayIconClass.getDeclaredMethod("createNativeImage");
-                CtMethod ctMethodUpdate = trayIconClass.getDeclaredMethod("updateNativeImage");
-
-                int TRAY_MASK = (trayIconSize * trayIconSize) / 8;
-                ctMethodCreate.setBody("{" +
-                    "java.awt.image.BufferedImage bufferedImage = $1;" +
-
-                    "java.awt.image.Raster rasterImage = bufferedImage.getRaster();" +
-                    "final byte[] mask = new byte[" + TRAY_MASK + "];" +
-                    "final int pixels[] = ((java.awt.image.DataBufferInt)rasterImage.getDataBuffer()).getData();" +
-
-                    "int numberOfPixels = pixels.length;" +
-                    "int rasterImageWidth = rasterImage.getWidth();" +
-
-                    "for (int i = 0; i < numberOfPixels; i++) {" +
-                        "int iByte = i / 8;" +
-                        "int augmentMask = 1 << (7 - (i % 8));" +
-                        "if ((pixels[i] & 0xFF000000) == 0) {" +
-                            "if (iByte < mask.length) {" +
-                                "mask[iByte] |= augmentMask;" +
-                            "}" +
-                        "}" +
-                    "}" +
-
-                    "if (rasterImage instanceof sun.awt.image.IntegerComponentRaster) {" +
-                        "rasterImageWidth = ((sun.awt.image.IntegerComponentRaster)rasterImage).getScanlineStride();" +
-                    "}" +
-
-                    "setNativeIcon(((java.awt.image.DataBufferInt)bufferedImage.getRaster().getDataBuffer()).getData(), " +
-                                   "mask, rasterImageWidth, rasterImage.getWidth(), rasterImage.getHeight());" +
-                "}");
-
-                ctMethodUpdate.setBody("{" +
-                    "java.awt.Image image = $1;" +
-
-                    "if (isDisposed()) {" +
-                        "return;" +
-                    "}" +
-
-                    "int imageWidth = image.getWidth(observer);" +
-                    "int imageHeight = image.getWidth(observer);" +
-
-                    "java.awt.image.BufferedImage trayIcon = new java.awt.image.BufferedImage(imageWidth, imageHeight, java.awt.image.BufferedImage.TYPE_INT_ARGB);" +
-                    "java.awt.Graphics2D g = trayIcon.createGraphics();" +
-
-                    "if (g != null) {" +
-                        "try {" +
-                            // this will render the image "nicely"
-                            "g.addRenderingHints(new java.awt.RenderingHints(java.awt.RenderingHints.KEY_RENDERING," +
-                                                                            "java.awt.RenderingHints.VALUE_RENDER_QUALITY));" +
-                            "g.drawImage(image, 0, 0, imageWidth, imageHeight, observer);" +
-
-                            "createNativeImage(trayIcon);" +
-
-                            "updateNativeIcon(!firstUpdate);" +
-                            "if (firstUpdate) {" +
-                                "firstUpdate = false;" +
-                            "}" +
-                        "} finally {" +
-                            "g.dispose();" +
-                        "}" +
-                    "}" +
-                "}");
-
-                // perform pre-verification for the modified method
-                ctMethodCreate.getMethodInfo().rebuildStackMapForME(trayIconClass.getClassPool());
-                ctMethodUpdate.getMethodInfo().rebuildStackMapForME(trayIconClass.getClassPool());
-
-                trayIconBytes = trayIconClass.toBytecode();
-            }
-
-            // whoosh, past the classloader and directly into memory.
-            ClassLoaderUtil.Bootstrap.defineClass(trayBytes);
-            ClassLoaderUtil.Bootstrap.defineClass(trayIconBytes);
+            definePatchedClasses(WINDOWS, trayIconSize);
 
             if (SystemTray.DEBUG) {
                 logger.debug("Successfully changed tray icon size to: {}", trayIconSize);
             }
-        } catch (Exception e) {
+        } catch (Throwable e) {
             logger.error("Error setting tray icon size to: {}", trayIconSize, e);
         }
     }
@@ -270,154 +178,13 @@ class SystemTrayFixes {
             e.printStackTrace();
         }
 
-        ClassPool pool = ClassPool.getDefault();
-        byte[] mouseEventBytes;
-        int mouseDelay = 75;
-
         try {
-            CtClass trayClass = pool.get("sun.lwawt.macosx.CTrayIcon");
-            // now have to make a new "system tray" (that is null) in order to init/load this class completely
-            // have to modify the SystemTray.getIconSize as well.
-            trayClass.setModifiers(trayClass.getModifiers() & javassist.Modifier.PUBLIC);
-            trayClass.getConstructors()[0].setModifiers(trayClass.getConstructors()[0].getModifiers() & javassist.Modifier.PUBLIC);
-
-            CtField ctField = new CtField(CtClass.intType, "lastButton", trayClass);
-            trayClass.addField(ctField);
-
-            ctField = new CtField(CtClass.intType, "lastX", trayClass);
-            trayClass.addField(ctField);
-
-            ctField = new CtField(CtClass.intType, "lastY", trayClass);
-            trayClass.addField(ctField);
-
-            ctField = new CtField(pool.get("java.awt.Robot"), "robot", trayClass);
-            trayClass.addField(ctField);
-
-            CtMethod ctMethodGet = trayClass.getDeclaredMethod("handleMouseEvent");
-
-            String nsEventFQND;
-            if (OS.javaVersion <= 7) {
-                nsEventFQND = "sun.lwawt.macosx.event.NSEvent";
-            }
-            else {
-                nsEventFQND = "sun.lwawt.macosx.NSEvent";
-            }
-
-
-            ctMethodGet.setBody("{" +
-                nsEventFQND + " event = $1;" +
-
-                "sun.awt.SunToolkit toolKit = (sun.awt.SunToolkit)java.awt.Toolkit.getDefaultToolkit();" +
-                "int button = event.getButtonNumber();" +
-                "int mouseX = event.getAbsX();" +
-                "int mouseY = event.getAbsY();" +
-
-                // have to intercept to see if it was a button click redirect to preserve what button was used in the event
-                "if (lastButton == 1 && mouseX == lastX && mouseY == lastY) {" +
-                    // "java.lang.System.err.println(\"Redefining button press to 1\");" +
-
-                    "button = 1;" +
-                    "lastButton = -1;" +
-                    "lastX = 0;" +
-                    "lastY = 0;" +
-                "}" +
-
-                "if ((button <= 2 || toolKit.areExtraMouseButtonsEnabled()) && button <= toolKit.getNumberOfButtons() - 1) {" +
-                    "int eventType = " + nsEventFQND + ".nsToJavaEventType(event.getType());" +
-                    "int jButton = 0;" +
-                    "int jClickCount = 0;" +
-
-                    "if (eventType != 503) {" +
-                        "jButton = " + nsEventFQND + ".nsToJavaButton(button);" +
-                        "jClickCount = event.getClickCount();" +
-                    "}" +
-
-                    // "java.lang.System.err.println(\"Click \" + jButton + \" event: \" + eventType);" +
-
-                    "int mouseMods = " + nsEventFQND + ".nsToJavaMouseModifiers(button, event.getModifierFlags());" +
-                    // surprisingly, this is false when the popup is showing
-                    "boolean popupTrigger = " + nsEventFQND + ".isPopupTrigger(mouseMods);" +
-
-                    "int mouseMask = jButton > 0 ? java.awt.event.MouseEvent.getMaskForButton(jButton) : 0;" +
-                    "long event0 = System.currentTimeMillis();" +
-
-                    "if(eventType == 501) {" +
-                        "mouseClickButtons |= mouseMask;" +
-                    "} else if(eventType == 506) {" +
-                        "mouseClickButtons = 0;" +
-                    "}" +
-
-
-                    // have to swallow + re-dispatch events in specific cases. (right click)
-                    "if (eventType == 501 && popupTrigger && button == 1) {" +
-                        // "java.lang.System.err.println(\"Redispatching mouse press. Has popupTrigger \" + " + "popupTrigger + \" event: \" + " + "eventType);" +
-
-                        // we use Robot to left click where we right clicked, in order to "fool" the native part to show the popup
-                        // For what it's worth, this is the only way to get the native bits to behave.
-                        "if (robot == null) {" +
-                            "try {" +
-                                "robot = new java.awt.Robot();" +
-                                "robot.setAutoDelay(40);" +
-                                "robot.setAutoWaitForIdle(true);" +
-                            "} catch (java.awt.AWTException e) {" +
-                                "e.printStackTrace();" +
-                            "}" +
-                        "}" +
-
-                        "lastButton = 1;" +
-                        "lastX = mouseX;" +
-                        "lastY = mouseY;" +
-
-                        // the delay is necessary for this to work correctly. Mouse release is not necessary.
-                        // this simulates *just enough* of the default behavior so that right click behaves the same as left click.
-                        "int maskButton1 = java.awt.event.InputEvent.getMaskForButton(java.awt.event.MouseEvent.BUTTON1);" +
-                        "robot.mousePress(maskButton1);" +
-                        "robot.delay(" + mouseDelay + ");" +
-
-                        "return;" +
-                    "}" +
-
-
-                    "java.awt.event.MouseEvent mEvent = new java.awt.event.MouseEvent(this.dummyFrame, eventType, event0, mouseMods, mouseX, mouseY, mouseX, mouseY, jClickCount, popupTrigger, jButton);" +
-
-                    "mEvent.setSource(this.target);" +
-                    "this.postEvent(mEvent);" +
-
-                    // mouse press
-                    "if (eventType == 501) {" +
-                        "if (popupTrigger) {" +
-                            "String event5 = this.target.getActionCommand();" +
-                            "java.awt.event.ActionEvent event6 = new java.awt.event.ActionEvent(this.target, 1001, event5);" +
-                            "this.postEvent(event6);" +
-                        "}" +
-                    "}" +
-
-                    // mouse release
-                    "if (eventType == 502) {" +
-                        "if ((mouseClickButtons & mouseMask) != 0) {" +
-                            "java.awt.event.MouseEvent event7 = new java.awt.event.MouseEvent(this.dummyFrame, 500, event0, mouseMods, mouseX, mouseY, mouseX, mouseY, jClickCount, popupTrigger, jButton);" +
-
-                            "event7.setSource(this.target);" +
-                            "this.postEvent(event7);" +
-                        "}" +
-
-                        "mouseClickButtons &= ~mouseMask;" +
-                    "}" +
-                "}" +
-            "}");
-
-            // perform pre-verification for the modified method
-            ctMethodGet.getMethodInfo().rebuildStackMapForME(trayClass.getClassPool());
-
-            mouseEventBytes = trayClass.toBytecode();
-
-            // whoosh, past the classloader and directly into memory.
-            ClassLoaderUtil.Bootstrap.defineClass(mouseEventBytes);
+            definePatchedClasses(MACOS, 0);
 
             if (SystemTray.DEBUG) {
                 logger.debug("Successfully changed mouse trigger for MacOSX");
             }
-        } catch (Exception e) {
+        } catch (Throwable e) {
             logger.error("Error changing SystemTray mouse trigger for MacOSX.", e);
         }
     }
@@ -459,316 +226,252 @@ class SystemTrayFixes {
         }
 
         try {
-            ClassPool pool = ClassPool.getDefault();
-            CtField ctField;
-
-            String className = "sun.awt.X11.XTrayIconPeer";
-            byte[] eFrameBytes;
-            byte[] trayIconBytes;
-            byte[] trayPeerBytes;
-            byte[] runnableBytes;
-            byte[] iconCanvasBytes;
-
-            {
-                CtClass trayIconClass = pool.get(className);
-                CtClass eFrameClass = null;
-                CtClass iconCanvasClass = null;
-                CtClass trayPeerClass;
-
-                CtClass[] nestedClasses = trayIconClass.getNestedClasses();
-                String xEmbedFrameName = className + "$XTrayIconEmbeddedFrame";
-                String iconCanvasName = className + "$IconCanvas";
-                for (CtClass nestedClass : nestedClasses) {
-                    String name = nestedClass.getName();
-
-                    if (name.equals(xEmbedFrameName)) {
-                        eFrameClass = nestedClass;
-                    }
-
-                    if (name.equals(iconCanvasName)) {
-                        iconCanvasClass = nestedClass;
-                    }
-                }
-
-                if (eFrameClass == null || iconCanvasClass == null) {
-                    throw new RuntimeException("Unable to find required classes to fix. Unable to continue initialization.");
-                }
-
-
-                ctField = new CtField(pool.get("java.awt.Robot"), "robot", trayIconClass);
-                ctField.setModifiers(Modifier.STATIC);
-                trayIconClass.addField(ctField);
+            definePatchedClasses(LINUX, trayIconSize);
 
-                ctField = new CtField(pool.get("java.awt.Color"), "color", trayIconClass);
-                ctField.setModifiers(Modifier.STATIC);
-                trayIconClass.addField(ctField);
-
-                ctField = new CtField(pool.get("java.awt.image.BufferedImage"), "image", trayIconClass);
-                ctField.setModifiers(Modifier.STATIC);
-                trayIconClass.addField(ctField);
-
-                ctField = new CtField(pool.get("java.awt.Rectangle"), "rectangle", trayIconClass);
-                ctField.setModifiers(Modifier.STATIC);
-                trayIconClass.addField(ctField);
-
-                // fix other classes for icon size.
-                trayPeerClass = pool.get("sun.awt.X11.XSystemTrayPeer");
-
-                // now we have to replace ALL instances (in the constructor and other methods), where the icon size is set (default is 24).
-                // Since, looking at the source code, there is NO other case where the number 24 is used (except for size), we just
-                // bytecode replace 24 with our specified size.
-
-                CtConstructor constructor = trayIconClass.getDeclaredConstructors()[0]; // only 1 constructor
-                CtMethod method1 = trayIconClass.getDeclaredMethod("getBounds");
-                CtMethod method2 = trayPeerClass.getDeclaredMethod("getTrayIconSize");
-
-                CtBehavior methodInfos[] = new CtBehavior[]{constructor, method1, method2};
+            if (SystemTray.DEBUG) {
+                logger.debug("Successfully changed tray icon background color");
+            }
+        } catch (Throwable e) {
+            logger.error("Error setting tray icon background color", e);
+        }
+    }
 
-                fixTraySize(methodInfos, 24, trayIconSize);
+    /**
+     * Defines the patched classes, directly from the cache if they were already created for this JVM + tray size. Otherwise, they are
+     * created via javassist and then cached.
+     */
+    private static
+    void definePatchedClasses(final String fix, final int trayIconSize) throws Exception {
+        final long startTime = System.nanoTime();
 
-                // perform pre-verification for the modified method
-                constructor.getMethodInfo().rebuildStackMapForME(trayIconClass.getClassPool());
-                method1.getMethodInfo().rebuildStackMapForME(trayIconClass.getClassPool());
-                method2.getMethodInfo().rebuildStackMapForME(trayPeerClass.getClassPool());
+        final String cacheName = getCacheName(fix, trayIconSize);
+        byte[][] classes = readCache(cacheName);
 
+        final boolean isCached = classes != null;
+        if (!isCached) {
+            // javassist is only loaded here
+            if (fix.equals(WINDOWS)) {
+                classes = SystemTrayFixesGenerator.windows(trayIconSize);
+            }
+            else if (fix.equals(MACOS)) {
+                classes = SystemTrayFixesGenerator.macOS();
+            }
+            else {
+                classes = SystemTrayFixesGenerator.linux(trayIconSize);
+            }
+        }
 
+        // whoosh, past the classloader and directly into memory.
+        try {
+            for (byte[] bytes : classes) {
+                ClassLoaderUtil.Bootstrap.defineClass(bytes);
+            }
+        } catch (Exception e) {
+            if (isCached) {
+                // so the classes are created again on the next start
+                final File file = getCacheFile(cacheName);
+                if (file != null && !file.delete()) {
+                    logger.error("Unable to delete the cached tray classes: {}", file);
+                }
+            }
+            throw e;
+        }
 
-                // The screenshot we capture, is just a 1-pixel wide strip, that we stretch to the correct size. This is so we can
-                // have the correct background when there is a gradient panel (which happens on Ubuntu and possibly others).
-                // NOTE: This method doesn't work for panel background images that are not a gradient, and there is no easy way to solve that problem.
+        if (!isCached) {
+            writeCache(cacheName, classes);
+        }
 
-                // make our custom runnable (cannot do anonymous inner classes via javassist.
-                {
-                    CtClass runnable = pool.makeClass("sun.awt.X11.RunnableImpl");
-                    runnable.addInterface(pool.get("java.lang.Runnable"));
+        if (SystemTray.DEBUG) {
+            logger.debug("Patched the {} tray classes in {} ms ({})", fix, (System.nanoTime() - startTime) / 1000000.0D,
+                         isCached ? "cached" : "created via javassist");
+        }
+    }
 
-                    ctField = new CtField(pool.get(xEmbedFrameName), "frame", runnable);
-                    ctField.setModifiers(Modifier.PROTECTED);
-                    runnable.addField(ctField);
+    /**
+     * The patched classes are only valid for the exact JVM they were created from (and the tray size, and the version of these fixes)
+     */
+    private static
+    String getCacheName(final String fix, final int trayIconSize) {
+        final String key = fix + '|' + trayIconSize + '|' + SystemTray.getVersion() + '|' +
+                           System.getProperty("java.vendor") + '|' +
+                           System.getProperty("java.version") + '|' +
+                           System.getProperty("java.vm.version") + '|' +
+                           System.getProperty("java.runtime.version") + '|' +
+                           System.getProperty("java.home") + '|' +
+                           System.getProperty("os.arch");
+
+        final HashingBuffer buffer = HashingBuffer.get();
+        try {
+            buffer.write(key.getBytes("UTF-8"));
+        } catch (IOException ignored) {
+            // UTF-8 is always supported
+        }
 
-                    ctField = new CtField(pool.get("java.awt.Rectangle"), "size", runnable);
-                    ctField.setModifiers(Modifier.PROTECTED);
-                    runnable.addField(ctField);
+        return "SystemTrayFixes_" + fix + "_" + buffer.getHashName();
+    }
 
-                    ctField = new CtField(CtClass.intType, "attempts", runnable);
-                    ctField.setModifiers(Modifier.PROTECTED);
-                    runnable.addField(ctField);
+    /**
+     * @return the cached classes, or null if they are not cached (or the cache cannot be read)
+     */
+    private static
+    byte[][] readCache(final String cacheName) {
+        final File file = getCacheFile(cacheName);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
 
-                    CtMethod method = CtNewMethod.make("public void run() { " +
-                        "java.awt.Point loc = frame.getLocationOnScreen();" +
+        if (!isOwnedByUser(file)) {
+            logger.warn("Ignoring the cached tray classes, they are not owned by the current user: {}", file);
+            return null;
+        }
 
-                        "if (loc.x == 0 && loc.y == 0 && attempts < 10) {" +
-                            // we still don't know! Reschedule.
-                            "attempts++;" +
-                            "java.awt.EventQueue.invokeLater(this);" +
-                            // "System.err.println(\"Reschedule: \" + loc.x + \" : \" + loc.y);" +
-                            "return;" +
-                        "}" +
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new FileInputStream(file));
 
-                        // "System.err.println(\"Actual location: \" + loc.x + \" : \" + loc.y);" +
+            final byte[][] classes = new byte[input.readInt()][];
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = new byte[input.readInt()];
+                input.readFully(classes[i]);
 
-                        // offset the pixel grabbing location, if possible. If we go negative, weird colors happen.
-                        // which ever is the larger dimension (usually) is the orientation of the bar.
-                        "java.awt.Rectangle rect;" +
-                        "if (loc.x > loc.y) {" +
-                            // horizontal panel.
-                            "rect = new java.awt.Rectangle(loc.x-1, loc.y, 1, size.height);" +
+                // a partially written (or otherwise broken) cache file must never be defined
+                if (classes[i].length < 4 || (classes[i][0] & 0xFF) != 0xCA || (classes[i][1] & 0xFF) != 0xFE ||
+                    (classes[i][2] & 0xFF) != 0xBA || (classes[i][3] & 0xFF) != 0xBE) {
+                    throw new IOException("Invalid class data");
+                }
+            }
 
-                            // Sometimes the parent panel is LARGER than the icon, so we grab the color at the correct spot so there aren't any "weird" strips of color at the bottom of the icon.
-                            "if (loc.y < 300) {" +
-                                // panel is at the top of the screen (guessing...)
-                                className + ".color = " + className + ".robot.getPixelColor(rect.x, rect.y + rect.height-1);" +
-                            "} else {" +
-                                // panel is at the bottom of the screen (guessing)
-                                className + ".color = " + className + ".robot.getPixelColor(rect.x, rect.y);" +
-                            "}" +
-                        "} else {" +
-                            // vertical panel (don't think this will happen much, but in case it does...)
-                            "rect = new java.awt.Rectangle(loc.x, loc.y-1, size.width, 1);" +
-                            className + ".color = " + className + ".robot.getPixelColor(rect.x, rect.y);" +
-                        "}" +
+            if (input.read() != -1) {
+                throw new IOException("Unexpected data at the end of the cache");
+            }
 
-                        // screen shot a strip, that we then modify the background of the tray icon
-                        className + ".image = " + className + ".robot.createScreenCapture(rect);" +
+            return classes;
+        } catch (Exception e) {
+            if (SystemTray.DEBUG) {
+                logger.debug("Unable to read the cached tray classes. They will be created again.", e);
+            }
+            return null;
+        } finally {
+            IO.closeQuietly(input);
+        }
+    }
 
-                        // keeps track of the capture size, which can be DIFFERENT than the icon size
-                        className + ".rectangle = rect;" +
+    private static
+    void writeCache(final String cacheName, final byte[][] classes) {
+        try {
+            final ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(byteArray);
 
-                        // "System.err.println(\"capture location: \" + rect);" +
+            output.writeInt(classes.length);
+            for (byte[] bytes : classes) {
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            output.flush();
 
-                        // this sets the background of the native component, NOT THE ICON (otherwise weird "grey" flashes occur)
-                        "frame.setBackground(" + className + ".color);" +
-                    "}", runnable);
-                    runnable.addMethod(method);
+            final File file = getCacheFile(cacheName);
+            if (file == null) {
+                return;
+            }
 
-                    runnableBytes = runnable.toBytecode();
-                }
+            // written to a temp file first, so a partially written cache is never read
+            final File tempFile = File.createTempFile(cacheName, ".tmp", file.getParentFile());
+            setOwnerOnly(tempFile, false);
 
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                byteArray.writeTo(outputStream);
+            } finally {
+                IO.closeQuietly(outputStream);
+            }
 
-                {
-                    // gets the pixel color just to the side of the icon. The CRITICAL thing to notice, is that this happens before the
-                    // AWT window is positioned, so there can be a different system tray icon at this position (at this exact point in
-                    // time). This means we cannot take a screen shot because before the window is placed, another icon is in this
-                    // spot; and when the window is placed, it's too late to take a screenshot. The second best option is to take a sample of
-                    // the pixel color, so at least we can fake transparency (this is what we do). This only works if the notification area
-                    // is a solid color, and not an image or gradient.
-                    CtMethod methodVisible = CtNewMethod.make("public void setVisible(boolean b) " +
-                    "{ " +
-                        "if (b) {" +
-                            "if (" + className + ".robot == null) {" +
-                                className + ".robot = new java.awt.Robot();" +
-
-                                "sun.awt.X11.RunnableImpl r = new sun.awt.X11.RunnableImpl();" +
-                                "r.frame = this;" +
-                                "r.size = getBoundsPrivate();" +
-
-                                // run our custom runnable on the event queue, so that we can get the location after it's been placed
-                                "java.awt.EventQueue.invokeLater(r);" +
-                            "}" +
-
-                            // the problem here is that on SOME linux OSes, the location is invalid! So we check again on the EDT
-                            "java.awt.Point loc = getPeer().getLocationOnScreen();" +
-
-                            "int locX = loc.x;" +
-                            "int locY = loc.y;" +
-
-                            "if (!(locX == 0 && locY == 0)) {" +
-                                // offset the pixel grabbing location, if possible. If we go negative, weird colors happen.
-                                "if (locX > 0) locX -= 1;" +
-                                "if (locY > 0) locY -= 1;" +
-
-                                className + ".color = " + className + ".robot.getPixelColor(locX, locY);" +
-
-                                // this sets the background of the native component, NOT THE ICON (otherwise weird "grey" flashes occur)
-                              "setBackground(" + className + ".color);" +
-                            "}" +
-                        "}" +
-                        "super.setVisible(b);" +
-                    "}", eFrameClass);
-                    eFrameClass.addMethod(methodVisible);
-                    methodVisible.getMethodInfo()
-                                 .rebuildStackMapForME(eFrameClass.getClassPool());
-
-                    eFrameBytes = eFrameClass.toBytecode();
-                }
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                tempFile.delete();
+                logger.error("Unable to cache the patched tray classes: {}", file);
+            }
+        } catch (Exception e) {
+            logger.error("Unable to cache the patched tray classes", e);
+        }
+    }
 
-                {
-                    CtMethod ctMethodPaint = iconCanvasClass.getDeclaredMethod("paint");
-                    String body = "{" + "java.awt.Graphics g = $1;" +
-                        "if (g != null && curW > 0 && curH > 0) {" +
-                            "java.awt.image.BufferedImage bufImage = new java.awt.image.BufferedImage(curW, curH, java.awt.image.BufferedImage.TYPE_INT_ARGB);" +
-                            "java.awt.Graphics2D gr = bufImage.createGraphics();" +
-
-                            "if (gr != null) {" +
-                                "try {" +
-                                    // this will render the image "nicely"
-                                    "gr.addRenderingHints(new java.awt.RenderingHints(java.awt.RenderingHints.KEY_RENDERING," +
-                                    "java.awt.RenderingHints.VALUE_RENDER_QUALITY));" +
-
-                                    "gr.setColor(getBackground());" +
-                                    "gr.fillRect(0, 0, curW, curH);" +
-
-                                    "if (" + className + ".image != null) {" +
-                                        "gr.drawImage(" + className + ".image, 0, 0, curW, curH, null);" +
-                                    "}" +
-
-                                    "gr.drawImage(image, 0, 0, curW, curH, observer);" +
-                                    "gr.dispose();" +
-                                    "g.drawImage(bufImage, 0, 0, curW, curH, null);" +
-                                "} finally {" +
-                                    "g.dispose();" +
-                                "}" +
-                            "}" +
-                        "}" +
-                    "}";
-                    ctMethodPaint.setBody(body);
-
-                    iconCanvasBytes = iconCanvasClass.toBytecode();
-                }
+    /**
+     * @return the cache file, or null if there is no cache directory that only the current user can write to
+     */
+    private static
+    File getCacheFile(final String cacheName) {
+        final String userHome = System.getProperty("user.home");
+        if (userHome == null) {
+            return null;
+        }
 
-                trayIconBytes = trayIconClass.toBytecode();
-                trayPeerBytes = trayPeerClass.toBytecode();
-            }
+        final File directory = new File(userHome, ".cache" + File.separator + "SystemTray");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return null;
+        }
 
-            // whoosh, past the classloader and directly into memory.
-            ClassLoaderUtil.Bootstrap.defineClass(runnableBytes);
-            ClassLoaderUtil.Bootstrap.defineClass(eFrameBytes);
-            ClassLoaderUtil.Bootstrap.defineClass(iconCanvasBytes);
-            ClassLoaderUtil.Bootstrap.defineClass(trayIconBytes);
-            ClassLoaderUtil.Bootstrap.defineClass(trayPeerBytes);
+        // always, in case the directory was created some other way
+        setOwnerOnly(directory, true);
 
+        // if we cannot check who owns the directory, we cannot trust what is in it
+        if (!isOwnedByUser(directory)) {
             if (SystemTray.DEBUG) {
-                logger.debug("Successfully changed tray icon background color");
+                logger.debug("Not caching the patched tray classes, unable to verify the owner of {}", directory);
             }
-        } catch (Exception e) {
-            logger.error("Error setting tray icon background color", e);
+            return null;
         }
+
+        return new File(directory, cacheName);
     }
 
     private static
-    void fixTraySize(final CtBehavior[] behaviors, final int oldTraySize, final int newTraySize) {
-        for (CtBehavior behavior : behaviors) {
-            MethodInfo methodInfo = behavior.getMethodInfo();
-            CodeIterator methodIterator = methodInfo.getCodeAttribute().iterator();
-
-            while (methodIterator.hasNext()) {
-                int index;
-                try {
-                    index = methodIterator.next();
-                    int opcode = methodIterator.byteAt(index);
-
-                    switch (opcode) {
-                        case BIPUSH: {
-                            int i = methodIterator.byteAt(index + 1);
-
-                            if (i == oldTraySize) {
-                                // re-write this to be our custom size.
-                                methodIterator.writeByte((byte) newTraySize, index + 1);
-                            }
-                        }
-                    }
-                } catch (BadBytecode badBytecode) {
-                    badBytecode.printStackTrace();
-                }
-            }
+    void setOwnerOnly(final File file, final boolean isDirectory) {
+        // remove the permissions for everyone, then add them back for only the owner
+        file.setReadable(false, false);
+        file.setWritable(false, false);
+        file.setExecutable(false, false);
+
+        file.setReadable(true, true);
+        file.setWritable(true, true);
+        if (isDirectory) {
+            file.setExecutable(true, true);
         }
     }
 
+    /**
+     * Java 6 has no way to get the owner of a file, so this is via reflection (java.nio.file.Files.getOwner, Java 7+)
+     *
+     * @return true if the file (NOT a symbolic link) is owned by the current user, false if it is not (or if that cannot be checked)
+     */
     private static
-    void showMethodBytecode(final CtBehavior constructorOrMethod) throws BadBytecode {
-        MethodInfo methodInfo = constructorOrMethod.getMethodInfo(); // only 1 constructor
-        ConstPool pool2 = methodInfo.getConstPool();
-        CodeIterator ci = methodInfo.getCodeAttribute().iterator();
-        int lineNumber = -1;
-        StringBuilder collector = new StringBuilder();
-        int lastLine = -1;
-
-        while (ci.hasNext()) {
-            int index = ci.next();
-            lineNumber = methodInfo.getLineNumber(index);
-            int op = ci.byteAt(index);
-
-            if (lastLine == -1) {
-                lastLine = lineNumber;
-            }
+    boolean isOwnedByUser(final File file) {
+        final String userName = System.getProperty("user.name");
+        if (userName == null) {
+            return false;
+        }
 
-            if (lineNumber != lastLine) {
-                if (collector.length() > 0) {
-                    System.err.println(lastLine + " : " + collector);
-                }
-                lastLine = lineNumber;
-                collector.delete(0, collector.length());
-            }
+        try {
+            final Class<?> pathClass = Class.forName("java.nio.file.Path");
+            final Class<?> filesClass = Class.forName("java.nio.file.Files");
+            @SuppressWarnings("unchecked")
+            final Class<Enum> linkOptionClass = (Class<Enum>) Class.forName("java.nio.file.LinkOption");
 
-            collector.append(Mnemonic.OPCODE[op])
-                     .append(" ");
+            final Object linkOptions = Array.newInstance(linkOptionClass, 1);
+            Array.set(linkOptions, 0, Enum.valueOf(linkOptionClass, "NOFOLLOW_LINKS"));
 
-            System.out.println(lineNumber + " * " + Mnemonic.OPCODE[op] + "  ");
-            System.out.println(lineNumber + " * " + InstructionPrinter.instructionString(ci, index, pool2));
-        }
+            final Object path = File.class.getMethod("toPath").invoke(file);
 
-        if (collector.length() > 0) {
-            System.err.println(lineNumber + " : " + collector);
+            final Method isSymbolicLink = filesClass.getMethod("isSymbolicLink", pathClass);
+            if ((Boolean) isSymbolicLink.invoke(null, path)) {
+                return false;
+            }
+
+            final Method getOwner = filesClass.getMethod("getOwner", pathClass, linkOptions.getClass());
+            final String owner = ((Principal) getOwner.invoke(null, path, linkOptions)).getName();
+
+            // windows owners are DOMAIN + backslash + user
+            return owner.equals(userName) || owner.endsWith("\\" + userName);
+        } catch (Throwable e) {
+            return false;
         }
     }
 }
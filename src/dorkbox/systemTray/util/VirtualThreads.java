@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21+) via reflection, so that this library still runs on (and compiles for) older versions of Java.
+ */
+final
+class VirtualThreads {
+    // null if virtual threads are not available
+    private static final ThreadFactory factory = createFactory();
+
+    private
+    VirtualThreads() {
+    }
+
+    /**
+     * @return true if this JVM supports virtual threads
+     */
+    static
+    boolean isSupported() {
+        return factory != null;
+    }
+
+    /**
+     * Starts the runnable on a new virtual thread. Only call this if virtual threads are supported.
+     */
+    static
+    void start(final Runnable runnable) {
+        factory.newThread(runnable)
+               .start();
+    }
+
+    private static
+    ThreadFactory createFactory() {
+        try {
+            // Thread.ofVirtual().name("SystemTrayCallback-", 0).factory()
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Method name = builderClass.getMethod("name", String.class, long.class);
+            final Method factory = builderClass.getMethod("factory");
+
+            Object builder = ofVirtual.invoke(null);
+            builder = name.invoke(builder, "SystemTrayCallback-", 0L);
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Throwable ignored) {
+            // not available (before Java 21, or Java 19/20 without preview features enabled)
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.net.URL;
+
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.util.CacheUtil;
+
+/**
+ * Checks that rapid icon changes are coalesced to at most one icon update per APP_INDICATOR_ICON_INTERVAL, by counting the SET_IMAGE
+ * operations that were dispatched to GTK.
+ * <p>
+ * This must be run on a desktop that uses AppIndicators.
+ */
+public
+class TestAppIndicatorIconInterval {
+    private static final int INTERVAL = 250;
+    private static final int CHANGES = 200;
+    private static final int CHANGE_DELAY = 10;
+
+    private static final URL[] IMAGES = new URL[] {TestTray.BLACK_TRAIN, TestTray.GREEN_TRAIN, TestTray.LT_GRAY_TRAIN};
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        CacheUtil.clear(); // for test apps, make sure the cache is always reset. You should never do this in production.
+
+        SystemTray.APP_NAME = "IconIntervalTest";
+        SystemTray.FORCE_TRAY_TYPE = SystemTray.TrayType.AppIndicator;
+        SystemTray.APP_INDICATOR_ICON_INTERVAL = INTERVAL;
+        DispatchMetrics.setEnabled(true);
+
+        final SystemTray systemTray = SystemTray.get();
+        if (systemTray == null || systemTray.getType() != SystemTray.TrayType.AppIndicator) {
+            System.err.println("AppIndicators are not available, unable to check the icon interval");
+            System.exit(1);
+        }
+
+        systemTray.setImage(IMAGES[0]);
+
+        // the first icon is shown right away, and is not part of what is measured
+        Thread.sleep(INTERVAL * 2);
+        DispatchMetrics.reset();
+
+        final long start = System.nanoTime();
+        for (int i = 1; i <= CHANGES; i++) {
+            systemTray.setImage(IMAGES[i % IMAGES.length]);
+            Thread.sleep(CHANGE_DELAY);
+        }
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        // the last change is shown after (at most) one more interval
+        Thread.sleep(INTERVAL * 2);
+
+        final long updates = DispatchMetrics.getStats(DispatchMetrics.Backend.GTK, DispatchMetrics.Operation.SET_IMAGE).run.count;
+
+        // one update per interval, plus the last (delayed) update
+        final long maxUpdates = elapsed / INTERVAL + 2;
+
+        System.out.println(CHANGES + " icon changes in " + elapsed + " ms, " + updates + " icon updates (at most " + maxUpdates + ")");
+
+        systemTray.shutdown();
+
+        if (updates == 0 || updates > maxUpdates) {
+            System.err.println("FAIL: icon changes were not coalesced to one update per " + INTERVAL + " ms");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.peer.MenuPeer;
+import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.util.CacheUtil;
+
+/**
+ * Checks that the entries recorded before the tray is ready are replayed in order, exactly once and in a single batch, even while more
+ * entries are being added at the same time.
+ * <p>
+ * If there is a display, SystemTray.getAsync() is also checked: it must return right away, the entries added to it must be in the menu
+ * once the tray is ready, and get() must return the same SystemTray. Then get() is called from several threads at the same time, and
+ * they must all get the same SystemTray.
+ */
+public
+class TestAsyncInit {
+    private static final int RECORDED = 1000;
+    private static final int CONCURRENT = 1000;
+    private static final int THREADS = 8;
+
+    // getAsync() must return within this time
+    private static final long MAX_ASYNC_MS = 100L;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        checkReplay();
+
+        if (GraphicsEnvironment.isHeadless()) {
+            System.out.println("There is no display, so the SystemTray is not created");
+        }
+        else {
+            CacheUtil.clear(); // for test apps, make sure the cache is always reset. You should never do this in production.
+            SystemTray.APP_NAME = "AsyncInitTest";
+
+            checkAsync();
+            checkConcurrentGet();
+        }
+
+        EventDispatch.shutdown();
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    private static
+    void checkReplay() throws InterruptedException {
+        final Menu menu = new Menu("Early");
+        for (int i = 0; i < RECORDED; i++) {
+            menu.add(new MenuItem("Recorded " + i));
+        }
+
+        final RecordingPeer peer = new RecordingPeer();
+
+        // entries are added while the peer is being bound
+        final CountDownLatch started = new CountDownLatch(1);
+        final Thread adder = new Thread(new Runnable() {
+            @Override
+            public
+            void run() {
+                started.countDown();
+                for (int i = 0; i < CONCURRENT; i++) {
+                    menu.add(new MenuItem("Concurrent " + i));
+                }
+            }
+        });
+        adder.start();
+        started.await();
+
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+                menu.bind(peer, null, null);
+            }
+        });
+
+        adder.join();
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        final List<Entry> entries = menu.getEntries();
+        System.out.println("Replayed " + peer.batchAdds + " entries in " + peer.batches + " batch, then added " + (peer.entries.size() -
+                           peer.batchAdds) + " more");
+
+        if (!entries.equals(peer.entries)) {
+            System.err.println("FAIL: the peer has " + peer.entries.size() + " entries, not the " + entries.size() + " entries of the menu" +
+                               " (in the same order)");
+            failures++;
+        }
+        if (peer.batches != 1 || peer.batchAdds < RECORDED) {
+            System.err.println("FAIL: the recorded entries were not replayed in a single batch");
+            failures++;
+        }
+    }
+
+    private static
+    void checkAsync() {
+        final long start = System.nanoTime();
+        final SystemTray systemTray = SystemTray.getAsync();
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        systemTray.setImage(TestTray.BLACK_TRAIN);
+        systemTray.setStatus("Starting");
+        for (int i = 0; i < 20; i++) {
+            systemTray.getMenu().add(new MenuItem("Entry " + i));
+        }
+
+        final SystemTray ready = SystemTray.get();
+        final long total = (System.nanoTime() - start) / 1000000L;
+
+        System.out.println("getAsync() returned in " + elapsed + " ms, the tray was ready in " + total + " ms");
+
+        if (elapsed > MAX_ASYNC_MS) {
+            System.err.println("FAIL: getAsync() took " + elapsed + " ms to return");
+            failures++;
+        }
+        if (ready != systemTray) {
+            System.err.println("FAIL: get() returned a different SystemTray than getAsync()");
+            failures++;
+        }
+        if (ready == null || ready.getType() == null) {
+            System.err.println("FAIL: the tray was not created");
+            failures++;
+            return;
+        }
+
+        // the status, then the entries
+        if (ready.getMenu().getEntries().size() != 21 || !"Starting".equals(ready.getStatus())) {
+            System.err.println("FAIL: the recorded status and entries are not in the menu");
+            failures++;
+        }
+
+        ready.shutdown();
+    }
+
+    private static
+    void checkConcurrentGet() throws InterruptedException {
+        final SystemTray[] trays = new SystemTray[THREADS];
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREADS];
+
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public
+                void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    trays[index] = SystemTray.get();
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            if (trays[i] == null || trays[i] != trays[0]) {
+                System.err.println("FAIL: get() returned different SystemTrays when called at the same time");
+                failures++;
+                break;
+            }
+        }
+
+        if (trays[0] != null) {
+            trays[0].shutdown();
+        }
+    }
+
+    /**
+     * Keeps the entries that were added (in order), and counts the batches
+     */
+    private static
+    class RecordingPeer implements MenuPeer {
+        final List<Entry> entries = new ArrayList<Entry>();
+        int batches = 0;
+        int batchAdds = 0;
+        private boolean inBatch = false;
+
+        @Override
+        public
+        void add(final Menu parentMenu, final Entry entry, final int index) {
+            if (entries.contains(entry)) {
+                System.err.println("FAIL: an entry was added twice");
+                failures++;
+                return;
+            }
+
+            if (index < 0 || index > entries.size()) {
+                entries.add(entry);
+            }
+            else {
+                entries.add(index, entry);
+            }
+
+            if (inBatch) {
+                batchAdds++;
+            }
+        }
+
+        @Override
+        public
+        void startBatch() {
+            inBatch = true;
+            batches++;
+        }
+
+        @Override
+        public
+        void finishBatch() {
+            inBatch = false;
+        }
+
+        @Override
+        public
+        void reorder(final int[] order) {
+        }
+
+        @Override
+        public
+        void setImage(final MenuItem menuItem) {
+        }
+
+        @Override
+        public
+        void setEnabled(final MenuItem menuItem) {
+        }
+
+        @Override
+        public
+        void setText(final MenuItem menuItem) {
+        }
+
+        @Override
+        public
+        void setCallback(final MenuItem menuItem) {
+        }
+
+        @Override
+        public
+        void setShortcut(final MenuItem menuItem) {
+        }
+
+        @Override
+        public
+        void setTooltip(final MenuItem menuItem) {
+        }
+
+        @Override
+        public
+        void remove() {
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.MenuCallback;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.EventDispatch;
+
+/**
+ * Measures the click-to-callback latency (and the allocations per click) of the pre-bound click handlers, for each callback executor,
+ * against the previous click path (a new Runnable and a new ActionEvent per click, run on the dispatch thread).
+ * <p>
+ * This thread takes the place of the native thread that receives the click, so this does not need a desktop.
+ */
+public
+class TestClickLatency {
+    private static final int WARMUP = 20000;
+    private static final int CLICKS = 100000;
+
+    private static int failures = 0;
+
+    // the time of the current click, and the latency of each click
+    private static volatile long clickTime;
+    private static final long[] latencies = new long[CLICKS];
+    private static int clickIndex;
+    private static volatile Thread callbackThread;
+    private static final Semaphore called = new Semaphore(0);
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final MenuCallback callback = new MenuCallback() {
+            @Override
+            public
+            void onClick(final Entry entry) {
+                called();
+            }
+        };
+
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        System.out.println("Click-to-callback latency (us) and bytes allocated per click, on the thread that received the click");
+
+        final Thread clickThread = Thread.currentThread();
+        measure("direct", handler(callback, EventDispatch.DIRECT_EXECUTOR), threads, clickThread, 0L);
+        measure("dispatch thread", handler(callback, EventDispatch.DISPATCH_EXECUTOR), threads, null, -1L);
+        measure("user pool", handler(callback, pool), threads, null, -1L);
+
+        // the previous click path, which created a Runnable and an ActionEvent for every click
+        final MenuItem item = new MenuItem("Previous");
+        final ActionListener listener = new ActionListener() {
+            @Override
+            public
+            void actionPerformed(final ActionEvent e) {
+                called();
+            }
+        };
+        measure("previous (dispatch thread)", new ActionListener() {
+            @Override
+            public
+            void actionPerformed(final ActionEvent e) {
+                EventDispatch.runLater(new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        listener.actionPerformed(new ActionEvent(item, ActionEvent.ACTION_PERFORMED, ""));
+                    }
+                });
+            }
+        }, threads, null, -1L);
+
+        pool.shutdown();
+        EventDispatch.shutdown();
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    private static
+    ClickHandler handler(final MenuCallback callback, final Executor executor) {
+        final MenuItem item = new MenuItem("Click");
+        item.setMenuCallback(callback);
+        item.setCallbackExecutor(executor);
+
+        return new ClickHandler(item, DispatchMetrics.Backend.SWING);
+    }
+
+    private static
+    void called() {
+        latencies[clickIndex] = System.nanoTime() - clickTime;
+        callbackThread = Thread.currentThread();
+        called.release();
+    }
+
+    /**
+     * @param expectedThread the thread the callback must run on, null if it must run on a different thread than the click
+     * @param maxAllocated the most bytes that a click may allocate on the clicking thread, -1 if it is not checked
+     */
+    private static
+    void measure(final String name,
+                 final ActionListener handler,
+                 final com.sun.management.ThreadMXBean threads,
+                 final Thread expectedThread,
+                 final long maxAllocated) throws InterruptedException {
+        for (int i = 0; i < WARMUP; i++) {
+            click(handler, 0);
+        }
+
+        final long id = Thread.currentThread().getId();
+        long allocated = 0L;
+
+        for (int i = 0; i < CLICKS; i++) {
+            final long before = threads.getThreadAllocatedBytes(id);
+            click(handler, i);
+            allocated += threads.getThreadAllocatedBytes(id) - before;
+
+            final Thread thread = callbackThread;
+            if (expectedThread != null ? thread != expectedThread : thread == Thread.currentThread()) {
+                System.err.println("FAIL: " + name + " callback ran on " + thread.getName());
+                failures++;
+                return;
+            }
+        }
+
+        // getThreadAllocatedBytes allocates a little bit itself, so that is measured without a click
+        final long before = threads.getThreadAllocatedBytes(id);
+        final long overhead = threads.getThreadAllocatedBytes(id) - before;
+        final long perClick = Math.max(0L, allocated / CLICKS - overhead);
+
+        final long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+
+        System.out.println(name + ": p50 " + micros(sorted[CLICKS / 2]) + ", p99 " + micros(sorted[CLICKS * 99 / 100]) +
+                           ", max " + micros(sorted[CLICKS - 1]) + ", " + perClick + " bytes per click");
+
+        if (maxAllocated >= 0 && perClick > maxAllocated) {
+            System.err.println("FAIL: " + name + " allocated " + perClick + " bytes per click");
+            failures++;
+        }
+    }
+
+    private static
+    void click(final ActionListener handler, final int index) throws InterruptedException {
+        clickIndex = index;
+        clickTime = System.nanoTime();
+        handler.actionPerformed(null);
+        called.acquire();
+    }
+
+    private static
+    String micros(final long nanos) {
+        return String.format("%.1f", nanos / 1000.0D);
+    }
+}
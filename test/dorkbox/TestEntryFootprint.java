@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.MenuItem;
+
+/**
+ * Measures the heap footprint of each menu entry type, and fails if it has grown past the threshold.
+ * <p>
+ * The shallow size is estimated from the field layout (64-bit JVM with compressed oops: a 12 byte header, 4 byte references, fields
+ * of each class packed after those of the super class, and 8 byte object alignment). The retained size is measured from the used
+ * heap, by creating many entries that are not attached to a menu (so there are no peers). Run with a fixed heap (ie: -Xms512m
+ * -Xmx512m) so that the used heap is stable.
+ * <p>
+ * Before the compact entry layout, MenuItem was 64 bytes and Checkbox was 56 bytes.
+ */
+public
+class TestEntryFootprint {
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    // the thresholds, in bytes per entry
+    private static final int MENU_ITEM_SHALLOW = 56;
+    private static final int CHECKBOX_SHALLOW = 48;
+
+    // the retained size is the shallow size, plus some slack for the heap measurement
+    private static final int RETAINED_SLACK = 8;
+
+    private static final int COUNT = 200000;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) {
+        System.out.println("Heap footprint, in bytes per entry");
+
+        check("MenuItem", MenuItem.class, MENU_ITEM_SHALLOW, new Factory() {
+            @Override
+            public
+            Entry create(final String text) {
+                return new MenuItem(text);
+            }
+        });
+
+        check("Checkbox", Checkbox.class, CHECKBOX_SHALLOW, new Factory() {
+            @Override
+            public
+            Entry create(final String text) {
+                return new Checkbox(text);
+            }
+        });
+
+        if (failures > 0) {
+            System.err.println(failures + " entry types are larger than their threshold");
+            System.exit(1);
+        }
+    }
+
+    private
+    interface Factory {
+        Entry create(String text);
+    }
+
+    private static
+    void check(final String name, final Class<?> type, final int threshold, final Factory factory) {
+        final int shallow = shallowSize(type);
+        final long retained = retainedSize(factory);
+
+        System.out.println(name + ": shallow " + shallow + " (threshold " + threshold + "), retained " + retained + " (threshold " +
+                           (threshold + RETAINED_SLACK) + ")");
+
+        if (shallow > threshold) {
+            System.err.println("FAIL: " + name + " shallow size is " + shallow + " bytes, the threshold is " + threshold);
+            failures++;
+        }
+
+        if (retained > threshold + RETAINED_SLACK) {
+            System.err.println("FAIL: " + name + " retained size is " + retained + " bytes, the threshold is " + (threshold + RETAINED_SLACK));
+            failures++;
+        }
+    }
+
+    /**
+     * @return the estimated size of an instance of the type, not including anything it references
+     */
+    private static
+    int shallowSize(final Class<?> type) {
+        return align(fieldsEnd(type));
+    }
+
+    /**
+     * @return where the fields of the type end, before the object is padded
+     */
+    private static
+    int fieldsEnd(final Class<?> type) {
+        int size = HEADER;
+
+        final Class<?> superclass = type.getSuperclass();
+        if (superclass != null && superclass != Object.class) {
+            size = fieldsEnd(superclass);
+        }
+
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                size += fieldSize(field.getType());
+            }
+        }
+
+        // the fields of the next class start at a reference boundary
+        return (size + REFERENCE - 1) / REFERENCE * REFERENCE;
+    }
+
+    private static
+    int fieldSize(final Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static
+    int align(final int size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @return the used heap per entry, when many entries are created
+     */
+    private static
+    long retainedSize(final Factory factory) {
+        // the text is shared, so that only the entry itself is measured
+        final String text = "Entry";
+
+        // warm up, so that classes (and anything created once) are not measured
+        factory.create(text);
+
+        final Entry[] entries = new Entry[COUNT];
+        final long before = usedHeap();
+
+        for (int i = 0; i < COUNT; i++) {
+            entries[i] = factory.create(text);
+        }
+
+        final long after = usedHeap();
+
+        // the array was allocated before measuring, so only the entries (and what they reference) are measured
+        final long retained = (after - before) / COUNT;
+
+        if (entries[COUNT - 1] == null) {
+            // keeps the entries reachable until they have been measured
+            throw new IllegalStateException();
+        }
+
+        return retained;
+    }
+
+    private static
+    long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.ui.gtk.GtkBatchDispatch;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.util.CacheUtil;
+import dorkbox.util.jna.linux.GtkEventDispatch;
+
+/**
+ * Compares the GTK peer updates with SystemTray.GTK_BATCHED_UPDATES, against a separate main-loop callback for every update. Many
+ * entries are changed many times (text, enabled, checked), and the time until all of the changes have been applied to the native menu
+ * is measured for both. The batch sizes and drain times are printed as well.
+ * <p>
+ * This must be run on linux with GTK, but it does not need a system tray, so it can be run under a virtual framebuffer (ie: xvfb-run
+ * java ...). The tray type is GtkStatusIcon, or the type given as the first argument (ie: AppIndicator).
+ */
+public
+class TestGtkBatchDispatch {
+    private static final int ENTRIES = 500;
+    private static final int ROUNDS = 20;
+    private static final int RUNS = 5;
+
+    // the batched updates must not be slower than this (compared to a callback for every update)
+    private static final double MAX_SLOWDOWN = 1.10D;
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        CacheUtil.clear(); // for test apps, make sure the cache is always reset. You should never do this in production.
+
+        SystemTray.APP_NAME = "GtkBatchDispatchTest";
+        SystemTray.FORCE_TRAY_TYPE = args.length > 0 ? SystemTray.TrayType.valueOf(args[0]) : SystemTray.TrayType.GtkStatusIcon;
+
+        final SystemTray systemTray = SystemTray.get();
+        if (systemTray == null || systemTray.getType() != SystemTray.FORCE_TRAY_TYPE) {
+            System.err.println("Unable to create a " + SystemTray.FORCE_TRAY_TYPE + " tray");
+            System.exit(1);
+        }
+
+        systemTray.setImage(TestTray.BLACK_TRAIN);
+
+        final Menu menu = systemTray.getMenu();
+        final List<MenuItem> items = new ArrayList<MenuItem>(ENTRIES / 2);
+        final List<Checkbox> checkboxes = new ArrayList<Checkbox>(ENTRIES / 2);
+        for (int i = 0; i < ENTRIES / 2; i++) {
+            final MenuItem item = new MenuItem("Entry " + i);
+            menu.add(item);
+            items.add(item);
+
+            final Checkbox checkbox = new Checkbox("Checkbox " + i);
+            menu.add(checkbox);
+            checkboxes.add(checkbox);
+        }
+        settle();
+
+        // warm up both, so that neither one pays for the JIT
+        update(items, checkboxes, false, 0);
+        update(items, checkboxes, true, 0);
+
+        double perCall = Double.MAX_VALUE;
+        double batched = Double.MAX_VALUE;
+        for (int run = 1; run <= RUNS; run++) {
+            perCall = Math.min(perCall, update(items, checkboxes, false, run));
+
+            GtkBatchDispatch.resetStats();
+            DispatchMetrics.reset();
+            DispatchMetrics.setEnabled(true);
+            batched = Math.min(batched, update(items, checkboxes, true, run));
+            DispatchMetrics.setEnabled(false);
+        }
+
+        final GtkBatchDispatch.Stats stats = GtkBatchDispatch.getStats();
+        final int updates = ENTRIES * ROUNDS * 2;
+
+        System.out.println(String.format(Locale.US, "%d updates, per-call: %.1f ms, batched: %.1f ms", updates, perCall, batched));
+        System.out.println("Batches (last run): " + stats);
+        System.out.println(DispatchMetrics.getStats(DispatchMetrics.Backend.GTK, DispatchMetrics.Operation.BATCH));
+
+        systemTray.shutdown();
+
+        int failures = 0;
+        if (batched > perCall * MAX_SLOWDOWN) {
+            System.err.println("FAIL: the batched updates are slower than a callback for every update");
+            failures++;
+        }
+        if (stats.batches == 0L || stats.getMeanBatchSize() < 2.0D) {
+            System.err.println("FAIL: the updates were not batched");
+            failures++;
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    /**
+     * Changes every entry (the text, and enabled or checked), ROUNDS times.
+     *
+     * @return how long it took until all of the changes were applied to the native menu, in milliseconds
+     */
+    private static
+    double update(final List<MenuItem> items, final List<Checkbox> checkboxes, final boolean batched, final int run)
+                    throws InterruptedException {
+        SystemTray.GTK_BATCHED_UPDATES = batched;
+
+        final long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            final boolean odd = round % 2 == 1;
+
+            for (int i = 0; i < items.size(); i++) {
+                final MenuItem item = items.get(i);
+                item.setText("Entry " + i + " (" + run + "." + round + ")");
+                item.setEnabled(odd);
+
+                final Checkbox checkbox = checkboxes.get(i);
+                checkbox.setText("Checkbox " + i + " (" + run + "." + round + ")");
+                checkbox.setChecked(odd);
+            }
+        }
+        settle();
+
+        return (System.nanoTime() - start) / 1000000.0D;
+    }
+
+    /**
+     * Waits until every change has been applied to the native menu.
+     */
+    private static
+    void settle() throws InterruptedException {
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        // this runs everything that was queued (batched or not) before it
+        GtkBatchDispatch.dispatchAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        GtkEventDispatch.waitForEventsToComplete();
+    }
+}
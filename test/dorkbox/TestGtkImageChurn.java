@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.NativeResources;
+import dorkbox.util.CacheUtil;
+import dorkbox.util.jna.linux.GtkEventDispatch;
+
+/**
+ * Changes the images of the GTK menu entries (and toggles the checkboxes) many times. The images are updated in place, so no GtkImage
+ * may be created after the menu has been created (one image per entry), and the live count must stay the same. The time for each
+ * change is printed as well.
+ * <p>
+ * This must be run on linux with GTK, but it does not need a system tray, so it can be run under a virtual framebuffer (ie: xvfb-run
+ * java ...). The tray type is GtkStatusIcon, or the type given as the first argument (ie: AppIndicator).
+ */
+public
+class TestGtkImageChurn {
+    private static final int ROUNDS = 200;
+    private static final int ENTRIES = 50;
+
+    private static final URL[] IMAGES = new URL[] {TestTray.BLACK_TRAIN, TestTray.GREEN_TRAIN, TestTray.LT_GRAY_TRAIN};
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        CacheUtil.clear(); // for test apps, make sure the cache is always reset. You should never do this in production.
+
+        SystemTray.APP_NAME = "GtkImageChurn";
+        SystemTray.FORCE_TRAY_TYPE = args.length > 0 ? SystemTray.TrayType.valueOf(args[0]) : SystemTray.TrayType.GtkStatusIcon;
+        SystemTray.NATIVE_RESOURCE_TRACKING = true;
+
+        final SystemTray systemTray = SystemTray.get();
+        if (systemTray == null || systemTray.getType() != SystemTray.FORCE_TRAY_TYPE) {
+            System.err.println("Unable to create a " + SystemTray.FORCE_TRAY_TYPE + " tray");
+            System.exit(1);
+        }
+
+        systemTray.setImage(IMAGES[0]);
+
+        final Menu menu = systemTray.getMenu();
+        final Menu subMenu = new Menu("Sub-menu", IMAGES[0]);
+        menu.add(subMenu);
+
+        final List<MenuItem> items = new ArrayList<MenuItem>(ENTRIES);
+        final List<Checkbox> checkboxes = new ArrayList<Checkbox>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            final MenuItem item = new MenuItem("Entry " + i, IMAGES[i % IMAGES.length]);
+            menu.add(item);
+            items.add(item);
+
+            final Checkbox checkbox = new Checkbox("Checkbox " + i);
+            menu.add(checkbox);
+            checkboxes.add(checkbox);
+        }
+        settle();
+
+        final NativeResources.Counts before = NativeResources.getCounts(NativeResources.Kind.IMAGE);
+
+        final long start = System.nanoTime();
+        for (int round = 1; round <= ROUNDS; round++) {
+            subMenu.setImage(IMAGES[round % IMAGES.length]);
+
+            for (int i = 0; i < ENTRIES; i++) {
+                items.get(i).setImage(IMAGES[(i + round) % IMAGES.length]);
+                checkboxes.get(i).setChecked(round % 2 == 1);
+            }
+        }
+        settle();
+        final double elapsed = (System.nanoTime() - start) / 1000000.0D;
+
+        final NativeResources.Counts after = NativeResources.getCounts(NativeResources.Kind.IMAGE);
+        final int changes = ROUNDS * (ENTRIES * 2 + 1);
+
+        System.out.println(String.format(Locale.US, "%d changes in %.1f ms (%.3f ms each)", changes, elapsed, elapsed / changes));
+        System.out.println("Before: " + before);
+        System.out.println("After:  " + after);
+
+        systemTray.shutdown();
+
+        int failures = 0;
+        if (after.created != before.created) {
+            System.err.println("FAIL: " + (after.created - before.created) + " images were created when the images were changed");
+            failures++;
+        }
+        if (after.live != before.live) {
+            System.err.println("FAIL: there are " + after.live + " live images (" + before.live + " before the images were changed)");
+            failures++;
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    /**
+     * Waits until every change has been applied to the native menu.
+     */
+    private static
+    void settle() throws InterruptedException {
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        GtkEventDispatch.waitForEventsToComplete();
+
+        // changes to the native menu can queue more changes, those have to finish as well
+        Thread.sleep(100);
+        GtkEventDispatch.waitForEventsToComplete();
+    }
+}
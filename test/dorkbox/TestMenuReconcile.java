@@ -0,0 +1,429 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.MenuSpec;
+import dorkbox.systemTray.Separator;
+import dorkbox.systemTray.Status;
+import dorkbox.systemTray.peer.CheckboxPeer;
+import dorkbox.systemTray.peer.MenuPeer;
+import dorkbox.systemTray.peer.SeparatorPeer;
+import dorkbox.systemTray.peer.StatusPeer;
+
+/**
+ * Compares the number of native operations (and the time) of Menu.reconcile with rebuilding the menu from scratch, for typical updates
+ * to a large menu. Also checks that the entries are in the order of the spec, and that the status (which was not created by reconcile)
+ * stays where it is.
+ * <p>
+ * The menu is bound to a peer that counts the operations and keeps the native order of the entries, so this does not need a desktop.
+ */
+public
+class TestMenuReconcile {
+    private static final int ENTRIES = 1000;
+
+    // reconcile must use at most this fraction of the native operations of a rebuild
+    private static final double MAX_RATIO = 0.05;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) {
+        final Counts counts = new Counts();
+        final Menu menu = new Menu("Reconcile");
+        menu.bind(new CountingPeer(null, counts), null, null);
+
+        final Status status = new Status();
+        status.setText("Status");
+        menu.add(status);
+
+        List<MenuSpec> specs = new ArrayList<MenuSpec>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            specs.add(spec(i));
+        }
+        menu.reconcile(MenuSpec.menu("root", "Reconcile", specs));
+        check(menu, status, specs, "initial");
+
+        System.out.println("Native operations for a menu of " + ENTRIES + " entries, reconcile vs rebuild");
+
+        // change the text of one entry
+        specs = new ArrayList<MenuSpec>(specs);
+        specs.set(ENTRIES / 2 + 1, withText(specs.get(ENTRIES / 2 + 1), "Changed"));
+        compare("set text", menu, status, specs, counts);
+
+        // move one entry from the end to the start
+        specs = new ArrayList<MenuSpec>(specs);
+        specs.add(0, specs.remove(specs.size() - 1));
+        compare("move", menu, status, specs, counts);
+
+        // add one entry in the middle
+        specs = new ArrayList<MenuSpec>(specs);
+        specs.add(ENTRIES / 2, MenuSpec.item("added", "Added"));
+        compare("add", menu, status, specs, counts);
+
+        // remove one entry
+        specs = new ArrayList<MenuSpec>(specs);
+        specs.remove(ENTRIES / 4);
+        compare("remove", menu, status, specs, counts);
+
+        // all of the above, at the same time
+        specs = new ArrayList<MenuSpec>(specs);
+        specs.set(11, withText(specs.get(11), "Changed again"));
+        specs.add(specs.remove(20));
+        specs.add(30, MenuSpec.checkbox("added checkbox", "Added checkbox", true));
+        specs.remove(40);
+        compare("mixed", menu, status, specs, counts);
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    private static
+    MenuSpec spec(final int i) {
+        if (i % 50 == 0) {
+            return MenuSpec.separator("separator " + i);
+        }
+        if (i % 10 == 0) {
+            return MenuSpec.checkbox("checkbox " + i, "Checkbox " + i, false);
+        }
+        return MenuSpec.item("item " + i, "Item " + i);
+    }
+
+    /**
+     * @return a copy of the spec (with the same key), with different text
+     */
+    private static
+    MenuSpec withText(final MenuSpec spec, final String text) {
+        if (spec.getType() == MenuSpec.Type.CHECKBOX) {
+            return MenuSpec.checkbox(spec.getKey(), text, spec.getChecked());
+        }
+        return MenuSpec.item(spec.getKey(), text);
+    }
+
+    private static
+    void compare(final String name, final Menu menu, final Status status, final List<MenuSpec> specs, final Counts counts) {
+        final MenuSpec spec = MenuSpec.menu("root", "Reconcile", specs);
+
+        // reconcile
+        counts.reset();
+        long start = System.nanoTime();
+        menu.reconcile(spec);
+        final long reconcileTime = System.nanoTime() - start;
+        final int reconcileOps = counts.total();
+        final String reconcileCounts = counts.toString();
+
+        check(menu, status, specs, name);
+
+        // rebuild, by removing every entry (except the status) and adding them again from the spec
+        final Menu rebuilt = new Menu("Rebuild");
+        final Counts rebuildCounts = new Counts();
+        rebuilt.bind(new CountingPeer(null, rebuildCounts), null, null);
+        rebuilt.add(new Status());
+        for (MenuSpec child : specs) {
+            rebuilt.add(create(child));
+        }
+
+        rebuildCounts.reset();
+        start = System.nanoTime();
+        for (Entry entry : rebuilt.getEntries()) {
+            if (!(entry instanceof Status)) {
+                rebuilt.remove(entry);
+            }
+        }
+        for (MenuSpec child : specs) {
+            rebuilt.add(create(child));
+        }
+        final long rebuildTime = System.nanoTime() - start;
+        final int rebuildOps = rebuildCounts.total();
+
+        System.out.println(name + ": reconcile " + reconcileOps + " ops " + reconcileCounts + " in " + reconcileTime / 1000L + " us, " +
+                           "rebuild " + rebuildOps + " ops " + rebuildCounts + " in " + rebuildTime / 1000L + " us");
+
+        if (reconcileOps > rebuildOps * MAX_RATIO) {
+            System.err.println("FAIL: " + name + " used " + reconcileOps + " native operations, a rebuild used " + rebuildOps);
+            failures++;
+        }
+    }
+
+    private static
+    Entry create(final MenuSpec spec) {
+        switch (spec.getType()) {
+            case CHECKBOX: {
+                final Checkbox checkbox = new Checkbox(spec.getText());
+                checkbox.setChecked(spec.getChecked());
+                return checkbox;
+            }
+            case SEPARATOR:
+                return new Separator();
+            default:
+                return new MenuItem(spec.getText());
+        }
+    }
+
+    /**
+     * Checks that the menu (and the native order of it's entries) matches the spec, after the status.
+     */
+    private static
+    void check(final Menu menu, final Status status, final List<MenuSpec> specs, final String name) {
+        final List<Entry> entries = menu.getEntries();
+        final List<Entry> nativeEntries = CountingPeer.of(menu).entries;
+
+        if (!entries.equals(nativeEntries)) {
+            System.err.println("FAIL: " + name + ": the native order is not the order of the menu");
+            failures++;
+        }
+
+        if (entries.isEmpty() || entries.get(0) != status) {
+            System.err.println("FAIL: " + name + ": the status is not the first entry");
+            failures++;
+            return;
+        }
+
+        if (entries.size() != specs.size() + 1) {
+            System.err.println("FAIL: " + name + ": the menu has " + (entries.size() - 1) + " entries, the spec has " + specs.size());
+            failures++;
+            return;
+        }
+
+        for (int i = 0; i < specs.size(); i++) {
+            final MenuSpec spec = specs.get(i);
+            final Entry entry = entries.get(i + 1);
+
+            final String text;
+            if (entry instanceof MenuItem) {
+                text = ((MenuItem) entry).getText();
+            }
+            else if (entry instanceof Checkbox) {
+                text = ((Checkbox) entry).getText();
+            }
+            else {
+                text = null;
+            }
+
+            if (spec.getType() != MenuSpec.Type.SEPARATOR && !spec.getText().equals(text)) {
+                System.err.println("FAIL: " + name + ": entry " + i + " is '" + text + "', the spec is '" + spec.getText() + "'");
+                failures++;
+                return;
+            }
+        }
+    }
+
+    private static
+    class Counts {
+        int adds;
+        int removes;
+        int reorders;
+        int properties;
+
+        void reset() {
+            adds = 0;
+            removes = 0;
+            reorders = 0;
+            properties = 0;
+        }
+
+        int total() {
+            return adds + removes + reorders + properties;
+        }
+
+        @Override
+        public
+        String toString() {
+            return "(" + adds + " add, " + removes + " remove, " + reorders + " reorder, " + properties + " property)";
+        }
+    }
+
+    /**
+     * A peer for every type of entry, which counts the native operations and keeps the native order of the entries of a menu.
+     */
+    private static
+    class CountingPeer implements MenuPeer, CheckboxPeer, SeparatorPeer, StatusPeer {
+        private static final java.util.Map<Menu, CountingPeer> menus = new java.util.HashMap<Menu, CountingPeer>();
+
+        private final CountingPeer parent;
+        private final Counts counts;
+        private Entry entry;
+
+        // the native order of the entries, if this is the peer of a menu
+        final List<Entry> entries = new ArrayList<Entry>();
+
+        CountingPeer(final CountingPeer parent, final Counts counts) {
+            this.parent = parent;
+            this.counts = counts;
+        }
+
+        static synchronized
+        CountingPeer of(final Menu menu) {
+            return menus.get(menu);
+        }
+
+        @Override
+        public
+        void add(final Menu parentMenu, final Entry entry, final int index) {
+            counts.adds++;
+
+            synchronized (CountingPeer.class) {
+                menus.put(parentMenu, this);
+            }
+
+            if (index < 0 || index > entries.size()) {
+                entries.add(entry);
+            }
+            else {
+                entries.add(index, entry);
+            }
+
+            final CountingPeer peer = new CountingPeer(this, counts);
+            peer.entry = entry;
+
+            if (entry instanceof Menu) {
+                ((Menu) entry).bind(peer, parentMenu, null);
+            }
+            else if (entry instanceof Separator) {
+                entry.bind((SeparatorPeer) peer, parentMenu, null);
+            }
+            else if (entry instanceof Checkbox) {
+                ((Checkbox) entry).bind(peer, parentMenu, null);
+            }
+            else if (entry instanceof Status) {
+                ((Status) entry).bind(peer, parentMenu, null);
+            }
+            else if (entry instanceof MenuItem) {
+                ((MenuItem) entry).bind(peer, parentMenu, null);
+            }
+        }
+
+        @Override
+        public
+        void startBatch() {
+        }
+
+        @Override
+        public
+        void finishBatch() {
+        }
+
+        @Override
+        public
+        void reorder(final int[] order) {
+            counts.reorders++;
+
+            final List<Entry> copy = new ArrayList<Entry>(entries);
+            for (int i = 0; i < order.length; i++) {
+                entries.set(i, copy.get(order[i]));
+            }
+        }
+
+        @Override
+        public
+        void remove() {
+            counts.removes++;
+
+            if (parent != null) {
+                parent.entries.remove(entry);
+            }
+        }
+
+        @Override
+        public
+        void setImage(final MenuItem menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setEnabled(final MenuItem menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setText(final MenuItem menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setCallback(final MenuItem menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setShortcut(final MenuItem menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setTooltip(final MenuItem menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setEnabled(final Checkbox menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setText(final Checkbox menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setCallback(final Checkbox menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setShortcut(final Checkbox menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setTooltip(final Checkbox menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setChecked(final Checkbox menuItem) {
+            counts.properties++;
+        }
+
+        @Override
+        public
+        void setText(final Status menuItem) {
+            counts.properties++;
+        }
+    }
+}
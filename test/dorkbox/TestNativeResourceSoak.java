@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.net.URL;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.Separator;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.EventDispatch;
+import dorkbox.systemTray.util.NativeResources;
+import dorkbox.util.CacheUtil;
+import dorkbox.util.jna.linux.GtkEventDispatch;
+
+/**
+ * Soak test for the GTK peers: the menu is churned (entries and sub-menus are added, changed and removed) many times, and the live
+ * count of every kind of native resource must be the same after each round. The high-water mark must not keep growing either.
+ * <p>
+ * This must be run on linux with GTK, but it does not need a system tray, so it can be run under a virtual framebuffer (ie: xvfb-run
+ * java ...). The tray type is GtkStatusIcon, or the type given as the first argument (ie: AppIndicator).
+ */
+public
+class TestNativeResourceSoak {
+    private static final int ROUNDS = 200;
+    private static final int ENTRIES = 20;
+
+    private static final URL[] IMAGES = new URL[] {TestTray.BLACK_TRAIN, TestTray.GREEN_TRAIN, TestTray.LT_GRAY_TRAIN};
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        CacheUtil.clear(); // for test apps, make sure the cache is always reset. You should never do this in production.
+
+        SystemTray.APP_NAME = "NativeResourceSoak";
+        SystemTray.FORCE_TRAY_TYPE = args.length > 0 ? SystemTray.TrayType.valueOf(args[0]) : SystemTray.TrayType.GtkStatusIcon;
+        SystemTray.NATIVE_RESOURCE_TRACKING = true;
+
+        final SystemTray systemTray = SystemTray.get();
+        if (systemTray == null || systemTray.getType() != SystemTray.FORCE_TRAY_TYPE) {
+            System.err.println("Unable to create a " + SystemTray.FORCE_TRAY_TYPE + " tray");
+            System.exit(1);
+        }
+
+        systemTray.setImage(IMAGES[0]);
+        systemTray.setStatus("Soak test");
+
+        final Menu menu = systemTray.getMenu();
+
+        // the first round creates everything that is only created once (ie: the spacer images)
+        churn(menu, 0);
+        settle();
+        final long[] baseline = liveCounts();
+        final long[] baselineHighWater = highWaterCounts();
+
+        int failures = 0;
+        for (int round = 1; round <= ROUNDS; round++) {
+            churn(menu, round);
+            settle();
+
+            final long[] live = liveCounts();
+            for (int i = 0; i < live.length; i++) {
+                if (live[i] != baseline[i]) {
+                    System.err.println("FAIL: after round " + round + ", " + NativeResources.Kind.values()[i] + " has " + live[i] +
+                                       " live (" + baseline[i] + " after the first round)");
+                    failures++;
+                }
+            }
+
+            if (failures > 0) {
+                break;
+            }
+        }
+
+        final long[] highWater = highWaterCounts();
+        for (int i = 0; i < highWater.length; i++) {
+            if (highWater[i] != baselineHighWater[i]) {
+                System.err.println("FAIL: the high-water mark of " + NativeResources.Kind.values()[i] + " grew from " +
+                                   baselineHighWater[i] + " to " + highWater[i]);
+                failures++;
+            }
+        }
+
+        for (NativeResources.Counts counts : NativeResources.getCounts()) {
+            System.out.println(counts);
+        }
+
+        systemTray.shutdown();
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS: " + ROUNDS + " rounds");
+        System.exit(0);
+    }
+
+    /**
+     * Adds a sub-menu and entries (with images), changes them, then removes all of them.
+     */
+    private static
+    void churn(final Menu menu, final int round) {
+        final Menu subMenu = new Menu("Sub-menu " + round, IMAGES[round % IMAGES.length]);
+        menu.add(subMenu);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            final MenuItem item = new MenuItem("Entry " + i, IMAGES[i % IMAGES.length]);
+            menu.add(item);
+            subMenu.add(new MenuItem("Sub-entry " + i, IMAGES[(i + 1) % IMAGES.length]));
+
+            final Checkbox checkbox = new Checkbox("Checkbox " + i);
+            menu.add(checkbox);
+            checkbox.setChecked(true);
+            checkbox.setChecked(false);
+
+            item.setImage(IMAGES[(i + round) % IMAGES.length]);
+            item.setText("Changed " + i);
+
+            if (i % 5 == 0) {
+                menu.add(new Separator());
+            }
+        }
+
+        // the status (the first entry) stays
+        for (int i = menu.getEntries().size() - 1; i > 0; i--) {
+            menu.get(i).remove();
+        }
+    }
+
+    /**
+     * Waits until every change has been applied to the native menu.
+     */
+    private static
+    void settle() throws InterruptedException {
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        GtkEventDispatch.waitForEventsToComplete();
+
+        // changes to the native menu can queue more changes (ie: when a sub-menu is removed), those have to finish as well
+        Thread.sleep(100);
+        GtkEventDispatch.waitForEventsToComplete();
+    }
+
+    private static
+    long[] liveCounts() {
+        final NativeResources.Kind[] kinds = NativeResources.Kind.values();
+        final long[] counts = new long[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            counts[i] = NativeResources.getCounts(kinds[i]).live;
+        }
+        return counts;
+    }
+
+    private static
+    long[] highWaterCounts() {
+        final NativeResources.Kind[] kinds = NativeResources.Kind.values();
+        final long[] counts = new long[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            counts[i] = NativeResources.getCounts(kinds[i]).highWater;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import dorkbox.systemTray.util.StartupTask;
+
+/**
+ * Checks the startup pipeline that SystemTray.init() uses: independent steps must run at the same time, steps must wait for their
+ * dependencies, a failed step must fail the steps that depend on it, and the critical path must be the chain of steps that determined
+ * how long it took.
+ * <p>
+ * The steps have the same shape as SystemTray.init() (detecting the tray type and starting GTK at the same time, then preparing, while the
+ * blank tray image is created), with sleeps instead of the real work, so this does not need a desktop.
+ */
+public
+class TestStartupTask {
+    private static final long DETECT_MS = 100L;
+    private static final long GTK_MS = 150L;
+    private static final long IMAGE_MS = 120L;
+    private static final long PREPARE_MS = 50L;
+    private static final long CREATE_MS = 30L;
+
+    // allowed for thread scheduling
+    private static final long SLACK_MS = 50L;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) {
+        checkPipeline();
+        checkFailure();
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+    }
+
+    private static
+    void checkPipeline() {
+        final long start = System.nanoTime();
+
+        final StartupTask gtk = StartupTask.fork("start gtk", sleep(GTK_MS));
+        final StartupTask image = StartupTask.fork("create image", sleep(IMAGE_MS));
+        final StartupTask detect = StartupTask.run("detect", sleep(DETECT_MS));
+        final StartupTask prepare = StartupTask.run("prepare", sleep(PREPARE_MS), detect, gtk);
+        final StartupTask create = StartupTask.run("create tray", sleep(CREATE_MS), prepare, image);
+
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+        final long sequential = DETECT_MS + GTK_MS + IMAGE_MS + PREPARE_MS + CREATE_MS;
+        final long criticalPath = GTK_MS + PREPARE_MS + CREATE_MS;
+
+        final String path = create.getCriticalPath();
+        System.out.println("Finished in " + elapsed + " ms (" + sequential + " ms one at a time, " + criticalPath + " ms critical path)");
+        System.out.println("Critical path: " + path);
+
+        if (elapsed < criticalPath) {
+            System.err.println("FAIL: a step did not wait for its dependencies");
+            failures++;
+        }
+        if (elapsed > criticalPath + SLACK_MS) {
+            System.err.println("FAIL: the independent steps did not run at the same time");
+            failures++;
+        }
+        if (!path.startsWith("start gtk (") || !path.contains(" -> prepare (") || !path.contains(" -> create tray (")) {
+            System.err.println("FAIL: the critical path should be start gtk -> prepare -> create tray");
+            failures++;
+        }
+    }
+
+    private static
+    void checkFailure() {
+        final RuntimeException failure = new RuntimeException("GTK could not be started");
+
+        final StartupTask gtk = StartupTask.fork("start gtk", new Runnable() {
+            @Override
+            public
+            void run() {
+                throw failure;
+            }
+        });
+
+        final boolean[] ran = new boolean[1];
+        try {
+            StartupTask.run("prepare", new Runnable() {
+                @Override
+                public
+                void run() {
+                    ran[0] = true;
+                }
+            }, gtk);
+
+            System.err.println("FAIL: the failure of a dependency was not rethrown");
+            failures++;
+        } catch (RuntimeException e) {
+            if (e != failure) {
+                System.err.println("FAIL: a different exception was thrown: " + e);
+                failures++;
+            }
+        }
+
+        if (ran[0]) {
+            System.err.println("FAIL: a step ran after it's dependency failed");
+            failures++;
+        }
+    }
+
+    private static
+    Runnable sleep(final long millis) {
+        return new Runnable() {
+            @Override
+            public
+            void run() {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
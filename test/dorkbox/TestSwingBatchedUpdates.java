@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.Separator;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.ui.swing.SwingMenu;
+import dorkbox.systemTray.util.EventDispatch;
+
+/**
+ * Builds (and then empties) a large Swing menu with and without SystemTray.SWING_BATCHED_UPDATES, and compares the time it takes and the
+ * number of EDT tasks that are used. With batching, the whole menu must be built with a few EDT tasks, instead of one per entry.
+ * <p>
+ * The Swing peers need a display (ie: Xvfb), but not a system tray.
+ */
+public
+class TestSwingBatchedUpdates {
+    private static final int ENTRIES = 1000;
+
+    // batched updates must use at most this many EDT tasks to add (or remove) all of the entries
+    private static final int MAX_BATCHED_TASKS = ENTRIES / 10;
+
+    private static final AtomicInteger edtTasks = new AtomicInteger();
+
+    public static
+    void main(String[] args) throws Exception {
+        // counts the tasks that are run on the EDT
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+            @Override
+            protected
+            void dispatchEvent(final AWTEvent event) {
+                if (event instanceof InvocationEvent) {
+                    edtTasks.incrementAndGet();
+                }
+                super.dispatchEvent(event);
+            }
+        });
+
+        // warm up the Swing classes
+        run(false, 100);
+        run(true, 100);
+
+        final int[] unbatched = run(false, ENTRIES);
+        final int[] batched = run(true, ENTRIES);
+
+        EventDispatch.shutdown();
+
+        int failures = 0;
+        if (batched[1] > MAX_BATCHED_TASKS || batched[3] > MAX_BATCHED_TASKS) {
+            System.err.println("FAIL: batched updates used " + batched[1] + " EDT tasks to add, and " + batched[3] + " to remove " +
+                               ENTRIES + " entries");
+            failures++;
+        }
+        if (batched[0] > unbatched[0]) {
+            System.err.println("FAIL: batched updates were slower to add the entries");
+            failures++;
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    /**
+     * @return the time (in ms) and the EDT tasks to add the entries, then the time and EDT tasks to remove them
+     */
+    private static
+    int[] run(final boolean batched, final int entries) throws InvocationTargetException, InterruptedException {
+        SystemTray.SWING_BATCHED_UPDATES = batched;
+
+        final Menu menu = new Menu("Batched");
+        final SwingMenu[] peer = new SwingMenu[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                peer[0] = new SwingMenu(null, menu);
+            }
+        });
+        menu.bind(peer[0], null, null);
+        waitForUpdates();
+
+        edtTasks.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            if (i % 20 == 0) {
+                menu.add(new Separator());
+            }
+            else {
+                menu.add(new MenuItem("Entry " + i));
+            }
+        }
+        waitForUpdates();
+        final int addTime = (int) ((System.nanoTime() - start) / 1000000L);
+        final int addTasks = edtTasks.get();
+
+        edtTasks.set(0);
+        start = System.nanoTime();
+        for (Entry entry : menu.getEntries()) {
+            menu.remove(entry);
+        }
+        waitForUpdates();
+        final int removeTime = (int) ((System.nanoTime() - start) / 1000000L);
+        final int removeTasks = edtTasks.get();
+
+        if (entries == ENTRIES) {
+            System.out.println((batched ? "batched" : "not batched") + ": added " + entries + " entries in " + addTime + " ms (" +
+                               addTasks + " EDT tasks), removed them in " + removeTime + " ms (" + removeTasks + " EDT tasks)");
+        }
+
+        return new int[] {addTime, addTasks, removeTime, removeTasks};
+    }
+
+    /**
+     * Waits for the dispatch thread, then for the EDT, so that every change has been applied to the Swing menu
+     */
+    private static
+    void waitForUpdates() throws InvocationTargetException, InterruptedException {
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Checks that the tray backends are discovered via ServiceLoader, and that only the tray classes of the backend that is used are loaded.
+ * <p>
+ * The library is loaded by a separate class loader, so that the classes it has loaded can be checked. Probing every backend must not
+ * load any tray class. If there is a display, the SystemTray is also created (for the GTK path, this is the startup benchmark): the time
+ * and the number of classes loaded are reported, the tray class that is used must have been loaded, and the tray classes of the backends
+ * that are not supported on this OS must not have been.
+ */
+public
+class TestTrayBackends {
+    // the tray class of each tray type
+    private static final String[][] TRAY_CLASSES = new String[][] {{"AppIndicator", "dorkbox.systemTray.ui.gtk._AppIndicatorNativeTray"},
+                                                                   {"GtkStatusIcon", "dorkbox.systemTray.ui.gtk._GtkStatusIconNativeTray"},
+                                                                   {"Swing", "dorkbox.systemTray.ui.swing._SwingTray"},
+                                                                   {"WindowsNotifyIcon", "dorkbox.systemTray.ui.swing._WindowsNativeTray"},
+                                                                   {"OSXStatusItem", "dorkbox.systemTray.ui.osx._OsxNativeTray"},
+                                                                   {"AWT", "dorkbox.systemTray.ui.awt._AwtTray"}};
+
+    // the tray types that are not supported on this OS
+    private static final List<String> unsupported = new ArrayList<String>();
+
+    private static final int BACKENDS = TRAY_CLASSES.length;
+
+    private static int failures = 0;
+
+    /**
+     * Loads the library classes itself (instead of from the parent), so that the classes it has loaded can be checked.
+     */
+    private static
+    class IsolatedClassLoader extends URLClassLoader {
+        IsolatedClassLoader(final URL[] urls) {
+            super(urls, ClassLoader.getSystemClassLoader().getParent());
+        }
+
+        boolean isLoaded(final String className) {
+            return findLoadedClass(className) != null;
+        }
+    }
+
+    public static
+    void main(String[] args) throws Exception {
+        final String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+        final URL[] urls = new URL[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            urls[i] = new File(paths[i]).toURI().toURL();
+        }
+
+        checkProbes(new IsolatedClassLoader(urls));
+
+        if (GraphicsEnvironment.isHeadless()) {
+            System.out.println("There is no display, so the SystemTray is not created");
+        }
+        else {
+            checkInit(new IsolatedClassLoader(urls));
+        }
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    private static
+    void checkProbes(final IsolatedClassLoader classLoader) throws Exception {
+        final Class<?> backendClass = classLoader.loadClass("dorkbox.systemTray.TrayBackend");
+        final Method getType = backendClass.getMethod("getType");
+        final Method isSupported = backendClass.getMethod("isSupported");
+        final Method getPriority = backendClass.getMethod("getPriority");
+
+        final List<Object> backends = new ArrayList<Object>();
+        final List<Object> types = new ArrayList<Object>();
+
+        final Iterator<?> iterator = ServiceLoader.load(backendClass, classLoader).iterator();
+        while (iterator.hasNext()) {
+            final Object backend = iterator.next();
+            final Object type = getType.invoke(backend);
+
+            System.out.println(backend + ": supported " + isSupported.invoke(backend) + ", priority " + getPriority.invoke(backend));
+
+            if (types.contains(type)) {
+                System.err.println("FAIL: there is more than one built-in backend for " + type);
+                failures++;
+            }
+
+            backends.add(backend);
+            types.add(type);
+
+            if (!Boolean.TRUE.equals(isSupported.invoke(backend))) {
+                unsupported.add(type.toString());
+            }
+        }
+
+        if (backends.size() != BACKENDS) {
+            System.err.println("FAIL: " + backends.size() + " backends were found, expected " + BACKENDS);
+            failures++;
+        }
+
+        for (String[] trayClass : TRAY_CLASSES) {
+            if (classLoader.isLoaded(trayClass[1])) {
+                System.err.println("FAIL: probing the backends loaded " + trayClass[1]);
+                failures++;
+            }
+        }
+    }
+
+    private static
+    void checkInit(final IsolatedClassLoader classLoader) throws Exception {
+        final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        final long startClasses = classLoading.getTotalLoadedClassCount();
+        final long startTime = System.nanoTime();
+
+        final Class<?> systemTrayClass = classLoader.loadClass("dorkbox.systemTray.SystemTray");
+        final Object systemTray = systemTrayClass.getMethod("get").invoke(null);
+
+        final long elapsed = (System.nanoTime() - startTime) / 1000000L;
+        final long classes = classLoading.getTotalLoadedClassCount() - startClasses;
+
+        if (systemTray == null) {
+            System.err.println("FAIL: unable to create the SystemTray");
+            failures++;
+            return;
+        }
+
+        final Object type = systemTrayClass.getMethod("getType").invoke(systemTray);
+        System.out.println("Created a " + type + " tray in " + elapsed + " ms, " + classes + " classes were loaded");
+
+        for (String[] trayClass : TRAY_CLASSES) {
+            final boolean isLoaded = classLoader.isLoaded(trayClass[1]);
+
+            if (trayClass[0].equals(type.toString()) && !isLoaded) {
+                System.err.println("FAIL: the tray class that is used was not loaded by this class loader: " + trayClass[1]);
+                failures++;
+            }
+            else if (unsupported.contains(trayClass[0]) && isLoaded) {
+                System.err.println("FAIL: the tray class of an unsupported backend was loaded: " + trayClass[1]);
+                failures++;
+            }
+        }
+
+        systemTrayClass.getMethod("shutdown").invoke(systemTray);
+    }
+}
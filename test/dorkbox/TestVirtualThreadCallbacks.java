@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dorkbox.systemTray.Entry;
+import dorkbox.systemTray.MenuCallback;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.util.ClickHandler;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.EventDispatch;
+
+/**
+ * Stress test for the virtual thread callback mode: thousands of callbacks that block are clicked at once. Callbacks for different
+ * entries must run concurrently (so they finish in about the time of the longest entry), and callbacks for the same entry must never
+ * overlap (so they stay in order).
+ * <p>
+ * This thread takes the place of the native thread that receives the clicks, so this does not need a desktop. It requires Java 21+.
+ */
+public
+class TestVirtualThreadCallbacks {
+    private static final int ENTRIES = 2000;
+    private static final int CLICKS_PER_ENTRY = 5;
+    private static final int BLOCK_MS = 100;
+
+    // the callbacks for one entry take CLICKS_PER_ENTRY * BLOCK_MS, everything must finish within this
+    private static final long TIMEOUT_MS = 30000L;
+
+    public static
+    void main(String[] args) throws InterruptedException {
+        try {
+            Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            System.err.println("Virtual threads are not available, this requires Java 21+");
+            System.exit(1);
+        }
+
+        final int total = ENTRIES * CLICKS_PER_ENTRY;
+        final CountDownLatch done = new CountDownLatch(total);
+        final AtomicInteger overlaps = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        final Map<Entry, AtomicBoolean> isRunning = new HashMap<Entry, AtomicBoolean>();
+
+        final MenuCallback callback = new MenuCallback() {
+            @Override
+            public
+            void onClick(final Entry entry) {
+                final AtomicBoolean entryRunning = isRunning.get(entry);
+                if (!entryRunning.compareAndSet(false, true)) {
+                    overlaps.incrementAndGet();
+                }
+
+                final int now = running.incrementAndGet();
+                int max;
+                do {
+                    max = maxRunning.get();
+                } while (now > max && !maxRunning.compareAndSet(max, now));
+
+                try {
+                    // blocking I/O
+                    Thread.sleep(BLOCK_MS);
+                } catch (InterruptedException ignored) {
+                }
+
+                running.decrementAndGet();
+                entryRunning.set(false);
+                done.countDown();
+            }
+        };
+
+        // the peers create one click handler per entry
+        final ClickHandler[] handlers = new ClickHandler[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            final MenuItem item = new MenuItem("Entry " + i);
+            item.setMenuCallback(callback);
+            item.setCallbackExecutor(EventDispatch.VIRTUAL_THREAD_EXECUTOR);
+
+            isRunning.put(item, new AtomicBoolean());
+            handlers[i] = new ClickHandler(item, DispatchMetrics.Backend.GTK);
+        }
+
+        final long start = System.nanoTime();
+        for (int click = 0; click < CLICKS_PER_ENTRY; click++) {
+            for (ClickHandler handler : handlers) {
+                handler.actionPerformed(null);
+            }
+        }
+        final long clicked = System.nanoTime();
+
+        final boolean finished = done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println(total + " blocking callbacks (" + BLOCK_MS + " ms each) across " + ENTRIES + " entries: clicked in " +
+                           TimeUnit.NANOSECONDS.toMillis(clicked - start) + " ms, finished in " + TimeUnit.NANOSECONDS.toMillis(elapsed) +
+                           " ms (" + (long) total * BLOCK_MS + " ms if run one at a time), at most " + maxRunning.get() + " at once");
+
+        int failures = 0;
+        if (!finished) {
+            System.err.println("FAIL: " + done.getCount() + " callbacks did not finish within " + TIMEOUT_MS + " ms");
+            failures++;
+        }
+        if (overlaps.get() > 0) {
+            System.err.println("FAIL: callbacks for the same entry overlapped " + overlaps.get() + " times");
+            failures++;
+        }
+        if (maxRunning.get() < ENTRIES / 2) {
+            System.err.println("FAIL: only " + maxRunning.get() + " callbacks ran at the same time");
+            failures++;
+        }
+
+        EventDispatch.shutdown();
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+}
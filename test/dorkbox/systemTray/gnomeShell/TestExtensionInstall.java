@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.gnomeShell;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Checks that the gnome-shell extension is only (re)written when it has changed, using a temporary 'user.home'.
+ * <p>
+ * Files are back-dated after each step, so a file that was rewritten is the one with a new modified time.
+ */
+public
+class TestExtensionInstall {
+    private static final String UID = "SystemTray@Dorkbox";
+    private static final long OLD_TIME = 1000000000000L;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) throws IOException {
+        final File home = File.createTempFile("systemtray-home", "");
+        home.delete();
+        home.mkdirs();
+        System.setProperty("user.home", home.getAbsolutePath());
+
+        final File directory = new File(home, ".local/share/gnome-shell/extensions/" + UID);
+
+        try {
+            warmStart(directory);
+            changedFile(directory);
+            removedFile(directory);
+            preManifestInstall(directory);
+        } finally {
+            delete(home);
+        }
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("All checks passed");
+    }
+
+    private static
+    void warmStart(final File directory) throws IOException {
+        final String metadata = metadata("1.0");
+        final Map<String, byte[]> files = files(metadata, "extension 1", "style 1");
+
+        check(!ExtensionSupport.isCurrent(directory, metadata), "nothing installed is not current");
+        check(ExtensionSupport.install(directory, files), "first install");
+        check(ExtensionSupport.isCurrent(directory, metadata), "first install is current");
+
+        // if the installed files were read (instead of the manifest), this would be noticed and re-written
+        write(new File(directory, "extension.js"), "changed outside of the SystemTray");
+        backDate(directory);
+
+        check(ExtensionSupport.isCurrent(directory, metadata), "warm start is current");
+        check(ExtensionSupport.install(directory, files), "warm start install");
+        check(rewritten(directory).isEmpty(), "warm start only reads the manifest, rewrote " + rewritten(directory));
+
+        delete(directory);
+    }
+
+    private static
+    void changedFile(final File directory) {
+        check(ExtensionSupport.install(directory, files(metadata("1.0"), "extension 1", "style 1")), "install 1.0");
+        backDate(directory);
+
+        final String metadata = metadata("2.0");
+        check(!ExtensionSupport.isCurrent(directory, metadata), "new version is not current");
+        check(ExtensionSupport.install(directory, files(metadata, "extension 1", "style 2")), "install 2.0");
+
+        final Set<String> expected = new HashSet<String>(Arrays.asList("metadata.json", "stylesheet.css", ExtensionSupport.MANIFEST));
+        check(rewritten(directory).equals(expected), "only the changed files are rewritten, rewrote " + rewritten(directory));
+        check(ExtensionSupport.isCurrent(directory, metadata), "2.0 is current");
+
+        delete(directory);
+    }
+
+    private static
+    void removedFile(final File directory) {
+        final String metadata = metadata("1.0");
+        check(ExtensionSupport.install(directory, files(metadata, "extension 1", "style 1")), "install with stylesheet");
+
+        final Map<String, byte[]> files = files(metadata("2.0"), "extension 1", null);
+        check(ExtensionSupport.install(directory, files), "install without stylesheet");
+        check(!new File(directory, "stylesheet.css").exists(), "the removed file is deleted");
+        check(new File(directory, "extension.js").isFile(), "the other files are kept");
+
+        delete(directory);
+    }
+
+    private static
+    void preManifestInstall(final File directory) throws IOException {
+        // what was installed before there was a manifest
+        write(new File(directory, "extension.js"), "extension 1");
+        write(new File(directory, "stylesheet.css"), "style 0");
+        write(new File(directory, "metadata.json"), metadata("0.9"));
+        backDate(directory);
+
+        final String metadata = metadata("1.0");
+        check(!ExtensionSupport.isCurrent(directory, metadata), "pre-manifest install is not current");
+        check(ExtensionSupport.install(directory, files(metadata, "extension 1", "style 1")), "upgrade pre-manifest install");
+
+        final Set<String> rewritten = rewritten(directory);
+        check(!rewritten.contains("extension.js"), "the same file is not rewritten when upgrading, rewrote " + rewritten);
+        check(rewritten.contains("stylesheet.css") && rewritten.contains("metadata.json"), "the changed files are rewritten");
+        check(new File(directory, ExtensionSupport.MANIFEST).isFile(), "the manifest is written");
+        check(ExtensionSupport.isCurrent(directory, metadata), "upgraded install is current");
+
+        delete(directory);
+    }
+
+
+    private static
+    String metadata(final String version) {
+        return ExtensionSupport.createMetadata(UID, version, "TestExtensionInstall", "3.38");
+    }
+
+    /**
+     * @param stylesheet the stylesheet contents, or null if there is no stylesheet
+     */
+    private static
+    Map<String, byte[]> files(final String metadata, final String extension, final String stylesheet) {
+        final Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        files.put("extension.js", ExtensionSupport.toBytes(extension));
+        if (stylesheet != null) {
+            files.put("stylesheet.css", ExtensionSupport.toBytes(stylesheet));
+        }
+        files.put("metadata.json", ExtensionSupport.toBytes(metadata));
+        return files;
+    }
+
+    /**
+     * @return the names of the files that were written since they were back-dated
+     */
+    private static
+    Set<String> rewritten(final File directory) {
+        final Set<String> rewritten = new TreeSet<String>();
+
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.lastModified() != OLD_TIME) {
+                    rewritten.add(file.getName());
+                }
+            }
+        }
+
+        return rewritten;
+    }
+
+    private static
+    void backDate(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.setLastModified(OLD_TIME);
+            }
+        }
+    }
+
+    private static
+    void write(final File file, final String contents) throws IOException {
+        file.getParentFile().mkdirs();
+
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(ExtensionSupport.toBytes(contents));
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static
+    void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static
+    void check(final boolean passed, final String description) {
+        if (passed) {
+            System.out.println("PASS: " + description);
+        } else {
+            System.err.println("FAIL: " + description);
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.swing;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.util.DispatchMetrics;
+import dorkbox.systemTray.util.EventDispatch;
+
+/**
+ * Checks the click-to-popup latency instrumentation, and that prewarming the menu makes the first open faster.
+ * <p>
+ * The first open is only slow in a new JVM, so each case runs in it's own JVM: the menu is opened once without prewarm, and once after
+ * it was prewarmed. The latency is what TrayPopup recorded (from the click until the popup was painted). This needs a display, but not a
+ * system tray, so it can be run under a virtual framebuffer (ie: xvfb-run java ...).
+ */
+public
+class TestPopupLatency {
+    private static final int ENTRIES = 50;
+    private static final long TIMEOUT_MS = 10000L;
+    private static final String LATENCY = "LATENCY ";
+
+    public static
+    void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            open("prewarm".equals(args[0]));
+            return;
+        }
+
+        final long cold = run("cold");
+        final long prewarmed = run("prewarm");
+
+        System.out.println("First open: " + cold / 1000000.0D + " ms without prewarm, " + prewarmed / 1000000.0D + " ms after prewarm");
+
+        int failures = 0;
+        if (cold <= 0L || prewarmed <= 0L) {
+            System.err.println("FAIL: the latency was not recorded");
+            failures++;
+        }
+        else if (prewarmed >= cold) {
+            System.err.println("FAIL: prewarm did not make the first open faster");
+            failures++;
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+    }
+
+    /**
+     * Runs this test in a new JVM, and returns the latency it recorded (in nanoseconds), or -1 if it did not.
+     */
+    private static
+    long run(final String mode) throws Exception {
+        final List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(TestPopupLatency.class.getName());
+        command.add(mode);
+
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+
+        long latency = -1L;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(LATENCY)) {
+                latency = Long.parseLong(line.substring(LATENCY.length()));
+            }
+            else {
+                System.out.println(mode + ": " + line);
+            }
+        }
+        reader.close();
+
+        if (process.waitFor() != 0) {
+            System.err.println(mode + " exited with " + process.exitValue());
+        }
+        return latency;
+    }
+
+    /**
+     * Opens the menu once (in this JVM), and prints the latency that was recorded.
+     */
+    private static
+    void open(final boolean prewarm) throws InvocationTargetException, InterruptedException {
+        DispatchMetrics.setEnabled(true);
+
+        final Menu menu = new Menu("Menu");
+        final SwingMenu[] peer = new SwingMenu[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                peer[0] = new SwingMenu(null, menu);
+            }
+        });
+        menu.bind(peer[0], null, null);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            menu.add(new MenuItem("Entry " + i));
+        }
+
+        if (prewarm) {
+            peer[0].prewarm();
+        }
+
+        // everything is added (and prewarmed) before the click
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        final TrayPopup popup = (TrayPopup) peer[0]._native;
+        final long clickTime = System.nanoTime();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public
+            void run() {
+                popup.doShow(new Point(100, 100), 0, clickTime);
+            }
+        });
+
+        final long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while (popup.getLastShowLatency() == -1L && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+
+        final long latency = popup.getLastShowLatency();
+        final long recorded = DispatchMetrics.getStats(DispatchMetrics.Backend.SWING, DispatchMetrics.Operation.POPUP).run.count;
+        if (latency != -1L && recorded != 1L) {
+            System.out.println("the popup was recorded " + recorded + " times by DispatchMetrics");
+            System.out.println(LATENCY + -1L);
+        }
+        else {
+            System.out.println(LATENCY + latency);
+        }
+
+        System.exit(0);
+    }
+}
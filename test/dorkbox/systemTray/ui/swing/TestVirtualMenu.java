@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.ui.swing;
+
+import java.awt.Point;
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+
+import dorkbox.systemTray.Checkbox;
+import dorkbox.systemTray.Menu;
+import dorkbox.systemTray.MenuItem;
+import dorkbox.systemTray.Separator;
+import dorkbox.systemTray.SystemTray;
+import dorkbox.systemTray.util.EventDispatch;
+
+/**
+ * Compares the open latency and the heap usage of the virtual menu (SystemTray.SWING_VIRTUAL_MENU) with the TrayPopup of Swing
+ * components, for menus of 1k and 10k entries. The virtual menu must be faster to open, and use less heap, for the larger menu.
+ * <p>
+ * The popup needs a display (ie: Xvfb), but not a system tray. Run with a fixed heap (ie: -Xms1g -Xmx1g) so that the used heap is stable.
+ */
+public
+class TestVirtualMenu {
+    private static final int[] SIZES = new int[] {1000, 10000};
+    private static final int OPENS = 5;
+
+    public static
+    void main(String[] args) throws Exception {
+        // the Swing menus are built with a single EDT task, so that building them does not take too long
+        SystemTray.SWING_BATCHED_UPDATES = true;
+
+        // warm up the Swing classes, and both menus
+        measure(false, 100);
+        measure(true, 100);
+
+        int failures = 0;
+        for (int size : SIZES) {
+            final long[] swing = measure(false, size);
+            final long[] virtual = measure(true, size);
+
+            System.out.println(size + " entries: TrayPopup opens in " + swing[0] + " ms (first) / " + swing[1] + " ms, uses " +
+                               swing[2] / 1024 + " KB. Virtual menu opens in " + virtual[0] + " ms (first) / " + virtual[1] +
+                               " ms, uses " + virtual[2] / 1024 + " KB");
+
+            if (size == SIZES[SIZES.length - 1]) {
+                if (virtual[0] > swing[0]) {
+                    System.err.println("FAIL: the virtual menu is slower to open");
+                    failures++;
+                }
+                if (virtual[2] > swing[2]) {
+                    System.err.println("FAIL: the virtual menu uses more heap");
+                    failures++;
+                }
+            }
+        }
+
+        EventDispatch.shutdown();
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+        System.exit(0);
+    }
+
+    /**
+     * @return the time (in ms) for the first open, the average time for the opens after that, and the heap used by the menu (in bytes)
+     */
+    private static
+    long[] measure(final boolean virtual, final int size) throws InvocationTargetException, InterruptedException {
+        SystemTray.SWING_VIRTUAL_MENU = virtual;
+
+        final long heapBefore = usedHeap();
+
+        final Menu menu = new Menu("Menu");
+        final SwingMenu[] peer = new SwingMenu[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                peer[0] = new SwingMenu(null, menu);
+            }
+        });
+        menu.bind(peer[0], null, null);
+
+        for (int i = 0; i < size; i++) {
+            if (i % 50 == 0) {
+                menu.add(new Separator());
+            }
+            else if (i % 10 == 0) {
+                menu.add(new Checkbox("Checkbox " + i));
+            }
+            else {
+                menu.add(new MenuItem("Entry " + i));
+            }
+        }
+        waitForUpdates();
+
+        final long heap = usedHeap() - heapBefore;
+
+        final TrayPopup popup = (TrayPopup) peer[0]._native;
+        final long first = open(popup);
+
+        long total = 0L;
+        for (int i = 1; i < OPENS; i++) {
+            total += open(popup);
+        }
+
+        // keeps the menu reachable until it has been measured
+        menu.remove();
+        waitForUpdates();
+
+        return new long[] {first, total / (OPENS - 1), heap};
+    }
+
+    /**
+     * @return the time (in ms) from the request to show the popup until it has been laid out, shown and painted
+     */
+    private static
+    long open(final TrayPopup popup) throws InvocationTargetException, InterruptedException {
+        final long start = System.nanoTime();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                popup.doShow(new Point(100, 100), 0);
+            }
+        });
+
+        // the paint events are queued by showing the popup
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+        final long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+                popup.setVisible(false);
+            }
+        });
+
+        return elapsed;
+    }
+
+    /**
+     * Waits for the dispatch thread, then for the EDT, so that every change has been applied to the Swing menu
+     */
+    private static
+    void waitForUpdates() throws InvocationTargetException, InterruptedException {
+        EventDispatch.run(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public
+            void run() {
+            }
+        });
+    }
+
+    private static
+    long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
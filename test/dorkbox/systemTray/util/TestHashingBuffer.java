@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Checks the cache names of HashingBuffer, and measures the bytes allocated per image against the previous path (copy the stream into a
+ * ByteArrayOutputStream, copy that again with toByteArray(), then read the copy again to hash it).
+ * <p>
+ * The allocations are measured with com.sun.management.ThreadMXBean, which is available on HotSpot and OpenJDK.
+ */
+public
+class TestHashingBuffer {
+    private static final int[] IMAGE_SIZES = new int[] {4 * 1024, 64 * 1024, 1024 * 1024};
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 500;
+
+    // HashingBuffer must allocate at most this fraction of what the previous path allocated
+    private static final double MAX_RATIO = 0.1D;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) throws Exception {
+        checkHash();
+
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Measuring allocations is not supported by this JVM");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        System.out.println("Bytes allocated per image");
+        final Random random = new Random(42);
+        for (int size : IMAGE_SIZES) {
+            final byte[] image = new byte[size];
+            random.nextBytes(image);
+
+            final long hashing = allocated(threads, image, true);
+            final long previous = allocated(threads, image, false);
+
+            System.out.println(size / 1024 + " KB: HashingBuffer " + hashing + ", previous " + previous + " (" +
+                               String.format("%.1f", (double) previous / Math.max(1L, hashing)) + "x)");
+
+            if (hashing > previous * MAX_RATIO) {
+                System.err.println("FAIL: HashingBuffer allocated " + hashing + " bytes for " + size + " bytes, the previous path " + previous);
+                failures++;
+            }
+        }
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+    }
+
+    /**
+     * The hash must be MurmurHash3 (x64, 128-bit), and must be the same no matter how the data was written into the buffer.
+     */
+    private static
+    void checkHash() throws IOException {
+        HashingBuffer buffer = HashingBuffer.get();
+        check("00000000000000000000000000000000", buffer.getHashName(), "empty");
+
+        buffer = HashingBuffer.get();
+        buffer.write("The quick brown fox jumps over the lazy dog".getBytes("US-ASCII"));
+        check("e34bbc7bbc071b6c7a433ca9c49a9347", buffer.getHashName(), "reference value");
+
+        final byte[] data = new byte[100003];
+        new Random(7).nextBytes(data);
+
+        buffer = HashingBuffer.get();
+        buffer.readFrom(new ByteArrayInputStream(data));
+        final String streamed = buffer.getHashName();
+
+        buffer = HashingBuffer.get();
+        for (int i = 0; i < data.length; i += 17) {
+            buffer.write(data, i, Math.min(17, data.length - i));
+        }
+        check(streamed, buffer.getHashName(), "written in pieces");
+
+        buffer = HashingBuffer.get();
+        for (byte b : data) {
+            buffer.write(b);
+        }
+        check(streamed, buffer.getHashName(), "written one byte at a time");
+
+        // the contents must be the data, without being copied
+        final InputStream inputStream = buffer.getInputStream();
+        final byte[] contents = new byte[data.length];
+        int read = 0;
+        while (read < contents.length) {
+            read += inputStream.read(contents, read, contents.length - read);
+        }
+        check(Boolean.TRUE.toString(), Boolean.toString(java.util.Arrays.equals(data, contents) && inputStream.read() == -1), "contents");
+
+        data[data.length / 2]++;
+        buffer = HashingBuffer.get();
+        buffer.readFrom(new ByteArrayInputStream(data));
+        if (buffer.getHashName().equals(streamed)) {
+            System.err.println("FAIL: different data has the same hash");
+            failures++;
+        }
+    }
+
+    private static
+    void check(final String expected, final String actual, final String name) {
+        if (!expected.equals(actual)) {
+            System.err.println("FAIL: " + name + " is " + actual + ", expected " + expected);
+            failures++;
+        }
+    }
+
+    private static
+    long allocated(final com.sun.management.ThreadMXBean threads, final byte[] image, final boolean hashing) throws Exception {
+        final long id = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            cacheName(image, hashing);
+        }
+
+        final long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < ITERATIONS; i++) {
+            cacheName(image, hashing);
+        }
+        final long after = threads.getThreadAllocatedBytes(id);
+
+        return (after - before) / ITERATIONS;
+    }
+
+    /**
+     * @return the cache name of the image, and (like resizing does) a stream over it's data
+     */
+    private static
+    String cacheName(final byte[] image, final boolean hashing) throws Exception {
+        final InputStream source = new ByteArrayInputStream(image);
+
+        if (hashing) {
+            final HashingBuffer buffer = HashingBuffer.get();
+            buffer.readFrom(source);
+            buffer.getInputStream();
+            return buffer.getHashName();
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] bytes = new byte[4096];
+        int read;
+        while ((read = source.read(bytes)) != -1) {
+            outputStream.write(bytes, 0, read);
+        }
+
+        final InputStream copy = new ByteArrayInputStream(outputStream.toByteArray());
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        while ((read = copy.read(bytes)) != -1) {
+            digest.update(bytes, 0, read);
+        }
+
+        final byte[] hash = digest.digest();
+        final StringBuilder name = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            name.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+        }
+        return name.toString();
+    }
+}
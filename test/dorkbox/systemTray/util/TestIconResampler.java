@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.systemTray.util;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compares the quality and the throughput of IconResampler with the previous resize path (scale with Image.SCALE_SMOOTH, copy into a
+ * BufferedImage, then copy again into a padded square image).
+ * <p>
+ * The quality is the error against an exact area-average (in double precision) of each destination pixel, for downscales by a whole
+ * factor. IconResampler must be as close to the reference as the previous path, and must not be slower.
+ */
+public
+class TestIconResampler {
+    private static final int[] SOURCE_SIZES = new int[] {512, 256, 128};
+    private static final int[] ICON_SIZES = new int[] {16, 32, 64};
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    // the largest allowed difference of a channel (0-255) from the reference
+    private static final int MAX_ERROR = 1;
+
+    private static int failures = 0;
+
+    public static
+    void main(String[] args) {
+        final Random random = new Random(42);
+
+        System.out.println("Quality: mean (max) channel error against an exact area-average");
+        for (int sourceSize : SOURCE_SIZES) {
+            final BufferedImage opaque = noise(random, sourceSize, false);
+            final BufferedImage translucent = noise(random, sourceSize, true);
+
+            for (int size : ICON_SIZES) {
+                quality(opaque, size, "opaque");
+                quality(translucent, size, "translucent");
+            }
+        }
+
+        System.out.println("Throughput, in icons per second");
+        final BufferedImage image = noise(random, 512, true);
+        for (int size : ICON_SIZES) {
+            final double resampler = throughput(image, size, true);
+            final double previous = throughput(image, size, false);
+
+            System.out.println("512 -> " + size + ": IconResampler " + (long) resampler + ", previous " + (long) previous);
+            if (resampler < previous) {
+                System.err.println("FAIL: IconResampler is slower than the previous path for 512 -> " + size);
+                failures++;
+            }
+        }
+
+        if (failures > 0) {
+            System.err.println(failures + " checks failed");
+            System.exit(1);
+        }
+
+        System.out.println("PASS");
+    }
+
+    private static
+    void quality(final BufferedImage source, final int size, final String name) {
+        final BufferedImage reference = areaAverage(source, size);
+
+        final double[] resampler = error(IconResampler.resizeToSquare(source, size), reference);
+        final double[] previous = error(previousPath(source, size), reference);
+
+        System.out.println(source.getWidth() + " -> " + size + " " + name + ": IconResampler " + format(resampler) + ", previous " +
+                           format(previous));
+
+        if (resampler[1] > MAX_ERROR) {
+            System.err.println("FAIL: IconResampler is off by " + (int) resampler[1] + " for " + source.getWidth() + " -> " + size);
+            failures++;
+        }
+    }
+
+    private static
+    String format(final double[] error) {
+        return String.format("%.3f (%d)", error[0], (int) error[1]);
+    }
+
+    private static
+    double throughput(final BufferedImage source, final int size, final boolean resampler) {
+        for (int i = 0; i < WARMUP; i++) {
+            resize(source, size, resampler);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            resize(source, size, resampler);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        return ITERATIONS * 1.0E9D / elapsed;
+    }
+
+    private static
+    BufferedImage resize(final BufferedImage source, final int size, final boolean resampler) {
+        if (resampler) {
+            return IconResampler.resizeToSquare(source, size);
+        }
+        return previousPath(source, size);
+    }
+
+    /**
+     * The steps of the previous path: the aspect ratio is kept, the image is scaled with SCALE_SMOOTH (area-averaging, without
+     * pre-multiplied alpha), copied into a BufferedImage, then copied into the center of a square image.
+     */
+    private static
+    BufferedImage previousPath(final BufferedImage source, final int size) {
+        final Image scaled;
+        if (source.getWidth() > source.getHeight()) {
+            scaled = source.getScaledInstance(size, -1, Image.SCALE_SMOOTH);
+        }
+        else {
+            scaled = source.getScaledInstance(-1, size, Image.SCALE_SMOOTH);
+        }
+
+        final BufferedImage buffered = new BufferedImage(scaled.getWidth(null), scaled.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = buffered.createGraphics();
+        g.drawImage(scaled, 0, 0, null);
+        g.dispose();
+
+        final BufferedImage square = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        g = square.createGraphics();
+        g.drawImage(buffered, (size - buffered.getWidth()) / 2, (size - buffered.getHeight()) / 2, null);
+        g.dispose();
+
+        return square;
+    }
+
+    /**
+     * @return an exact (double precision, pre-multiplied alpha) area-average of a square source, which is a whole multiple of the size
+     */
+    private static
+    BufferedImage areaAverage(final BufferedImage source, final int size) {
+        final int factor = source.getWidth() / size;
+        final BufferedImage target = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double a = 0.0D;
+                double r = 0.0D;
+                double g = 0.0D;
+                double b = 0.0D;
+
+                for (int sy = y * factor; sy < (y + 1) * factor; sy++) {
+                    for (int sx = x * factor; sx < (x + 1) * factor; sx++) {
+                        final int argb = source.getRGB(sx, sy);
+                        final double alpha = argb >>> 24;
+
+                        a += alpha;
+                        r += alpha * ((argb >> 16) & 0xFF);
+                        g += alpha * ((argb >> 8) & 0xFF);
+                        b += alpha * (argb & 0xFF);
+                    }
+                }
+
+                if (a > 0.0D) {
+                    final int alpha = (int) Math.round(a / (factor * factor));
+                    if (alpha > 0) {
+                        target.setRGB(x, y, alpha << 24 | (int) Math.round(r / a) << 16 | (int) Math.round(g / a) << 8 | (int) Math.round(b / a));
+                    }
+                }
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * @return the mean and the max difference of the channels, only counting the color of pixels that are not fully transparent
+     */
+    private static
+    double[] error(final BufferedImage image, final BufferedImage reference) {
+        long total = 0L;
+        long count = 0L;
+        int max = 0;
+
+        for (int y = 0; y < reference.getHeight(); y++) {
+            for (int x = 0; x < reference.getWidth(); x++) {
+                final int actual = image.getRGB(x, y);
+                final int expected = reference.getRGB(x, y);
+
+                final int channels = (expected >>> 24) == 0 ? 1 : 4;
+                for (int i = 0; i < channels; i++) {
+                    final int shift = 24 - i * 8;
+                    final int difference = Math.abs(((actual >>> shift) & 0xFF) - ((expected >>> shift) & 0xFF));
+
+                    total += difference;
+                    count++;
+                    max = Math.max(max, difference);
+                }
+            }
+        }
+
+        return new double[] {(double) total / count, max};
+    }
+
+    /**
+     * @return a square image of smooth gradients with noise, which is either opaque or has varying alpha
+     */
+    private static
+    BufferedImage noise(final Random random, final int size, final boolean translucent) {
+        final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int alpha = translucent ? (x * 255 / size + random.nextInt(64)) % 256 : 255;
+                final int red = (y * 255 / size + random.nextInt(32)) & 0xFF;
+                final int green = random.nextInt(256);
+                final int blue = ((x + y) * 127 / size) & 0xFF;
+
+                image.setRGB(x, y, alpha << 24 | red << 16 | green << 8 | blue);
+            }
+        }
+
+        return image;
+    }
+}